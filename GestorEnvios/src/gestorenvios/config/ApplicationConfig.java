@@ -3,6 +3,7 @@ package gestorenvios.config;
 import gestorenvios.models.exceptions.ConfiguracionPropertiesException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Locale;
 import java.util.Properties;
 
 /***
@@ -43,4 +44,72 @@ public class ApplicationConfig {
     public static String get(String clave) {
         return getProperties().getProperty(clave);
     }
+
+    /***
+     * Obtiene una propiedad numérica entera, usando un valor por defecto si no está definida.
+     * @param clave Clave de la propiedad
+     * @param valorPorDefecto Valor a devolver si la propiedad no existe o está vacía
+     * @return Valor de la propiedad convertido a int
+     * @throws ConfiguracionPropertiesException si el valor no es un número válido
+     */
+    public static int getInt(String clave, int valorPorDefecto) {
+        return (int) getLong(clave, valorPorDefecto);
+    }
+
+    /***
+     * Obtiene una propiedad numérica larga, usando un valor por defecto si no está definida.
+     * @param clave Clave de la propiedad
+     * @param valorPorDefecto Valor a devolver si la propiedad no existe o está vacía
+     * @return Valor de la propiedad convertido a long
+     * @throws ConfiguracionPropertiesException si el valor no es un número válido
+     */
+    public static long getLong(String clave, long valorPorDefecto) {
+        String valor = get(clave);
+        if (valor == null || valor.trim().isEmpty()) {
+            return valorPorDefecto;
+        }
+        try {
+            return Long.parseLong(valor.trim());
+        } catch (NumberFormatException e) {
+            throw new ConfiguracionPropertiesException("Valor numérico inválido para '" + clave + "': " + valor);
+        }
+    }
+
+    /***
+     * Obtiene una propiedad numérica decimal, usando un valor por defecto si no está definida.
+     * @param clave Clave de la propiedad
+     * @param valorPorDefecto Valor a devolver si la propiedad no existe o está vacía
+     * @return Valor de la propiedad convertido a double
+     * @throws ConfiguracionPropertiesException si el valor no es un número válido
+     */
+    public static double getDouble(String clave, double valorPorDefecto) {
+        String valor = get(clave);
+        if (valor == null || valor.trim().isEmpty()) {
+            return valorPorDefecto;
+        }
+        try {
+            return Double.parseDouble(valor.trim());
+        } catch (NumberFormatException e) {
+            throw new ConfiguracionPropertiesException("Valor numérico inválido para '" + clave + "': " + valor);
+        }
+    }
+
+    /***
+     * Obtiene una propiedad booleana (true o false), usando un valor por defecto si no está definida.
+     * @param clave Clave de la propiedad
+     * @param valorPorDefecto Valor a devolver si la propiedad no existe o está vacía
+     * @return Valor de la propiedad convertido a boolean
+     * @throws ConfiguracionPropertiesException si el valor no es true ni false
+     */
+    public static boolean getBoolean(String clave, boolean valorPorDefecto) {
+        String valor = get(clave);
+        if (valor == null || valor.trim().isEmpty()) {
+            return valorPorDefecto;
+        }
+        return switch (valor.trim().toLowerCase(Locale.ROOT)) {
+            case "true" -> true;
+            case "false" -> false;
+            default -> throw new ConfiguracionPropertiesException("Valor booleano inválido para '" + clave + "': " + valor);
+        };
+    }
 }
@@ -0,0 +1,73 @@
+package gestorenvios.config;
+
+import java.sql.SQLException;
+
+/***
+ * Clasificación de los errores de base de datos según si conviene reintentar la transacción.
+ * <p>
+ * Los DAOs y servicios envuelven las SQLException en otras excepciones con su propio mensaje, por lo
+ * que la clasificación recorre toda la cadena de causas (y las excepciones encadenadas de cada
+ * SQLException) buscando el código de error o el SQLState de MySQL.
+ */
+public enum ClasificacionErrorSql {
+    /*** Interbloqueo detectado por InnoDB (error 1213, SQLState 40001): la transacción ya se revirtió. */
+    DEADLOCK(true),
+    /*** Venció la espera de un bloqueo (error 1205): otra transacción retuvo la fila demasiado tiempo. */
+    ESPERA_BLOQUEO(true),
+    /*** Se perdió la conexión (SQLState 08xxx). No se reintenta porque no se sabe si el commit llegó. */
+    CONEXION(false),
+    /*** Cualquier otro error: de datos, de sintaxis, de negocio. Reintentar daría el mismo resultado. */
+    OTRO(false);
+
+    private static final int ER_LOCK_DEADLOCK = 1213;
+    private static final int ER_LOCK_WAIT_TIMEOUT = 1205;
+    private static final String SQLSTATE_SERIALIZACION = "40001";
+    private static final String SQLSTATE_CONEXION = "08";
+
+    private final boolean reintentable;
+
+    ClasificacionErrorSql(boolean reintentable) {
+        this.reintentable = reintentable;
+    }
+
+    /***
+     * Indica si una transacción que falló con este error puede volver a ejecutarse completa.
+     * @return true si el error es transitorio y la transacción ya quedó revertida
+     */
+    public boolean isReintentable() {
+        return reintentable;
+    }
+
+    /***
+     * Clasifica un error recorriendo su cadena de causas.
+     * @param error Error a clasificar (puede ser null)
+     * @return Clasificación del primer error de base de datos reconocido, u OTRO si no hay ninguno
+     */
+    public static ClasificacionErrorSql de(Throwable error) {
+        for (Throwable actual = error; actual != null; actual = actual.getCause()) {
+            if (actual instanceof SQLException sql) {
+                for (SQLException encadenada = sql; encadenada != null; encadenada = encadenada.getNextException()) {
+                    ClasificacionErrorSql clasificacion = deSqlException(encadenada);
+                    if (clasificacion != OTRO) {
+                        return clasificacion;
+                    }
+                }
+            }
+        }
+        return OTRO;
+    }
+
+    private static ClasificacionErrorSql deSqlException(SQLException e) {
+        String estado = e.getSQLState();
+        if (e.getErrorCode() == ER_LOCK_DEADLOCK || SQLSTATE_SERIALIZACION.equals(estado)) {
+            return DEADLOCK;
+        }
+        if (e.getErrorCode() == ER_LOCK_WAIT_TIMEOUT) {
+            return ESPERA_BLOQUEO;
+        }
+        if (estado != null && estado.startsWith(SQLSTATE_CONEXION)) {
+            return CONEXION;
+        }
+        return OTRO;
+    }
+}
@@ -0,0 +1,701 @@
+package gestorenvios.config;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/***
+ * Pool acotado de conexiones JDBC.
+ * <p>
+ * Mantiene conexiones físicas abiertas y las presta envueltas en un proxy cuyo close()
+ * las devuelve al pool en lugar de cerrarlas, evitando el handshake TCP + autenticación
+ * de MySQL en cada operación.
+ * <p>
+ * Características:
+ * <ul>
+ *   <li>Tamaño máximo de conexiones físicas abiertas.</li>
+ *   <li>Mínimo de conexiones ociosas mantenido por una tarea de mantenimiento.</li>
+ *   <li>Validación de la conexión al prestarla.</li>
+ *   <li>Tiempo de vida máximo de cada conexión física.</li>
+ *   <li>Tiempo máximo de espera para obtener una conexión.</li>
+ *   <li>Caché LRU de PreparedStatement por conexión física ({@link StatementCache}).</li>
+ * </ul>
+ * Las sentencias creadas a través de una conexión prestada que no se cierren explícitamente
+ * se cierran (o se devuelven a la caché) cuando la conexión vuelve al pool.
+ */
+public class ConnectionPool {
+
+    /*** Intervalo de ejecución de la tarea de mantenimiento. */
+    private static final long INTERVALO_MANTENIMIENTO_MS = 30_000L;
+
+    private final String url;
+    private final String usuario;
+    private final String password;
+
+    private final int tamanioMaximo;
+    private final int minimoOciosas;
+    private final long vidaMaximaNanos;
+    private final long timeoutPrestamoNanos;
+    private final int timeoutValidacionSegundos;
+    private final int tamanioCacheSentencias;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition disponible = lock.newCondition();
+
+    /*** Conexiones ociosas, la más recientemente usada primero (LIFO). Protegido por lock. */
+    private final Deque<ConexionFisica> ociosas = new ArrayDeque<>();
+    /*** Conexiones físicas abiertas o en proceso de apertura. Protegido por lock. */
+    private int totalConexiones;
+    /*** Hilos esperando una conexión. Protegido por lock. */
+    private int esperando;
+    /*** Indica si el pool fue cerrado. Protegido por lock. */
+    private boolean cerrado;
+
+    private final LongAdder prestamos = new LongAdder();
+    private final LongAdder nanosPrestamo = new LongAdder();
+    private final AtomicLong maxNanosPrestamo = new AtomicLong();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder creadas = new LongAdder();
+    private final LongAdder descartadas = new LongAdder();
+    private final LongAdder aciertosSentencias = new LongAdder();
+    private final LongAdder fallosSentencias = new LongAdder();
+    private final LongAdder desalojosSentencias = new LongAdder();
+
+    private final ScheduledExecutorService mantenimiento;
+
+    /***
+     * Crea un pool de conexiones.
+     *
+     * @param url URL JDBC de la base de datos
+     * @param usuario Usuario de la base de datos
+     * @param password Contraseña de la base de datos
+     * @param tamanioMaximo Cantidad máxima de conexiones físicas
+     * @param minimoOciosas Cantidad mínima de conexiones ociosas a mantener
+     * @param vidaMaximaMs Tiempo de vida máximo de una conexión física en milisegundos
+     * @param timeoutPrestamoMs Tiempo máximo de espera para obtener una conexión en milisegundos
+     * @param timeoutValidacionSegundos Tiempo máximo para validar una conexión al prestarla
+     * @param tamanioCacheSentencias Sentencias cacheadas por conexión física (0 desactiva la caché)
+     * @throws IllegalArgumentException si los parámetros de tamaño son inválidos
+     */
+    public ConnectionPool(String url, String usuario, String password,
+                          int tamanioMaximo, int minimoOciosas,
+                          long vidaMaximaMs, long timeoutPrestamoMs,
+                          int timeoutValidacionSegundos,
+                          int tamanioCacheSentencias) {
+        if (tamanioMaximo <= 0) {
+            throw new IllegalArgumentException("El tamaño máximo del pool debe ser mayor a cero");
+        }
+        if (minimoOciosas < 0 || minimoOciosas > tamanioMaximo) {
+            throw new IllegalArgumentException("El mínimo de conexiones ociosas debe estar entre 0 y el tamaño máximo");
+        }
+        this.url = url;
+        this.usuario = usuario;
+        this.password = password;
+        this.tamanioMaximo = tamanioMaximo;
+        this.minimoOciosas = minimoOciosas;
+        this.vidaMaximaNanos = TimeUnit.MILLISECONDS.toNanos(vidaMaximaMs);
+        this.timeoutPrestamoNanos = TimeUnit.MILLISECONDS.toNanos(timeoutPrestamoMs);
+        this.timeoutValidacionSegundos = timeoutValidacionSegundos;
+        this.tamanioCacheSentencias = tamanioCacheSentencias;
+
+        this.mantenimiento = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "pool-conexiones-mantenimiento");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        this.mantenimiento.scheduleWithFixedDelay(this::mantener,
+                0L, INTERVALO_MANTENIMIENTO_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /***
+     * Obtiene una conexión del pool, esperando como máximo el timeout configurado.
+     * La conexión devuelta debe cerrarse para regresar al pool.
+     *
+     * @return Conexión JDBC prestada por el pool
+     * @throws SQLTimeoutException si no hay conexiones disponibles dentro del timeout
+     * @throws SQLException si el pool está cerrado o no se puede abrir una conexión
+     */
+    public Connection obtenerConexion() throws SQLException {
+        return prestar(timeoutPrestamoNanos);
+    }
+
+    /***
+     * Obtiene una conexión del pool, esperando como máximo el timeout indicado en lugar del
+     * configurado. Con timeout 0 no espera: si el pool está lleno falla enseguida.
+     *
+     * @param timeoutMs Tiempo máximo de espera en milisegundos
+     * @return Conexión JDBC prestada por el pool
+     * @throws SQLTimeoutException si no hay conexiones disponibles dentro del timeout
+     * @throws SQLException si el pool está cerrado o no se puede abrir una conexión
+     */
+    public Connection obtenerConexion(long timeoutMs) throws SQLException {
+        return prestar(TimeUnit.MILLISECONDS.toNanos(Math.max(0L, timeoutMs)));
+    }
+
+    private Connection prestar(long timeoutNanos) throws SQLException {
+        long inicio = System.nanoTime();
+        long limite = inicio + timeoutNanos;
+
+        while (true) {
+            ConexionFisica fisica = tomarOReservar(limite);
+            if (fisica == null) {
+                fisica = abrirReservada();
+            } else if (!esValida(fisica)) {
+                descartar(fisica);
+                continue;
+            }
+            registrarPrestamo(System.nanoTime() - inicio);
+            return envolver(fisica);
+        }
+    }
+
+    /***
+     * Devuelve una instantánea de las estadísticas del pool.
+     *
+     * @return Estadísticas actuales del pool
+     */
+    public PoolStatistics obtenerEstadisticas() {
+        int ociosasActuales;
+        int total;
+        int esperandoActual;
+        lock.lock();
+        try {
+            ociosasActuales = ociosas.size();
+            total = totalConexiones;
+            esperandoActual = esperando;
+        } finally {
+            lock.unlock();
+        }
+        long cantidadPrestamos = prestamos.sum();
+        double promedioMs = cantidadPrestamos == 0
+                ? 0.0
+                : nanosPrestamo.sum() / (double) cantidadPrestamos / 1_000_000.0;
+        return new PoolStatistics(
+                total - ociosasActuales,
+                ociosasActuales,
+                esperandoActual,
+                total,
+                cantidadPrestamos,
+                promedioMs,
+                maxNanosPrestamo.get() / 1_000_000.0,
+                timeouts.sum(),
+                creadas.sum(),
+                descartadas.sum(),
+                aciertosSentencias.sum(),
+                fallosSentencias.sum(),
+                desalojosSentencias.sum());
+    }
+
+    /***
+     * Cierra el pool. Las conexiones ociosas se cierran inmediatamente y las prestadas
+     * se cierran al ser devueltas.
+     */
+    public void cerrar() {
+        List<ConexionFisica> aCerrar;
+        lock.lock();
+        try {
+            if (cerrado) {
+                return;
+            }
+            cerrado = true;
+            aCerrar = new ArrayList<>(ociosas);
+            totalConexiones -= ociosas.size();
+            ociosas.clear();
+            disponible.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        mantenimiento.shutdownNow();
+        aCerrar.forEach(this::cerrarFisica);
+    }
+
+    /***
+     * Toma una conexión ociosa o reserva un lugar para abrir una nueva.
+     * Si el pool está lleno, espera hasta que se libere una conexión o venza el límite.
+     *
+     * @param limite Instante (System.nanoTime) en que vence la espera
+     * @return Conexión ociosa, o null si se reservó un lugar para abrir una nueva
+     * @throws SQLException si el pool está cerrado, vence la espera o el hilo es interrumpido
+     */
+    private ConexionFisica tomarOReservar(long limite) throws SQLException {
+        lock.lock();
+        try {
+            while (true) {
+                if (cerrado) {
+                    throw new SQLException("El pool de conexiones está cerrado");
+                }
+                ConexionFisica fisica = ociosas.pollFirst();
+                if (fisica != null) {
+                    return fisica;
+                }
+                if (totalConexiones < tamanioMaximo) {
+                    totalConexiones++;
+                    return null;
+                }
+                long restante = limite - System.nanoTime();
+                if (restante <= 0L) {
+                    timeouts.increment();
+                    throw new SQLTimeoutException("No hay conexiones disponibles en el pool (máximo: "
+                            + tamanioMaximo + ")");
+                }
+                esperando++;
+                try {
+                    disponible.awaitNanos(restante);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("Interrumpido mientras se esperaba una conexión del pool", e);
+                } finally {
+                    esperando--;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /***
+     * Abre una conexión física sobre un lugar previamente reservado.
+     * Si la apertura falla, libera la reserva.
+     *
+     * @return Nueva conexión física
+     * @throws SQLException si no se puede abrir la conexión
+     */
+    private ConexionFisica abrirReservada() throws SQLException {
+        try {
+            ConexionFisica fisica = new ConexionFisica(DriverManager.getConnection(url, usuario, password));
+            creadas.increment();
+            return fisica;
+        } catch (SQLException | RuntimeException e) {
+            liberarLugar();
+            throw e;
+        }
+    }
+
+    /***
+     * Verifica si una conexión física sigue siendo utilizable.
+     *
+     * @param fisica Conexión física a validar
+     * @return true si la conexión no expiró y responde correctamente
+     */
+    private boolean esValida(ConexionFisica fisica) {
+        if (fisica.expirada()) {
+            return false;
+        }
+        try {
+            return fisica.conexion.isValid(timeoutValidacionSegundos);
+        } catch (SQLException _) {
+            return false;
+        }
+    }
+
+    /***
+     * Devuelve una conexión física al pool, restaurando su estado por defecto.
+     * Si la conexión está rota, expiró o el pool fue cerrado, se descarta.
+     *
+     * @param fisica Conexión física a devolver
+     */
+    private void devolver(ConexionFisica fisica) {
+        if (fisica.rota || fisica.expirada() || !restaurarEstado(fisica)) {
+            descartar(fisica);
+            return;
+        }
+        lock.lock();
+        try {
+            if (!cerrado) {
+                ociosas.addFirst(fisica);
+                disponible.signal();
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        descartar(fisica);
+    }
+
+    /***
+     * Restaura el estado de la conexión antes de volver a prestarla.
+     *
+     * @param fisica Conexión física a restaurar
+     * @return true si el estado se pudo restaurar
+     */
+    private boolean restaurarEstado(ConexionFisica fisica) {
+        try {
+            Connection conexion = fisica.conexion;
+            if (conexion.isClosed()) {
+                return false;
+            }
+            if (!conexion.getAutoCommit()) {
+                conexion.rollback();
+                conexion.setAutoCommit(true);
+            }
+            if (conexion.isReadOnly()) {
+                conexion.setReadOnly(false);
+            }
+            return true;
+        } catch (SQLException _) {
+            return false;
+        }
+    }
+
+    /***
+     * Cierra una conexión física y libera su lugar en el pool.
+     *
+     * @param fisica Conexión física a descartar
+     */
+    private void descartar(ConexionFisica fisica) {
+        cerrarFisica(fisica);
+        liberarLugar();
+    }
+
+    /***
+     * Libera un lugar del pool y despierta a un hilo en espera.
+     */
+    private void liberarLugar() {
+        lock.lock();
+        try {
+            totalConexiones--;
+            disponible.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /***
+     * Cierra silenciosamente una conexión física.
+     *
+     * @param fisica Conexión física a cerrar
+     */
+    private void cerrarFisica(ConexionFisica fisica) {
+        descartadas.increment();
+        if (fisica.cache != null) {
+            fisica.cache.cerrarTodas();
+        }
+        try {
+            fisica.conexion.close();
+        } catch (SQLException _) {
+            // La conexión se descarta de todos modos
+        }
+    }
+
+    /***
+     * Tarea de mantenimiento: descarta conexiones ociosas expiradas y completa el mínimo de ociosas.
+     */
+    private void mantener() {
+        List<ConexionFisica> expiradas = new ArrayList<>();
+        lock.lock();
+        try {
+            Iterator<ConexionFisica> it = ociosas.iterator();
+            while (it.hasNext()) {
+                ConexionFisica fisica = it.next();
+                if (fisica.expirada()) {
+                    it.remove();
+                    expiradas.add(fisica);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        expiradas.forEach(this::descartar);
+
+        while (reservarParaMinimo()) {
+            try {
+                devolver(abrirReservada());
+            } catch (SQLException | RuntimeException _) {
+                // Se reintentará en la próxima ejecución del mantenimiento
+                return;
+            }
+        }
+    }
+
+    /***
+     * Reserva un lugar si faltan conexiones ociosas para alcanzar el mínimo configurado.
+     *
+     * @return true si se reservó un lugar
+     */
+    private boolean reservarParaMinimo() {
+        lock.lock();
+        try {
+            if (cerrado || ociosas.size() >= minimoOciosas || totalConexiones >= tamanioMaximo) {
+                return false;
+            }
+            totalConexiones++;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /***
+     * Registra la latencia de un préstamo en las métricas.
+     *
+     * @param nanos Tiempo que tardó el préstamo en nanosegundos
+     */
+    private void registrarPrestamo(long nanos) {
+        prestamos.increment();
+        nanosPrestamo.add(nanos);
+        maxNanosPrestamo.accumulateAndGet(nanos, Math::max);
+    }
+
+    /***
+     * Envuelve una conexión física en un proxy que la devuelve al pool al cerrarse.
+     *
+     * @param fisica Conexión física a envolver
+     * @return Proxy de Connection
+     */
+    private Connection envolver(ConexionFisica fisica) {
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new ConexionPrestada(fisica));
+    }
+
+    /***
+     * Conexión física administrada por el pool.
+     */
+    private final class ConexionFisica {
+        private final Connection conexion;
+        private final long creadaEn;
+        /*** Caché de sentencias de la conexión, o null si está desactivada. */
+        private final StatementCache cache;
+        /*** Se marca cuando el driver reporta un error de comunicación. */
+        private volatile boolean rota;
+
+        private ConexionFisica(Connection conexion) {
+            this.conexion = conexion;
+            this.creadaEn = System.nanoTime();
+            this.cache = tamanioCacheSentencias > 0
+                    ? new StatementCache(conexion, tamanioCacheSentencias,
+                    aciertosSentencias, fallosSentencias, desalojosSentencias)
+                    : null;
+        }
+
+        private boolean expirada() {
+            return vidaMaximaNanos > 0L && System.nanoTime() - creadaEn > vidaMaximaNanos;
+        }
+    }
+
+    /***
+     * Manejador del proxy entregado a los invocadores. Cada préstamo tiene su propio
+     * manejador, de modo que cerrar dos veces la misma conexión no la devuelve dos veces.
+     */
+    private final class ConexionPrestada implements InvocationHandler {
+        private final ConexionFisica fisica;
+        /*** Sentencias entregadas en este préstamo que todavía no fueron cerradas. */
+        private final Set<SentenciaPrestada> abiertas = Collections.newSetFromMap(new IdentityHashMap<>());
+        private boolean cerrada;
+
+        private ConexionPrestada(ConexionFisica fisica) {
+            this.fisica = fisica;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close" -> {
+                    if (!cerrada) {
+                        cerrada = true;
+                        cerrarSentenciasAbiertas();
+                        devolver(fisica);
+                    }
+                    return null;
+                }
+                case "isClosed" -> {
+                    return cerrada || fisica.conexion.isClosed();
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    return "ConexionPool[" + fisica.conexion + "]";
+                }
+                default -> {
+                    // continúa con la delegación
+                }
+            }
+            if (cerrada) {
+                throw new SQLException("La conexión ya fue devuelta al pool");
+            }
+            if (Statement.class.isAssignableFrom(method.getReturnType())) {
+                return crearSentencia((Connection) proxy, method, args);
+            }
+            return delegar(fisica, fisica.conexion, method, args);
+        }
+
+        /***
+         * Entrega una sentencia envuelta en un proxy. Los prepareStatement(sql) y
+         * prepareStatement(sql, autoGeneratedKeys) se sirven desde la caché de la conexión.
+         *
+         * @param conexionProxy Proxy de la conexión prestada
+         * @param method Método de Connection invocado
+         * @param args Argumentos del método
+         * @return Proxy de la sentencia
+         * @throws Throwable si el driver falla al crear la sentencia
+         */
+        private Object crearSentencia(Connection conexionProxy, Method method, Object[] args) throws Throwable {
+            StatementCache.Entrada entrada = null;
+            if (fisica.cache != null && esCacheable(method)) {
+                int clavesGeneradas = args.length == 2 ? (Integer) args[1] : Statement.NO_GENERATED_KEYS;
+                entrada = fisica.cache.tomar((String) args[0], clavesGeneradas);
+            }
+            Statement real = entrada != null
+                    ? entrada.getSentencia()
+                    : (Statement) delegar(fisica, fisica.conexion, method, args);
+
+            SentenciaPrestada manejador = new SentenciaPrestada(this, conexionProxy, real, entrada);
+            abiertas.add(manejador);
+            return Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[]{method.getReturnType()},
+                    manejador);
+        }
+
+        /***
+         * Indica si el método es prepareStatement(String) o prepareStatement(String, int).
+         */
+        private boolean esCacheable(Method method) {
+            Class<?>[] parametros = method.getParameterTypes();
+            return "prepareStatement".equals(method.getName())
+                    && (parametros.length == 1
+                    || (parametros.length == 2 && parametros[1] == int.class));
+        }
+
+        /***
+         * Cierra (o devuelve a la caché) las sentencias que el invocador no cerró.
+         */
+        private void cerrarSentenciasAbiertas() {
+            List<SentenciaPrestada> pendientes = new ArrayList<>(abiertas);
+            abiertas.clear();
+            pendientes.forEach(SentenciaPrestada::cerrar);
+        }
+    }
+
+    /***
+     * Manejador del proxy de las sentencias entregadas por una conexión prestada.
+     * Al cerrarse, las sentencias cacheadas vuelven a la caché y el resto se cierra.
+     */
+    private final class SentenciaPrestada implements InvocationHandler {
+        private final ConexionPrestada conexion;
+        private final Connection conexionProxy;
+        private final Statement real;
+        /*** Entrada de la caché, o null si la sentencia no está cacheada. */
+        private final StatementCache.Entrada entrada;
+        private boolean cerrada;
+
+        private SentenciaPrestada(ConexionPrestada conexion, Connection conexionProxy,
+                                  Statement real, StatementCache.Entrada entrada) {
+            this.conexion = conexion;
+            this.conexionProxy = conexionProxy;
+            this.real = real;
+            this.entrada = entrada;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close" -> {
+                    conexion.abiertas.remove(this);
+                    cerrar();
+                    return null;
+                }
+                case "isClosed" -> {
+                    return cerrada || real.isClosed();
+                }
+                case "getConnection" -> {
+                    return conexionProxy;
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    return "SentenciaPool[" + real + "]";
+                }
+                default -> {
+                    // continúa con la delegación
+                }
+            }
+            if (cerrada) {
+                throw new SQLException("La sentencia ya fue cerrada");
+            }
+            return delegar(conexion.fisica, real, method, args);
+        }
+
+        /***
+         * Libera la sentencia: la devuelve a la caché o la cierra.
+         */
+        private void cerrar() {
+            if (cerrada) {
+                return;
+            }
+            cerrada = true;
+            if (entrada != null) {
+                conexion.fisica.cache.liberar(entrada);
+                return;
+            }
+            try {
+                real.close();
+            } catch (SQLException _) {
+                // La sentencia se descarta de todos modos
+            }
+        }
+    }
+
+    /***
+     * Invoca un método sobre el objeto real del driver, marcando la conexión física como rota
+     * si el driver reporta un error de comunicación.
+     *
+     * @param fisica Conexión física involucrada
+     * @param destino Objeto real (conexión o sentencia)
+     * @param method Método a invocar
+     * @param args Argumentos
+     * @return Resultado del método
+     * @throws Throwable la excepción original lanzada por el driver
+     */
+    private static Object delegar(ConexionFisica fisica, Object destino, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(destino, args);
+        } catch (InvocationTargetException e) {
+            Throwable causa = e.getCause();
+            if (causa instanceof SQLException sqlException && esErrorDeComunicacion(sqlException)) {
+                fisica.rota = true;
+            }
+            throw causa;
+        }
+    }
+
+    /***
+     * Indica si el error corresponde a la clase SQLSTATE 08 (errores de conexión).
+     *
+     * @param e Excepción a evaluar
+     * @return true si es un error de comunicación
+     */
+    private static boolean esErrorDeComunicacion(SQLException e) {
+        return e.getSQLState() != null && e.getSQLState().startsWith("08");
+    }
+}
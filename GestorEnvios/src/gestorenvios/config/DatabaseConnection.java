@@ -1,11 +1,24 @@
 package gestorenvios.config;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /***
  * Proporciona la conexión a la base de datos usando los parámetros de configuración.
+ * Las conexiones se obtienen de un pool ({@link ConnectionPool}); al cerrarlas vuelven al pool.
+ * <p>
+ * Si se configuran réplicas de lectura (db.replicas.urls, separadas por comas), las consultas que
+ * toleran datos levemente desactualizados ({@link #obtenerConexionLectura()}) se reparten entre
+ * ellas ({@link EnrutadorReplicas}); las transacciones y el resto de las operaciones usan siempre
+ * la base principal. Para que un hilo lea sus propias escrituras, después de confirmar una
+ * transacción de escritura sus lecturas van a la base principal durante una ventana configurable
+ * (db.replicas.ventanaLecturaPropiaMs), que debe cubrir el retraso de replicación tolerado.
+ * Las lecturas que cargan las cachés de entidades (por ID y por tracking) no usan las réplicas: las
+ * cachés son compartidas entre hilos y guardarían durante todo su tiempo de vida una fila que la
+ * réplica todavía no actualizó, lo que la ventana de lectura propia del hilo que escribió no evita.
  * Clase utilitaria (no instanciable).
  */
 public class DatabaseConnection {
@@ -15,16 +28,53 @@ public class DatabaseConnection {
     private static final String DB_PASSWORD = ApplicationConfig.get("db.password");
     private static final String DB_DRIVER = ApplicationConfig.get("db.driver");
 
+    private static final int POOL_MAX_SIZE = ApplicationConfig.getInt("db.pool.maxSize", 10);
+    private static final int POOL_MIN_IDLE = ApplicationConfig.getInt("db.pool.minIdle", 2);
+    private static final long POOL_MAX_LIFETIME_MS = ApplicationConfig.getLong("db.pool.maxLifetimeMs", 1_800_000L);
+    private static final long POOL_BORROW_TIMEOUT_MS = ApplicationConfig.getLong("db.pool.borrowTimeoutMs", 5_000L);
+    private static final int POOL_VALIDATION_TIMEOUT_S = ApplicationConfig.getInt("db.pool.validationTimeoutSeconds", 2);
+    private static final int POOL_STATEMENT_CACHE_SIZE = ApplicationConfig.getInt("db.pool.statementCacheSize", 50);
+
+    private static final List<String> REPLICAS_URLS = leerUrlsReplicas(ApplicationConfig.get("db.replicas.urls"));
+    private static final int REPLICAS_POOL_MAX_SIZE = ApplicationConfig.getInt("db.replicas.pool.maxSize", POOL_MAX_SIZE);
+    private static final int REPLICAS_POOL_MIN_IDLE = ApplicationConfig.getInt("db.replicas.pool.minIdle", POOL_MIN_IDLE);
+    private static final long REPLICAS_RETRASO_MAXIMO_S = ApplicationConfig.getLong("db.replicas.retrasoMaximoSegundos", 2L);
+    private static final long REPLICAS_INTERVALO_CHEQUEO_S = ApplicationConfig.getLong("db.replicas.chequeoSegundos", 10L);
+    private static final long REPLICAS_TIMEOUT_PRESTAMO_MS = ApplicationConfig.getLong("db.replicas.borrowTimeoutMs", 0L);
+    private static final boolean REPLICAS_PERMITIR_SIN_RETRASO = ApplicationConfig.getBoolean("db.replicas.permitirSinRetraso", false);
+    private static final long VENTANA_LECTURA_PROPIA_NANOS = TimeUnit.MILLISECONDS.toNanos(
+            ApplicationConfig.getLong("db.replicas.ventanaLecturaPropiaMs", 5_000L));
+
+    private static final ConnectionPool POOL;
+    /*** Enrutador de lecturas a las réplicas, o null si no hay réplicas configuradas. */
+    private static final EnrutadorReplicas REPLICAS;
+
+    /*** Instante (System.nanoTime) de la última escritura confirmada por el hilo. */
+    private static final ThreadLocal<Long> ULTIMA_ESCRITURA = new ThreadLocal<>();
+
     static {
         try {
             Class.forName(DB_DRIVER);
 
             validateConfiguration();
+
+            POOL = new ConnectionPool(DB_URL, DB_USER, DB_PASSWORD,
+                    POOL_MAX_SIZE, POOL_MIN_IDLE,
+                    POOL_MAX_LIFETIME_MS, POOL_BORROW_TIMEOUT_MS,
+                    POOL_VALIDATION_TIMEOUT_S, POOL_STATEMENT_CACHE_SIZE);
+
+            REPLICAS = REPLICAS_URLS.isEmpty() ? null : new EnrutadorReplicas(REPLICAS_URLS,
+                    url -> new ConnectionPool(url, DB_USER, DB_PASSWORD,
+                            REPLICAS_POOL_MAX_SIZE, REPLICAS_POOL_MIN_IDLE,
+                            POOL_MAX_LIFETIME_MS, POOL_BORROW_TIMEOUT_MS,
+                            POOL_VALIDATION_TIMEOUT_S, POOL_STATEMENT_CACHE_SIZE),
+                    REPLICAS_RETRASO_MAXIMO_S, REPLICAS_INTERVALO_CHEQUEO_S, POOL_VALIDATION_TIMEOUT_S,
+                    REPLICAS_TIMEOUT_PRESTAMO_MS, REPLICAS_PERMITIR_SIN_RETRASO);
         } catch (ClassNotFoundException e) {
             throw new ExceptionInInitializerError(
                     "Error: No se encontró el driver JDBC de MySQL: "
                             + e.getMessage());
-        } catch (IllegalStateException e) {
+        } catch (IllegalStateException | IllegalArgumentException e) {
             throw new ExceptionInInitializerError(
                     "Error en la configuración de la base de datos: "
                             + e.getMessage());
@@ -37,13 +87,116 @@ public class DatabaseConnection {
     }
 
     /***
-     * Obtiene una nueva conexión a la base de datos.
+     * Obtiene una conexión para operar en el hilo actual. Si el hilo tiene una transacción activa
+     * ({@link TransactionManager}), devuelve la conexión de esa transacción, cuyo cierre no la
+     * libera; si no, toma una conexión del pool, que vuelve al pool al cerrarla.
      *
      * @return Conexión JDBC
-     * @throws SQLException si ocurre un error al conectar
+     * @throws SQLException si ocurre un error al conectar o vence la espera de una conexión libre
      */
     public static Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
+        Connection transaccional = TransactionManager.conexionCompartida();
+        return transaccional != null ? transaccional : POOL.obtenerConexion();
+    }
+
+    /***
+     * Obtiene una conexión para una consulta de solo lectura que tolera el retraso de replicación
+     * (búsquedas, listados, conteos). Si el hilo tiene una transacción activa devuelve su conexión;
+     * si no, usa una réplica sana salvo que el hilo haya escrito dentro de la ventana de lectura
+     * propia. Sin réplicas disponibles usa la base principal.
+     *
+     * @return Conexión JDBC
+     * @throws SQLException si ocurre un error al conectar o vence la espera de una conexión libre
+     */
+    public static Connection obtenerConexionLectura() throws SQLException {
+        Connection transaccional = TransactionManager.conexionCompartida();
+        if (transaccional != null) {
+            return transaccional;
+        }
+        if (REPLICAS != null && !dentroDeVentanaLecturaPropia()) {
+            Connection replica = REPLICAS.obtenerConexion();
+            if (replica != null) {
+                return replica;
+            }
+        }
+        return POOL.obtenerConexion();
+    }
+
+    /***
+     * Registra que el hilo actual confirmó una escritura en la base principal, para que sus
+     * lecturas no vayan a las réplicas durante la ventana de lectura propia.
+     */
+    static void registrarEscritura() {
+        if (REPLICAS != null) {
+            ULTIMA_ESCRITURA.set(System.nanoTime());
+        }
+    }
+
+    private static boolean dentroDeVentanaLecturaPropia() {
+        Long ultima = ULTIMA_ESCRITURA.get();
+        if (ultima == null) {
+            return false;
+        }
+        if (System.nanoTime() - ultima < VENTANA_LECTURA_PROPIA_NANOS) {
+            return true;
+        }
+        ULTIMA_ESCRITURA.remove();
+        return false;
+    }
+
+    /***
+     * Obtiene una conexión del pool aunque el hilo tenga una transacción activa, para operaciones
+     * que deben confirmarse por separado (reservas de secuencias, DDL que confirma implícitamente).
+     *
+     * @return Conexión JDBC
+     * @throws SQLException si ocurre un error al conectar o vence la espera de una conexión libre
+     */
+    public static Connection obtenerConexionIndependiente() throws SQLException {
+        return POOL.obtenerConexion();
+    }
+
+    /***
+     * Obtiene las estadísticas actuales del pool de conexiones.
+     *
+     * @return Estadísticas del pool
+     */
+    public static PoolStatistics obtenerEstadisticasPool() {
+        return POOL.obtenerEstadisticas();
+    }
+
+    /***
+     * Obtiene el estado de las réplicas de lectura.
+     *
+     * @return Estadísticas de cada réplica (vacía si no hay réplicas configuradas)
+     */
+    public static List<EstadisticasReplica> obtenerEstadisticasReplicas() {
+        return REPLICAS != null ? REPLICAS.obtenerEstadisticas() : List.of();
+    }
+
+    /***
+     * Cierra el pool de conexiones y los de las réplicas. Debe invocarse al finalizar la aplicación.
+     */
+    public static void cerrarPool() {
+        POOL.cerrar();
+        if (REPLICAS != null) {
+            REPLICAS.cerrar();
+        }
+    }
+
+    /***
+     * Separa la lista de URLs de réplicas configurada.
+     *
+     * @param valor URLs separadas por comas (puede ser null o vacío)
+     * @return URLs de las réplicas, sin las entradas vacías
+     */
+    private static List<String> leerUrlsReplicas(String valor) {
+        if (valor == null) {
+            return List.of();
+        }
+        return Arrays.stream(valor.split(","))
+                .map(String::trim)
+                .filter(url -> !url.isEmpty())
+                .toList();
     }
 
     /***
@@ -0,0 +1,207 @@
+package gestorenvios.config;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/***
+ * Reparte las lecturas entre las réplicas de la base de datos.
+ * <p>
+ * Cada réplica tiene su propio {@link ConnectionPool}. Las conexiones se reparten por turnos entre
+ * las réplicas sanas; una réplica deja de recibir lecturas si no se puede obtener una conexión o si
+ * su retraso de replicación supera el máximo configurado, y vuelve a recibirlas cuando pasa el
+ * chequeo de salud periódico. Las réplicas empiezan fuera de servicio hasta el primer chequeo.
+ * El préstamo para una lectura espera poco (por defecto nada): si el pool de una réplica está
+ * agotado se prueba con la siguiente y, en última instancia, se lee de la base principal.
+ * <p>
+ * El retraso se mide con SHOW REPLICA STATUS (Seconds_Behind_Source), o con SHOW SLAVE STATUS
+ * (Seconds_Behind_Master) en servidores anteriores a MySQL 8.0.22. Si la replicación está detenida
+ * (retraso NULL) o el retraso no se puede medir (por ejemplo, sin el privilegio REPLICATION CLIENT)
+ * la réplica queda fuera de servicio; con permitirSinRetraso, en cambio, una réplica cuyo retraso
+ * no se puede medir recibe lecturas con solo verificar la conectividad.
+ */
+final class EnrutadorReplicas {
+
+    private static final String SQL_ESTADO_REPLICA = "SHOW REPLICA STATUS";
+    private static final String COLUMNA_RETRASO = "Seconds_Behind_Source";
+    private static final String SQL_ESTADO_REPLICA_ANTERIOR = "SHOW SLAVE STATUS";
+    private static final String COLUMNA_RETRASO_ANTERIOR = "Seconds_Behind_Master";
+    private static final int ER_PARSE_ERROR = 1064;
+
+    private final List<Replica> replicas;
+    /*** Réplicas que reciben lecturas; se recalcula cuando cambia el estado de alguna. */
+    private volatile List<Replica> sanas = List.of();
+    private final long retrasoMaximoSegundos;
+    private final int timeoutChequeoSegundos;
+    private final long timeoutPrestamoMs;
+    private final boolean permitirSinRetraso;
+    private final AtomicInteger turno = new AtomicInteger();
+    private final ScheduledExecutorService chequeo;
+
+    /***
+     * Crea el enrutador y programa el chequeo de salud de las réplicas.
+     * @param urls URLs JDBC de las réplicas
+     * @param crearPool Crea el pool de conexiones de una réplica a partir de su URL
+     * @param retrasoMaximoSegundos Retraso de replicación máximo para recibir lecturas
+     * @param intervaloChequeoSegundos Intervalo entre chequeos de salud
+     * @param timeoutChequeoSegundos Tiempo máximo de la consulta de estado de cada réplica
+     * @param timeoutPrestamoMs Espera máxima por una conexión de una réplica al enrutar una lectura
+     * @param permitirSinRetraso Si una réplica cuyo retraso no se puede medir recibe lecturas
+     */
+    EnrutadorReplicas(List<String> urls, Function<String, ConnectionPool> crearPool,
+                      long retrasoMaximoSegundos, long intervaloChequeoSegundos, int timeoutChequeoSegundos,
+                      long timeoutPrestamoMs, boolean permitirSinRetraso) {
+        this.replicas = urls.stream()
+                .map(url -> new Replica(url, crearPool.apply(url)))
+                .toList();
+        this.retrasoMaximoSegundos = retrasoMaximoSegundos;
+        this.timeoutChequeoSegundos = timeoutChequeoSegundos;
+        this.timeoutPrestamoMs = timeoutPrestamoMs;
+        this.permitirSinRetraso = permitirSinRetraso;
+
+        this.chequeo = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "replicas-chequeo-salud");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        this.chequeo.scheduleWithFixedDelay(this::chequearSalud,
+                0L, Math.max(1L, intervaloChequeoSegundos), TimeUnit.SECONDS);
+    }
+
+    /***
+     * Obtiene una conexión de la siguiente réplica sana. Una réplica que no entrega la conexión
+     * queda fuera de servicio hasta el próximo chequeo y se prueba con la siguiente.
+     * @return Conexión de una réplica, o null si no hay ninguna disponible
+     */
+    Connection obtenerConexion() {
+        List<Replica> candidatas = sanas;
+        int inicio = turno.getAndIncrement();
+        for (int i = 0; i < candidatas.size(); i++) {
+            Replica replica = candidatas.get(Math.floorMod(inicio + i, candidatas.size()));
+            try {
+                Connection conn = replica.pool.obtenerConexion(timeoutPrestamoMs);
+                replica.lecturas.increment();
+                return conn;
+            } catch (SQLTimeoutException _) {
+                // Pool de la réplica agotado: la réplica sigue sana, se prueba con otra
+            } catch (SQLException _) {
+                replica.fueraDeServicio();
+                actualizarSanas();
+            }
+        }
+        return null;
+    }
+
+    /***
+     * Obtiene el estado de cada réplica.
+     * @return Estadísticas de las réplicas, en el orden configurado
+     */
+    List<EstadisticasReplica> obtenerEstadisticas() {
+        return replicas.stream()
+                .map(r -> new EstadisticasReplica(r.url, r.sana, r.retrasoSegundos,
+                        r.lecturas.sum(), r.fallos.sum(), r.pool.obtenerEstadisticas()))
+                .toList();
+    }
+
+    /***
+     * Detiene el chequeo de salud y cierra los pools de las réplicas.
+     */
+    void cerrar() {
+        chequeo.shutdownNow();
+        replicas.forEach(r -> r.pool.cerrar());
+    }
+
+    private void chequearSalud() {
+        for (Replica replica : replicas) {
+            try (Connection conn = replica.pool.obtenerConexion()) {
+                Long retraso = medirRetraso(conn);
+                if (retraso == null || retraso > retrasoMaximoSegundos) {
+                    replica.retrasoSegundos = retraso != null ? retraso : -1L;
+                    replica.fueraDeServicio();
+                } else {
+                    replica.retrasoSegundos = retraso;
+                    replica.sana = true;
+                }
+            } catch (SQLException | RuntimeException _) {
+                replica.retrasoSegundos = -1L;
+                replica.fueraDeServicio();
+            }
+        }
+        actualizarSanas();
+    }
+
+    private synchronized void actualizarSanas() {
+        sanas = replicas.stream().filter(r -> r.sana).toList();
+    }
+
+    /***
+     * Mide el retraso de replicación de una réplica.
+     * @param conn Conexión a la réplica
+     * @return Retraso en segundos (0 si el servidor no replica), o null si la replicación está
+     *         detenida o el retraso no se puede medir (0 en este caso si se permite)
+     * @throws SQLException si se perdió la conexión con la réplica
+     */
+    private Long medirRetraso(Connection conn) throws SQLException {
+        try {
+            try {
+                return consultarRetraso(conn, SQL_ESTADO_REPLICA, COLUMNA_RETRASO);
+            } catch (SQLException e) {
+                if (e.getErrorCode() != ER_PARSE_ERROR) {
+                    throw e;
+                }
+                // MySQL anterior a 8.0.22: no reconoce SHOW REPLICA STATUS
+                return consultarRetraso(conn, SQL_ESTADO_REPLICA_ANTERIOR, COLUMNA_RETRASO_ANTERIOR);
+            }
+        } catch (SQLException e) {
+            if (ClasificacionErrorSql.de(e) == ClasificacionErrorSql.CONEXION) {
+                throw e;
+            }
+            // Por ejemplo, sin privilegio REPLICATION CLIENT: el retraso es desconocido
+            return permitirSinRetraso ? 0L : null;
+        }
+    }
+
+    private Long consultarRetraso(Connection conn, String sql, String columna) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.setQueryTimeout(timeoutChequeoSegundos);
+            try (ResultSet rs = stmt.executeQuery(sql)) {
+                if (!rs.next()) {
+                    return 0L;
+                }
+                long retraso = rs.getLong(columna);
+                return rs.wasNull() ? null : retraso;
+            }
+        }
+    }
+
+    /***
+     * Réplica con su pool y su estado de salud.
+     */
+    private static final class Replica {
+        private final String url;
+        private final ConnectionPool pool;
+        private final LongAdder lecturas = new LongAdder();
+        private final LongAdder fallos = new LongAdder();
+        private volatile boolean sana;
+        private volatile long retrasoSegundos = -1L;
+
+        private Replica(String url, ConnectionPool pool) {
+            this.url = url;
+            this.pool = pool;
+        }
+
+        private void fueraDeServicio() {
+            sana = false;
+            fallos.increment();
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package gestorenvios.config;
+
+/***
+ * Instantánea de las estadísticas de reintentos de transacciones.
+ *
+ * @param transacciones Transacciones ejecutadas con reintento automático
+ * @param reintentos Reintentos realizados
+ * @param deadlocks Intentos fallidos por interbloqueo
+ * @param esperasBloqueo Intentos fallidos por vencer la espera de un bloqueo
+ * @param recuperadas Transacciones confirmadas después de al menos un reintento
+ * @param agotadas Transacciones que fallaron al agotar los intentos
+ * @param sinPresupuesto Reintentos descartados por falta de presupuesto
+ * @param esperaTotalMs Tiempo total de espera entre intentos, en milisegundos
+ * @param presupuestoDisponible Reintentos disponibles en el presupuesto actual
+ */
+public record EstadisticasReintentos(long transacciones,
+                                     long reintentos,
+                                     long deadlocks,
+                                     long esperasBloqueo,
+                                     long recuperadas,
+                                     long agotadas,
+                                     long sinPresupuesto,
+                                     long esperaTotalMs,
+                                     double presupuestoDisponible) {
+}
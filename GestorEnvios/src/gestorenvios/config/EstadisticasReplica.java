@@ -0,0 +1,19 @@
+package gestorenvios.config;
+
+/***
+ * Instantánea del estado de una réplica de lectura.
+ *
+ * @param url URL JDBC de la réplica
+ * @param sana Indica si la réplica recibe lecturas (pasó el último chequeo de salud)
+ * @param retrasoSegundos Retraso de replicación medido en el último chequeo, o -1 si no se pudo medir
+ * @param lecturas Conexiones de lectura entregadas desde la réplica
+ * @param fallos Chequeos o préstamos fallidos que sacaron a la réplica de servicio
+ * @param pool Estadísticas del pool de conexiones de la réplica
+ */
+public record EstadisticasReplica(String url,
+                                  boolean sana,
+                                  long retrasoSegundos,
+                                  long lecturas,
+                                  long fallos,
+                                  PoolStatistics pool) {
+}
@@ -0,0 +1,31 @@
+package gestorenvios.config;
+
+import java.sql.Connection;
+
+/***
+ * Niveles de aislamiento que se pueden pedir al iniciar una transacción.
+ */
+public enum NivelAislamiento {
+    /*** Lee cambios no confirmados de otras transacciones. */
+    READ_UNCOMMITTED(Connection.TRANSACTION_READ_UNCOMMITTED),
+    /*** Cada sentencia ve lo confirmado al ejecutarse; las lecturas con bloqueo no bloquean huecos. */
+    READ_COMMITTED(Connection.TRANSACTION_READ_COMMITTED),
+    /*** Todas las lecturas ven la instantánea tomada en la primera (nivel por defecto de InnoDB). */
+    REPEATABLE_READ(Connection.TRANSACTION_REPEATABLE_READ),
+    /*** Como REPEATABLE_READ, pero las lecturas simples bloquean las filas leídas. */
+    SERIALIZABLE(Connection.TRANSACTION_SERIALIZABLE);
+
+    private final int nivelJdbc;
+
+    NivelAislamiento(int nivelJdbc) {
+        this.nivelJdbc = nivelJdbc;
+    }
+
+    /***
+     * Devuelve la constante JDBC del nivel.
+     * @return Nivel para {@link Connection#setTransactionIsolation(int)}
+     */
+    public int getNivelJdbc() {
+        return nivelJdbc;
+    }
+}
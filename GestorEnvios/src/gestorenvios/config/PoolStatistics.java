@@ -0,0 +1,33 @@
+package gestorenvios.config;
+
+/***
+ * Instantánea de las estadísticas del pool de conexiones.
+ *
+ * @param activas Conexiones prestadas (o en proceso de apertura)
+ * @param ociosas Conexiones disponibles en el pool
+ * @param esperando Hilos esperando una conexión
+ * @param total Conexiones físicas abiertas
+ * @param prestamos Cantidad total de préstamos realizados
+ * @param latenciaPromedioMs Tiempo promedio para obtener una conexión, en milisegundos
+ * @param latenciaMaximaMs Tiempo máximo para obtener una conexión, en milisegundos
+ * @param timeouts Préstamos que vencieron esperando una conexión
+ * @param creadas Conexiones físicas abiertas desde el inicio
+ * @param descartadas Conexiones físicas cerradas desde el inicio
+ * @param aciertosSentencias PreparedStatement reutilizados desde la caché
+ * @param fallosSentencias PreparedStatement que debieron prepararse
+ * @param desalojosSentencias PreparedStatement desalojados de la caché por capacidad
+ */
+public record PoolStatistics(int activas,
+                             int ociosas,
+                             int esperando,
+                             int total,
+                             long prestamos,
+                             double latenciaPromedioMs,
+                             double latenciaMaximaMs,
+                             long timeouts,
+                             long creadas,
+                             long descartadas,
+                             long aciertosSentencias,
+                             long fallosSentencias,
+                             long desalojosSentencias) {
+}
@@ -0,0 +1,143 @@
+package gestorenvios.config;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/***
+ * Política de reintentos de las transacciones que fallan por interbloqueos o esperas de bloqueo,
+ * con su presupuesto y sus métricas.
+ * <p>
+ * La espera antes de cada reintento crece exponencialmente desde la espera base hasta la máxima,
+ * y se elige al azar entre cero y ese tope ("full jitter") para que las transacciones que chocaron
+ * no vuelvan a chocar al mismo tiempo. Los reintentos se limitan con un presupuesto compartido:
+ * cada transacción aporta una fracción de reintento (hasta un máximo acumulado) y cada reintento
+ * consume uno entero, de modo que ante una contención sostenida los reintentos no multipliquen
+ * la carga sobre la base de datos.
+ */
+final class ReintentosTransaccion {
+
+    private final int maximoIntentos;
+    private final long esperaBaseMs;
+    private final long esperaMaximaMs;
+    private final double aportePorTransaccion;
+    private final double presupuestoMaximo;
+
+    private double presupuesto;
+
+    private final LongAdder transacciones = new LongAdder();
+    private final LongAdder reintentos = new LongAdder();
+    private final LongAdder deadlocks = new LongAdder();
+    private final LongAdder esperasBloqueo = new LongAdder();
+    private final LongAdder recuperadas = new LongAdder();
+    private final LongAdder agotadas = new LongAdder();
+    private final LongAdder sinPresupuesto = new LongAdder();
+    private final LongAdder esperaTotalMs = new LongAdder();
+
+    /***
+     * Crea la política de reintentos.
+     * @param maximoIntentos Cantidad máxima de ejecuciones de una transacción (incluida la primera)
+     * @param esperaBaseMs Espera máxima antes del primer reintento
+     * @param esperaMaximaMs Tope de la espera entre intentos
+     * @param aportePorTransaccion Fracción de reintento que aporta cada transacción al presupuesto
+     * @param presupuestoMaximo Reintentos que puede acumular el presupuesto (también el inicial)
+     */
+    ReintentosTransaccion(int maximoIntentos, long esperaBaseMs, long esperaMaximaMs,
+                          double aportePorTransaccion, double presupuestoMaximo) {
+        this.maximoIntentos = Math.max(1, maximoIntentos);
+        this.esperaBaseMs = Math.max(1L, esperaBaseMs);
+        this.esperaMaximaMs = Math.max(this.esperaBaseMs, esperaMaximaMs);
+        this.aportePorTransaccion = Math.max(0.0, aportePorTransaccion);
+        this.presupuestoMaximo = Math.max(0.0, presupuestoMaximo);
+        this.presupuesto = this.presupuestoMaximo;
+    }
+
+    /***
+     * Crea la política con los parámetros db.reintentos.* de la configuración.
+     * @return Política de reintentos
+     */
+    static ReintentosTransaccion desdeConfiguracion() {
+        return new ReintentosTransaccion(
+                ApplicationConfig.getInt("db.reintentos.maximoIntentos", 4),
+                ApplicationConfig.getLong("db.reintentos.esperaBaseMs", 20L),
+                ApplicationConfig.getLong("db.reintentos.esperaMaximaMs", 1_000L),
+                ApplicationConfig.getDouble("db.reintentos.aportePorTransaccion", 0.1),
+                ApplicationConfig.getDouble("db.reintentos.presupuestoMaximo", 20.0));
+    }
+
+    /***
+     * Registra el inicio de una transacción y su aporte al presupuesto.
+     */
+    void transaccionIniciada() {
+        transacciones.increment();
+        synchronized (this) {
+            presupuesto = Math.min(presupuestoMaximo, presupuesto + aportePorTransaccion);
+        }
+    }
+
+    /***
+     * Registra el fallo de un intento y decide si se reintenta.
+     * @param clasificacion Clasificación del error del intento
+     * @param intento Número del intento que falló (el primero es 1)
+     * @return true si se debe reintentar; en ese caso ya se consumió el presupuesto
+     */
+    boolean debeReintentar(ClasificacionErrorSql clasificacion, int intento) {
+        if (clasificacion == ClasificacionErrorSql.DEADLOCK) {
+            deadlocks.increment();
+        } else if (clasificacion == ClasificacionErrorSql.ESPERA_BLOQUEO) {
+            esperasBloqueo.increment();
+        }
+        if (!clasificacion.isReintentable()) {
+            return false;
+        }
+        if (intento >= maximoIntentos) {
+            agotadas.increment();
+            return false;
+        }
+        synchronized (this) {
+            if (presupuesto < 1.0) {
+                sinPresupuesto.increment();
+                return false;
+            }
+            presupuesto -= 1.0;
+        }
+        reintentos.increment();
+        return true;
+    }
+
+    /***
+     * Espera antes de un reintento.
+     * @param intento Número del intento que falló (el primero es 1)
+     * @throws InterruptedException si el hilo se interrumpe durante la espera
+     */
+    void esperar(int intento) throws InterruptedException {
+        long tope = esperaBaseMs << Math.min(intento - 1, 20);
+        long espera = ThreadLocalRandom.current().nextLong(Math.min(esperaMaximaMs, tope) + 1L);
+        esperaTotalMs.add(espera);
+        TimeUnit.MILLISECONDS.sleep(espera);
+    }
+
+    /***
+     * Registra la confirmación de una transacción.
+     * @param intento Número del intento que se confirmó (el primero es 1)
+     */
+    void transaccionConfirmada(int intento) {
+        if (intento > 1) {
+            recuperadas.increment();
+        }
+    }
+
+    /***
+     * Obtiene las métricas acumuladas desde el inicio.
+     * @return Estadísticas de reintentos
+     */
+    EstadisticasReintentos obtenerEstadisticas() {
+        double disponible;
+        synchronized (this) {
+            disponible = presupuesto;
+        }
+        return new EstadisticasReintentos(transacciones.sum(), reintentos.sum(), deadlocks.sum(),
+                esperasBloqueo.sum(), recuperadas.sum(), agotadas.sum(), sinPresupuesto.sum(),
+                esperaTotalMs.sum(), disponible);
+    }
+}
@@ -0,0 +1,168 @@
+package gestorenvios.config;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/***
+ * Caché LRU de PreparedStatement asociada a una conexión física del pool.
+ * <p>
+ * Las sentencias se identifican por el texto SQL y el modo de claves generadas.
+ * Una conexión física es usada por un único hilo a la vez (el que la tiene prestada),
+ * por lo que la caché no necesita sincronización.
+ */
+final class StatementCache {
+
+    private final Connection conexion;
+    private final int capacidad;
+    private final LongAdder aciertos;
+    private final LongAdder fallos;
+    private final LongAdder desalojos;
+
+    /*** Sentencias preparadas en orden de acceso (la menos usada recientemente primero). */
+    private final LinkedHashMap<Clave, Entrada> sentencias = new LinkedHashMap<>(16, 0.75f, true);
+
+    /***
+     * Crea la caché para una conexión física.
+     *
+     * @param conexion Conexión física sobre la que se preparan las sentencias
+     * @param capacidad Cantidad máxima de sentencias cacheadas
+     * @param aciertos Contador compartido de aciertos
+     * @param fallos Contador compartido de fallos
+     * @param desalojos Contador compartido de sentencias desalojadas
+     */
+    StatementCache(Connection conexion, int capacidad,
+                   LongAdder aciertos, LongAdder fallos, LongAdder desalojos) {
+        this.conexion = conexion;
+        this.capacidad = capacidad;
+        this.aciertos = aciertos;
+        this.fallos = fallos;
+        this.desalojos = desalojos;
+    }
+
+    /***
+     * Toma una sentencia de la caché o la prepara si no existe.
+     *
+     * @param sql Texto SQL
+     * @param clavesGeneradas Statement.RETURN_GENERATED_KEYS o Statement.NO_GENERATED_KEYS
+     * @return Entrada marcada como en uso, o null si la sentencia ya está en uso
+     *         (el invocador debe preparar una sentencia no cacheada)
+     * @throws SQLException si ocurre un error al preparar la sentencia
+     */
+    Entrada tomar(String sql, int clavesGeneradas) throws SQLException {
+        Clave clave = new Clave(sql, clavesGeneradas);
+        Entrada entrada = sentencias.get(clave);
+        if (entrada != null) {
+            if (entrada.enUso) {
+                fallos.increment();
+                return null;
+            }
+            if (!entrada.sentencia.isClosed()) {
+                aciertos.increment();
+                entrada.enUso = true;
+                return entrada;
+            }
+            sentencias.remove(clave);
+        }
+        fallos.increment();
+        entrada = new Entrada(clave, conexion.prepareStatement(sql, clavesGeneradas));
+        entrada.enUso = true;
+        sentencias.put(clave, entrada);
+        desalojar();
+        return entrada;
+    }
+
+    /***
+     * Devuelve una sentencia a la caché dejándola lista para reutilizarse.
+     * Si no se puede limpiar, se descarta.
+     *
+     * @param entrada Entrada a liberar
+     */
+    void liberar(Entrada entrada) {
+        try {
+            ResultSet resultado = entrada.sentencia.getResultSet();
+            if (resultado != null) {
+                resultado.close();
+            }
+            entrada.sentencia.clearParameters();
+            entrada.sentencia.clearBatch();
+            entrada.sentencia.setFetchSize(0);
+            entrada.sentencia.setMaxRows(0);
+            entrada.sentencia.setQueryTimeout(0);
+            entrada.enUso = false;
+        } catch (SQLException _) {
+            sentencias.remove(entrada.clave);
+            cerrar(entrada.sentencia);
+        }
+    }
+
+    /***
+     * Cierra todas las sentencias cacheadas. Se invoca al descartar la conexión física.
+     */
+    void cerrarTodas() {
+        List<Entrada> entradas = new ArrayList<>(sentencias.values());
+        sentencias.clear();
+        entradas.forEach(entrada -> cerrar(entrada.sentencia));
+    }
+
+    /***
+     * Desaloja las sentencias menos usadas recientemente que no estén en uso
+     * hasta respetar la capacidad.
+     */
+    private void desalojar() {
+        Iterator<Map.Entry<Clave, Entrada>> it = sentencias.entrySet().iterator();
+        while (sentencias.size() > capacidad && it.hasNext()) {
+            Entrada entrada = it.next().getValue();
+            if (!entrada.enUso) {
+                it.remove();
+                cerrar(entrada.sentencia);
+                desalojos.increment();
+            }
+        }
+    }
+
+    /***
+     * Cierra silenciosamente una sentencia.
+     *
+     * @param sentencia Sentencia a cerrar
+     */
+    private static void cerrar(Statement sentencia) {
+        try {
+            sentencia.close();
+        } catch (SQLException _) {
+            // La sentencia se descarta de todos modos
+        }
+    }
+
+    /***
+     * Clave de la caché: texto SQL y modo de claves generadas.
+     */
+    private record Clave(String sql, int clavesGeneradas) {
+    }
+
+    /***
+     * Sentencia cacheada y su estado de uso.
+     */
+    static final class Entrada {
+        private final Clave clave;
+        private final PreparedStatement sentencia;
+        private boolean enUso;
+
+        private Entrada(Clave clave, PreparedStatement sentencia) {
+            this.clave = clave;
+            this.sentencia = sentencia;
+        }
+
+        PreparedStatement getSentencia() {
+            return sentencia;
+        }
+    }
+}
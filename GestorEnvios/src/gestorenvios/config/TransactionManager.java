@@ -2,17 +2,80 @@ package gestorenvios.config;
 
 import gestorenvios.ui.console.utils.ConsoleUtils;
 
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
 
 /***
  * Gestiona transacciones JDBC sobre una conexión.
  * Permite iniciar, confirmar, revertir y cerrar transacciones de forma segura.
  * Implementa AutoCloseable para facilitar el manejo de recursos.
+ * <p>
+ * Durante una transacción se pueden registrar acciones a ejecutar después de confirmarla o
+ * de revertirla (por ejemplo, invalidar cachés), que se ejecutan en orden de registro una
+ * vez que la base de datos ya confirmó o revirtió los cambios.
+ * <p>
+ * Mientras una transacción está activa queda asociada al hilo que la inició:
+ * {@link DatabaseConnection#getConnection()} devuelve su conexión (con un cierre que no la libera)
+ * en lugar de tomar otra del pool, de modo que cualquier lectura o escritura hecha en ese hilo,
+ * incluso desde otro servicio, participa de la transacción. Un TransactionManager creado sobre esa
+ * conexión se une a la transacción en curso: su commit queda a cargo de la transacción externa,
+ * su rollback la marca para revertirse y sus acciones posteriores se registran en ella. Por eso los
+ * efectos que deben ocurrir solo si los datos se confirman se registran con
+ * {@link #despuesDeConfirmar(Runnable)} en lugar de ejecutarse después de commit().
+ * <p>
+ * {@link #executeInTransaction(TrabajoTransaccional)} ejecuta un trabajo en una transacción propia y,
+ * si falla por un interbloqueo o por vencer la espera de un bloqueo, lo vuelve a ejecutar completo
+ * en una transacción nueva, con esperas crecientes y dentro de un presupuesto de reintentos
+ * ({@link ReintentosTransaccion}). Por eso el trabajo debe poder repetirse: todo lo que modifique
+ * fuera de la base de datos se registra con las acciones posteriores a la transacción.
+ * <p>
+ * Dentro de una transacción se pueden marcar puntos de guardado ({@link #setSavepoint()}) y volver
+ * a ellos ({@link #rollbackTo(Savepoint)}) para deshacer solo una parte: las acciones posteriores
+ * registradas después del punto se descartan (las de confirmación) o se ejecutan en ese momento
+ * (las de reversión), como si esa parte hubiera sido una transacción revertida.
+ * <p>
+ * Una transacción puede iniciarse con un nivel de aislamiento propio y como de solo lectura
+ * ({@link #startTransaction(NivelAislamiento, boolean)}). Las de solo lectura marcan la conexión con
+ * {@link Connection#setReadOnly(boolean)}, que el driver propaga a la sesión (SET SESSION TRANSACTION
+ * READ ONLY), de modo que la transacción implícita que abre la primera sentencia equivale a un
+ * START TRANSACTION READ ONLY: InnoDB no le asigna ID de transacción ni la registra entre las de
+ * escritura, y todas sus lecturas ven la misma instantánea. Al terminar se restaura la configuración
+ * de la conexión antes de devolverla al pool. Una transacción unida usa el nivel y el modo de la
+ * externa; unir una operación de escritura a una transacción de solo lectura es un error.
+ * <p>
+ * Las transacciones usan siempre la base principal, aunque haya réplicas de lectura. Al confirmar
+ * una de escritura se registra en {@link DatabaseConnection} para que las lecturas siguientes del
+ * hilo tampoco vayan a las réplicas hasta que estas alcancen los cambios.
  */
 public class TransactionManager implements AutoCloseable {
+    /*** Transacción activa del hilo actual. */
+    private static final ThreadLocal<TransactionManager> ACTIVA = new ThreadLocal<>();
+    /*** Política, presupuesto y métricas de los reintentos de {@link #executeInTransaction}. */
+    private static final ReintentosTransaccion REINTENTOS = ReintentosTransaccion.desdeConfiguracion();
+
     private final Connection conn;
+    /*** Transacción externa a la que se une este gestor, o null si gestiona su propia transacción. */
+    private final TransactionManager externa;
     private boolean transactionActive;
+    /*** Se marca cuando una transacción unida se revierte; la transacción externa ya no puede confirmarse. */
+    private boolean soloReversion;
+    /*** Si la transacción es de solo lectura (la conexión quedó marcada y hay que desmarcarla al terminar). */
+    private boolean soloLectura;
+    /*** Nivel de aislamiento de la conexión antes de la transacción, o null si no se cambió. */
+    private Integer nivelAnterior;
+    /*** Transacción activa del hilo antes de iniciar esta (una transacción independiente anidada). */
+    private TransactionManager anterior;
+    /*** Conexión entregada a quienes operan dentro de esta transacción; cerrarla no la libera. */
+    private Connection compartida;
+    private final List<Runnable> accionesAlConfirmar = new ArrayList<>();
+    private final List<Runnable> accionesAlRevertir = new ArrayList<>();
+    /*** Puntos de guardado vigentes, en orden de creación. */
+    private final List<PuntoGuardado> puntosGuardado = new ArrayList<>();
 
     /***
      * Crea un TransactionManager para la conexión dada.
@@ -25,6 +88,131 @@ public class TransactionManager implements AutoCloseable {
         }
         this.conn = conn;
         this.transactionActive = false;
+        TransactionManager activa = ACTIVA.get();
+        this.externa = activa != null && activa.compartida == conn ? activa : null;
+    }
+
+    /***
+     * Ejecuta un trabajo dentro de una transacción y la confirma. Si la transacción falla por un
+     * interbloqueo o por vencer la espera de un bloqueo ({@link ClasificacionErrorSql#isReintentable()}),
+     * se revierte y el trabajo se vuelve a ejecutar completo en una transacción nueva, después de una
+     * espera exponencial con jitter, mientras queden intentos y presupuesto de reintentos.
+     * <p>
+     * Si el hilo ya tiene una transacción activa, el trabajo se une a ella y se ejecuta una sola vez:
+     * un interbloqueo revierte la transacción completa, así que el reintento le corresponde a quien
+     * la inició.
+     * @param trabajo Trabajo a ejecutar; puede ejecutarse más de una vez
+     * @param <T> Tipo del resultado
+     * @return Resultado del intento confirmado
+     * @throws SQLException si el último intento falla con un error de base de datos
+     */
+    public static <T> T executeInTransaction(TrabajoTransaccional<T> trabajo) throws SQLException {
+        return executeInTransaction(null, false, trabajo);
+    }
+
+    /***
+     * Ejecuta un trabajo dentro de una transacción con el nivel de aislamiento indicado, con los
+     * mismos reintentos que {@link #executeInTransaction(TrabajoTransaccional)}.
+     * @param nivel Nivel de aislamiento de la transacción
+     * @param trabajo Trabajo a ejecutar; puede ejecutarse más de una vez
+     * @param <T> Tipo del resultado
+     * @return Resultado del intento confirmado
+     * @throws SQLException si el último intento falla con un error de base de datos
+     */
+    public static <T> T executeInTransaction(NivelAislamiento nivel, TrabajoTransaccional<T> trabajo)
+            throws SQLException {
+        return executeInTransaction(nivel, false, trabajo);
+    }
+
+    /***
+     * Ejecuta lecturas dentro de una transacción de solo lectura REPEATABLE READ, para que varias
+     * consultas (por ejemplo, un conteo y la primera página) vean la misma instantánea de los datos.
+     * @param trabajo Lecturas a ejecutar; no puede modificar datos
+     * @param <T> Tipo del resultado
+     * @return Resultado de las lecturas
+     * @throws SQLException si ocurre un error de base de datos, o si el hilo tiene una transacción
+     *         de escritura y el trabajo se une a ella (en ese caso lee dentro de esa transacción)
+     */
+    public static <T> T executeInReadOnlyTransaction(TrabajoTransaccional<T> trabajo) throws SQLException {
+        return executeInTransaction(NivelAislamiento.REPEATABLE_READ, true, trabajo);
+    }
+
+    private static <T> T executeInTransaction(NivelAislamiento nivel, boolean soloLectura,
+                                              TrabajoTransaccional<T> trabajo) throws SQLException {
+        if (ACTIVA.get() != null) {
+            return ejecutarIntento(nivel, soloLectura, trabajo);
+        }
+        REINTENTOS.transaccionIniciada();
+        for (int intento = 1; ; intento++) {
+            try {
+                T resultado = ejecutarIntento(nivel, soloLectura, trabajo);
+                REINTENTOS.transaccionConfirmada(intento);
+                return resultado;
+            } catch (SQLException | RuntimeException e) {
+                if (!REINTENTOS.debeReintentar(ClasificacionErrorSql.de(e), intento)) {
+                    throw e;
+                }
+                try {
+                    REINTENTOS.esperar(intento);
+                } catch (InterruptedException _) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /***
+     * Ejecuta un intento del trabajo en una transacción. Si falla, el cierre del gestor la revierte
+     * (y ejecuta las acciones posteriores a la reversión) antes de propagar el error.
+     */
+    private static <T> T ejecutarIntento(NivelAislamiento nivel, boolean soloLectura,
+                                         TrabajoTransaccional<T> trabajo) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             TransactionManager transactionManager = new TransactionManager(conn)) {
+            transactionManager.startTransaction(nivel, soloLectura);
+            T resultado = trabajo.ejecutar(transactionManager, conn);
+            transactionManager.commit();
+            return resultado;
+        }
+    }
+
+    /***
+     * Obtiene las métricas de los reintentos de transacciones desde el inicio.
+     * @return Estadísticas de reintentos
+     */
+    public static EstadisticasReintentos obtenerEstadisticasReintentos() {
+        return REINTENTOS.obtenerEstadisticas();
+    }
+
+    /***
+     * Devuelve la conexión de la transacción activa en el hilo actual, para operar dentro de ella.
+     * Cerrar la conexión devuelta no la libera; la libera el gestor de la transacción.
+     * @return Conexión de la transacción activa
+     * @throws IllegalStateException si el hilo no tiene una transacción activa
+     */
+    public static Connection conexionActiva() {
+        Connection actual = conexionCompartida();
+        if (actual == null) {
+            throw new IllegalStateException("No hay una transacción activa en el hilo actual");
+        }
+        return actual;
+    }
+
+    /***
+     * Devuelve la conexión de la transacción activa en el hilo actual, o null si no hay.
+     */
+    static Connection conexionCompartida() {
+        TransactionManager activa = ACTIVA.get();
+        return activa != null ? activa.compartida : null;
+    }
+
+    /***
+     * Indica si este gestor se unió a una transacción iniciada por otro gestor del mismo hilo.
+     * @return true si la transacción la confirma o revierte el gestor externo
+     */
+    public boolean isUnida() {
+        return externa != null;
     }
 
     /***
@@ -36,23 +224,183 @@ public class TransactionManager implements AutoCloseable {
     }
 
     /***
-     * Inicia una transacción desactivando el autocommit.
+     * Inicia una transacción de lectura y escritura, con el nivel de aislamiento de la conexión,
+     * desactivando el autocommit.
      * @throws SQLException si la conexión no está disponible o cerrada
      */
     public void startTransaction() throws SQLException {
+        startTransaction(null, false);
+    }
+
+    /***
+     * Inicia una transacción con el nivel de aislamiento y el modo indicados, desactivando el
+     * autocommit. Una transacción unida conserva el nivel y el modo de la externa.
+     * @param nivel Nivel de aislamiento, o null para usar el de la conexión
+     * @param soloLectura true para una transacción de solo lectura
+     * @throws SQLException si la conexión no está disponible o cerrada, o si se pide una transacción
+     *         de escritura unida a una de solo lectura
+     */
+    public void startTransaction(NivelAislamiento nivel, boolean soloLectura) throws SQLException {
         if (conn == null) {
             throw new SQLException("No se puede iniciar la transacción: conexión no disponible");
         }
         if (conn.isClosed()) {
             throw new SQLException("No se puede iniciar la transacción: conexión cerrada");
         }
-        conn.setAutoCommit(false);
+        if (externa != null) {
+            if (!externa.transactionActive) {
+                throw new SQLException("No se puede unir a la transacción: la transacción externa ya terminó");
+            }
+            if (externa.soloLectura && !soloLectura) {
+                throw new SQLException("No se puede unir una operación de escritura a una transacción de solo lectura");
+            }
+            transactionActive = true;
+            return;
+        }
+        try {
+            if (nivel != null) {
+                int actual = conn.getTransactionIsolation();
+                if (actual != nivel.getNivelJdbc()) {
+                    conn.setTransactionIsolation(nivel.getNivelJdbc());
+                    nivelAnterior = actual;
+                }
+            }
+            if (soloLectura) {
+                conn.setReadOnly(true);
+                this.soloLectura = true;
+            }
+            conn.setAutoCommit(false);
+        } catch (SQLException e) {
+            restaurarConfiguracion();
+            throw e;
+        }
         transactionActive = true;
+        soloReversion = false;
+        accionesAlConfirmar.clear();
+        accionesAlRevertir.clear();
+        puntosGuardado.clear();
+        compartida = compartir(conn);
+        anterior = ACTIVA.get();
+        ACTIVA.set(this);
+    }
+
+    /***
+     * Registra una acción a ejecutar después de confirmar la transacción activa.
+     * Si la transacción se revierte, la acción se descarta.
+     * @param accion Acción a ejecutar
+     * @throws IllegalStateException si no hay transacción activa
+     */
+    public void despuesDeConfirmar(Runnable accion) {
+        verificarTransaccionActiva();
+        if (externa != null) {
+            externa.despuesDeConfirmar(accion);
+            return;
+        }
+        accionesAlConfirmar.add(accion);
     }
 
     /***
-     * Confirma la transacción activa.
-     * @throws SQLException si no hay transacción activa o no hay conexión
+     * Registra una acción a ejecutar después de revertir la transacción activa
+     * (explícitamente o al cerrar el gestor sin confirmar).
+     * Si la transacción se confirma, la acción se descarta.
+     * @param accion Acción a ejecutar
+     * @throws IllegalStateException si no hay transacción activa
+     */
+    public void despuesDeRevertir(Runnable accion) {
+        verificarTransaccionActiva();
+        if (externa != null) {
+            externa.despuesDeRevertir(accion);
+            return;
+        }
+        accionesAlRevertir.add(accion);
+    }
+
+    /***
+     * Registra una acción a ejecutar cuando termine la transacción activa, tanto si se confirma
+     * como si se revierte.
+     * @param accion Acción a ejecutar
+     * @throws IllegalStateException si no hay transacción activa
+     */
+    public void despuesDeFinalizar(Runnable accion) {
+        despuesDeConfirmar(accion);
+        despuesDeRevertir(accion);
+    }
+
+    /***
+     * Marca un punto de guardado en la transacción activa, al que se puede volver sin revertir
+     * lo hecho antes. En una transacción unida el punto se marca en la transacción externa.
+     * @return Punto de guardado
+     * @throws SQLException si la base de datos no puede crear el punto
+     * @throws IllegalStateException si no hay transacción activa
+     */
+    public Savepoint setSavepoint() throws SQLException {
+        verificarTransaccionActiva();
+        TransactionManager propietaria = propietaria();
+        Savepoint savepoint = conn.setSavepoint();
+        propietaria.puntosGuardado.add(new PuntoGuardado(savepoint,
+                propietaria.accionesAlConfirmar.size(), propietaria.accionesAlRevertir.size()));
+        return savepoint;
+    }
+
+    /***
+     * Deshace lo hecho desde un punto de guardado, que sigue vigente; los puntos posteriores se
+     * descartan. Las acciones de confirmación registradas desde el punto se descartan y las de
+     * reversión se ejecutan.
+     * @param savepoint Punto de guardado de esta transacción
+     * @throws SQLException si la base de datos no puede volver al punto (por ejemplo, porque un
+     *         interbloqueo ya revirtió la transacción completa)
+     * @throws IllegalStateException si no hay transacción activa o el punto no es de esta transacción
+     */
+    public void rollbackTo(Savepoint savepoint) throws SQLException {
+        verificarTransaccionActiva();
+        TransactionManager propietaria = propietaria();
+        int indice = propietaria.indicePuntoGuardado(savepoint);
+        PuntoGuardado punto = propietaria.puntosGuardado.get(indice);
+        conn.rollback(savepoint);
+        List<PuntoGuardado> puntos = propietaria.puntosGuardado;
+        puntos.subList(indice + 1, puntos.size()).clear();
+        List<Runnable> confirmar = propietaria.accionesAlConfirmar;
+        confirmar.subList(punto.accionesAlConfirmar(), confirmar.size()).clear();
+        List<Runnable> revertir = propietaria.accionesAlRevertir;
+        List<Runnable> revertidas = revertir.subList(punto.accionesAlRevertir(), revertir.size());
+        ejecutar(revertidas);
+    }
+
+    /***
+     * Libera un punto de guardado (y los posteriores) sin deshacer nada.
+     * @param savepoint Punto de guardado de esta transacción
+     * @throws SQLException si la base de datos no puede liberar el punto
+     * @throws IllegalStateException si no hay transacción activa o el punto no es de esta transacción
+     */
+    public void release(Savepoint savepoint) throws SQLException {
+        verificarTransaccionActiva();
+        TransactionManager propietaria = propietaria();
+        int indice = propietaria.indicePuntoGuardado(savepoint);
+        conn.releaseSavepoint(savepoint);
+        propietaria.puntosGuardado.subList(indice, propietaria.puntosGuardado.size()).clear();
+    }
+
+    /***
+     * Gestor dueño de la transacción: el externo en una transacción unida, o este.
+     */
+    private TransactionManager propietaria() {
+        return externa != null ? externa : this;
+    }
+
+    private int indicePuntoGuardado(Savepoint savepoint) {
+        for (int i = puntosGuardado.size() - 1; i >= 0; i--) {
+            if (puntosGuardado.get(i).savepoint() == savepoint) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("El punto de guardado no pertenece a la transacción activa");
+    }
+
+    /***
+     * Confirma la transacción activa. En una transacción unida solo termina la participación de
+     * este gestor: la confirmación la hace la transacción externa.
+     * @throws SQLException si no hay transacción activa o no hay conexión, o si una transacción
+     *         unida la marcó para revertirse (en ese caso se revierte)
      */
     public void commit() throws SQLException {
         if (conn == null) {
@@ -61,29 +409,149 @@ public class TransactionManager implements AutoCloseable {
         if (!transactionActive) {
             throw new SQLException("No hay una transacción activa para hacer commit");
         }
+        if (externa != null) {
+            transactionActive = false;
+            return;
+        }
+        if (soloReversion) {
+            rollback();
+            throw new SQLException("La transacción se revirtió porque falló una operación anidada");
+        }
         conn.commit();
         transactionActive = false;
+        puntosGuardado.clear();
+        if (!soloLectura) {
+            DatabaseConnection.registrarEscritura();
+        }
+        restaurarConfiguracion();
+        liberarHilo();
+        accionesAlRevertir.clear();
+        ejecutar(accionesAlConfirmar);
     }
 
     /***
-     * Revierte la transacción activa si existe.
+     * Revierte la transacción activa si existe. En una transacción unida, marca la transacción
+     * externa para que se revierta.
      */
     public void rollback() {
+        if (conn != null && transactionActive && externa != null) {
+            transactionActive = false;
+            externa.soloReversion = true;
+            return;
+        }
         if (conn != null && transactionActive) {
             try {
                 conn.rollback();
                 transactionActive = false;
             } catch (SQLException e) {
                 ConsoleUtils.imprimirError("Error durante el rollback: " + e.getMessage());
+            } finally {
+                // Sin commit los cambios no se confirmaron, aunque el rollback haya fallado
+                puntosGuardado.clear();
+                restaurarConfiguracion();
+                liberarHilo();
+                accionesAlConfirmar.clear();
+                ejecutar(accionesAlRevertir);
+            }
+        }
+    }
+
+    /***
+     * Restaura el modo de lectura y el nivel de aislamiento que tenía la conexión antes de la transacción.
+     */
+    private void restaurarConfiguracion() {
+        try {
+            if (soloLectura) {
+                conn.setReadOnly(false);
+            }
+            if (nivelAnterior != null) {
+                conn.setTransactionIsolation(nivelAnterior);
+            }
+        } catch (SQLException e) {
+            ConsoleUtils.imprimirError("Error al restaurar la configuración de la conexión: " + e.getMessage());
+        } finally {
+            soloLectura = false;
+            nivelAnterior = null;
+        }
+    }
+
+    /***
+     * Desasocia la transacción del hilo y restaura la que estaba activa antes, si había.
+     */
+    private void liberarHilo() {
+        if (ACTIVA.get() == this) {
+            if (anterior != null) {
+                ACTIVA.set(anterior);
+            } else {
+                ACTIVA.remove();
             }
         }
+        anterior = null;
+        compartida = null;
+    }
+
+    /***
+     * Crea la vista de la conexión que se entrega dentro de la transacción: delega todo en la
+     * conexión real salvo el cierre, que queda a cargo de este gestor.
+     */
+    private static Connection compartir(Connection conn) {
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "close" -> {
+                            return null;
+                        }
+                        case "equals" -> {
+                            return proxy == args[0];
+                        }
+                        case "hashCode" -> {
+                            return System.identityHashCode(proxy);
+                        }
+                        default -> {
+                            try {
+                                return method.invoke(conn, args);
+                            } catch (InvocationTargetException e) {
+                                throw e.getCause();
+                            }
+                        }
+                    }
+                });
     }
 
     /***
-     * Cierra la conexión y revierte la transacción si está activa.
+     * Ejecuta y descarta las acciones registradas. Un error en una acción no impide
+     * ejecutar las siguientes ni afecta a la transacción, que ya terminó.
+     */
+    private static void ejecutar(List<Runnable> acciones) {
+        List<Runnable> pendientes = new ArrayList<>(acciones);
+        acciones.clear();
+        for (Runnable accion : pendientes) {
+            try {
+                accion.run();
+            } catch (RuntimeException e) {
+                ConsoleUtils.imprimirError("Error en una acción posterior a la transacción: " + e.getMessage());
+            }
+        }
+    }
+
+    private void verificarTransaccionActiva() {
+        if (!transactionActive) {
+            throw new IllegalStateException("No hay una transacción activa");
+        }
+    }
+
+    /***
+     * Cierra la conexión y revierte la transacción si está activa. Un gestor unido a una
+     * transacción externa no cierra la conexión.
      */
     @Override
     public void close() {
+        if (externa != null) {
+            rollback();
+            return;
+        }
         if (conn != null) {
             try {
                 if (transactionActive) {
@@ -97,6 +565,14 @@ public class TransactionManager implements AutoCloseable {
         }
     }
 
+    /***
+     * Indica si la transacción es de solo lectura (en una transacción unida, si lo es la externa).
+     * @return true si la transacción activa es de solo lectura
+     */
+    public boolean isSoloLectura() {
+        return propietaria().soloLectura;
+    }
+
     /***
      * Indica si hay una transacción activa.
      * @return true si la transacción está activa, false si no
@@ -104,4 +580,26 @@ public class TransactionManager implements AutoCloseable {
     public boolean isTransactionActive() {
         return transactionActive;
     }
+
+    /***
+     * Punto de guardado con la cantidad de acciones posteriores registradas al marcarlo.
+     */
+    private record PuntoGuardado(Savepoint savepoint, int accionesAlConfirmar, int accionesAlRevertir) {
+    }
+
+    /***
+     * Trabajo a ejecutar dentro de una transacción con {@link #executeInTransaction(TrabajoTransaccional)}.
+     * @param <T> Tipo del resultado
+     */
+    @FunctionalInterface
+    public interface TrabajoTransaccional<T> {
+        /***
+         * Ejecuta el trabajo. No debe confirmar ni revertir la transacción.
+         * @param transactionManager Gestor de la transacción, para registrar acciones posteriores
+         * @param conn Conexión de la transacción
+         * @return Resultado del trabajo
+         * @throws SQLException si ocurre un error de base de datos
+         */
+        T ejecutar(TransactionManager transactionManager, Connection conn) throws SQLException;
+    }
 }
@@ -0,0 +1,266 @@
+package gestorenvios.dao;
+
+import gestorenvios.config.DatabaseConnection;
+import gestorenvios.models.Cambio;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/***
+ * DAO de la tabla Cambios, el registro de altas, modificaciones y bajas de pedidos y envíos.
+ * <p>
+ * PedidoDAO y EnvioDAO registran cada escritura en la misma transacción que la modifica, por lo que
+ * un cambio figura en la tabla si y solo si se confirmó. Cada instancia de la aplicación recorre la
+ * tabla por secuencia para invalidar sus cachés ante los cambios hechos por las demás instancias.
+ */
+public class CambioDAO {
+
+    /*** Identificador de esta instancia de la aplicación, guardado como origen de sus cambios. */
+    public static final String ORIGEN = UUID.randomUUID().toString();
+
+    /*** DDL de la tabla de cambios, para bases creadas antes de que existiera. */
+    public static final String CREATE_TABLE_SQL = """
+            CREATE TABLE IF NOT EXISTS `Cambios` (
+            `id` bigint NOT NULL AUTO_INCREMENT,
+            `entidad` varchar(10) COLLATE utf8mb4_spanish_ci NOT NULL,
+            `id_entidad` bigint NOT NULL,
+            `operacion` varchar(12) COLLATE utf8mb4_spanish_ci NOT NULL,
+            `codigo` varchar(40) COLLATE utf8mb4_spanish_ci DEFAULT NULL,
+            `origen` char(36) COLLATE utf8mb4_spanish_ci NOT NULL,
+            `fecha` timestamp(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+            PRIMARY KEY (`id`),
+            KEY `idx_cambios_fecha` (`fecha`)
+            ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_spanish_ci;
+            """;
+
+    /*** Cantidad máxima de filas enviadas en cada executeBatch de un registro en lote. */
+    private static final int TAMANIO_LOTE_INSERCION = 1_000;
+
+    /*** Query para registrar un cambio. */
+    private static final String INSERT_SQL = "INSERT INTO Cambios (entidad, id_entidad, operacion, codigo, origen)"
+            + " VALUES (?, ?, ?, ?, ?)";
+
+    /*** Query para registrar la modificación de varios envíos (se completa con la lista de IDs). */
+    private static final String INSERT_ENVIOS_BY_IDS_SQL = "INSERT INTO Cambios (entidad, id_entidad, operacion, codigo, origen)"
+            + " SELECT 'ENVIO', e.id, 'MODIFICACION', e.tracking, ? FROM Envio e WHERE e.id IN (";
+
+    /*** Query para registrar la modificación de los pedidos activos de varios envíos (se completa con la lista de IDs). */
+    private static final String INSERT_PEDIDOS_BY_ENVIO_IDS_SQL = "INSERT INTO Cambios (entidad, id_entidad, operacion, codigo, origen)"
+            + " SELECT 'PEDIDO', p.id, 'MODIFICACION', p.numero, ? FROM Pedido p"
+            + " WHERE p.eliminado = FALSE AND p.id_envio IN (";
+
+    /*** Campos seleccionados en las consultas de cambios. */
+    private static final String QUERY_BASE = "SELECT id, entidad, id_entidad, operacion, codigo, origen FROM Cambios";
+
+    /*** Query para leer los cambios posteriores a una secuencia. */
+    private static final String SELECT_AFTER_SQL = QUERY_BASE + " WHERE id > ? ORDER BY id LIMIT ?";
+
+    /*** Query para leer cambios por secuencia (se completa con la lista de IDs). */
+    private static final String SELECT_BY_IDS_SQL = QUERY_BASE + " WHERE id IN (";
+
+    /*** Query para obtener la última secuencia registrada. */
+    private static final String SELECT_MAX_ID_SQL = "SELECT COALESCE(MAX(id), 0) AS ultimo FROM Cambios";
+
+    /*** Query para borrar un tramo de cambios anteriores a una fecha. */
+    private static final String DELETE_ANTERIORES_SQL = "DELETE FROM Cambios WHERE fecha < ? ORDER BY id LIMIT ?";
+
+    /***
+     * Crea la tabla de cambios si no existe. Se ejecuta fuera de cualquier transacción
+     * porque el DDL confirma implícitamente la transacción en curso.
+     *
+     * @throws SQLException si ocurre un error al crear la tabla
+     */
+    public void crearTablaSiNoExiste() throws SQLException {
+        try (Connection conn = DatabaseConnection.obtenerConexionIndependiente();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute(CREATE_TABLE_SQL);
+        } catch (SQLException e) {
+            throw new SQLException("Error al crear la tabla de cambios: " + e.getMessage(), e);
+        }
+    }
+
+    /***
+     * Registra un cambio dentro de una transacción externa.
+     *
+     * @param cambio Cambio a registrar
+     * @param conn Conexión transaccional
+     * @throws SQLException si ocurre un error al registrar
+     */
+    public void registrarTx(Cambio cambio, Connection conn) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(INSERT_SQL)) {
+            setCambioParameters(pstmt, cambio);
+            pstmt.executeUpdate();
+        } catch (SQLException e) {
+            throw new SQLException("Error al registrar el cambio: " + e.getMessage(), e);
+        }
+    }
+
+    /***
+     * Registra un lote de cambios dentro de una transacción externa usando addBatch/executeBatch.
+     *
+     * @param cambios Cambios a registrar
+     * @param conn Conexión transaccional
+     * @throws SQLException si ocurre un error al registrar
+     */
+    public void registrarLoteTx(List<Cambio> cambios, Connection conn) throws SQLException {
+        if (cambios.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement pstmt = conn.prepareStatement(INSERT_SQL)) {
+            for (int desde = 0; desde < cambios.size(); desde += TAMANIO_LOTE_INSERCION) {
+                for (Cambio cambio : cambios.subList(desde, Math.min(desde + TAMANIO_LOTE_INSERCION, cambios.size()))) {
+                    setCambioParameters(pstmt, cambio);
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+            }
+        } catch (SQLException e) {
+            throw new SQLException("Error al registrar el lote de cambios: " + e.getMessage(), e);
+        }
+    }
+
+    /***
+     * Registra la modificación de varios envíos y, opcionalmente, la de sus pedidos activos,
+     * con sentencias INSERT ... SELECT dentro de una transacción externa.
+     *
+     * @param ids IDs de los envíos modificados
+     * @param incluirPedidos Si también se modificaron los pedidos de esos envíos
+     * @param conn Conexión transaccional
+     * @throws SQLException si ocurre un error al registrar
+     */
+    public void registrarEnviosPorIdsTx(long[] ids, boolean incluirPedidos, Connection conn) throws SQLException {
+        if (ids.length == 0) {
+            return;
+        }
+        String lista = "?" + ", ?".repeat(ids.length - 1) + ")";
+        try {
+            insertarPorIds(INSERT_ENVIOS_BY_IDS_SQL + lista, ids, conn);
+            if (incluirPedidos) {
+                insertarPorIds(INSERT_PEDIDOS_BY_ENVIO_IDS_SQL + lista, ids, conn);
+            }
+        } catch (SQLException e) {
+            throw new SQLException("Error al registrar los cambios de envíos: " + e.getMessage(), e);
+        }
+    }
+
+    /***
+     * Obtiene la secuencia del último cambio registrado.
+     *
+     * @return Secuencia del último cambio, o 0 si no hay cambios
+     * @throws SQLException si ocurre un error en la consulta
+     */
+    public long obtenerUltimoId() throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(SELECT_MAX_ID_SQL);
+             ResultSet rs = pstmt.executeQuery()) {
+            return rs.next() ? rs.getLong("ultimo") : 0L;
+        } catch (SQLException e) {
+            throw new SQLException("Error al obtener el último cambio: " + e.getMessage(), e);
+        }
+    }
+
+    /***
+     * Lee los cambios con secuencia mayor a la indicada, en orden de secuencia.
+     *
+     * @param ultimoId Secuencia del último cambio leído
+     * @param limite Cantidad máxima de cambios a leer
+     * @return Cambios leídos (puede estar vacía)
+     * @throws SQLException si ocurre un error en la consulta
+     */
+    public List<Cambio> buscarDesde(long ultimoId, int limite) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(SELECT_AFTER_SQL)) {
+            pstmt.setLong(1, ultimoId);
+            pstmt.setInt(2, limite);
+            return leerCambios(pstmt);
+        } catch (SQLException e) {
+            throw new SQLException("Error al leer los cambios: " + e.getMessage(), e);
+        }
+    }
+
+    /***
+     * Lee los cambios con las secuencias indicadas.
+     *
+     * @param ids Secuencias a leer
+     * @return Cambios encontrados, en orden de secuencia
+     * @throws SQLException si ocurre un error en la consulta
+     */
+    public List<Cambio> buscarPorIds(Collection<Long> ids) throws SQLException {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        String sql = SELECT_BY_IDS_SQL + "?" + ", ?".repeat(ids.size() - 1) + ") ORDER BY id";
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            int i = 1;
+            for (Long id : ids) {
+                pstmt.setLong(i++, id);
+            }
+            return leerCambios(pstmt);
+        } catch (SQLException e) {
+            throw new SQLException("Error al leer los cambios por secuencia: " + e.getMessage(), e);
+        }
+    }
+
+    /***
+     * Borra un tramo de cambios registrados antes de una fecha.
+     *
+     * @param fecha Fecha límite (exclusive)
+     * @param limite Cantidad máxima de cambios a borrar
+     * @return Cantidad de cambios borrados
+     * @throws SQLException si ocurre un error al borrar
+     */
+    public int eliminarAnterioresA(LocalDateTime fecha, int limite) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(DELETE_ANTERIORES_SQL)) {
+            pstmt.setTimestamp(1, Timestamp.valueOf(fecha));
+            pstmt.setInt(2, limite);
+            return pstmt.executeUpdate();
+        } catch (SQLException e) {
+            throw new SQLException("Error al borrar cambios antiguos: " + e.getMessage(), e);
+        }
+    }
+
+    private static void insertarPorIds(String sql, long[] ids, Connection conn) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, ORIGEN);
+            for (int i = 0; i < ids.length; i++) {
+                pstmt.setLong(i + 2, ids[i]);
+            }
+            pstmt.executeUpdate();
+        }
+    }
+
+    private static void setCambioParameters(PreparedStatement pstmt, Cambio cambio) throws SQLException {
+        pstmt.setString(1, cambio.entidad().name());
+        pstmt.setLong(2, cambio.idEntidad());
+        pstmt.setString(3, cambio.operacion().name());
+        pstmt.setString(4, cambio.codigo());
+        pstmt.setString(5, ORIGEN);
+    }
+
+    private static List<Cambio> leerCambios(PreparedStatement pstmt) throws SQLException {
+        List<Cambio> cambios = new ArrayList<>();
+        try (ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                cambios.add(new Cambio(
+                        rs.getLong("id"),
+                        Cambio.Entidad.valueOf(rs.getString("entidad")),
+                        rs.getLong("id_entidad"),
+                        Cambio.Operacion.valueOf(rs.getString("operacion")),
+                        rs.getString("codigo"),
+                        rs.getString("origen")));
+            }
+        }
+        return cambios;
+    }
+}
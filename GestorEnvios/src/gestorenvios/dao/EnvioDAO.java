@@ -4,20 +4,33 @@ import gestorenvios.config.DatabaseConnection;
 import gestorenvios.entities.EmpresaEnvio;
 import gestorenvios.entities.Envio;
 import gestorenvios.entities.EstadoEnvio;
-import gestorenvios.entities.TipoEnvio;
+import gestorenvios.entities.EstadoPedido;
+import gestorenvios.entities.Pedido;
+import gestorenvios.models.EnvioEstadoActual;
+import gestorenvios.models.EnvioResumen;
+import gestorenvios.models.Cambio;
+import gestorenvios.models.FiltroEnvios;
+import gestorenvios.models.exceptions.ConflictoVersionException;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 /***
  * DAO para operaciones CRUD y consultas sobre la entidad Envio.
+ * Cada escritura se registra en la tabla de cambios dentro de la misma transacción.
  */
 public class EnvioDAO implements GenericDAO<Envio> {
 
+    /*** DAO del registro de cambios, escrito junto con cada alta, modificación y baja. */
+    private final CambioDAO cambioDAO = new CambioDAO();
+
     /*** Campos estándar seleccionados en las consultas de envío. */
     private static final String CAMPOS_ENVIO = " e.id, e.eliminado, e.tracking, e.id_empresa, e.id_tipo_envio, e.costo,"
-            + " e.fecha_despacho, e.fecha_estimada, e.id_estado_envio";
+            + " e.fecha_despacho, e.fecha_estimada, e.id_estado_envio, e.version";
 
     /*** Query base para SELECT de envíos. */
     private static final String QUERY_BASE = "SELECT" + CAMPOS_ENVIO + " FROM Envio e";
@@ -25,41 +38,104 @@ public class EnvioDAO implements GenericDAO<Envio> {
     /*** Query para contar envíos activos (no eliminados). */
     private static final String COUNT_SQL = "SELECT COUNT(*) AS total FROM Envio WHERE eliminado = FALSE";
 
+    /*** Query para contar envíos activos agrupados por estado y empresa. */
+    private static final String COUNT_BY_ESTADO_EMPRESA_SQL = "SELECT id_estado_envio, id_empresa, COUNT(*) AS total"
+            + " FROM Envio WHERE eliminado = FALSE GROUP BY id_estado_envio, id_empresa";
+
+    /*** Cantidad máxima de filas enviadas en cada executeBatch de una inserción en lote. */
+    private static final int TAMANIO_LOTE_INSERCION = 1_000;
+
     /*** Query para insertar un nuevo envío. */
     private static final String INSERT_SQL = "INSERT INTO Envio (eliminado, tracking, id_empresa, id_tipo_envio, costo, fecha_despacho, fecha_estimada, id_estado_envio) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
 
-    /*** Query para actualizar un envío existente por ID. */
-    private static final String UPDATE_SQL = "UPDATE Envio SET tracking = ?, id_empresa = ?, id_tipo_envio = ?, costo = ?, fecha_despacho = ?, fecha_estimada = ?, id_estado_envio = ? WHERE id = ?";
+    /***
+     * Query para actualizar un envío existente por ID, solo si conserva la versión leída
+     * (o sin control si no se conoce la versión). Incrementa la versión.
+     */
+    private static final String UPDATE_SQL = "UPDATE Envio SET tracking = ?, id_empresa = ?, id_tipo_envio = ?, costo = ?, fecha_despacho = ?, fecha_estimada = ?, id_estado_envio = ?,"
+            + " version = version + 1 WHERE id = ? AND (? IS NULL OR version = ?)";
 
     /*** Query para eliminación lógica de un envío. */
-    private static final String DELETE_SQL = "UPDATE Envio SET eliminado = TRUE WHERE id = ?";
+    private static final String DELETE_SQL = "UPDATE Envio SET eliminado = TRUE, version = version + 1 WHERE id = ?";
+
+    /***
+     * Query para la eliminación lógica de un envío que, en la misma sentencia, deja a su pedido
+     * activo sin envío y en el estado indicado.
+     */
+    private static final String DELETE_Y_LIBERAR_PEDIDO_SQL = "UPDATE Envio e"
+            + " LEFT JOIN Pedido p ON p.id_envio = e.id AND p.eliminado = FALSE"
+            + " SET e.eliminado = TRUE, e.version = e.version + 1,"
+            + " p.id_envio = NULL, p.id_estado_pedido = ?, p.version = p.version + 1"
+            + " WHERE e.id = ? AND e.eliminado = FALSE";
+
+    /*** Query para leer la versión actual de un envío, al diagnosticar una actualización rechazada. */
+    private static final String SELECT_VERSION_SQL = "SELECT version FROM Envio WHERE id = ?";
 
     /*** Query para listar envíos activos con paginación. */
     private static final String SELECT_ALL_SQL = QUERY_BASE
             + " WHERE e.eliminado = FALSE"
             + " LIMIT ? OFFSET ?";
 
+    /*** Query para listar envíos activos por cursor (keyset): envíos con ID mayor al último visto. */
+    private static final String SELECT_PAGE_AFTER_SQL = QUERY_BASE
+            + " WHERE e.eliminado = FALSE AND e.id > ?"
+            + " ORDER BY e.id"
+            + " LIMIT ?";
+
+    /*** Query para recorrer todos los envíos activos en orden de ID. */
+    private static final String SELECT_ALL_STREAM_SQL = QUERY_BASE
+            + " WHERE e.eliminado = FALSE"
+            + " ORDER BY e.id";
+
+    /*** Query para recorrer los envíos activos de un rango de IDs [desde, hasta), en orden de ID. */
+    private static final String SELECT_RANGE_SQL = QUERY_BASE
+            + " WHERE e.eliminado = FALSE AND e.id >= ? AND e.id < ?"
+            + " ORDER BY e.id";
+
+    /*** Query para obtener el menor y el mayor ID de los envíos activos. */
+    private static final String SELECT_RANGO_IDS_SQL = "SELECT MIN(id) AS minimo, MAX(id) AS maximo FROM Envio"
+            + " WHERE eliminado = FALSE";
+
+    /*** Query para recorrer los códigos de tracking de los envíos activos. */
+    private static final String SELECT_TRACKINGS_SQL = "SELECT e.tracking FROM Envio e"
+            + " WHERE e.eliminado = FALSE AND e.tracking IS NOT NULL";
+
+    /*** Query para listar resúmenes de envíos activos por cursor (keyset): solo las columnas que muestran los listados. */
+    private static final String SELECT_RESUMEN_PAGE_AFTER_SQL = "SELECT e.id, e.id_empresa, e.tracking, e.id_estado_envio"
+            + " FROM Envio e"
+            + " WHERE e.eliminado = FALSE AND e.id > ?"
+            + " ORDER BY e.id"
+            + " LIMIT ?";
+
+    /*** Query para seleccionar y bloquear un tramo de envíos a cambiar de estado, con el estado de su pedido. */
+    private static final String SELECT_TRAMO_CAMBIO_ESTADO_SQL = "SELECT e.id, e.id_empresa, e.id_estado_envio, p.id_estado_pedido"
+            + " FROM Envio e LEFT JOIN Pedido p ON p.id_envio = e.id AND p.eliminado = FALSE"
+            + " WHERE e.eliminado = FALSE AND e.id > ? AND e.id_estado_envio NOT IN (?, ?)";
+
+    /*** Query para cambiar el estado de varios envíos y de sus pedidos activos (se completa con la lista de IDs). */
+    private static final String UPDATE_ESTADO_BY_IDS_SQL = "UPDATE Envio e"
+            + " LEFT JOIN Pedido p ON p.id_envio = e.id AND p.eliminado = FALSE"
+            + " SET e.id_estado_envio = ?, e.version = e.version + 1,"
+            + " p.id_estado_pedido = COALESCE(?, p.id_estado_pedido), p.version = p.version + (? IS NOT NULL)"
+            + " WHERE e.id IN (";
+
     /*** Query para buscar un envío activo por ID. */
     private static final String SELECT_BY_ID_SQL = QUERY_BASE
             + " WHERE e.eliminado = FALSE AND e.id = ?";
 
+    /*** Query para leer y bloquear un envío activo por ID dentro de una transacción. */
+    private static final String SELECT_BY_ID_FOR_UPDATE_SQL = SELECT_BY_ID_SQL + " FOR UPDATE";
+
     /*** Query para buscar un envío activo por código de tracking. */
     private static final String SELECT_BY_TRACKING_SQL = QUERY_BASE
             + " WHERE e.eliminado = FALSE AND e.tracking = ?";
 
-    /*** Query para buscar el último número de tracking, cuyo código tenga el string 'TRK-' al inicio. */
-    private static final String SEARCH_MAX_TRACKING = "SELECT MAX(tracking) AS tracking FROM Envio "
-    + "WHERE tracking like 'TRK-%' ";
-
     /*** Query para buscar un envío por número de pedido asociado. Incluye JOIN con tabla Pedido. */
     private static final String SELECT_BY_NUMERO_SQL = QUERY_BASE
             + " LEFT JOIN Pedido p  ON p.id_envio = e.id"
             + " WHERE p.eliminado = FALSE"
             + " AND p.numero = ?";
 
-    /*** Nombre del campo tracking en la tabla envio */
-    private static final String ENVIO_TRACKING = "tracking";
-
     /***
      * Inserta un envío dentro de una transacción externa.
      * No gestiona la conexión, debe ser proporcionada por el invocador.
@@ -70,8 +146,7 @@ public class EnvioDAO implements GenericDAO<Envio> {
      */
     @Override
     public void insertarTx(Envio envio, Connection conn) throws SQLException {
-        try {
-            PreparedStatement pstmt = conn.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS);
+        try (PreparedStatement pstmt = conn.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
             setEnvioParameters(pstmt, envio);
             pstmt.setBoolean(1, false);
 
@@ -79,18 +154,58 @@ public class EnvioDAO implements GenericDAO<Envio> {
 
             setGeneratedId(pstmt, envio);
 
+            cambioDAO.registrarTx(Cambio.de(Cambio.Entidad.ENVIO, envio.getId(), Cambio.Operacion.ALTA,
+                    envio.getTracking()), conn);
         } catch (SQLException e) {
             throw new SQLException("Error al insertar el envío: " + e.getMessage(), e);
         }
     }
 
+    /***
+     * Inserta un lote de envíos dentro de una transacción externa usando addBatch/executeBatch.
+     * Con rewriteBatchedStatements el driver envía cada tramo como un único INSERT de varias filas.
+     * Los IDs generados se asignan en el mismo orden de la lista.
+     * No gestiona la conexión, debe ser proporcionada por el invocador.
+     *
+     * @param envios Envíos a insertar
+     * @param conn Conexión transaccional (NO se cierra en este método)
+     * @throws SQLException Si falla la inserción o no se obtienen todos los IDs generados
+     */
+    @Override
+    public void insertarLoteTx(List<Envio> envios, Connection conn) throws SQLException {
+        if (envios == null || envios.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement pstmt = conn.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+            for (int desde = 0; desde < envios.size(); desde += TAMANIO_LOTE_INSERCION) {
+                List<Envio> tramo = envios.subList(desde, Math.min(desde + TAMANIO_LOTE_INSERCION, envios.size()));
+                for (Envio envio : tramo) {
+                    setEnvioParameters(pstmt, envio);
+                    pstmt.setBoolean(1, false);
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+                setGeneratedIds(pstmt, tramo);
+            }
+            cambioDAO.registrarLoteTx(envios.stream()
+                    .map(envio -> Cambio.de(Cambio.Entidad.ENVIO, envio.getId(), Cambio.Operacion.ALTA,
+                            envio.getTracking()))
+                    .toList(), conn);
+        } catch (SQLException e) {
+            throw new SQLException("Error al insertar el lote de envíos: " + e.getMessage(), e);
+        }
+    }
+
     /***
      * Actualiza un envío existente dentro de una transacción externa.
+     * Si el envío tiene versión, la actualización solo se aplica cuando la fila conserva esa versión;
+     * al aplicarse, la versión del envío se incrementa.
      * No gestiona la conexión, debe ser proporcionada por el invocador.
      *
      * @param envio Envío con datos actualizados
      * @param conn Conexión activa de base de datos
      * @throws SQLException si el envío no existe o hay error en la actualización
+     * @throws ConflictoVersionException si otra operación modificó el envío después de leerlo
      */
     @Override
     public void actualizarTx(Envio envio, Connection conn) throws SQLException {
@@ -115,13 +230,25 @@ public class EnvioDAO implements GenericDAO<Envio> {
 
             pstmt.setInt(7, envio.getEstado().getId());
             pstmt.setLong(8, envio.getId());
+            setVersionEsperada(pstmt, 9, envio.getVersion());
 
             int rowsAffected = pstmt.executeUpdate();
 
             if (rowsAffected == 0) {
-                throw new SQLException("No se pudo actualizar (Tx) el envío ID: " + envio.getId() + ". Tal vez no existe.");
+                Integer versionActual = buscarVersionTx(envio.getId(), conn);
+                if (versionActual == null) {
+                    throw new SQLException("No se pudo actualizar (Tx) el envío ID: " + envio.getId() + ". Tal vez no existe.");
+                }
+                throw new ConflictoVersionException("El envío " + envio.getTracking()
+                        + " fue modificado por otra operación (versión leída " + envio.getVersion()
+                        + ", versión actual " + versionActual + "). Vuelva a consultarlo e intente nuevamente.");
             }
         }
+        if (envio.getVersion() != null) {
+            envio.setVersion(envio.getVersion() + 1);
+        }
+        cambioDAO.registrarTx(Cambio.de(Cambio.Entidad.ENVIO, envio.getId(), Cambio.Operacion.MODIFICACION,
+                envio.getTracking()), conn);
     }
 
     /***
@@ -139,10 +266,42 @@ public class EnvioDAO implements GenericDAO<Envio> {
                 throw new SQLException("No se encontró envío con ID: " + id);
             }
         }
+        cambioDAO.registrarTx(Cambio.de(Cambio.Entidad.ENVIO, id, Cambio.Operacion.BAJA, null), conn);
+    }
+
+    /***
+     * Realiza la eliminación lógica de un envío y deja a su pedido activo sin envío y en el estado
+     * indicado, con una sola sentencia dentro de una transacción externa. Registra ambos cambios
+     * en un único lote.
+     *
+     * @param id ID del envío a eliminar
+     * @param pedido Pedido activo del envío, leído en la misma transacción (null si no tiene)
+     * @param estadoPedido Estado en el que queda el pedido
+     * @param conn Conexión transaccional
+     * @throws SQLException si el envío no existe o ya estaba eliminado
+     */
+    public void eliminarLogicoYLiberarPedidoTx(Long id, Pedido pedido, EstadoPedido estadoPedido,
+                                              Connection conn) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(DELETE_Y_LIBERAR_PEDIDO_SQL)) {
+            pstmt.setInt(1, estadoPedido.getId());
+            pstmt.setLong(2, id);
+            if (pstmt.executeUpdate() == 0) {
+                throw new SQLException("No se encontró envío con ID: " + id);
+            }
+        }
+        List<Cambio> cambios = new ArrayList<>(2);
+        cambios.add(Cambio.de(Cambio.Entidad.ENVIO, id, Cambio.Operacion.BAJA, null));
+        if (pedido != null) {
+            cambios.add(Cambio.de(Cambio.Entidad.PEDIDO, pedido.getId(), Cambio.Operacion.MODIFICACION,
+                    pedido.getNumero()));
+        }
+        cambioDAO.registrarLoteTx(cambios, conn);
     }
 
     /***
      * Busca un envío activo por su ID.
+     * Lee siempre de la base principal, no de las réplicas: carga la caché por ID y relee la versión
+     * vigente al reintentar un conflicto de versión.
      *
      * @param id ID del envío a buscar
      * @return Envío encontrado o null si no existe
@@ -155,7 +314,7 @@ public class EnvioDAO implements GenericDAO<Envio> {
 
             try (ResultSet rs = pstmt.executeQuery()) {
                 if (rs.next()) {
-                    return toEnvio(rs);
+                    return Mapeadores.envio(rs).mapear(rs);
                 }
             }
         } catch (SQLException e) {
@@ -164,8 +323,32 @@ public class EnvioDAO implements GenericDAO<Envio> {
         return null;
     }
 
+    /***
+     * Busca un envío activo por su ID dentro de una transacción externa, bloqueando la fila
+     * hasta el fin de la transacción (SELECT ... FOR UPDATE).
+     *
+     * @param id ID del envío a buscar
+     * @param conn Conexión transaccional
+     * @return Envío encontrado o null si no existe
+     * @throws SQLException si ocurre un error en la consulta
+     */
+    public Envio buscarPorIdTx(Long id, Connection conn) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(SELECT_BY_ID_FOR_UPDATE_SQL)) {
+            pstmt.setLong(1, id);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return Mapeadores.envio(rs).mapear(rs);
+                }
+            }
+        }
+        return null;
+    }
+
     /***
      * Busca un envío activo por su código de tracking.
+     * Lee siempre de la base principal, no de las réplicas: carga la caché por tracking, que de otro
+     * modo podría guardar una fila que la réplica todavía no actualizó.
      *
      * @param tracking Código de tracking del envío
      * @return Envío encontrado o null si no existe
@@ -179,7 +362,7 @@ public class EnvioDAO implements GenericDAO<Envio> {
 
             try (ResultSet rs = pstmt.executeQuery()) {
                 if (rs.next()) {
-                    return toEnvio(rs);
+                    return Mapeadores.envio(rs).mapear(rs);
                 }
             }
         } catch (SQLException e) {
@@ -203,7 +386,7 @@ public class EnvioDAO implements GenericDAO<Envio> {
 
             try (ResultSet rs = pstmt.executeQuery()) {
                 if (rs.next()) {
-                    return toEnvio(rs);
+                    return Mapeadores.envio(rs).mapear(rs);
                 }
             }
         } catch (SQLException e) {
@@ -229,14 +412,15 @@ public class EnvioDAO implements GenericDAO<Envio> {
 
         long offset = (numeroPagina - 1L) * registrosPorPagina;
 
-        try (Connection conn = DatabaseConnection.getConnection();
+        try (Connection conn = DatabaseConnection.obtenerConexionLectura();
              PreparedStatement pstmt = conn.prepareStatement(SELECT_ALL_SQL)) {
             pstmt.setLong(1, registrosPorPagina);
             pstmt.setLong(2, offset);
 
             try (ResultSet rs = pstmt.executeQuery()) {
+                MapeadorFila<Envio> mapeador = Mapeadores.envio(rs);
                 while (rs.next()) {
-                    envios.add(toEnvio(rs));
+                    envios.add(mapeador.mapear(rs));
                 }
             }
         } catch (SQLException e) {
@@ -246,19 +430,170 @@ public class EnvioDAO implements GenericDAO<Envio> {
     }
 
     /***
-     * Obtiene el último tracking de envio insertado en una transacción.
+     * Lista envíos activos paginando por cursor (keyset): devuelve los envíos con ID mayor
+     * al último visto, ordenados por ID. A diferencia de LIMIT/OFFSET, el costo no crece
+     * con la profundidad de la página.
      *
-     * @param conn Conexión transaccional
-     * @return Último número de pedido
-     * @throws SQLException Si hay error de BD
+     * @param ultimoId ID del último envío de la página anterior (null para la primera página)
+     * @param cantidad Número de registros por página (si es null, usa 50 por defecto)
+     * @return Lista de envíos de la página solicitada (puede estar vacía)
+     * @throws SQLException si ocurre un error en la consulta
      */
-    public String buscarUltimoNumeroTrackingTx(Connection conn) throws SQLException {
-        try (PreparedStatement pstmt = conn.prepareStatement(SEARCH_MAX_TRACKING)) {
+    @Override
+    public List<Envio> buscarTodosDesde(Long ultimoId, Long cantidad) throws SQLException {
+        List<Envio> envios = new ArrayList<>();
+
+        long registrosPorPagina = (cantidad != null && cantidad > 0L) ? cantidad : 50L;
+        long desdeId = ultimoId != null ? ultimoId : 0L;
+
+        try (Connection conn = DatabaseConnection.obtenerConexionLectura();
+             PreparedStatement pstmt = conn.prepareStatement(SELECT_PAGE_AFTER_SQL)) {
+            pstmt.setLong(1, desdeId);
+            pstmt.setLong(2, registrosPorPagina);
+
             try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getString(ENVIO_TRACKING);
+                MapeadorFila<Envio> mapeador = Mapeadores.envio(rs);
+                while (rs.next()) {
+                    envios.add(mapeador.mapear(rs));
+                }
+            }
+        } catch (SQLException e) {
+            throw new SQLException("Error al listar envíos: " + e.getMessage(), e);
+        }
+        return envios;
+    }
+
+    /***
+     * Lista resúmenes de envíos activos paginando por cursor (keyset).
+     * Solo lee las columnas que muestran los listados, sin construir las entidades completas.
+     *
+     * @param ultimoId ID del último envío de la página anterior (null para la primera página)
+     * @param cantidad Número de registros por página (si es null, usa 50 por defecto)
+     * @return Lista de resúmenes de la página solicitada (puede estar vacía)
+     * @throws SQLException si ocurre un error en la consulta
+     */
+    public List<EnvioResumen> buscarResumenesDesde(Long ultimoId, Long cantidad) throws SQLException {
+        List<EnvioResumen> resumenes = new ArrayList<>();
+
+        long registrosPorPagina = (cantidad != null && cantidad > 0L) ? cantidad : 50L;
+        long desdeId = ultimoId != null ? ultimoId : 0L;
+
+        try (Connection conn = DatabaseConnection.obtenerConexionLectura();
+             PreparedStatement pstmt = conn.prepareStatement(SELECT_RESUMEN_PAGE_AFTER_SQL)) {
+            pstmt.setLong(1, desdeId);
+            pstmt.setLong(2, registrosPorPagina);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                MapeadorFila<EnvioResumen> mapeador = Mapeadores.envioResumen(rs);
+                while (rs.next()) {
+                    resumenes.add(mapeador.mapear(rs));
+                }
+            }
+        } catch (SQLException e) {
+            throw new SQLException("Error al listar envíos: " + e.getMessage(), e);
+        }
+        return resumenes;
+    }
+
+    /***
+     * Recorre todos los envíos activos en streaming.
+     * El ResultSet es de solo avance y el driver entrega las filas de a una, por lo que
+     * la memoria usada no depende del tamaño de la tabla.
+     *
+     * @param consumidor Recibe cada envío mapeado
+     * @throws SQLException si ocurre un error en la consulta
+     */
+    public void recorrerActivos(Consumer<Envio> consumidor) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(SELECT_ALL_STREAM_SQL,
+                     ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+
+            pstmt.setFetchSize(Integer.MIN_VALUE);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                MapeadorFila<Envio> mapeador = Mapeadores.envio(rs);
+                while (rs.next()) {
+                    consumidor.accept(mapeador.mapear(rs));
                 }
             }
+        } catch (SQLException e) {
+            throw new SQLException("Error al recorrer envíos: " + e.getMessage(), e);
+        }
+    }
+
+    /***
+     * Recorre en streaming los envíos activos con ID en el rango [desdeId, hastaId), en orden de ID.
+     * Permite dividir un recorrido completo de la tabla en particiones independientes.
+     *
+     * @param desdeId Primer ID del rango (inclusive)
+     * @param hastaId Último ID del rango (exclusive)
+     * @param consumidor Recibe cada envío mapeado
+     * @throws SQLException si ocurre un error en la consulta
+     */
+    @Override
+    public void recorrerRango(long desdeId, long hastaId, Consumer<Envio> consumidor) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(SELECT_RANGE_SQL,
+                     ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+
+            pstmt.setFetchSize(Integer.MIN_VALUE);
+            pstmt.setLong(1, desdeId);
+            pstmt.setLong(2, hastaId);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                MapeadorFila<Envio> mapeador = Mapeadores.envio(rs);
+                while (rs.next()) {
+                    consumidor.accept(mapeador.mapear(rs));
+                }
+            }
+        } catch (SQLException e) {
+            throw new SQLException("Error al recorrer envíos por rango de IDs: " + e.getMessage(), e);
+        }
+    }
+
+    /***
+     * Recorre los códigos de tracking de todos los envíos activos en streaming,
+     * sin materializar el resultado en memoria.
+     *
+     * @param consumidor Recibe cada código de tracking
+     * @throws SQLException si ocurre un error en la consulta
+     */
+    public void recorrerTrackings(Consumer<String> consumidor) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(SELECT_TRACKINGS_SQL,
+                     ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+
+            pstmt.setFetchSize(Integer.MIN_VALUE);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    consumidor.accept(rs.getString("tracking"));
+                }
+            }
+        } catch (SQLException e) {
+            throw new SQLException("Error al recorrer trackings de envíos: " + e.getMessage(), e);
+        }
+    }
+
+    /***
+     * Obtiene el menor y el mayor ID de los envíos activos.
+     *
+     * @return Arreglo {minimo, maximo}, o null si no hay envíos activos
+     * @throws SQLException si ocurre un error en la consulta
+     */
+    @Override
+    public long[] buscarRangoIds() throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(SELECT_RANGO_IDS_SQL);
+             ResultSet rs = pstmt.executeQuery()) {
+            if (rs.next()) {
+                long minimo = rs.getLong("minimo");
+                if (!rs.wasNull()) {
+                    return new long[]{minimo, rs.getLong("maximo")};
+                }
+            }
+        } catch (SQLException e) {
+            throw new SQLException("Error al obtener el rango de IDs de envíos: " + e.getMessage(), e);
         }
         return null;
     }
@@ -305,66 +640,194 @@ public class EnvioDAO implements GenericDAO<Envio> {
         try (ResultSet rs = pstmt.getGeneratedKeys()) {
             if (rs.next()) {
                 envio.setId(rs.getLong(1));
+                envio.setVersion(0);
             }
         }
     }
 
     /***
-     * Mapea un ResultSet a un objeto Envío.
-     *
-     * @param resultSet ResultSet del registro a mapear
-     * @return Envío construido con los datos del registro
-     * @throws SQLException si ocurre un error al leer el ResultSet
+     * Asigna los parámetros de versión esperada de un UPDATE condicionado ("? IS NULL OR version = ?").
      */
-    private Envio toEnvio(ResultSet resultSet) throws SQLException {
-        Envio envio = new Envio();
+    private static void setVersionEsperada(PreparedStatement pstmt, int indice, Integer version) throws SQLException {
+        if (version != null) {
+            pstmt.setInt(indice, version);
+            pstmt.setInt(indice + 1, version);
+        } else {
+            pstmt.setNull(indice, Types.INTEGER);
+            pstmt.setNull(indice + 1, Types.INTEGER);
+        }
+    }
 
-        envio.setId(resultSet.getLong("id"));
-        envio.setEliminado(resultSet.getBoolean("eliminado"));
-        envio.setTracking(resultSet.getString("tracking"));
-        envio.setCosto(resultSet.getDouble("costo"));
+    /***
+     * Lee la versión actual de un envío dentro de la transacción.
+     *
+     * @return Versión actual, o null si el envío no existe
+     */
+    private static Integer buscarVersionTx(Long id, Connection conn) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(SELECT_VERSION_SQL)) {
+            pstmt.setLong(1, id);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getInt("version") : null;
+            }
+        }
+    }
 
-        if (resultSet.getDate("fecha_despacho") != null) {
-            envio.setFechaDespacho(resultSet.getDate("fecha_despacho").toLocalDate());
+    /***
+     * Recupera los IDs autogenerados de un lote y los asigna en orden.
+     *
+     * @param pstmt PreparedStatement ejecutado en lote
+     * @param envios Envíos del lote, en el orden en que se agregaron
+     * @throws SQLException si la cantidad de IDs generados no coincide con la del lote
+     */
+    private void setGeneratedIds(PreparedStatement pstmt, List<Envio> envios) throws SQLException {
+        int i = 0;
+        try (ResultSet generatedKeys = pstmt.getGeneratedKeys()) {
+            while (i < envios.size() && generatedKeys.next()) {
+                Envio envio = envios.get(i++);
+                envio.setId(generatedKeys.getLong(1));
+                envio.setVersion(0);
+            }
         }
-        if (resultSet.getDate("fecha_estimada") != null) {
-            envio.setFechaEstimada(resultSet.getDate("fecha_estimada").toLocalDate());
+        if (i != envios.size()) {
+            throw new SQLException("Se generaron " + i + " IDs para un lote de " + envios.size() + " registros.");
         }
-
-        envio.setEmpresa(EmpresaEnvio.fromId(resultSet.getInt("id_empresa")));
-        envio.setTipo(TipoEnvio.fromId(resultSet.getInt("id_tipo_envio")));
-        envio.setEstado(EstadoEnvio.fromId(resultSet.getInt("id_estado_envio")));
-
-        return envio;
     }
 
     /***
-     * Mapea un ResultSet a un objeto Envío, usando un ID proporcionado.
+     * Bloquea el próximo tramo de envíos activos que cumplen el filtro y deben pasar al estado indicado,
+     * junto con sus pedidos activos, dentro de una transacción externa. Se excluyen los envíos que ya
+     * están en ese estado y los ENTREGADO, que es un estado final.
      *
-     * @param rs ResultSet del registro a mapear
-     * @param idEnvio ID del envío
-     * @return Envío construido con los datos del registro
-     * @throws SQLException si ocurre un error al leer el ResultSet
+     * @param filtro Criterios de selección
+     * @param nuevoEstado Estado al que se moverán los envíos
+     * @param despuesDeId ID del último envío del tramo anterior (0 para el primero)
+     * @param limite Cantidad máxima de envíos del tramo
+     * @param conn Conexión transaccional
+     * @return Estado actual de los envíos bloqueados, en orden de ID
+     * @throws SQLException si ocurre un error en la consulta
      */
-    public static Envio toEnvio(ResultSet rs, Long idEnvio) throws SQLException {
-        Envio envio = new Envio();
-        envio.setId(idEnvio);
-        envio.setTracking(rs.getString("envio_tracking"));
-        envio.setCosto(rs.getDouble("envio_costo"));
+    public List<EnvioEstadoActual> bloquearTramoParaCambioEstadoTx(FiltroEnvios filtro, EstadoEnvio nuevoEstado,
+                                                                  long despuesDeId, int limite,
+                                                                  Connection conn) throws SQLException {
+        List<Object> parametros = new ArrayList<>();
+        parametros.add(despuesDeId);
+        parametros.add(nuevoEstado.getId());
+        parametros.add(EstadoEnvio.ENTREGADO.getId());
+        String sql = SELECT_TRAMO_CAMBIO_ESTADO_SQL + condicionesFiltro(filtro, parametros)
+                + " ORDER BY e.id LIMIT ? FOR UPDATE";
+        parametros.add(limite);
+
+        List<EnvioEstadoActual> envios = new ArrayList<>();
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < parametros.size(); i++) {
+                pstmt.setObject(i + 1, parametros.get(i));
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                MapeadorFila<EnvioEstadoActual> mapeador = Mapeadores.envioEstadoActual(rs);
+                while (rs.next()) {
+                    envios.add(mapeador.mapear(rs));
+                }
+            }
+        } catch (SQLException e) {
+            throw new SQLException("Error al seleccionar envíos para el cambio de estado: " + e.getMessage(), e);
+        }
+        return envios;
+    }
 
-        if (rs.getDate("envio_fecha_despacho") != null) {
-            envio.setFechaDespacho(rs.getDate("envio_fecha_despacho").toLocalDate());
+    /***
+     * Cambia el estado de un conjunto de envíos y, en la misma sentencia, el de sus pedidos activos.
+     * Los cambios se registran con una sentencia INSERT ... SELECT por tipo de entidad.
+     *
+     * @param ids IDs de los envíos
+     * @param nuevoEstado Estado nuevo de los envíos
+     * @param nuevoEstadoPedido Estado nuevo de los pedidos, o null para no modificarlos
+     * @param conn Conexión transaccional
+     * @return Cantidad de filas modificadas (envíos más pedidos)
+     * @throws SQLException si ocurre un error en la actualización
+     */
+    public int actualizarEstadoPorIdsTx(long[] ids, EstadoEnvio nuevoEstado, EstadoPedido nuevoEstadoPedido,
+                                        Connection conn) throws SQLException {
+        if (ids.length == 0) {
+            return 0;
+        }
+        String sql = UPDATE_ESTADO_BY_IDS_SQL + "?" + ", ?".repeat(ids.length - 1) + ")";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, nuevoEstado.getId());
+            if (nuevoEstadoPedido != null) {
+                pstmt.setInt(2, nuevoEstadoPedido.getId());
+                pstmt.setInt(3, nuevoEstadoPedido.getId());
+            } else {
+                pstmt.setNull(2, Types.INTEGER);
+                pstmt.setNull(3, Types.INTEGER);
+            }
+            for (int i = 0; i < ids.length; i++) {
+                pstmt.setLong(i + 4, ids[i]);
+            }
+            int filas = pstmt.executeUpdate();
+            cambioDAO.registrarEnviosPorIdsTx(ids, nuevoEstadoPedido != null, conn);
+            return filas;
+        } catch (SQLException e) {
+            throw new SQLException("Error al actualizar el estado de los envíos: " + e.getMessage(), e);
+        }
+    }
 
+    /***
+     * Arma las condiciones SQL de un filtro de envíos (precedidas por AND) y agrega sus parámetros.
+     */
+    private static String condicionesFiltro(FiltroEnvios filtro, List<Object> parametros) {
+        StringBuilder condiciones = new StringBuilder();
+        if (filtro.empresa() != null) {
+            condiciones.append(" AND e.id_empresa = ?");
+            parametros.add(filtro.empresa().getId());
+        }
+        if (filtro.estado() != null) {
+            condiciones.append(" AND e.id_estado_envio = ?");
+            parametros.add(filtro.estado().getId());
+        }
+        if (filtro.despachoDesde() != null) {
+            condiciones.append(" AND e.fecha_despacho >= ?");
+            parametros.add(java.sql.Date.valueOf(filtro.despachoDesde()));
+        }
+        if (filtro.despachoHasta() != null) {
+            condiciones.append(" AND e.fecha_despacho <= ?");
+            parametros.add(java.sql.Date.valueOf(filtro.despachoHasta()));
         }
-        if (rs.getDate("envio_fecha_estimada") != null) {
-            envio.setFechaEstimada(rs.getDate("envio_fecha_estimada").toLocalDate());
+        if (filtro.estimadaDesde() != null) {
+            condiciones.append(" AND e.fecha_estimada >= ?");
+            parametros.add(java.sql.Date.valueOf(filtro.estimadaDesde()));
         }
+        if (filtro.estimadaHasta() != null) {
+            condiciones.append(" AND e.fecha_estimada <= ?");
+            parametros.add(java.sql.Date.valueOf(filtro.estimadaHasta()));
+        }
+        if (!filtro.trackings().isEmpty()) {
+            condiciones.append(" AND e.tracking IN (?").append(", ?".repeat(filtro.trackings().size() - 1)).append(")");
+            parametros.addAll(filtro.trackings());
+        }
+        return condiciones.toString();
+    }
 
-        envio.setEmpresa(EmpresaEnvio.fromId(rs.getInt("envio_id_empresa")));
-        envio.setTipo(TipoEnvio.fromId(rs.getInt("envio_id_tipo")));
-        envio.setEstado(EstadoEnvio.fromId(rs.getInt("envio_id_estado")));
-        envio.setEliminado(rs.getBoolean("envio_eliminado"));
-        return envio;
+    /***
+     * Cuenta los envíos activos agrupados por estado y empresa.
+     *
+     * @return Cantidad de envíos activos por estado y empresa (las combinaciones sin envíos no se incluyen)
+     * @throws SQLException si ocurre un error en la consulta
+     */
+    public Map<EstadoEnvio, Map<EmpresaEnvio, Long>> contarActivosPorEstadoYEmpresa() throws SQLException {
+        Map<EstadoEnvio, Map<EmpresaEnvio, Long>> cantidades = new EnumMap<>(EstadoEnvio.class);
+
+        try (Connection conn = DatabaseConnection.obtenerConexionLectura();
+             PreparedStatement pstmt = conn.prepareStatement(COUNT_BY_ESTADO_EMPRESA_SQL);
+             ResultSet rs = pstmt.executeQuery()) {
+
+            while (rs.next()) {
+                EstadoEnvio estado = EstadoEnvio.fromId(rs.getInt("id_estado_envio"));
+                EmpresaEnvio empresa = EmpresaEnvio.fromId(rs.getInt("id_empresa"));
+                cantidades.computeIfAbsent(estado, k -> new EnumMap<>(EmpresaEnvio.class))
+                        .put(empresa, rs.getLong("total"));
+            }
+        }
+        return cantidades;
     }
 
     /***
@@ -376,7 +839,7 @@ public class EnvioDAO implements GenericDAO<Envio> {
     public Long obtenerCantidadTotalDeEnvios() throws SQLException {
         long total = 0L;
 
-        try (Connection conn = DatabaseConnection.getConnection();
+        try (Connection conn = DatabaseConnection.obtenerConexionLectura();
              PreparedStatement pstmt = conn.prepareStatement(COUNT_SQL);
              ResultSet rs = pstmt.executeQuery()) {
 
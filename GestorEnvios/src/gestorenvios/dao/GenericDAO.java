@@ -3,12 +3,15 @@ package gestorenvios.dao;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.List;
+import java.util.function.Consumer;
 
 
 public interface GenericDAO<T> {
 
     void insertarTx(T entity, Connection conn) throws SQLException;
 
+    void insertarLoteTx(List<T> entities, Connection conn) throws SQLException;
+
     void actualizarTx(T entity, Connection conn) throws SQLException;
 
     void eliminarLogicoTx(Long id, Connection conn) throws SQLException;
@@ -17,4 +20,10 @@ public interface GenericDAO<T> {
 
     List<T> buscarTodos(Long cantidad, Long pagina) throws SQLException;
 
+    List<T> buscarTodosDesde(Long ultimoId, Long cantidad) throws SQLException;
+
+    void recorrerRango(long desdeId, long hastaId, Consumer<T> consumidor) throws SQLException;
+
+    long[] buscarRangoIds() throws SQLException;
+
 }
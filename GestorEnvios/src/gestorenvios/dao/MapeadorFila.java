@@ -0,0 +1,15 @@
+package gestorenvios.dao;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/***
+ * Convierte la fila actual de un ResultSet en un objeto.
+ * Las implementaciones se obtienen de {@link Mapeadores} y ya tienen resueltos los índices de columna.
+ *
+ * @param <T> Tipo de objeto mapeado
+ */
+@FunctionalInterface
+interface MapeadorFila<T> {
+    T mapear(ResultSet rs) throws SQLException;
+}
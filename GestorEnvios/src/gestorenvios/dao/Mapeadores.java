@@ -0,0 +1,204 @@
+package gestorenvios.dao;
+
+import gestorenvios.entities.EmpresaEnvio;
+import gestorenvios.entities.Envio;
+import gestorenvios.entities.EstadoEnvio;
+import gestorenvios.entities.EstadoPedido;
+import gestorenvios.entities.Pedido;
+import gestorenvios.entities.TipoEnvio;
+import gestorenvios.models.EnvioEstadoActual;
+import gestorenvios.models.EnvioResumen;
+import gestorenvios.models.PedidoResumen;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+
+/***
+ * Fábrica de mapeadores de filas para los DAO.
+ * <p>
+ * Cada mapeador se construye una vez por ResultSet: resuelve los índices de sus columnas por
+ * etiqueta al crearse y luego lee cada columna de la fila una sola vez, por índice. Los IDs de
+ * enums se convierten con las tablas densas de cada enum.
+ */
+final class Mapeadores {
+
+    private Mapeadores() {
+        // Constructor privado para evitar instanciación
+    }
+
+    /***
+     * Mapeador de envíos para las consultas de EnvioDAO (columnas sin alias).
+     *
+     * @param rs ResultSet sobre el que se usará el mapeador
+     * @return Mapeador de envíos
+     * @throws SQLException si falta alguna columna
+     */
+    static MapeadorFila<Envio> envio(ResultSet rs) throws SQLException {
+        int id = rs.findColumn("id");
+        int eliminado = rs.findColumn("eliminado");
+        int tracking = rs.findColumn("tracking");
+        int empresa = rs.findColumn("id_empresa");
+        int tipo = rs.findColumn("id_tipo_envio");
+        int costo = rs.findColumn("costo");
+        int fechaDespacho = rs.findColumn("fecha_despacho");
+        int fechaEstimada = rs.findColumn("fecha_estimada");
+        int estado = rs.findColumn("id_estado_envio");
+        int version = rs.findColumn("version");
+
+        return fila -> {
+            Envio envio = new Envio();
+            envio.setId(fila.getLong(id));
+            envio.setEliminado(fila.getBoolean(eliminado));
+            envio.setTracking(fila.getString(tracking));
+            envio.setEmpresa(EmpresaEnvio.fromId(fila.getInt(empresa)));
+            envio.setTipo(TipoEnvio.fromId(fila.getInt(tipo)));
+            envio.setCosto(fila.getDouble(costo));
+            envio.setFechaDespacho(fila.getObject(fechaDespacho, LocalDate.class));
+            envio.setFechaEstimada(fila.getObject(fechaEstimada, LocalDate.class));
+            envio.setEstado(EstadoEnvio.fromId(fila.getInt(estado)));
+            envio.setVersion(fila.getInt(version));
+            return envio;
+        };
+    }
+
+    /***
+     * Mapeador de pedidos con su envío asociado, para las consultas de PedidoDAO.
+     *
+     * @param rs ResultSet sobre el que se usará el mapeador
+     * @return Mapeador de pedidos
+     * @throws SQLException si falta alguna columna
+     */
+    static MapeadorFila<Pedido> pedido(ResultSet rs) throws SQLException {
+        int id = rs.findColumn(PedidoDAO.PEDIDO_ID);
+        int numero = rs.findColumn(PedidoDAO.PEDIDO_NUMERO);
+        int fecha = rs.findColumn(PedidoDAO.PEDIDO_FECHA);
+        int clienteNombre = rs.findColumn(PedidoDAO.PEDIDO_CLIENTE_NOMBRE);
+        int total = rs.findColumn(PedidoDAO.PEDIDO_TOTAL);
+        int eliminado = rs.findColumn(PedidoDAO.PEDIDO_ELIMINADO);
+        int estado = rs.findColumn(PedidoDAO.PEDIDO_ID_ESTADO_PEDIDO);
+        int version = rs.findColumn(PedidoDAO.PEDIDO_VERSION);
+        MapeadorFila<Envio> envio = envioConAlias(rs);
+
+        return fila -> {
+            Pedido pedido = new Pedido();
+            pedido.setId(fila.getLong(id));
+            pedido.setNumero(fila.getString(numero));
+            pedido.setFecha(fila.getObject(fecha, LocalDate.class));
+            pedido.setClienteNombre(fila.getString(clienteNombre));
+            pedido.setTotal(fila.getDouble(total));
+            pedido.setEliminado(fila.getBoolean(eliminado));
+            pedido.setEstado(EstadoPedido.fromId(fila.getInt(estado)));
+            pedido.setVersion(fila.getInt(version));
+            pedido.setEnvio(envio.mapear(fila));
+            return pedido;
+        };
+    }
+
+    /***
+     * Mapeador del envío unido a un pedido (columnas con prefijo envio_).
+     * Devuelve null si el pedido no tiene envío.
+     */
+    private static MapeadorFila<Envio> envioConAlias(ResultSet rs) throws SQLException {
+        int id = rs.findColumn(PedidoDAO.PEDIDO_ENVIO_ID);
+        int eliminado = rs.findColumn("envio_eliminado");
+        int tracking = rs.findColumn("envio_tracking");
+        int empresa = rs.findColumn("envio_id_empresa");
+        int tipo = rs.findColumn("envio_id_tipo");
+        int costo = rs.findColumn("envio_costo");
+        int fechaDespacho = rs.findColumn("envio_fecha_despacho");
+        int fechaEstimada = rs.findColumn("envio_fecha_estimada");
+        int estado = rs.findColumn("envio_id_estado");
+        int version = rs.findColumn("envio_version");
+
+        return fila -> {
+            long idEnvio = fila.getLong(id);
+            if (fila.wasNull()) {
+                return null;
+            }
+            Envio envio = new Envio();
+            envio.setId(idEnvio);
+            envio.setEliminado(fila.getBoolean(eliminado));
+            envio.setTracking(fila.getString(tracking));
+            envio.setEmpresa(EmpresaEnvio.fromId(fila.getInt(empresa)));
+            envio.setTipo(TipoEnvio.fromId(fila.getInt(tipo)));
+            envio.setCosto(fila.getDouble(costo));
+            envio.setFechaDespacho(fila.getObject(fechaDespacho, LocalDate.class));
+            envio.setFechaEstimada(fila.getObject(fechaEstimada, LocalDate.class));
+            envio.setEstado(EstadoEnvio.fromId(fila.getInt(estado)));
+            envio.setVersion(fila.getInt(version));
+            return envio;
+        };
+    }
+
+    /***
+     * Mapeador de la proyección resumida de envíos.
+     *
+     * @param rs ResultSet sobre el que se usará el mapeador
+     * @return Mapeador de resúmenes de envío
+     * @throws SQLException si falta alguna columna
+     */
+    static MapeadorFila<EnvioResumen> envioResumen(ResultSet rs) throws SQLException {
+        int id = rs.findColumn("id");
+        int empresa = rs.findColumn("id_empresa");
+        int tracking = rs.findColumn("tracking");
+        int estado = rs.findColumn("id_estado_envio");
+
+        return fila -> new EnvioResumen(
+                fila.getLong(id),
+                EmpresaEnvio.fromId(fila.getInt(empresa)),
+                fila.getString(tracking),
+                EstadoEnvio.fromId(fila.getInt(estado)));
+    }
+
+    /***
+     * Mapeador de la proyección resumida de pedidos.
+     *
+     * @param rs ResultSet sobre el que se usará el mapeador
+     * @return Mapeador de resúmenes de pedido
+     * @throws SQLException si falta alguna columna
+     */
+    static MapeadorFila<PedidoResumen> pedidoResumen(ResultSet rs) throws SQLException {
+        int id = rs.findColumn(PedidoDAO.PEDIDO_ID);
+        int clienteNombre = rs.findColumn(PedidoDAO.PEDIDO_CLIENTE_NOMBRE);
+        int numero = rs.findColumn(PedidoDAO.PEDIDO_NUMERO);
+        int estado = rs.findColumn(PedidoDAO.PEDIDO_ID_ESTADO_PEDIDO);
+        int envioTracking = rs.findColumn("envio_tracking");
+        int envioEstado = rs.findColumn("envio_id_estado");
+
+        return fila -> {
+            Long idPedido = fila.getLong(id);
+            String cliente = fila.getString(clienteNombre);
+            String numeroPedido = fila.getString(numero);
+            EstadoPedido estadoPedido = EstadoPedido.fromId(fila.getInt(estado));
+            String tracking = fila.getString(envioTracking);
+            int idEstadoEnvio = fila.getInt(envioEstado);
+            EstadoEnvio estadoEnvio = fila.wasNull() ? null : EstadoEnvio.fromId(idEstadoEnvio);
+            return new PedidoResumen(idPedido, cliente, numeroPedido, estadoPedido, tracking, estadoEnvio);
+        };
+    }
+
+    /***
+     * Mapeador del estado actual de los envíos bloqueados para un cambio de estado masivo.
+     * El estado del pedido es NULL cuando el envío no tiene pedido activo (LEFT JOIN).
+     *
+     * @param rs ResultSet sobre el que se usará el mapeador
+     * @return Mapeador de estados actuales de envío
+     * @throws SQLException si falta alguna columna
+     */
+    static MapeadorFila<EnvioEstadoActual> envioEstadoActual(ResultSet rs) throws SQLException {
+        int id = rs.findColumn("id");
+        int empresa = rs.findColumn("id_empresa");
+        int estado = rs.findColumn("id_estado_envio");
+        int estadoPedido = rs.findColumn("id_estado_pedido");
+
+        return fila -> {
+            Long idEnvio = fila.getLong(id);
+            EmpresaEnvio empresaEnvio = EmpresaEnvio.fromId(fila.getInt(empresa));
+            EstadoEnvio estadoEnvio = EstadoEnvio.fromId(fila.getInt(estado));
+            int idEstadoPedido = fila.getInt(estadoPedido);
+            EstadoPedido estadoDelPedido = fila.wasNull() ? null : EstadoPedido.fromId(idEstadoPedido);
+            return new EnvioEstadoActual(idEnvio, empresaEnvio, estadoEnvio, estadoDelPedido);
+        };
+    }
+}
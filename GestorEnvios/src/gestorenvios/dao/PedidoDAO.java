@@ -2,20 +2,32 @@ package gestorenvios.dao;
 
 import gestorenvios.config.DatabaseConnection;
 import gestorenvios.entities.*;
+import gestorenvios.models.Cambio;
+import gestorenvios.models.PedidoResumen;
+import gestorenvios.models.exceptions.ConflictoVersionException;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 /***
  * DAO para operaciones CRUD y consultas sobre la entidad Pedido.
+ * Cada escritura se registra en la tabla de cambios dentro de la misma transacción.
  */
 public class PedidoDAO implements GenericDAO<Pedido> {
 
+    /*** DAO del registro de cambios, escrito junto con cada alta, modificación y baja. */
+    private final CambioDAO cambioDAO = new CambioDAO();
+
     /*** Campos estándar seleccionados en las consultas de pedido. */
-    private static final String CAMPOS_PEDIDO = " p.id, p.numero, p.fecha, p.cliente_nombre, p.total, p.id_estado_pedido, p.eliminado, p.id_envio,"
+    private static final String CAMPOS_PEDIDO = " p.id, p.numero, p.fecha, p.cliente_nombre, p.total, p.id_estado_pedido, p.eliminado, p.id_envio, p.version,"
             + " e.id AS envio_id, e.tracking AS envio_tracking, e.id_empresa AS envio_id_empresa, e.id_tipo_envio AS envio_id_tipo, "
-            + " e.costo AS envio_costo, e.fecha_despacho AS envio_fecha_despacho, e.fecha_estimada AS envio_fecha_estimada, e.id_estado_envio AS envio_id_estado, e.eliminado AS envio_eliminado ";
+            + " e.costo AS envio_costo, e.fecha_despacho AS envio_fecha_despacho, e.fecha_estimada AS envio_fecha_estimada, e.id_estado_envio AS envio_id_estado, e.eliminado AS envio_eliminado,"
+            + " e.version AS envio_version ";
 
 
     /*** Query base para SELECT de pedido. */
@@ -23,6 +35,9 @@ public class PedidoDAO implements GenericDAO<Pedido> {
 
     /*** Query para contar envíos activos (no eliminados). */
     private static final String COUNT_SQL = "SELECT COUNT(*) AS total FROM Pedido WHERE eliminado = FALSE";
+    /*** Query para contar pedidos activos agrupados por estado. */
+    private static final String COUNT_BY_ESTADO_SQL = "SELECT id_estado_pedido, COUNT(*) AS total FROM Pedido"
+            + " WHERE eliminado = FALSE GROUP BY id_estado_pedido";
     private static final String COUNT_SQL_BY_NAME = "SELECT COUNT(*) AS total FROM Pedido p"
             + " WHERE p.eliminado = FALSE AND (UPPER(p.cliente_nombre) LIKE ?)";
 
@@ -30,11 +45,25 @@ public class PedidoDAO implements GenericDAO<Pedido> {
     private static final String INSERT_SQL = "INSERT INTO Pedido (numero, fecha, cliente_nombre, total, id_estado_pedido, id_envio) VALUES (?, ?, ?, ?, ?, ?)";
 
 
-    /*** Query para actualizar un pedido existente por ID. */
-    private static final String UPDATE_SQL = "UPDATE Pedido SET numero = ?, fecha = ?, cliente_nombre = ?, total = ?, id_estado_pedido = ?, id_envio = ? WHERE id = ?";
+    /***
+     * Query para actualizar un pedido existente por ID, solo si conserva la versión leída
+     * (o sin control si no se conoce la versión). Incrementa la versión.
+     */
+    private static final String UPDATE_SQL = "UPDATE Pedido SET numero = ?, fecha = ?, cliente_nombre = ?, total = ?, id_estado_pedido = ?, id_envio = ?,"
+            + " version = version + 1 WHERE id = ? AND (? IS NULL OR version = ?)";
+
+    /***
+     * Query para asignar un envío a un pedido solo si sigue activo y sin envío: la verificación
+     * y la asignación se resuelven en la misma sentencia.
+     */
+    private static final String ASIGNAR_ENVIO_SQL = "UPDATE Pedido SET id_envio = ?, id_estado_pedido = ?, version = version + 1"
+            + " WHERE id = ? AND id_envio IS NULL AND eliminado = FALSE";
 
     /*** Query para eliminación lógica de un envío. */
-    private static final String DELETE_SQL = "UPDATE Pedido SET eliminado = TRUE WHERE id = ?";
+    private static final String DELETE_SQL = "UPDATE Pedido SET eliminado = TRUE, version = version + 1 WHERE id = ?";
+
+    /*** Query para leer la versión actual de un pedido, al diagnosticar una actualización rechazada. */
+    private static final String SELECT_VERSION_SQL = "SELECT version FROM Pedido WHERE id = ?";
 
     /***
      * Query para obtener pedido por ID. LEFT JOIN con envio. Solo retorna pedidos activos (eliminado=FALSE). */
@@ -42,18 +71,91 @@ public class PedidoDAO implements GenericDAO<Pedido> {
             + " LEFT JOIN Envio e ON p.id_envio = e.id"
             + " WHERE p.eliminado = FALSE AND p.id = ?";
 
+    /*** Query para leer y bloquear un pedido activo, y su envío, por ID dentro de una transacción. */
+    private static final String SELECT_BY_ID_FOR_UPDATE_SQL = SELECT_BY_ID_SQL + " FOR UPDATE";
+
+    /*** Query para leer y bloquear el pedido activo de un envío, y el envío, dentro de una transacción. */
+    private static final String SELECT_BY_ID_ENVIO_FOR_UPDATE_SQL = QUERY_BASE
+            + " LEFT JOIN Envio e ON p.id_envio = e.id"
+            + " WHERE p.eliminado = FALSE AND p.id_envio = ? FOR UPDATE";
+
     /*** Query para listar pedidos activos con paginación. */
     private static final String SELECT_ALL_SQL = QUERY_BASE
             + " LEFT JOIN Envio e ON p.id_envio = e.id"
             + " WHERE p.eliminado = FALSE"
             + " LIMIT ? OFFSET ?";
 
+    /*** Query para listar pedidos activos por cursor (keyset): pedidos con ID mayor al último visto. */
+    private static final String SELECT_PAGE_AFTER_SQL = QUERY_BASE
+            + " LEFT JOIN Envio e ON p.id_envio = e.id"
+            + " WHERE p.eliminado = FALSE AND p.id > ?"
+            + " ORDER BY p.id"
+            + " LIMIT ?";
+
     /*** Query de pedidos activos búsqueda por cliente_nombre con LIKE y UPPER para permitir búsqueda flexible. */
     private static final String SEARCH_BY_NAME_SQL = QUERY_BASE
             + " LEFT JOIN Envio e ON p.id_envio = e.id"
             + " WHERE p.eliminado = FALSE AND (UPPER(p.cliente_nombre) LIKE ?)"
             + " LIMIT ? OFFSET ?";
 
+    /*** Query de búsqueda por cliente_nombre paginada por cursor (keyset). */
+    private static final String SEARCH_BY_NAME_AFTER_SQL = QUERY_BASE
+            + " LEFT JOIN Envio e ON p.id_envio = e.id"
+            + " WHERE p.eliminado = FALSE AND (UPPER(p.cliente_nombre) LIKE ?) AND p.id > ?"
+            + " ORDER BY p.id"
+            + " LIMIT ?";
+
+    /*** Query para recorrer todos los pedidos activos con su envío, en orden de ID. */
+    private static final String SELECT_ALL_STREAM_SQL = QUERY_BASE
+            + " LEFT JOIN Envio e ON p.id_envio = e.id"
+            + " WHERE p.eliminado = FALSE"
+            + " ORDER BY p.id";
+
+    /*** Query para recorrer los pedidos activos de un rango de IDs [desde, hasta), en orden de ID. */
+    private static final String SELECT_RANGE_SQL = QUERY_BASE
+            + " LEFT JOIN Envio e ON p.id_envio = e.id"
+            + " WHERE p.eliminado = FALSE AND p.id >= ? AND p.id < ?"
+            + " ORDER BY p.id";
+
+    /*** Query para obtener el menor y el mayor ID de los pedidos activos. */
+    private static final String SELECT_RANGO_IDS_SQL = "SELECT MIN(id) AS minimo, MAX(id) AS maximo FROM Pedido"
+            + " WHERE eliminado = FALSE";
+
+    /*** Query para recorrer el nombre de cliente de todos los pedidos activos. */
+    private static final String SELECT_CLIENTES_SQL = "SELECT p.id, p.cliente_nombre FROM Pedido p"
+            + " WHERE p.eliminado = FALSE";
+
+    /*** Query para recorrer los números de los pedidos activos. */
+    private static final String SELECT_NUMEROS_SQL = "SELECT p.numero FROM Pedido p"
+            + " WHERE p.eliminado = FALSE";
+
+    /*** Prefijo de la query para buscar pedidos activos por una lista de IDs (se completa con el IN). */
+    private static final String SELECT_BY_IDS_SQL = QUERY_BASE
+            + " LEFT JOIN Envio e ON p.id_envio = e.id"
+            + " WHERE p.eliminado = FALSE AND p.id IN (";
+
+    /*** Query base para la proyección resumida de pedidos: solo las columnas que muestran los listados. */
+    private static final String QUERY_RESUMEN_BASE = "SELECT p.id, p.cliente_nombre, p.numero, p.id_estado_pedido,"
+            + " e.tracking AS envio_tracking, e.id_estado_envio AS envio_id_estado"
+            + " FROM Pedido p"
+            + " LEFT JOIN Envio e ON p.id_envio = e.id AND e.eliminado = FALSE";
+
+    /*** Query para listar resúmenes de pedidos activos por cursor (keyset). */
+    private static final String SELECT_RESUMEN_PAGE_AFTER_SQL = QUERY_RESUMEN_BASE
+            + " WHERE p.eliminado = FALSE AND p.id > ?"
+            + " ORDER BY p.id"
+            + " LIMIT ?";
+
+    /*** Query de resúmenes de pedidos activos por cliente_nombre paginada por cursor (keyset). */
+    private static final String SEARCH_RESUMEN_BY_NAME_AFTER_SQL = QUERY_RESUMEN_BASE
+            + " WHERE p.eliminado = FALSE AND (UPPER(p.cliente_nombre) LIKE ?) AND p.id > ?"
+            + " ORDER BY p.id"
+            + " LIMIT ?";
+
+    /*** Prefijo de la query de resúmenes de pedidos activos por una lista de IDs (se completa con el IN). */
+    private static final String SELECT_RESUMEN_BY_IDS_SQL = QUERY_RESUMEN_BASE
+            + " WHERE p.eliminado = FALSE AND p.id IN (";
+
     /*** Query para buscar un pedido activo por número de pedido. */
     private static final String SEARCH_BY_NUMERO_SQL = QUERY_BASE
             + " LEFT JOIN Envio e ON p.id_envio = e.id"
@@ -64,8 +166,8 @@ public class PedidoDAO implements GenericDAO<Pedido> {
             + " LEFT JOIN Envio e ON p.id_envio = e.id"
             + " WHERE p.eliminado = 0 AND e.tracking = ?";
 
-    /*** Query para buscar el último número de pedido. */
-    private static final String SEARCH_MAX_NUMERO_PEDIDO = "SELECT MAX(numero) AS numero FROM Pedido";
+    /*** Cantidad máxima de filas enviadas en cada executeBatch de una inserción en lote. */
+    private static final int TAMANIO_LOTE_INSERCION = 1_000;
 
     /*** Constantes de nombres de columnas en ResultSet. */
     public static final String PEDIDO_ID = "id";
@@ -75,6 +177,7 @@ public class PedidoDAO implements GenericDAO<Pedido> {
     public static final String PEDIDO_TOTAL = "total";
     public static final String PEDIDO_ELIMINADO = "eliminado";
     public static final String PEDIDO_ID_ESTADO_PEDIDO = "id_estado_pedido";
+    public static final String PEDIDO_VERSION = "version";
     public static final String PEDIDO_ENVIO_ID = "envio_id";
 
 
@@ -88,19 +191,60 @@ public class PedidoDAO implements GenericDAO<Pedido> {
      */
     @Override
     public void insertarTx(Pedido pedido, Connection conn) throws SQLException {
-        PreparedStatement pstmt = conn.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS);
-        setPedidoParameters(pstmt, pedido);
-        pstmt.executeUpdate();
-        setGeneratedId(pstmt, pedido);
+        try (PreparedStatement pstmt = conn.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+            setPedidoParameters(pstmt, pedido);
+            pstmt.executeUpdate();
+            setGeneratedId(pstmt, pedido);
+        }
+        cambioDAO.registrarTx(Cambio.de(Cambio.Entidad.PEDIDO, pedido.getId(), Cambio.Operacion.ALTA,
+                pedido.getNumero()), conn);
+    }
+
+    /**
+     * Inserta un lote de pedidos dentro de una transacción externa usando addBatch/executeBatch.
+     * Con rewriteBatchedStatements el driver envía cada tramo como un único INSERT de varias filas.
+     * Los IDs generados se asignan en el mismo orden de la lista.
+     * No gestiona la conexión, debe ser proporcionada por el invocador.
+     *
+     * @param pedidos Pedidos a insertar
+     * @param conn Conexión transaccional (NO se cierra en este método)
+     * @throws SQLException Si falla la inserción o no se obtienen todos los IDs generados
+     */
+    @Override
+    public void insertarLoteTx(List<Pedido> pedidos, Connection conn) throws SQLException {
+        if (pedidos == null || pedidos.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement pstmt = conn.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+            for (int desde = 0; desde < pedidos.size(); desde += TAMANIO_LOTE_INSERCION) {
+                List<Pedido> tramo = pedidos.subList(desde, Math.min(desde + TAMANIO_LOTE_INSERCION, pedidos.size()));
+                for (Pedido pedido : tramo) {
+                    setPedidoParameters(pstmt, pedido);
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+                setGeneratedIds(pstmt, tramo);
+            }
+            cambioDAO.registrarLoteTx(pedidos.stream()
+                    .map(pedido -> Cambio.de(Cambio.Entidad.PEDIDO, pedido.getId(), Cambio.Operacion.ALTA,
+                            pedido.getNumero()))
+                    .toList(), conn);
+        } catch (SQLException e) {
+            throw new SQLException("Error al insertar el lote de pedidos: " + e.getMessage(), e);
+        }
     }
 
     /**
      * Actualiza un envío existente dentro de una transacción externa.
      * No gestiona la conexión, debe ser proporcionada por el invocador.
      *
+     * Si el pedido tiene versión, la actualización solo se aplica cuando la fila conserva esa versión;
+     * al aplicarse, la versión del pedido se incrementa.
+     *
      * @param pedido Pedido a actualizar
      * @param conn   Conexión transaccional
      * @throws SQLException Si falla la actualización
+     * @throws ConflictoVersionException si otra operación modificó el pedido después de leerlo
      */
     @Override
     public void actualizarTx(Pedido pedido, Connection conn) throws SQLException {
@@ -123,13 +267,54 @@ public class PedidoDAO implements GenericDAO<Pedido> {
             }
 
             pstmt.setLong(7, pedido.getId());
+            setVersionEsperada(pstmt, 8, pedido.getVersion());
 
             int rowsAffected = pstmt.executeUpdate();
 
             if (rowsAffected == 0) {
-                throw new SQLException("No se pudo actualizar el pedido ID: " + pedido.getId() + ".");
+                Integer versionActual = buscarVersionTx(pedido.getId(), conn);
+                if (versionActual == null) {
+                    throw new SQLException("No se pudo actualizar el pedido ID: " + pedido.getId() + ".");
+                }
+                throw new ConflictoVersionException("El pedido " + pedido.getNumero()
+                        + " fue modificado por otra operación (versión leída " + pedido.getVersion()
+                        + ", versión actual " + versionActual + "). Vuelva a consultarlo e intente nuevamente.");
+            }
+        }
+        if (pedido.getVersion() != null) {
+            pedido.setVersion(pedido.getVersion() + 1);
+        }
+        cambioDAO.registrarTx(Cambio.de(Cambio.Entidad.PEDIDO, pedido.getId(), Cambio.Operacion.MODIFICACION,
+                pedido.getNumero()), conn);
+    }
+
+    /**
+     * Asigna un envío a un pedido activo que todavía no tiene envío y le cambia el estado,
+     * con una única sentencia condicional dentro de una transacción externa.
+     * No usa la versión del pedido: la condición sobre id_envio es la que evita asignar dos envíos.
+     *
+     * @param pedido      Pedido al que se asigna el envío
+     * @param idEnvio     ID del envío a asignar
+     * @param nuevoEstado Estado del pedido luego de la asignación
+     * @param conn        Conexión transaccional
+     * @return true si se asignó; false si el pedido ya tenía envío, fue eliminado o no existe
+     * @throws SQLException Si falla la actualización
+     */
+    public boolean asignarEnvioTx(Pedido pedido, Long idEnvio, EstadoPedido nuevoEstado, Connection conn) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(ASIGNAR_ENVIO_SQL)) {
+            pstmt.setLong(1, idEnvio);
+            pstmt.setInt(2, nuevoEstado.getId());
+            pstmt.setLong(3, pedido.getId());
+            if (pstmt.executeUpdate() == 0) {
+                return false;
             }
         }
+        cambioDAO.registrarTx(Cambio.de(Cambio.Entidad.PEDIDO, pedido.getId(), Cambio.Operacion.MODIFICACION,
+                pedido.getNumero()), conn);
+        if (pedido.getVersion() != null) {
+            pedido.setVersion(pedido.getVersion() + 1);
+        }
+        return true;
     }
 
     /**
@@ -149,10 +334,13 @@ public class PedidoDAO implements GenericDAO<Pedido> {
                 throw new SQLException("No se encontró pedido (Tx) con ID: " + id + ".");
             }
         }
+        cambioDAO.registrarTx(Cambio.de(Cambio.Entidad.PEDIDO, id, Cambio.Operacion.BAJA, null), conn);
     }
 
     /**
      * Busca un pedido por su ID, incluyendo su envío asociado.
+     * Lee siempre de la base principal, no de las réplicas: carga la caché por ID y relee la versión
+     * vigente al reintentar un conflicto de versión.
      *
      * @param id ID del pedido a buscar
      * @return Pedido encontrado con su envío, o null si no existe o está
@@ -169,7 +357,7 @@ public class PedidoDAO implements GenericDAO<Pedido> {
 
             try (ResultSet rs = pstmt.executeQuery()) {
                 if (rs.next()) {
-                    return toPedido(rs);
+                    return Mapeadores.pedido(rs).mapear(rs);
                 }
             }
         } catch (SQLException e) {
@@ -178,6 +366,44 @@ public class PedidoDAO implements GenericDAO<Pedido> {
         return null;
     }
 
+    /**
+     * Busca un pedido activo por su ID dentro de una transacción externa, bloqueando la fila
+     * y la de su envío hasta el fin de la transacción (SELECT ... FOR UPDATE).
+     *
+     * @param id   ID del pedido a buscar
+     * @param conn Conexión transaccional
+     * @return Pedido encontrado con su envío, o null si no existe o está eliminado
+     * @throws SQLException Si ocurre un error en la consulta
+     */
+    public Pedido buscarPorIdTx(Long id, Connection conn) throws SQLException {
+        return buscarUnoTx(SELECT_BY_ID_FOR_UPDATE_SQL, id, conn);
+    }
+
+    /**
+     * Busca el pedido activo asociado a un envío dentro de una transacción externa, bloqueando
+     * la fila del pedido y la del envío hasta el fin de la transacción (SELECT ... FOR UPDATE).
+     *
+     * @param idEnvio ID del envío
+     * @param conn    Conexión transaccional
+     * @return Pedido encontrado con su envío, o null si el envío no tiene pedido activo
+     * @throws SQLException Si ocurre un error en la consulta
+     */
+    public Pedido buscarPorIdEnvioTx(Long idEnvio, Connection conn) throws SQLException {
+        return buscarUnoTx(SELECT_BY_ID_ENVIO_FOR_UPDATE_SQL, idEnvio, conn);
+    }
+
+    private static Pedido buscarUnoTx(String sql, Long id, Connection conn) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setLong(1, id);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return Mapeadores.pedido(rs).mapear(rs);
+                }
+            }
+        }
+        return null;
+    }
+
     /**
      * Busca todos los pedidos activos con paginación, incluyendo sus envíos asociados.
      *
@@ -195,15 +421,52 @@ public class PedidoDAO implements GenericDAO<Pedido> {
 
         long offset = (numeroPagina - 1L) * registrosPorPagina;
 
-        try (Connection conn = DatabaseConnection.getConnection();
+        try (Connection conn = DatabaseConnection.obtenerConexionLectura();
              PreparedStatement pstmt = conn.prepareStatement(SELECT_ALL_SQL)) {
 
             pstmt.setLong(1, registrosPorPagina);
             pstmt.setLong(2, offset);
 
             try (ResultSet rs = pstmt.executeQuery()) {
+                MapeadorFila<Pedido> mapeador = Mapeadores.pedido(rs);
+                while (rs.next()) {
+                    pedidos.add(mapeador.mapear(rs));
+                }
+            }
+        } catch (SQLException e) {
+            throw new SQLException("Error al listar pedidos: " + e.getMessage(), e);
+        }
+
+        return pedidos;
+    }
+
+    /**
+     * Busca pedidos activos paginando por cursor (keyset): devuelve los pedidos con ID mayor
+     * al último visto, ordenados por ID. A diferencia de LIMIT/OFFSET, el costo no crece
+     * con la profundidad de la página.
+     *
+     * @param ultimoId ID del último pedido de la página anterior (null para la primera página)
+     * @param cantidad Número de registros por página (si es null, usa 50 por defecto)
+     * @return Lista de pedidos activos con sus envíos (puede estar vacía)
+     * @throws SQLException si ocurre un error en la consulta
+     */
+    @Override
+    public List<Pedido> buscarTodosDesde(Long ultimoId, Long cantidad) throws SQLException {
+        List<Pedido> pedidos = new ArrayList<>();
+
+        long registrosPorPagina = (cantidad != null && cantidad > 0L) ? cantidad : 50L;
+        long desdeId = ultimoId != null ? ultimoId : 0L;
+
+        try (Connection conn = DatabaseConnection.obtenerConexionLectura();
+             PreparedStatement pstmt = conn.prepareStatement(SELECT_PAGE_AFTER_SQL)) {
+
+            pstmt.setLong(1, desdeId);
+            pstmt.setLong(2, registrosPorPagina);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                MapeadorFila<Pedido> mapeador = Mapeadores.pedido(rs);
                 while (rs.next()) {
-                    pedidos.add(toPedido(rs));
+                    pedidos.add(mapeador.mapear(rs));
                 }
             }
         } catch (SQLException e) {
@@ -231,7 +494,7 @@ public class PedidoDAO implements GenericDAO<Pedido> {
 
         long offset = (numeroPagina - 1L) * registrosPorPagina;
 
-        try (Connection conn = DatabaseConnection.getConnection();
+        try (Connection conn = DatabaseConnection.obtenerConexionLectura();
              PreparedStatement pstmt = conn.prepareStatement(SEARCH_BY_NAME_SQL)) {
 
             String searchPattern = "%" + nombre.toUpperCase() + "%";
@@ -241,8 +504,46 @@ public class PedidoDAO implements GenericDAO<Pedido> {
             pstmt.setLong(3, offset);
 
             try (ResultSet rs = pstmt.executeQuery()) {
+                MapeadorFila<Pedido> mapeador = Mapeadores.pedido(rs);
+                while (rs.next()) {
+                    pedidos.add(mapeador.mapear(rs));
+                }
+            }
+        } catch (SQLException e) {
+            throw new SQLException("Error al buscar pedidos por nombre de cliente: " + e.getMessage(), e);
+        }
+        return pedidos;
+    }
+
+    /**
+     * Busca pedidos por nombre de cliente paginando por cursor (keyset).
+     *
+     * @param nombre   Texto a buscar en el nombre del cliente (no puede estar vacío)
+     * @param ultimoId ID del último pedido de la página anterior (null para la primera página)
+     * @param cantidad Número de registros por página (si es null, usa 50 por defecto)
+     * @return Lista de pedidos que coinciden con el filtro (puede estar vacía)
+     * @throws SQLException si ocurre un error en la consulta
+     */
+    public List<Pedido> buscarPorClienteNombreDesde(String nombre, Long ultimoId, Long cantidad) throws SQLException {
+        if (nombre == null || nombre.trim().isEmpty()) {
+            throw new IllegalArgumentException("El Nombre del Cliente no puede estar vacío");
+        }
+        List<Pedido> pedidos = new ArrayList<>();
+
+        long registrosPorPagina = (cantidad != null && cantidad > 0L) ? cantidad : 50L;
+        long desdeId = ultimoId != null ? ultimoId : 0L;
+
+        try (Connection conn = DatabaseConnection.obtenerConexionLectura();
+             PreparedStatement pstmt = conn.prepareStatement(SEARCH_BY_NAME_AFTER_SQL)) {
+
+            pstmt.setString(1, "%" + nombre.toUpperCase() + "%");
+            pstmt.setLong(2, desdeId);
+            pstmt.setLong(3, registrosPorPagina);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                MapeadorFila<Pedido> mapeador = Mapeadores.pedido(rs);
                 while (rs.next()) {
-                    pedidos.add(toPedido(rs));
+                    pedidos.add(mapeador.mapear(rs));
                 }
             }
         } catch (SQLException e) {
@@ -251,6 +552,292 @@ public class PedidoDAO implements GenericDAO<Pedido> {
         return pedidos;
     }
 
+    /**
+     * Recorre todos los pedidos activos, con su envío asociado, en streaming.
+     * El ResultSet es de solo avance y el driver entrega las filas de a una, por lo que
+     * la memoria usada no depende del tamaño de la tabla.
+     *
+     * @param consumidor Recibe cada pedido mapeado
+     * @throws SQLException si ocurre un error en la consulta
+     */
+    public void recorrerActivos(Consumer<Pedido> consumidor) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(SELECT_ALL_STREAM_SQL,
+                     ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+
+            pstmt.setFetchSize(Integer.MIN_VALUE);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                MapeadorFila<Pedido> mapeador = Mapeadores.pedido(rs);
+                while (rs.next()) {
+                    consumidor.accept(mapeador.mapear(rs));
+                }
+            }
+        } catch (SQLException e) {
+            throw new SQLException("Error al recorrer pedidos: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Recorre en streaming los pedidos activos con ID en el rango [desdeId, hastaId), en orden de ID.
+     * Permite dividir un recorrido completo de la tabla en particiones independientes.
+     *
+     * @param desdeId Primer ID del rango (inclusive)
+     * @param hastaId Último ID del rango (exclusive)
+     * @param consumidor Recibe cada pedido mapeado
+     * @throws SQLException si ocurre un error en la consulta
+     */
+    @Override
+    public void recorrerRango(long desdeId, long hastaId, Consumer<Pedido> consumidor) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(SELECT_RANGE_SQL,
+                     ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+
+            pstmt.setFetchSize(Integer.MIN_VALUE);
+            pstmt.setLong(1, desdeId);
+            pstmt.setLong(2, hastaId);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                MapeadorFila<Pedido> mapeador = Mapeadores.pedido(rs);
+                while (rs.next()) {
+                    consumidor.accept(mapeador.mapear(rs));
+                }
+            }
+        } catch (SQLException e) {
+            throw new SQLException("Error al recorrer pedidos por rango de IDs: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Obtiene el menor y el mayor ID de los pedidos activos.
+     *
+     * @return Arreglo {minimo, maximo}, o null si no hay pedidos activos
+     * @throws SQLException si ocurre un error en la consulta
+     */
+    @Override
+    public long[] buscarRangoIds() throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(SELECT_RANGO_IDS_SQL);
+             ResultSet rs = pstmt.executeQuery()) {
+            if (rs.next()) {
+                long minimo = rs.getLong("minimo");
+                if (!rs.wasNull()) {
+                    return new long[]{minimo, rs.getLong("maximo")};
+                }
+            }
+        } catch (SQLException e) {
+            throw new SQLException("Error al obtener el rango de IDs de pedidos: " + e.getMessage(), e);
+        }
+        return null;
+    }
+
+    /**
+     * Recorre el ID y el nombre de cliente de todos los pedidos activos en streaming,
+     * sin materializar el resultado en memoria.
+     *
+     * @param consumidor Recibe el ID y el nombre de cliente de cada pedido
+     * @throws SQLException si ocurre un error en la consulta
+     */
+    public void recorrerClientes(BiConsumer<Long, String> consumidor) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(SELECT_CLIENTES_SQL,
+                     ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+
+            pstmt.setFetchSize(Integer.MIN_VALUE);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    consumidor.accept(rs.getLong(PEDIDO_ID), rs.getString(PEDIDO_CLIENTE_NOMBRE));
+                }
+            }
+        } catch (SQLException e) {
+            throw new SQLException("Error al recorrer clientes de pedidos: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Recorre los números de todos los pedidos activos en streaming,
+     * sin materializar el resultado en memoria.
+     *
+     * @param consumidor Recibe el número de cada pedido
+     * @throws SQLException si ocurre un error en la consulta
+     */
+    public void recorrerNumeros(Consumer<String> consumidor) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(SELECT_NUMEROS_SQL,
+                     ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+
+            pstmt.setFetchSize(Integer.MIN_VALUE);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    consumidor.accept(rs.getString(PEDIDO_NUMERO));
+                }
+            }
+        } catch (SQLException e) {
+            throw new SQLException("Error al recorrer números de pedidos: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Busca pedidos activos por una lista de IDs, ordenados por ID.
+     * La cantidad de parámetros del IN se redondea a una potencia de dos (repitiendo el último ID)
+     * para que la caché de sentencias reutilice un número acotado de textos SQL.
+     *
+     * @param ids IDs de los pedidos a buscar
+     * @return Lista de pedidos activos encontrados (puede estar vacía)
+     * @throws SQLException si ocurre un error en la consulta
+     */
+    public List<Pedido> buscarPorIds(long[] ids) throws SQLException {
+        List<Pedido> pedidos = new ArrayList<>();
+        if (ids == null || ids.length == 0) {
+            return pedidos;
+        }
+
+        int parametros = parametrosIn(ids.length);
+        String sql = SELECT_BY_IDS_SQL + "?" + ", ?".repeat(parametros - 1) + ") ORDER BY p.id";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            setIdsParameters(pstmt, ids, parametros);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                MapeadorFila<Pedido> mapeador = Mapeadores.pedido(rs);
+                while (rs.next()) {
+                    pedidos.add(mapeador.mapear(rs));
+                }
+            }
+        } catch (SQLException e) {
+            throw new SQLException("Error al buscar pedidos por IDs: " + e.getMessage(), e);
+        }
+        return pedidos;
+    }
+
+    /**
+     * Lista resúmenes de pedidos activos paginando por cursor (keyset).
+     * Solo lee las columnas que muestran los listados, sin construir las entidades completas.
+     *
+     * @param ultimoId ID del último pedido de la página anterior (null para la primera página)
+     * @param cantidad Número de registros por página (si es null, usa 50 por defecto)
+     * @return Lista de resúmenes de la página solicitada (puede estar vacía)
+     * @throws SQLException si ocurre un error en la consulta
+     */
+    public List<PedidoResumen> buscarResumenesDesde(Long ultimoId, Long cantidad) throws SQLException {
+        List<PedidoResumen> resumenes = new ArrayList<>();
+
+        long registrosPorPagina = (cantidad != null && cantidad > 0L) ? cantidad : 50L;
+        long desdeId = ultimoId != null ? ultimoId : 0L;
+
+        try (Connection conn = DatabaseConnection.obtenerConexionLectura();
+             PreparedStatement pstmt = conn.prepareStatement(SELECT_RESUMEN_PAGE_AFTER_SQL)) {
+            pstmt.setLong(1, desdeId);
+            pstmt.setLong(2, registrosPorPagina);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                MapeadorFila<PedidoResumen> mapeador = Mapeadores.pedidoResumen(rs);
+                while (rs.next()) {
+                    resumenes.add(mapeador.mapear(rs));
+                }
+            }
+        } catch (SQLException e) {
+            throw new SQLException("Error al listar pedidos: " + e.getMessage(), e);
+        }
+        return resumenes;
+    }
+
+    /**
+     * Busca resúmenes de pedidos activos por nombre de cliente paginando por cursor (keyset).
+     *
+     * @param nombre Texto a buscar en el nombre del cliente
+     * @param ultimoId ID del último pedido de la página anterior (null para la primera página)
+     * @param cantidad Número de registros por página (si es null, usa 50 por defecto)
+     * @return Lista de resúmenes de la página solicitada (puede estar vacía)
+     * @throws SQLException si ocurre un error en la consulta
+     */
+    public List<PedidoResumen> buscarResumenesPorClienteNombreDesde(String nombre, Long ultimoId, Long cantidad)
+            throws SQLException {
+        List<PedidoResumen> resumenes = new ArrayList<>();
+
+        long registrosPorPagina = (cantidad != null && cantidad > 0L) ? cantidad : 50L;
+        long desdeId = ultimoId != null ? ultimoId : 0L;
+
+        try (Connection conn = DatabaseConnection.obtenerConexionLectura();
+             PreparedStatement pstmt = conn.prepareStatement(SEARCH_RESUMEN_BY_NAME_AFTER_SQL)) {
+            pstmt.setString(1, "%" + nombre.toUpperCase() + "%");
+            pstmt.setLong(2, desdeId);
+            pstmt.setLong(3, registrosPorPagina);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                MapeadorFila<PedidoResumen> mapeador = Mapeadores.pedidoResumen(rs);
+                while (rs.next()) {
+                    resumenes.add(mapeador.mapear(rs));
+                }
+            }
+        } catch (SQLException e) {
+            throw new SQLException("Error al buscar pedidos por nombre de cliente: " + e.getMessage(), e);
+        }
+        return resumenes;
+    }
+
+    /**
+     * Busca resúmenes de pedidos activos por una lista de IDs, ordenados por ID.
+     *
+     * @param ids IDs de los pedidos a buscar
+     * @return Lista de resúmenes encontrados (puede estar vacía)
+     * @throws SQLException si ocurre un error en la consulta
+     */
+    public List<PedidoResumen> buscarResumenesPorIds(long[] ids) throws SQLException {
+        List<PedidoResumen> resumenes = new ArrayList<>();
+        if (ids == null || ids.length == 0) {
+            return resumenes;
+        }
+
+        int parametros = parametrosIn(ids.length);
+        String sql = SELECT_RESUMEN_BY_IDS_SQL + "?" + ", ?".repeat(parametros - 1) + ") ORDER BY p.id";
+
+        try (Connection conn = DatabaseConnection.obtenerConexionLectura();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            setIdsParameters(pstmt, ids, parametros);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                MapeadorFila<PedidoResumen> mapeador = Mapeadores.pedidoResumen(rs);
+                while (rs.next()) {
+                    resumenes.add(mapeador.mapear(rs));
+                }
+            }
+        } catch (SQLException e) {
+            throw new SQLException("Error al buscar pedidos por IDs: " + e.getMessage(), e);
+        }
+        return resumenes;
+    }
+
+    /**
+     * Redondea la cantidad de parámetros de un IN a la potencia de dos siguiente.
+     *
+     * @param cantidadIds Cantidad de IDs a buscar
+     * @return Cantidad de parámetros del IN
+     */
+    private static int parametrosIn(int cantidadIds) {
+        int parametros = Integer.highestOneBit(cantidadIds);
+        return parametros < cantidadIds ? parametros << 1 : parametros;
+    }
+
+    /**
+     * Setea los IDs de un IN, completando los parámetros sobrantes con el último ID.
+     *
+     * @param pstmt PreparedStatement a configurar
+     * @param ids IDs a buscar
+     * @param parametros Cantidad de parámetros del IN
+     * @throws SQLException si ocurre un error al setear los parámetros
+     */
+    private static void setIdsParameters(PreparedStatement pstmt, long[] ids, int parametros) throws SQLException {
+        for (int i = 0; i < parametros; i++) {
+            pstmt.setLong(i + 1, ids[Math.min(i, ids.length - 1)]);
+        }
+    }
+
     /**
      * Busca un pedido por Número.
      *
@@ -270,7 +857,7 @@ public class PedidoDAO implements GenericDAO<Pedido> {
 
             try (ResultSet rs = pstmt.executeQuery()) {
                 if (rs.next()) {
-                    return toPedido(rs);
+                    return Mapeadores.pedido(rs).mapear(rs);
                 }
             }
         } catch (SQLException e) {
@@ -282,6 +869,8 @@ public class PedidoDAO implements GenericDAO<Pedido> {
 
     /**
      * Busca un pedido por código de tracking de su envío.
+     * Lee siempre de la base principal, no de las réplicas: carga la caché por tracking, que de otro
+     * modo podría guardar una fila que la réplica todavía no actualizó.
      *
      * @param tracking Código de tracking (ej: "TRK-999")
      * @return El Pedido asociado a ese tracking, o null si no existe.
@@ -300,7 +889,7 @@ public class PedidoDAO implements GenericDAO<Pedido> {
             try (ResultSet rs = pstmt.executeQuery()) {
                 if (rs.next()) {
 
-                    return toPedido(rs);
+                    return Mapeadores.pedido(rs).mapear(rs);
                 }
             }
         } catch (SQLException e) {
@@ -348,57 +937,57 @@ public class PedidoDAO implements GenericDAO<Pedido> {
         try (ResultSet generatedKeys = pstmt.getGeneratedKeys()) {
             if (generatedKeys.next()) {
                 pedido.setId(generatedKeys.getLong(1));
+                pedido.setVersion(0);
             }
         }
     }
 
     /**
-     * Mapea un ResultSet a un objeto Pedido, incluyendo su envío asociado.
-     *
-     * @param rs ResultSet del registro a mapear
-     * @return Pedido mapeado
-     * @throws SQLException Si ocurre un error al leer el ResultSet
+     * Asigna los parámetros de versión esperada de un UPDATE condicionado ("? IS NULL OR version = ?").
      */
-    private Pedido toPedido(ResultSet rs) throws SQLException {
-
-        Pedido pedido = new Pedido();
-        pedido.setId(rs.getLong(PEDIDO_ID));
-        pedido.setNumero(rs.getString(PEDIDO_NUMERO));
-        pedido.setFecha(rs.getDate(PEDIDO_FECHA).toLocalDate());
-        pedido.setClienteNombre(rs.getString(PEDIDO_CLIENTE_NOMBRE));
-        pedido.setTotal(rs.getDouble(PEDIDO_TOTAL));
-        pedido.setEliminado(rs.getBoolean(PEDIDO_ELIMINADO));
-
-        int idEstadoPedido = rs.getInt(PEDIDO_ID_ESTADO_PEDIDO);
-        pedido.setEstado(EstadoPedido.fromId(idEstadoPedido));
-
-        long idEnvio = rs.getLong(PEDIDO_ENVIO_ID);
-
-        if (rs.wasNull()) {
-            pedido.setEnvio(null);
+    private static void setVersionEsperada(PreparedStatement pstmt, int indice, Integer version) throws SQLException {
+        if (version != null) {
+            pstmt.setInt(indice, version);
+            pstmt.setInt(indice + 1, version);
         } else {
-            Envio envio = EnvioDAO.toEnvio(rs, idEnvio);
-            pedido.setEnvio(envio);
+            pstmt.setNull(indice, java.sql.Types.INTEGER);
+            pstmt.setNull(indice + 1, java.sql.Types.INTEGER);
         }
-        return pedido;
     }
 
     /**
-     * Obtiene el último número de pedido insertado en una transacción.
+     * Lee la versión actual de un pedido dentro de la transacción.
      *
-     * @param conn Conexión transaccional
-     * @return Último número de pedido
-     * @throws SQLException Si hay error de BD
+     * @return Versión actual, o null si el pedido no existe
      */
-    public String buscarUltimoNumeroPedidoTx(Connection conn) throws SQLException {
-        try (PreparedStatement pstmt = conn.prepareStatement(SEARCH_MAX_NUMERO_PEDIDO)) {
+    private static Integer buscarVersionTx(Long id, Connection conn) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(SELECT_VERSION_SQL)) {
+            pstmt.setLong(1, id);
             try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getString(PEDIDO_NUMERO);
-                }
+                return rs.next() ? rs.getInt(PEDIDO_VERSION) : null;
             }
         }
-        return null;
+    }
+
+    /**
+     * Recupera los IDs autogenerados de un lote y los asigna en orden.
+     *
+     * @param pstmt PreparedStatement ejecutado en lote
+     * @param pedidos Pedidos del lote, en el orden en que se agregaron
+     * @throws SQLException si la cantidad de IDs generados no coincide con la del lote
+     */
+    private void setGeneratedIds(PreparedStatement pstmt, List<Pedido> pedidos) throws SQLException {
+        int i = 0;
+        try (ResultSet generatedKeys = pstmt.getGeneratedKeys()) {
+            while (i < pedidos.size() && generatedKeys.next()) {
+                Pedido pedido = pedidos.get(i++);
+                pedido.setId(generatedKeys.getLong(1));
+                pedido.setVersion(0);
+            }
+        }
+        if (i != pedidos.size()) {
+            throw new SQLException("Se generaron " + i + " IDs para un lote de " + pedidos.size() + " registros.");
+        }
     }
 
     /**
@@ -409,7 +998,7 @@ public class PedidoDAO implements GenericDAO<Pedido> {
      */
     public Long obtenerCantidadTotalDePedidos() throws SQLException {
         long cantidad = 0L;
-        try (Connection conn = DatabaseConnection.getConnection();
+        try (Connection conn = DatabaseConnection.obtenerConexionLectura();
              PreparedStatement pstmt = conn.prepareStatement(COUNT_SQL);
              ResultSet rs = pstmt.executeQuery()) {
 
@@ -420,6 +1009,25 @@ public class PedidoDAO implements GenericDAO<Pedido> {
         return cantidad;
     }
 
+    /**
+     * Cuenta los pedidos activos agrupados por estado.
+     *
+     * @return Cantidad de pedidos activos por estado (los estados sin pedidos no se incluyen)
+     * @throws SQLException Si hay error de BD
+     */
+    public Map<EstadoPedido, Long> contarActivosPorEstado() throws SQLException {
+        Map<EstadoPedido, Long> cantidades = new EnumMap<>(EstadoPedido.class);
+        try (Connection conn = DatabaseConnection.obtenerConexionLectura();
+             PreparedStatement pstmt = conn.prepareStatement(COUNT_BY_ESTADO_SQL);
+             ResultSet rs = pstmt.executeQuery()) {
+
+            while (rs.next()) {
+                cantidades.put(EstadoPedido.fromId(rs.getInt(PEDIDO_ID_ESTADO_PEDIDO)), rs.getLong(PEDIDO_TOTAL));
+            }
+        }
+        return cantidades;
+    }
+
     /**
      * Obtiene la cantidad total de pedidos filtrando por nombre de cliente.
      *
@@ -429,14 +1037,15 @@ public class PedidoDAO implements GenericDAO<Pedido> {
      */
     public Long obtenerCantidadTotalDePedidosPorNombre(String nombre) throws SQLException {
         long cantidad = 0L;
-        try (Connection conn = DatabaseConnection.getConnection();
+        try (Connection conn = DatabaseConnection.obtenerConexionLectura();
              PreparedStatement pstmt = conn.prepareStatement(COUNT_SQL_BY_NAME)) {
             String searchPattern = "%" + nombre + "%";
             pstmt.setString(1, searchPattern);
-            ResultSet rs = pstmt.executeQuery();
 
-            if (rs.next()) {
-                cantidad = rs.getLong(PEDIDO_TOTAL);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    cantidad = rs.getLong(PEDIDO_TOTAL);
+                }
             }
         }
         return cantidad;
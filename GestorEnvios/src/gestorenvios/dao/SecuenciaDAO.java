@@ -0,0 +1,127 @@
+package gestorenvios.dao;
+
+import gestorenvios.config.DatabaseConnection;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+
+/***
+ * DAO de la tabla Secuencias, que guarda el próximo valor libre de cada secuencia de numeración.
+ * <p>
+ * Cada reserva adelanta el valor de la fila bajo un bloqueo de fila, por lo que dos procesos
+ * (o dos instancias de la aplicación) nunca obtienen el mismo rango. La primera reserva de una
+ * secuencia la inicializa a partir del mayor número ya usado en su tabla.
+ */
+public class SecuenciaDAO {
+
+    /*** Nombre de la secuencia de números de pedido (PED-XXXXXXXX). */
+    public static final String SECUENCIA_PEDIDO = "PEDIDO";
+    /*** Nombre de la secuencia de números de tracking (TRK-XXXXXXXX). */
+    public static final String SECUENCIA_TRACKING = "TRACKING";
+
+    /*** DDL de la tabla de secuencias, para bases creadas antes de que existiera. */
+    public static final String CREATE_TABLE_SQL = """
+            CREATE TABLE IF NOT EXISTS `Secuencias` (
+            `nombre` varchar(40) COLLATE utf8mb4_spanish_ci NOT NULL,
+            `siguiente` bigint NOT NULL,
+            PRIMARY KEY (`nombre`)
+            ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_spanish_ci;
+            """;
+
+    /*** Query para leer y bloquear el próximo valor libre de una secuencia. */
+    private static final String SELECT_FOR_UPDATE_SQL = "SELECT siguiente FROM Secuencias WHERE nombre = ? FOR UPDATE";
+
+    /*** Query para adelantar una secuencia. */
+    private static final String UPDATE_SQL = "UPDATE Secuencias SET siguiente = siguiente + ? WHERE nombre = ?";
+
+    /*** Query para crear una secuencia si no existe (otra instancia pudo crearla antes). */
+    private static final String INSERT_IGNORE_SQL = "INSERT IGNORE INTO Secuencias (nombre, siguiente) VALUES (?, ?)";
+
+    /*** Queries que calculan el primer valor libre de cada secuencia a partir de los números ya usados. */
+    private static final Map<String, String> VALOR_INICIAL_SQL = Map.of(
+            SECUENCIA_PEDIDO, "SELECT COALESCE(MAX(CAST(SUBSTRING(numero, 5) AS UNSIGNED)), 0) + 1 AS siguiente"
+                    + " FROM Pedido WHERE numero LIKE 'PED-%'",
+            SECUENCIA_TRACKING, "SELECT COALESCE(MAX(CAST(SUBSTRING(tracking, 5) AS UNSIGNED)), 0) + 1 AS siguiente"
+                    + " FROM Envio WHERE tracking LIKE 'TRK-%'");
+
+    /***
+     * Crea la tabla de secuencias si no existe. Se ejecuta fuera de cualquier transacción
+     * porque el DDL confirma implícitamente la transacción en curso.
+     *
+     * @throws SQLException si ocurre un error al crear la tabla
+     */
+    public void crearTablaSiNoExiste() throws SQLException {
+        try (Connection conn = DatabaseConnection.obtenerConexionIndependiente();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute(CREATE_TABLE_SQL);
+        } catch (SQLException e) {
+            throw new SQLException("Error al crear la tabla de secuencias: " + e.getMessage(), e);
+        }
+    }
+
+    /***
+     * Reserva un bloque de valores consecutivos de una secuencia dentro de una transacción externa.
+     * El bloqueo de la fila se mantiene hasta que el invocador confirma, por lo que la transacción
+     * debe ser corta y no incluir otras operaciones.
+     *
+     * @param nombre Nombre de la secuencia
+     * @param cantidad Cantidad de valores a reservar
+     * @param conn Conexión transaccional
+     * @return Primer valor del bloque reservado
+     * @throws SQLException si ocurre un error o la secuencia no existe
+     */
+    public long reservarBloqueTx(String nombre, long cantidad, Connection conn) throws SQLException {
+        Long siguiente = leerParaActualizarTx(nombre, conn);
+        if (siguiente == null) {
+            inicializarTx(nombre, conn);
+            siguiente = leerParaActualizarTx(nombre, conn);
+            if (siguiente == null) {
+                throw new SQLException("No se pudo inicializar la secuencia " + nombre);
+            }
+        }
+        try (PreparedStatement pstmt = conn.prepareStatement(UPDATE_SQL)) {
+            pstmt.setLong(1, cantidad);
+            pstmt.setString(2, nombre);
+            pstmt.executeUpdate();
+        }
+        return siguiente;
+    }
+
+    /***
+     * Lee y bloquea el próximo valor libre de una secuencia.
+     *
+     * @return Próximo valor libre, o null si la secuencia no existe
+     */
+    private Long leerParaActualizarTx(String nombre, Connection conn) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(SELECT_FOR_UPDATE_SQL)) {
+            pstmt.setString(1, nombre);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getLong("siguiente") : null;
+            }
+        }
+    }
+
+    /***
+     * Crea la fila de una secuencia con el primer valor libre según los números ya usados.
+     */
+    private void inicializarTx(String nombre, Connection conn) throws SQLException {
+        String valorInicialSql = VALOR_INICIAL_SQL.get(nombre);
+        if (valorInicialSql == null) {
+            throw new SQLException("Secuencia desconocida: " + nombre);
+        }
+        long valorInicial;
+        try (PreparedStatement pstmt = conn.prepareStatement(valorInicialSql);
+             ResultSet rs = pstmt.executeQuery()) {
+            valorInicial = rs.next() ? rs.getLong("siguiente") : 1L;
+        }
+        try (PreparedStatement pstmt = conn.prepareStatement(INSERT_IGNORE_SQL)) {
+            pstmt.setString(1, nombre);
+            pstmt.setLong(2, valorInicial);
+            pstmt.executeUpdate();
+        }
+    }
+}
@@ -10,6 +10,20 @@ public enum EmpresaEnvio {
 
     private final int id;
 
+    /*** Tabla densa indexada por ID, para resolver fromId sin recorrer values(). */
+    private static final EmpresaEnvio[] POR_ID;
+
+    static {
+        int maximo = 0;
+        for (EmpresaEnvio empresa : values()) {
+            maximo = Math.max(maximo, empresa.id);
+        }
+        POR_ID = new EmpresaEnvio[maximo + 1];
+        for (EmpresaEnvio empresa : values()) {
+            POR_ID[empresa.id] = empresa;
+        }
+    }
+
     // Constructor
     EmpresaEnvio(int id) {
         this.id = id;
@@ -27,10 +41,8 @@ public enum EmpresaEnvio {
      * @return El enum correspondiente.
      */
     public static EmpresaEnvio fromId(int id) {
-        for (EmpresaEnvio empresa : values()) {
-            if (empresa.id == id) {
-                return empresa;
-            }
+        if (id >= 0 && id < POR_ID.length && POR_ID[id] != null) {
+            return POR_ID[id];
         }
         throw new IllegalArgumentException("ID de empresa de envío inválido: " + id);
     }
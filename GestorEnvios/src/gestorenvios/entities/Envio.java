@@ -16,6 +16,7 @@ import java.time.LocalDate;
  *   <li><b>fechaDespacho</b>: LocalDate</li>
  *   <li><b>fechaEstimada</b>: LocalDate</li>
  *   <li><b>estado</b>: EstadoEnvio (EN_PREPARACION, EN_TRANSITO, ENTREGADO)</li>
+ *   <li><b>version</b>: Integer (control de concurrencia optimista; null si no se leyó de la base)</li>
  * </ul>
  */
 
@@ -31,6 +32,7 @@ public class Envio {
     private LocalDate fechaDespacho;
     private LocalDate fechaEstimada;
     private EstadoEnvio estado;
+    private Integer version;
 
     public Long getId() {
         return id;
@@ -104,6 +106,33 @@ public class Envio {
         this.estado = estado;
     }
 
+    public Integer getVersion() {
+        return version;
+    }
+
+    public void setVersion(Integer version) {
+        this.version = version;
+    }
+
+    /***
+     * Crea una copia independiente del envío, para que modificarla no altere el original.
+     * @return Copia del envío
+     */
+    public Envio copiar() {
+        Envio copia = new Envio();
+        copia.id = id;
+        copia.eliminado = eliminado;
+        copia.tracking = tracking;
+        copia.empresa = empresa;
+        copia.tipo = tipo;
+        copia.costo = costo;
+        copia.fechaDespacho = fechaDespacho;
+        copia.fechaEstimada = fechaEstimada;
+        copia.estado = estado;
+        copia.version = version;
+        return copia;
+    }
+
     @Override
     public String toString() {
         return "Envios{" +
@@ -10,6 +10,20 @@ public enum EstadoEnvio {
 
     private final int id;
 
+    /*** Tabla densa indexada por ID, para resolver fromId sin recorrer values(). */
+    private static final EstadoEnvio[] POR_ID;
+
+    static {
+        int maximo = 0;
+        for (EstadoEnvio estado : values()) {
+            maximo = Math.max(maximo, estado.id);
+        }
+        POR_ID = new EstadoEnvio[maximo + 1];
+        for (EstadoEnvio estado : values()) {
+            POR_ID[estado.id] = estado;
+        }
+    }
+
     EstadoEnvio(int id) {
         this.id = id;
     }
@@ -26,10 +40,8 @@ public enum EstadoEnvio {
      * @throws IllegalArgumentException si el ID no corresponde a ningún estado.
      */
     public static EstadoEnvio fromId(int id) {
-        for (EstadoEnvio estado : values()) {
-            if (estado.id == id) {
-                return estado;
-            }
+        if (id >= 0 && id < POR_ID.length && POR_ID[id] != null) {
+            return POR_ID[id];
         }
         throw new IllegalArgumentException("ID de estado de envío inválido: " + id);
     }
@@ -10,6 +10,20 @@ public enum EstadoPedido {
 
     private final int id;
 
+    /*** Tabla densa indexada por ID, para resolver fromId sin recorrer values(). */
+    private static final EstadoPedido[] POR_ID;
+
+    static {
+        int maximo = 0;
+        for (EstadoPedido estado : values()) {
+            maximo = Math.max(maximo, estado.id);
+        }
+        POR_ID = new EstadoPedido[maximo + 1];
+        for (EstadoPedido estado : values()) {
+            POR_ID[estado.id] = estado;
+        }
+    }
+
     EstadoPedido(int id) {
         this.id = id;
     }
@@ -26,10 +40,8 @@ public enum EstadoPedido {
      * @throws IllegalArgumentException Si el ID no corresponde a ningún estado válido.
      */
     public static EstadoPedido fromId(int id) {
-        for (EstadoPedido estado : values()) {
-            if (estado.id == id) {
-                return estado;
-            }
+        if (id >= 0 && id < POR_ID.length && POR_ID[id] != null) {
+            return POR_ID[id];
         }
         throw new IllegalArgumentException("ID de estado de pedido inválido: " + id);
     }
@@ -15,6 +15,7 @@ import java.time.LocalDate;
  *   <li><b>total</b>: double (12,2) NOT NULL</li>
  *   <li><b>estado</b>: EstadoPedido (NUEVO, FACTURADO, ENVIADO)</li>
  *   <li><b>envio</b>: referencia 1→1 a Envios</li>
+ *   <li><b>version</b>: Integer (control de concurrencia optimista; null si no se leyó de la base)</li>
  * </ul>
  */
 public class Pedido {
@@ -28,6 +29,7 @@ public class Pedido {
     private Double total;
     private EstadoPedido estado;
     private Envio envio; // Relación 1 a 1 con Envio
+    private Integer version;
 
     public Long getId() {
         return id;
@@ -85,6 +87,14 @@ public class Pedido {
         this.estado = estado;
     }
 
+    public Integer getVersion() {
+        return version;
+    }
+
+    public void setVersion(Integer version) {
+        this.version = version;
+    }
+
     public Envio getEnvio() {
         return envio;
     }
@@ -93,6 +103,25 @@ public class Pedido {
         this.envio = envio;
     }
 
+    /***
+     * Crea una copia independiente del pedido (incluido su envío), para que modificarla no altere
+     * el original.
+     * @return Copia del pedido
+     */
+    public Pedido copiar() {
+        Pedido copia = new Pedido();
+        copia.id = id;
+        copia.eliminado = eliminado;
+        copia.numero = numero;
+        copia.fecha = fecha;
+        copia.clienteNombre = clienteNombre;
+        copia.total = total;
+        copia.estado = estado;
+        copia.envio = envio != null ? envio.copiar() : null;
+        copia.version = version;
+        return copia;
+    }
+
     @Override
     public String toString() {
         return "Pedidos{" +
@@ -9,6 +9,20 @@ public enum TipoEnvio {
 
     private final int id;
 
+    /*** Tabla densa indexada por ID, para resolver fromId sin recorrer values(). */
+    private static final TipoEnvio[] POR_ID;
+
+    static {
+        int maximo = 0;
+        for (TipoEnvio tipo : values()) {
+            maximo = Math.max(maximo, tipo.id);
+        }
+        POR_ID = new TipoEnvio[maximo + 1];
+        for (TipoEnvio tipo : values()) {
+            POR_ID[tipo.id] = tipo;
+        }
+    }
+
     TipoEnvio(int id) {
         this.id = id;
     }
@@ -18,10 +32,8 @@ public enum TipoEnvio {
     }
 
     public static TipoEnvio fromId(int id) {
-        for (TipoEnvio tipo : values()) {
-            if (tipo.id == id) {
-                return tipo;
-            }
+        if (id >= 0 && id < POR_ID.length && POR_ID[id] != null) {
+            return POR_ID[id];
         }
         throw new IllegalArgumentException("ID de tipo de envío inválido: " + id);
     }
@@ -0,0 +1,40 @@
+package gestorenvios.models;
+
+/***
+ * Registro de la tabla de cambios: una alta, modificación o baja de un pedido o un envío.
+ *
+ * @param id Secuencia del cambio (null si todavía no se registró)
+ * @param entidad Tipo de entidad modificada
+ * @param idEntidad ID de la entidad modificada
+ * @param operacion Tipo de operación
+ * @param codigo Número de pedido o tracking de la entidad al momento del cambio (puede ser null)
+ * @param origen Identificador de la instancia de la aplicación que hizo el cambio
+ */
+public record Cambio(Long id, Entidad entidad, long idEntidad, Operacion operacion, String codigo, String origen) {
+
+    /***
+     * Crea un cambio a registrar.
+     * @param entidad Tipo de entidad modificada
+     * @param idEntidad ID de la entidad modificada
+     * @param operacion Tipo de operación
+     * @param codigo Número de pedido o tracking de la entidad
+     * @return Cambio sin secuencia ni origen asignados
+     */
+    public static Cambio de(Entidad entidad, long idEntidad, Operacion operacion, String codigo) {
+        return new Cambio(null, entidad, idEntidad, operacion, codigo, null);
+    }
+
+    /***
+     * Tipos de entidad registrados en la tabla de cambios.
+     */
+    public enum Entidad {
+        PEDIDO, ENVIO
+    }
+
+    /***
+     * Tipos de operación registrados en la tabla de cambios.
+     */
+    public enum Operacion {
+        ALTA, MODIFICACION, BAJA
+    }
+}
@@ -0,0 +1,16 @@
+package gestorenvios.models;
+
+import gestorenvios.entities.EmpresaEnvio;
+import gestorenvios.entities.EstadoEnvio;
+import gestorenvios.entities.EstadoPedido;
+
+/***
+ * Estado de un envío (y de su pedido) antes de un cambio de estado masivo.
+ *
+ * @param id ID del envío
+ * @param empresa Empresa del envío
+ * @param estado Estado del envío
+ * @param estadoPedido Estado del pedido asociado, o null si el envío no tiene pedido activo
+ */
+public record EnvioEstadoActual(Long id, EmpresaEnvio empresa, EstadoEnvio estado, EstadoPedido estadoPedido) {
+}
@@ -0,0 +1,18 @@
+package gestorenvios.models;
+
+import gestorenvios.entities.EmpresaEnvio;
+import gestorenvios.entities.EstadoEnvio;
+
+/***
+ * Proyección de un envío con los datos que muestran los listados de consola.
+ *
+ * @param id ID del envío
+ * @param empresa Empresa de envío
+ * @param tracking Código de tracking
+ * @param estado Estado del envío
+ */
+public record EnvioResumen(Long id,
+                           EmpresaEnvio empresa,
+                           String tracking,
+                           EstadoEnvio estado) {
+}
@@ -0,0 +1,56 @@
+package gestorenvios.models;
+
+import gestorenvios.entities.EmpresaEnvio;
+import gestorenvios.entities.EstadoEnvio;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/***
+ * Criterios de selección de envíos para las operaciones masivas.
+ * Los criterios nulos (o la lista de trackings vacía) no filtran; los rangos de fechas son inclusivos.
+ *
+ * @param empresa Empresa del envío
+ * @param estado Estado actual del envío
+ * @param despachoDesde Fecha de despacho mínima
+ * @param despachoHasta Fecha de despacho máxima
+ * @param estimadaDesde Fecha estimada mínima
+ * @param estimadaHasta Fecha estimada máxima
+ * @param trackings Códigos de tracking de los envíos
+ */
+public record FiltroEnvios(EmpresaEnvio empresa, EstadoEnvio estado,
+                           LocalDate despachoDesde, LocalDate despachoHasta,
+                           LocalDate estimadaDesde, LocalDate estimadaHasta,
+                           List<String> trackings) {
+
+    public FiltroEnvios {
+        trackings = trackings == null ? List.of() : List.copyOf(trackings);
+    }
+
+    /***
+     * Crea un filtro por lista de trackings.
+     * @param trackings Códigos de tracking de los envíos.
+     * @return Filtro que selecciona solo esos envíos.
+     */
+    public static FiltroEnvios porTrackings(List<String> trackings) {
+        return new FiltroEnvios(null, null, null, null, null, null, trackings);
+    }
+
+    /***
+     * Crea una copia del filtro con otra lista de trackings.
+     * @param trackings Códigos de tracking de los envíos.
+     * @return Filtro con los mismos criterios y la lista indicada.
+     */
+    public FiltroEnvios conTrackings(List<String> trackings) {
+        return new FiltroEnvios(empresa, estado, despachoDesde, despachoHasta, estimadaDesde, estimadaHasta, trackings);
+    }
+
+    /***
+     * Indica si el filtro no tiene ningún criterio, es decir, si seleccionaría todos los envíos.
+     * @return true si no hay criterios.
+     */
+    public boolean sinCriterios() {
+        return empresa == null && estado == null && despachoDesde == null && despachoHasta == null
+                && estimadaDesde == null && estimadaHasta == null && trackings.isEmpty();
+    }
+}
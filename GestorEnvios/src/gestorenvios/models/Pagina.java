@@ -0,0 +1,13 @@
+package gestorenvios.models;
+
+import java.util.List;
+
+/***
+ * Primera página de un listado junto con el total de elementos, leídos en la misma transacción.
+ *
+ * @param total Cantidad total de elementos del listado
+ * @param elementos Elementos de la página
+ * @param <T> Tipo de los elementos
+ */
+public record Pagina<T>(Long total, List<T> elementos) {
+}
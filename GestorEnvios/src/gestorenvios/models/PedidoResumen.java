@@ -0,0 +1,22 @@
+package gestorenvios.models;
+
+import gestorenvios.entities.EstadoEnvio;
+import gestorenvios.entities.EstadoPedido;
+
+/***
+ * Proyección de un pedido con los datos que muestran los listados de consola.
+ *
+ * @param id ID del pedido
+ * @param clienteNombre Nombre del cliente
+ * @param numero Número de pedido
+ * @param estado Estado del pedido
+ * @param envioTracking Tracking del envío asociado, o null si no tiene envío activo
+ * @param envioEstado Estado del envío asociado, o null si no tiene envío activo
+ */
+public record PedidoResumen(Long id,
+                            String clienteNombre,
+                            String numero,
+                            EstadoPedido estado,
+                            String envioTracking,
+                            EstadoEnvio envioEstado) {
+}
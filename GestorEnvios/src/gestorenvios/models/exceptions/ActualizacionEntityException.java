@@ -4,4 +4,8 @@ public class ActualizacionEntityException extends RuntimeException {
     public ActualizacionEntityException(String message) {
         super(message);
     }
+
+    public ActualizacionEntityException(String message, Throwable cause) {
+        super(message, cause);
+    }
 }
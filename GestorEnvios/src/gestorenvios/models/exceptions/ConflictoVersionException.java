@@ -0,0 +1,11 @@
+package gestorenvios.models.exceptions;
+
+/***
+ * Se lanza cuando una actualización no se aplica porque el registro fue modificado por otra
+ * operación después de leerlo (su versión ya no coincide con la leída).
+ */
+public class ConflictoVersionException extends ActualizacionEntityException {
+    public ConflictoVersionException(String message) {
+        super(message);
+    }
+}
@@ -4,4 +4,8 @@ public class ConsultaEntityException extends RuntimeException {
     public ConsultaEntityException(String message) {
         super(message);
     }
+
+    public ConsultaEntityException(String message, Throwable cause) {
+        super(message, cause);
+    }
 }
@@ -0,0 +1,11 @@
+package gestorenvios.models.exceptions;
+
+/***
+ * Se lanza cuando no se puede asignar un envío a un pedido porque otra operación le asignó
+ * uno antes o lo eliminó.
+ */
+public class EnvioYaAsignadoException extends CreacionEntityException {
+    public EnvioYaAsignadoException(String message) {
+        super(message);
+    }
+}
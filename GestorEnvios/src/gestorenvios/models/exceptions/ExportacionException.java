@@ -0,0 +1,7 @@
+package gestorenvios.models.exceptions;
+
+public class ExportacionException extends RuntimeException {
+    public ExportacionException(String message) {
+        super(message);
+    }
+}
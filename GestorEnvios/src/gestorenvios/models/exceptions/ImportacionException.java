@@ -0,0 +1,7 @@
+package gestorenvios.models.exceptions;
+
+public class ImportacionException extends RuntimeException {
+    public ImportacionException(String message) {
+        super(message);
+    }
+}
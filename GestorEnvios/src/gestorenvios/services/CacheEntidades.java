@@ -0,0 +1,177 @@
+package gestorenvios.services;
+
+import gestorenvios.config.TransactionManager;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/***
+ * Caché de lectura de entidades por ID, acotada en tamaño y en tiempo de vida.
+ * <p>
+ * Las entradas se guardan en un {@link MapaLong}, por lo que los IDs no se convierten a Long. Al
+ * superar el tamaño máximo se desaloja la entrada guardada hace más tiempo (FIFO): el orden de
+ * alta se lleva en un arreglo circular de IDs del tamaño de la caché.
+ * <p>
+ * Las invalidaciones se registran en el {@link TransactionManager} de la transacción que modifica
+ * la entidad y se ejecutan recién cuando termina, de modo que una lectura concurrente nunca vuelve
+ * a guardar datos anteriores al commit ni datos de una transacción revertida. Igual que en
+ * {@link CacheLectura}, una carga solo se guarda si no hubo invalidaciones mientras se leía, y se
+ * guardan y entregan copias de las entidades, para que modificar una entidad leída no altere la caché.
+ *
+ * @param <V> Tipo de entidad
+ */
+public class CacheEntidades<V> {
+
+    private final String nombre;
+    private final int tamanioMaximo;
+    private final long tiempoDeVidaNanos;
+    private final UnaryOperator<V> copiar;
+
+    /*** Entradas por ID; protegidas por el monitor de la caché. */
+    private final MapaLong<Entrada<V>> entradas;
+    /*** IDs en orden de alta; la posición {@code altas % tamanioMaximo} es la próxima a reutilizar. */
+    private final long[] ordenDeAlta;
+    private long altas;
+    private long version;
+
+    private final LongAdder aciertos = new LongAdder();
+    private final LongAdder fallos = new LongAdder();
+    private final LongAdder desalojos = new LongAdder();
+    private final LongAdder expiraciones = new LongAdder();
+
+    /***
+     * Constructor de la caché.
+     * @param nombre Nombre de la caché, para las estadísticas.
+     * @param tamanioMaximo Cantidad máxima de entradas.
+     * @param tiempoDeVidaSegundos Segundos que una entrada se considera vigente.
+     * @param copiar Crea una copia independiente de un valor.
+     */
+    public CacheEntidades(String nombre, int tamanioMaximo, long tiempoDeVidaSegundos, UnaryOperator<V> copiar) {
+        this.nombre = nombre;
+        this.tamanioMaximo = Math.max(1, tamanioMaximo);
+        this.tiempoDeVidaNanos = TimeUnit.SECONDS.toNanos(Math.max(1L, tiempoDeVidaSegundos));
+        this.copiar = copiar;
+        this.entradas = new MapaLong<>(this.tamanioMaximo);
+        this.ordenDeAlta = new long[this.tamanioMaximo];
+    }
+
+    /***
+     * Obtiene la entidad de un ID, cargándola si no está en la caché o venció.
+     * @param id ID de la entidad.
+     * @param cargador Lectura a realizar ante un fallo.
+     * @return Entidad con ese ID, o null si el cargador no encontró ninguna.
+     * @throws SQLException Si falla la carga.
+     */
+    public V obtener(long id, Cargador<V> cargador) throws SQLException {
+        long versionLeida;
+        synchronized (this) {
+            Entrada<V> entrada = entradas.get(id);
+            if (entrada != null) {
+                if (System.nanoTime() - entrada.vencimiento() < 0) {
+                    aciertos.increment();
+                    return copiar.apply(entrada.valor());
+                }
+                entradas.remove(id);
+                expiraciones.increment();
+            }
+            versionLeida = version;
+        }
+
+        fallos.increment();
+        V valor = cargador.cargar(id);
+        if (valor != null) {
+            synchronized (this) {
+                if (version == versionLeida) {
+                    guardar(id, copiar.apply(valor));
+                }
+            }
+        }
+        return valor;
+    }
+
+    /***
+     * Guarda una entidad, desalojando la más antigua si se ocupó todo el arreglo de altas.
+     * Cada alta ocupa una posición; si el ID de una posición fue invalidado y vuelto a guardar,
+     * su entrada es más nueva que la posición y no se desaloja.
+     */
+    private void guardar(long id, V valor) {
+        int posicion = (int) (altas % tamanioMaximo);
+        if (altas >= tamanioMaximo) {
+            long idAntiguo = ordenDeAlta[posicion];
+            Entrada<V> antigua = entradas.get(idAntiguo);
+            if (antigua != null && antigua.alta() == altas - tamanioMaximo) {
+                entradas.remove(idAntiguo);
+                desalojos.increment();
+            }
+        }
+        entradas.put(id, new Entrada<>(valor, System.nanoTime() + tiempoDeVidaNanos, altas));
+        ordenDeAlta[posicion] = id;
+        altas++;
+    }
+
+    /***
+     * Invalida una entidad inmediatamente.
+     * @param id ID de la entidad.
+     */
+    public synchronized void invalidar(long id) {
+        version++;
+        entradas.remove(id);
+    }
+
+    /***
+     * Invalida todas las entidades que cumplen la condición.
+     * @param condicion Condición sobre la entidad.
+     */
+    public synchronized void invalidarSi(Predicate<V> condicion) {
+        version++;
+        entradas.removeIf(entrada -> condicion.test(entrada.valor()));
+    }
+
+    /***
+     * Invalida todas las entidades.
+     */
+    public synchronized void invalidarTodo() {
+        version++;
+        entradas.clear();
+    }
+
+    /***
+     * Registra la invalidación de una entidad para cuando termine la transacción activa,
+     * tanto si se confirma como si se revierte.
+     * @param transactionManager Gestor de la transacción que modifica la entidad.
+     * @param id ID de la entidad (se ignora si es null).
+     */
+    public void invalidarAlFinalizar(TransactionManager transactionManager, Long id) {
+        if (id != null) {
+            long clave = id;
+            transactionManager.despuesDeFinalizar(() -> invalidar(clave));
+        }
+    }
+
+    /***
+     * Obtiene las estadísticas acumuladas de la caché.
+     * @return Estadísticas de la caché.
+     */
+    public EstadisticasCache estadisticas() {
+        int tamanio;
+        synchronized (this) {
+            tamanio = entradas.size();
+        }
+        return new EstadisticasCache(nombre, tamanio, tamanioMaximo,
+                aciertos.sum(), fallos.sum(), desalojos.sum(), expiraciones.sum());
+    }
+
+    /***
+     * Lectura de una entidad por ID ante un fallo de la caché.
+     */
+    @FunctionalInterface
+    public interface Cargador<V> {
+        V cargar(long id) throws SQLException;
+    }
+
+    private record Entrada<V>(V valor, long vencimiento, long alta) {
+    }
+}
@@ -0,0 +1,160 @@
+package gestorenvios.services;
+
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/***
+ * Caché de lectura (read-through) acotada en tamaño y en tiempo de vida.
+ * <p>
+ * Ante un fallo carga el valor con el cargador indicado y lo guarda; las entradas vencidas se
+ * descartan al leerlas y, al superar el tamaño máximo, se desaloja la usada hace más tiempo (LRU).
+ * Los resultados nulos no se guardan, para que un alta posterior sea visible de inmediato.
+ * <p>
+ * Los servicios invalidan las claves modificadas luego de confirmar la transacción. Para que una
+ * lectura que empezó antes de la invalidación no vuelva a guardar el valor viejo, cada invalidación
+ * adelanta una versión y solo se guardan las cargas que terminaron sin invalidaciones de por medio.
+ * <p>
+ * La caché guarda una copia del valor cargado y entrega una copia en cada acierto, de modo que un
+ * invocador puede modificar la entidad obtenida (por ejemplo, antes de una validación que falla y
+ * no llega a abrir una transacción) sin que la caché muestre cambios que nunca se persistieron.
+ *
+ * @param <K> Tipo de clave
+ * @param <V> Tipo de valor
+ */
+public class CacheLectura<K, V> {
+
+    private final String nombre;
+    private final int tamanioMaximo;
+    private final long tiempoDeVidaNanos;
+    private final UnaryOperator<V> copiar;
+
+    /*** Entradas en orden de acceso; protegidas por el monitor de la caché. */
+    private final LinkedHashMap<K, Entrada<V>> entradas;
+    private long version;
+
+    private final LongAdder aciertos = new LongAdder();
+    private final LongAdder fallos = new LongAdder();
+    private final LongAdder desalojos = new LongAdder();
+    private final LongAdder expiraciones = new LongAdder();
+
+    /***
+     * Constructor de la caché.
+     * @param nombre Nombre de la caché, para las estadísticas.
+     * @param tamanioMaximo Cantidad máxima de entradas.
+     * @param tiempoDeVidaSegundos Segundos que una entrada se considera vigente.
+     * @param copiar Crea una copia independiente de un valor.
+     */
+    public CacheLectura(String nombre, int tamanioMaximo, long tiempoDeVidaSegundos, UnaryOperator<V> copiar) {
+        this.nombre = nombre;
+        this.tamanioMaximo = Math.max(1, tamanioMaximo);
+        this.tiempoDeVidaNanos = TimeUnit.SECONDS.toNanos(Math.max(1L, tiempoDeVidaSegundos));
+        this.copiar = copiar;
+        this.entradas = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entrada<V>> eldest) {
+                if (size() > CacheLectura.this.tamanioMaximo) {
+                    desalojos.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /***
+     * Obtiene el valor de una clave, cargándolo si no está en la caché o venció.
+     * @param clave Clave buscada.
+     * @param cargador Lectura a realizar ante un fallo.
+     * @return Valor de la clave, o null si el cargador no encontró ninguno.
+     * @throws SQLException Si falla la carga.
+     */
+    public V obtener(K clave, Cargador<K, V> cargador) throws SQLException {
+        long versionLeida;
+        synchronized (this) {
+            Entrada<V> entrada = entradas.get(clave);
+            if (entrada != null) {
+                if (System.nanoTime() - entrada.vencimiento() < 0) {
+                    aciertos.increment();
+                    return copiar.apply(entrada.valor());
+                }
+                entradas.remove(clave);
+                expiraciones.increment();
+            }
+            versionLeida = version;
+        }
+
+        fallos.increment();
+        V valor = cargador.cargar(clave);
+        if (valor != null) {
+            synchronized (this) {
+                if (version == versionLeida) {
+                    entradas.put(clave, new Entrada<>(copiar.apply(valor), System.nanoTime() + tiempoDeVidaNanos));
+                }
+            }
+        }
+        return valor;
+    }
+
+    /***
+     * Invalida una clave.
+     * @param clave Clave a invalidar (se ignora si es null).
+     */
+    public synchronized void invalidar(K clave) {
+        version++;
+        if (clave != null) {
+            entradas.remove(clave);
+        }
+    }
+
+    /***
+     * Invalida todas las entradas cuyo valor cumple la condición.
+     * @param condicion Condición sobre el valor.
+     */
+    public synchronized void invalidarSi(Predicate<V> condicion) {
+        version++;
+        Iterator<Entrada<V>> iterador = entradas.values().iterator();
+        while (iterador.hasNext()) {
+            if (condicion.test(iterador.next().valor())) {
+                iterador.remove();
+            }
+        }
+    }
+
+    /***
+     * Invalida todas las entradas.
+     */
+    public synchronized void invalidarTodo() {
+        version++;
+        entradas.clear();
+    }
+
+    /***
+     * Obtiene las estadísticas acumuladas de la caché.
+     * @return Estadísticas de la caché.
+     */
+    public EstadisticasCache estadisticas() {
+        int tamanio;
+        synchronized (this) {
+            tamanio = entradas.size();
+        }
+        return new EstadisticasCache(nombre, tamanio, tamanioMaximo,
+                aciertos.sum(), fallos.sum(), desalojos.sum(), expiraciones.sum());
+    }
+
+    /***
+     * Lectura del valor de una clave ante un fallo de la caché.
+     */
+    @FunctionalInterface
+    public interface Cargador<K, V> {
+        V cargar(K clave) throws SQLException;
+    }
+
+    private record Entrada<V>(V valor, long vencimiento) {
+    }
+}
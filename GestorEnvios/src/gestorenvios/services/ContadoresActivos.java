@@ -0,0 +1,278 @@
+package gestorenvios.services;
+
+import gestorenvios.config.TransactionManager;
+import gestorenvios.dao.EnvioDAO;
+import gestorenvios.dao.PedidoDAO;
+import gestorenvios.entities.EmpresaEnvio;
+import gestorenvios.entities.EstadoEnvio;
+import gestorenvios.entities.EstadoPedido;
+
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/***
+ * Contadores en memoria de pedidos y envíos activos (no eliminados).
+ * <p>
+ * Los servicios los actualizan después de confirmar cada alta, baja o cambio de estado,
+ * de modo que los totales se sirven en O(1) sin ejecutar COUNT(*) sobre las tablas.
+ * Una tarea periódica los reconcilia contra la base de datos para corregir cualquier
+ * desvío (por ejemplo, cambios hechos por otros procesos).
+ * <p>
+ * Hasta la primera reconciliación los totales son desconocidos y los métodos de consulta
+ * devuelven null.
+ */
+public class ContadoresActivos {
+
+    private final PedidoDAO pedidoDAO;
+    private final EnvioDAO envioDAO;
+    private final long intervaloReconciliacionSegundos;
+
+    private final AtomicLong pedidos = new AtomicLong();
+    private final AtomicLongArray pedidosPorEstado = new AtomicLongArray(EstadoPedido.values().length);
+
+    private final AtomicLong envios = new AtomicLong();
+    private final AtomicLongArray enviosPorEstado = new AtomicLongArray(EstadoEnvio.values().length);
+    private final AtomicLongArray enviosPorEmpresa = new AtomicLongArray(EmpresaEnvio.values().length);
+
+    private volatile boolean reconciliado;
+    private ScheduledExecutorService reconciliacion;
+
+    /***
+     * Constructor de los contadores.
+     * @param pedidoDAO DAO de pedidos, usado para reconciliar.
+     * @param envioDAO DAO de envíos, usado para reconciliar.
+     * @param intervaloReconciliacionSegundos Intervalo entre reconciliaciones contra la base de datos.
+     */
+    public ContadoresActivos(PedidoDAO pedidoDAO, EnvioDAO envioDAO, long intervaloReconciliacionSegundos) {
+        this.pedidoDAO = pedidoDAO;
+        this.envioDAO = envioDAO;
+        this.intervaloReconciliacionSegundos = intervaloReconciliacionSegundos;
+    }
+
+    /***
+     * Inicia la reconciliación periódica en segundo plano. La primera se ejecuta de inmediato.
+     */
+    public synchronized void iniciar() {
+        if (reconciliacion != null) {
+            return;
+        }
+        reconciliacion = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "contadores-reconciliacion");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        reconciliacion.scheduleWithFixedDelay(() -> {
+            try {
+                reconciliar();
+            } catch (SQLException _) {
+                // Se reintentará en la próxima ejecución; mientras tanto se mantienen los valores actuales
+            }
+        }, 0L, intervaloReconciliacionSegundos, TimeUnit.SECONDS);
+    }
+
+    /***
+     * Detiene la reconciliación periódica.
+     */
+    public synchronized void detener() {
+        if (reconciliacion != null) {
+            reconciliacion.shutdownNow();
+            reconciliacion = null;
+        }
+    }
+
+    /***
+     * Recalcula los contadores a partir de la base de datos. Los pedidos y los envíos se cuentan en
+     * una transacción de solo lectura, para que ambos conteos correspondan al mismo momento.
+     * @throws SQLException Si ocurre un error al consultar la base de datos.
+     */
+    public synchronized void reconciliar() throws SQLException {
+        Conteos conteos = TransactionManager.executeInReadOnlyTransaction((transactionManager, conn) ->
+                new Conteos(pedidoDAO.contarActivosPorEstado(), envioDAO.contarActivosPorEstadoYEmpresa()));
+        Map<EstadoPedido, Long> pedidosActuales = conteos.pedidos();
+        Map<EstadoEnvio, Map<EmpresaEnvio, Long>> enviosActuales = conteos.envios();
+
+        long totalPedidos = 0L;
+        for (EstadoPedido estado : EstadoPedido.values()) {
+            long cantidad = pedidosActuales.getOrDefault(estado, 0L);
+            pedidosPorEstado.set(estado.ordinal(), cantidad);
+            totalPedidos += cantidad;
+        }
+        pedidos.set(totalPedidos);
+
+        long totalEnvios = 0L;
+        long[] porEmpresa = new long[EmpresaEnvio.values().length];
+        for (EstadoEnvio estado : EstadoEnvio.values()) {
+            long cantidadEstado = 0L;
+            for (Map.Entry<EmpresaEnvio, Long> entrada : enviosActuales.getOrDefault(estado, Map.of()).entrySet()) {
+                cantidadEstado += entrada.getValue();
+                porEmpresa[entrada.getKey().ordinal()] += entrada.getValue();
+            }
+            enviosPorEstado.set(estado.ordinal(), cantidadEstado);
+            totalEnvios += cantidadEstado;
+        }
+        for (EmpresaEnvio empresa : EmpresaEnvio.values()) {
+            enviosPorEmpresa.set(empresa.ordinal(), porEmpresa[empresa.ordinal()]);
+        }
+        envios.set(totalEnvios);
+
+        reconciliado = true;
+    }
+
+    /***
+     * Registra el alta de un pedido.
+     * @param estado Estado del pedido creado.
+     */
+    public void pedidoCreado(EstadoPedido estado) {
+        pedidos.incrementAndGet();
+        if (estado != null) {
+            pedidosPorEstado.incrementAndGet(estado.ordinal());
+        }
+    }
+
+    /***
+     * Registra la baja lógica de un pedido.
+     * @param estado Estado del pedido eliminado.
+     */
+    public void pedidoEliminado(EstadoPedido estado) {
+        pedidos.decrementAndGet();
+        if (estado != null) {
+            pedidosPorEstado.decrementAndGet(estado.ordinal());
+        }
+    }
+
+    /***
+     * Registra el cambio de estado de un pedido.
+     * @param anterior Estado anterior.
+     * @param nuevo Estado nuevo.
+     */
+    public void pedidoCambioEstado(EstadoPedido anterior, EstadoPedido nuevo) {
+        if (anterior == nuevo) {
+            return;
+        }
+        if (anterior != null) {
+            pedidosPorEstado.decrementAndGet(anterior.ordinal());
+        }
+        if (nuevo != null) {
+            pedidosPorEstado.incrementAndGet(nuevo.ordinal());
+        }
+    }
+
+    /***
+     * Registra el alta de un envío.
+     * @param estado Estado del envío creado.
+     * @param empresa Empresa del envío creado.
+     */
+    public void envioCreado(EstadoEnvio estado, EmpresaEnvio empresa) {
+        envios.incrementAndGet();
+        if (estado != null) {
+            enviosPorEstado.incrementAndGet(estado.ordinal());
+        }
+        if (empresa != null) {
+            enviosPorEmpresa.incrementAndGet(empresa.ordinal());
+        }
+    }
+
+    /***
+     * Registra la baja lógica de un envío.
+     * @param estado Estado del envío eliminado.
+     * @param empresa Empresa del envío eliminado.
+     */
+    public void envioEliminado(EstadoEnvio estado, EmpresaEnvio empresa) {
+        envios.decrementAndGet();
+        if (estado != null) {
+            enviosPorEstado.decrementAndGet(estado.ordinal());
+        }
+        if (empresa != null) {
+            enviosPorEmpresa.decrementAndGet(empresa.ordinal());
+        }
+    }
+
+    /***
+     * Registra el cambio de estado y/o empresa de un envío.
+     * @param estadoAnterior Estado anterior.
+     * @param empresaAnterior Empresa anterior.
+     * @param estadoNuevo Estado nuevo.
+     * @param empresaNueva Empresa nueva.
+     */
+    public void envioModificado(EstadoEnvio estadoAnterior, EmpresaEnvio empresaAnterior,
+                                EstadoEnvio estadoNuevo, EmpresaEnvio empresaNueva) {
+        if (estadoAnterior != estadoNuevo) {
+            if (estadoAnterior != null) {
+                enviosPorEstado.decrementAndGet(estadoAnterior.ordinal());
+            }
+            if (estadoNuevo != null) {
+                enviosPorEstado.incrementAndGet(estadoNuevo.ordinal());
+            }
+        }
+        if (empresaAnterior != empresaNueva) {
+            if (empresaAnterior != null) {
+                enviosPorEmpresa.decrementAndGet(empresaAnterior.ordinal());
+            }
+            if (empresaNueva != null) {
+                enviosPorEmpresa.incrementAndGet(empresaNueva.ordinal());
+            }
+        }
+    }
+
+    /***
+     * Indica si los contadores ya fueron reconciliados al menos una vez.
+     * @return true si los totales son conocidos.
+     */
+    public boolean isReconciliado() {
+        return reconciliado;
+    }
+
+    /***
+     * Obtiene la cantidad de pedidos activos.
+     * @return Cantidad de pedidos activos, o null si todavía es desconocida.
+     */
+    public Long getPedidos() {
+        return reconciliado ? pedidos.get() : null;
+    }
+
+    /***
+     * Obtiene la cantidad de pedidos activos en un estado.
+     * @param estado Estado del pedido.
+     * @return Cantidad de pedidos activos en ese estado, o null si todavía es desconocida.
+     */
+    public Long getPedidos(EstadoPedido estado) {
+        return reconciliado ? pedidosPorEstado.get(estado.ordinal()) : null;
+    }
+
+    /***
+     * Obtiene la cantidad de envíos activos.
+     * @return Cantidad de envíos activos, o null si todavía es desconocida.
+     */
+    public Long getEnvios() {
+        return reconciliado ? envios.get() : null;
+    }
+
+    /***
+     * Obtiene la cantidad de envíos activos en un estado.
+     * @param estado Estado del envío.
+     * @return Cantidad de envíos activos en ese estado, o null si todavía es desconocida.
+     */
+    public Long getEnvios(EstadoEnvio estado) {
+        return reconciliado ? enviosPorEstado.get(estado.ordinal()) : null;
+    }
+
+    /***
+     * Obtiene la cantidad de envíos activos de una empresa.
+     * @param empresa Empresa de envío.
+     * @return Cantidad de envíos activos de esa empresa, o null si todavía es desconocida.
+     */
+    public Long getEnvios(EmpresaEnvio empresa) {
+        return reconciliado ? enviosPorEmpresa.get(empresa.ordinal()) : null;
+    }
+
+    /***
+     * Conteos de pedidos y envíos activos leídos en la misma transacción.
+     */
+    private record Conteos(Map<EstadoPedido, Long> pedidos, Map<EstadoEnvio, Map<EmpresaEnvio, Long>> envios) {
+    }
+}
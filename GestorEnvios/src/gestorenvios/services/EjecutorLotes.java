@@ -0,0 +1,122 @@
+package gestorenvios.services;
+
+import gestorenvios.config.ClasificacionErrorSql;
+import gestorenvios.config.TransactionManager;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+
+/***
+ * Ejecuta una operación sobre un lote grande en tramos, cada uno en su propia transacción, aislando
+ * los elementos que la base de datos rechaza en lugar de revertir el tramo completo.
+ * <p>
+ * Cada tramo se intenta primero completo, bajo un punto de guardado. Si falla (por ejemplo, una
+ * fila viola una restricción CHECK), se vuelve al punto y el tramo se divide en mitades que se
+ * intentan por separado, cada una con su propio punto, hasta aislar los elementos que fallan solos.
+ * Los elementos que quedan se confirman en la transacción del tramo. Con k elementos inválidos se
+ * ejecutan O(k log n) sentencias, en lugar de una por elemento.
+ * <p>
+ * Un interbloqueo o una espera de bloqueo vencida revierten la transacción completa, así que no se
+ * aíslan: se propagan para que {@link TransactionManager#executeInTransaction} reintente el tramo.
+ * Si el tramo igual falla, todos sus elementos se informan como rechazados.
+ *
+ * @param <T> Tipo de los elementos del lote
+ */
+public class EjecutorLotes<T> {
+
+    private final int tamanioTramo;
+
+    /***
+     * Constructor del ejecutor.
+     * @param tamanioTramo Cantidad máxima de elementos por transacción.
+     */
+    public EjecutorLotes(int tamanioTramo) {
+        this.tamanioTramo = Math.max(1, tamanioTramo);
+    }
+
+    /***
+     * Ejecuta la operación sobre todos los elementos, tramo por tramo.
+     * @param elementos Elementos del lote.
+     * @param operacion Operación a aplicar; puede ejecutarse varias veces sobre subconjuntos del tramo.
+     * @return Elementos aceptados y rechazados con su motivo.
+     */
+    public ResultadoLote<T> ejecutar(List<T> elementos, OperacionLote<T> operacion) {
+        List<T> aceptados = new ArrayList<>(elementos.size());
+        List<ResultadoLote.Rechazo<T>> rechazados = new ArrayList<>();
+        for (int desde = 0; desde < elementos.size(); desde += tamanioTramo) {
+            List<T> tramo = elementos.subList(desde, Math.min(desde + tamanioTramo, elementos.size()));
+            try {
+                ResultadoLote<T> resultado = TransactionManager.executeInTransaction(
+                        (transactionManager, conn) -> procesarTramo(tramo, operacion, transactionManager, conn));
+                aceptados.addAll(resultado.aceptados());
+                rechazados.addAll(resultado.rechazados());
+            } catch (SQLException | RuntimeException e) {
+                for (T elemento : tramo) {
+                    rechazados.add(new ResultadoLote.Rechazo<>(elemento, "Tramo no procesado: " + e.getMessage()));
+                }
+            }
+        }
+        return new ResultadoLote<>(aceptados, rechazados);
+    }
+
+    /***
+     * Procesa un tramo dentro de su transacción. Los resultados se arman en cada intento, porque
+     * la transacción puede reintentarse completa.
+     */
+    private ResultadoLote<T> procesarTramo(List<T> tramo, OperacionLote<T> operacion,
+                                           TransactionManager transactionManager,
+                                           Connection conn) throws SQLException {
+        List<T> aceptados = new ArrayList<>(tramo.size());
+        List<ResultadoLote.Rechazo<T>> rechazados = new ArrayList<>();
+        aislar(tramo, operacion, transactionManager, conn, aceptados, rechazados);
+        return new ResultadoLote<>(aceptados, rechazados);
+    }
+
+    /***
+     * Intenta la operación sobre los elementos bajo un punto de guardado; si falla, vuelve al punto
+     * y repite con cada mitad hasta llegar a elementos individuales.
+     */
+    private void aislar(List<T> elementos, OperacionLote<T> operacion,
+                        TransactionManager transactionManager, Connection conn,
+                        List<T> aceptados, List<ResultadoLote.Rechazo<T>> rechazados) throws SQLException {
+        Savepoint savepoint = transactionManager.setSavepoint();
+        try {
+            operacion.ejecutar(elementos, transactionManager, conn);
+            transactionManager.release(savepoint);
+            aceptados.addAll(elementos);
+            return;
+        } catch (SQLException | RuntimeException e) {
+            if (ClasificacionErrorSql.de(e).isReintentable()) {
+                throw e;
+            }
+            transactionManager.rollbackTo(savepoint);
+            transactionManager.release(savepoint);
+            if (elementos.size() == 1) {
+                rechazados.add(new ResultadoLote.Rechazo<>(elementos.getFirst(), e.getMessage()));
+                return;
+            }
+        }
+        int mitad = elementos.size() / 2;
+        aislar(elementos.subList(0, mitad), operacion, transactionManager, conn, aceptados, rechazados);
+        aislar(elementos.subList(mitad, elementos.size()), operacion, transactionManager, conn, aceptados, rechazados);
+    }
+
+    /***
+     * Operación aplicada a un subconjunto de un tramo dentro de su transacción.
+     * @param <T> Tipo de los elementos
+     */
+    @FunctionalInterface
+    public interface OperacionLote<T> {
+        /***
+         * Aplica la operación. No debe confirmar ni revertir la transacción.
+         * @param elementos Elementos a procesar
+         * @param transactionManager Gestor de la transacción del tramo
+         * @param conn Conexión de la transacción
+         * @throws SQLException si la base de datos rechaza la operación
+         */
+        void ejecutar(List<T> elementos, TransactionManager transactionManager, Connection conn) throws SQLException;
+    }
+}
@@ -1,36 +1,78 @@
 package gestorenvios.services;
 
-import gestorenvios.config.DatabaseConnection;
+import gestorenvios.config.NivelAislamiento;
 import gestorenvios.config.TransactionManager;
 import gestorenvios.dao.EnvioDAO;
+import gestorenvios.entities.EmpresaEnvio;
 import gestorenvios.entities.Envio;
+import gestorenvios.entities.EstadoEnvio;
 import gestorenvios.entities.EstadoPedido;
 import gestorenvios.entities.Pedido;
+import gestorenvios.models.EnvioEstadoActual;
+import gestorenvios.models.EnvioResumen;
+import gestorenvios.models.FiltroEnvios;
 import gestorenvios.models.exceptions.ActualizacionEntityException;
+import gestorenvios.models.exceptions.ConflictoVersionException;
 import gestorenvios.models.exceptions.ConsultaEntityException;
 import gestorenvios.models.exceptions.CreacionEntityException;
 import gestorenvios.models.exceptions.EliminacionEntityException;
+import gestorenvios.models.exceptions.EnvioYaAsignadoException;
 
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 /***
  * Implementación del servicio genérico para la gestión de envíos.
  */
 public class EnvioServiceImpl implements GenericEnviosService<Envio, Pedido> {
+    /*** Cantidad máxima de envíos modificados en cada transacción de un cambio de estado masivo. */
+    private static final int TAMANIO_TRAMO_ESTADO = 1_000;
+    /*** Cantidad máxima de intentos de una actualización con reintento ante conflictos de versión. */
+    private static final int INTENTOS_CONFLICTO_VERSION = 3;
+    /*** Cantidad máxima de envíos por transacción en un alta en lote con aislamiento de filas. */
+    private static final int TAMANIO_TRAMO_LOTE = 1_000;
+
     EnvioDAO envioDAO;
     GenericPedidosService<Pedido> pedidosService;
+    ContadoresActivos contadores;
+    Secuencia secuenciaTrackings;
+    CacheLectura<String, Envio> cacheEnvios;
+    CacheLectura<String, Pedido> cachePedidos;
+    CacheEntidades<Envio> cacheEnviosPorId;
+    CacheEntidades<Pedido> cachePedidosPorId;
+    FiltroCodigos filtroCodigos;
+    private final EjecutorLotes<Envio> ejecutorLotes = new EjecutorLotes<>(TAMANIO_TRAMO_LOTE);
 
     /***
      * Constructor de la clase EnvioServiceImpl.
      * @param envioDAO DAO para la gestión de envíos.
      * @param pedidosService Servicio genérico para la gestión de pedidos.
+     * @param contadores Contadores en memoria de entidades activas.
+     * @param secuenciaTrackings Secuencia de números de tracking.
+     * @param cacheEnvios Caché de envíos por tracking.
+     * @param cachePedidos Caché de pedidos por tracking, compartida con el servicio de pedidos.
+     * @param cacheEnviosPorId Caché de envíos por ID.
+     * @param cachePedidosPorId Caché de pedidos por ID, compartida con el servicio de pedidos.
+     * @param filtroCodigos Filtros de Bloom de trackings y números de pedido existentes.
      */
-    public EnvioServiceImpl(EnvioDAO envioDAO, GenericPedidosService<Pedido> pedidosService) {
+    public EnvioServiceImpl(EnvioDAO envioDAO, GenericPedidosService<Pedido> pedidosService,
+                            ContadoresActivos contadores, Secuencia secuenciaTrackings,
+                            CacheLectura<String, Envio> cacheEnvios, CacheLectura<String, Pedido> cachePedidos,
+                            CacheEntidades<Envio> cacheEnviosPorId, CacheEntidades<Pedido> cachePedidosPorId,
+                            FiltroCodigos filtroCodigos) {
         this.envioDAO = envioDAO;
         this.pedidosService = pedidosService;
+        this.contadores = contadores;
+        this.secuenciaTrackings = secuenciaTrackings;
+        this.cacheEnvios = cacheEnvios;
+        this.cachePedidos = cachePedidos;
+        this.cacheEnviosPorId = cacheEnviosPorId;
+        this.cachePedidosPorId = cachePedidosPorId;
+        this.filtroCodigos = filtroCodigos;
     }
 
     /***
@@ -41,10 +83,10 @@ public class EnvioServiceImpl implements GenericEnviosService<Envio, Pedido> {
      */
     @Override
     public String crear(Envio envio) throws CreacionEntityException {
-        try (Connection conn = DatabaseConnection.getConnection();
-             TransactionManager transactionManager = new TransactionManager(conn)) {
+        try {
             validarEnvio(envio);
-            return crearTx(envio, transactionManager, conn);
+            return TransactionManager.executeInTransaction(
+                    (transactionManager, conn) -> crearTx(envio, transactionManager, conn));
         } catch (Exception e) {
             throw new CreacionEntityException("Error al crear el envío: " + e.getMessage());
         }
@@ -56,39 +98,104 @@ public class EnvioServiceImpl implements GenericEnviosService<Envio, Pedido> {
      * @param transactionManager El gestor de transacciones.
      * @param conn La conexión a la base de datos.
      * @return El número de tracking del envío creado.
+     * @throws SQLException Si ocurre un error en la base de datos.
+     */
+    private String crearTx(Envio envio, TransactionManager transactionManager, Connection conn) throws SQLException {
+        envio.setTracking(generarNuevoNumeroTracking());
+        filtroCodigos.agregarTracking(envio.getTracking(), transactionManager);
+        envioDAO.insertarTx(envio, conn);
+        transactionManager.despuesDeConfirmar(() -> contadores.envioCreado(envio.getEstado(), envio.getEmpresa()));
+        return envio.getTracking();
+    }
+
+    /***
+     * Crea un lote de envíos en una única transacción, con una inserción por lotes.
+     * Los números de tracking de todo el lote se reservan de una vez.
+     * @param envios Los envíos a crear.
+     * @return Los números de tracking de los envíos creados, en el mismo orden.
+     * @throws CreacionEntityException Si algún envío es inválido o falla la creación (no se crea ninguno).
      */
-    private String crearTx(Envio envio, TransactionManager transactionManager, Connection conn) {
+    @Override
+    public List<String> crearLote(List<Envio> envios) throws CreacionEntityException {
+        if (envios == null || envios.isEmpty()) {
+            return List.of();
+        }
         try {
-            transactionManager.startTransaction();
-            envio.setTracking(generarNuevoNumeroTrackingTx(conn));
-            envioDAO.insertarTx(envio, conn);
-            transactionManager.commit();
-            return envio.getTracking();
+            envios.forEach(this::validarEnvio);
+            return TransactionManager.executeInTransaction(
+                    (transactionManager, conn) -> crearLoteTx(envios, transactionManager, conn));
         } catch (Exception e) {
-            transactionManager.rollback();
-            throw new CreacionEntityException(e.getMessage());
+            throw new CreacionEntityException("Error al crear el lote de envíos: " + e.getMessage());
         }
     }
 
     /***
-     * Genera un nuevo número de tracking para un envío.
+     * Crea un lote de envíos en una transacción.
+     * @param envios Los envíos a crear.
+     * @param transactionManager El gestor de transacciones.
      * @param conn La conexión a la base de datos.
-     * @return El nuevo número de tracking.
+     * @return Los números de tracking de los envíos creados, en el mismo orden.
+     * @throws SQLException Si ocurre un error en la base de datos.
      */
-    private String generarNuevoNumeroTrackingTx(Connection conn) {
-        try {
-            String ultimoTracking = envioDAO.buscarUltimoNumeroTrackingTx(conn);
+    private List<String> crearLoteTx(List<Envio> envios, TransactionManager transactionManager,
+                                     Connection conn) throws SQLException {
+        long primerNumero = secuenciaTrackings.reservar(envios.size());
+        List<String> trackings = new ArrayList<>(envios.size());
+        for (int i = 0; i < envios.size(); i++) {
+            String tracking = formatearTracking(primerNumero + i);
+            envios.get(i).setTracking(tracking);
+            filtroCodigos.agregarTracking(tracking, transactionManager);
+            trackings.add(tracking);
+        }
+        envioDAO.insertarLoteTx(envios, conn);
+        transactionManager.despuesDeConfirmar(() -> {
+            for (Envio envio : envios) {
+                contadores.envioCreado(envio.getEstado(), envio.getEmpresa());
+            }
+        });
+        return trackings;
+    }
 
-            if (ultimoTracking == null || ultimoTracking.isEmpty()) {
-                return "TRK-00000001";
+    /***
+     * Crea un lote de envíos en tramos de {@value #TAMANIO_TRAMO_LOTE}, cada uno en su propia transacción.
+     * Los envíos inválidos se rechazan sin consultar la base de datos; los que la base de datos rechaza
+     * se aíslan con puntos de guardado ({@link EjecutorLotes}) y el resto del tramo se confirma.
+     * @param envios Los envíos a crear.
+     * @return Los envíos creados (con su tracking asignado) y los rechazados con su motivo.
+     */
+    @Override
+    public ResultadoLote<Envio> crearLoteParcial(List<Envio> envios) {
+        if (envios == null || envios.isEmpty()) {
+            return new ResultadoLote<>(List.of(), List.of());
+        }
+        List<Envio> validos = new ArrayList<>(envios.size());
+        List<ResultadoLote.Rechazo<Envio>> invalidos = new ArrayList<>();
+        for (Envio envio : envios) {
+            try {
+                validarEnvio(envio);
+                validos.add(envio);
+            } catch (RuntimeException e) {
+                invalidos.add(new ResultadoLote.Rechazo<>(envio, e.getMessage()));
             }
-            String[] partes = ultimoTracking.split("-");
-            int numero = Integer.parseInt(partes[1]);
-            numero++;
-            return String.format("TRK-%08d", numero);
-        } catch (SQLException e) {
-            throw new CreacionEntityException("No se pudo generar un nuevo número de tracking: " + e.getMessage());
         }
+        return ejecutorLotes.ejecutar(validos, this::crearLoteTx).conRechazos(invalidos);
+    }
+
+    /***
+     * Genera un nuevo número de tracking a partir de la secuencia de trackings.
+     * @return El nuevo número de tracking.
+     */
+    private String generarNuevoNumeroTracking() {
+        return formatearTracking(secuenciaTrackings.siguiente());
+    }
+
+    /***
+     * Da formato a un número de tracking.
+     * @param numero El número secuencial.
+     * @return El número de tracking con formato TRK-XXXXXXXX.
+     */
+    private static String formatearTracking(long numero) {
+        return String.format("TRK-%08d", numero);
     }
 
     /***
@@ -124,30 +231,53 @@ public class EnvioServiceImpl implements GenericEnviosService<Envio, Pedido> {
     }
 
     /***
-     * Busca un envío por su ID.
+     * Busca envíos paginando por cursor (keyset).
+     * @param ultimoId El ID del último envío de la página anterior (null para la primera página).
+     * @param cantidad La cantidad de envíos a buscar.
+     * @return Una lista de envíos.
+     * @throws ConsultaEntityException Si ocurre un error durante la consulta.
+     */
+    @Override
+    public List<Envio> buscarTodosDesde(Long ultimoId, Long cantidad) throws ConsultaEntityException {
+        try {
+            return envioDAO.buscarTodosDesde(ultimoId, cantidad);
+        } catch (Exception e) {
+            throw new ConsultaEntityException("Error al buscar envíos: " + e.getMessage());
+        }
+    }
+
+    /***
+     * Busca un envío por su ID, a través de la caché de envíos por ID.
      * @param id El ID del envío a buscar.
      * @return El envío encontrado.
      * @throws ConsultaEntityException Si ocurre un error durante la consulta.
      */
     @Override
     public Envio buscarPorId(Long id) throws ConsultaEntityException {
+        if (id == null) {
+            throw new ConsultaEntityException("El ID del envío no puede ser nulo.");
+        }
         try {
-            return envioDAO.buscarPorId(id);
+            return cacheEnviosPorId.obtener(id, envioDAO::buscarPorId);
         } catch (Exception e) {
             throw new ConsultaEntityException("Error al buscar envío por ID: " + e.getMessage());
         }
     }
 
     /***
-     * Busca un envío por su número de tracking.
+     * Busca un envío por su número de tracking, a través de la caché de envíos.
+     * Si el filtro de trackings indica que el código no existe, responde sin consultar la base de datos.
      * @param tracking El número de tracking del envío a buscar.
-     * @return El envío encontrado.
+     * @return El envío encontrado, o null si no existe.
      * @throws ConsultaEntityException Si ocurre un error durante la consulta.
      */
     @Override
     public Envio buscarPorTracking(String tracking) throws ConsultaEntityException {
+        if (!filtroCodigos.puedeExistirTracking(tracking)) {
+            return null;
+        }
         try {
-            return envioDAO.buscarPorTracking(tracking);
+            return cacheEnvios.obtener(tracking, envioDAO::buscarPorTracking);
         } catch (Exception e) {
             throw new ConsultaEntityException("Error al buscar envío por tracking: " + e.getMessage());
         }
@@ -155,12 +285,16 @@ public class EnvioServiceImpl implements GenericEnviosService<Envio, Pedido> {
 
     /***
      * Busca un envío por el número de pedido asociado.
+     * Si el filtro de números de pedido indica que el número no existe, responde sin consultar la base de datos.
      * @param numero El número de pedido del envío a buscar.
-     * @return El envío encontrado.
+     * @return El envío encontrado, o null si no existe.
      * @throws ConsultaEntityException Si ocurre un error durante la consulta.
      */
     @Override
     public Envio buscarPorNumeroPedido(String numero) throws ConsultaEntityException {
+        if (!filtroCodigos.puedeExistirNumeroPedido(numero)) {
+            return null;
+        }
         try {
             return envioDAO.buscarPorNumeroPedido(numero);
         } catch (Exception e) {
@@ -182,6 +316,31 @@ public class EnvioServiceImpl implements GenericEnviosService<Envio, Pedido> {
         }
     }
 
+    /***
+     * Lista resúmenes de envíos paginando por cursor (keyset), con solo los datos que muestran los listados.
+     * @param ultimoId El ID del último envío de la página anterior (null para la primera página).
+     * @param cantidad La cantidad de envíos a buscar.
+     * @return Una lista de resúmenes de envíos.
+     * @throws ConsultaEntityException Si ocurre un error durante la consulta.
+     */
+    @Override
+    public List<EnvioResumen> buscarResumenesDesde(Long ultimoId, Long cantidad) throws ConsultaEntityException {
+        try {
+            return envioDAO.buscarResumenesDesde(ultimoId, cantidad);
+        } catch (Exception e) {
+            throw new ConsultaEntityException("Error al buscar envíos: " + e.getMessage());
+        }
+    }
+
+    /***
+     * Obtiene la cantidad de envíos activos desde los contadores en memoria, sin consultar la base de datos.
+     * @return La cantidad de envíos activos, o null si todavía es desconocida.
+     */
+    @Override
+    public Long obtenerCantidadEstimadaDeEnvios() {
+        return contadores.getEnvios();
+    }
+
     /***
      * Actualiza un envío en la base de datos.
      * @param envio El envío a actualizar.
@@ -189,31 +348,65 @@ public class EnvioServiceImpl implements GenericEnviosService<Envio, Pedido> {
      */
     @Override
     public void actualizar(Envio envio) throws ActualizacionEntityException {
-        try (Connection conn = DatabaseConnection.getConnection();
-             TransactionManager transactionManager = new TransactionManager(conn)) {
-            actualizarTx(envio, transactionManager, conn);
+        try {
+            TransactionManager.executeInTransaction((transactionManager, conn) -> {
+                actualizarTx(envio, transactionManager, conn);
+                return null;
+            });
+        } catch (ConflictoVersionException e) {
+            throw e;
         } catch (Exception e) {
             throw new ActualizacionEntityException("Error al actualizar el envío: " + e.getMessage());
         }
     }
 
+    /***
+     * Actualiza un envío releyéndolo desde la base principal (sin pasar por la caché ni por las
+     * réplicas) y reintentando ante conflictos de versión.
+     * @param id ID del envío a modificar.
+     * @param modificacion Cambio a aplicar sobre el envío leído.
+     * @return El envío actualizado.
+     * @throws ActualizacionEntityException Si el envío no existe, la actualización falla o persiste el conflicto.
+     */
+    @Override
+    public Envio actualizarConReintento(Long id, Consumer<Envio> modificacion) throws ActualizacionEntityException {
+        for (int intento = 1; ; intento++) {
+            Envio envio;
+            try {
+                envio = envioDAO.buscarPorId(id);
+            } catch (Exception e) {
+                throw new ActualizacionEntityException("Error al actualizar el envío: " + e.getMessage());
+            }
+            if (envio == null) {
+                throw new ActualizacionEntityException("No se encontró el envío con ID: " + id);
+            }
+            modificacion.accept(envio);
+            try {
+                actualizar(envio);
+                return envio;
+            } catch (ConflictoVersionException e) {
+                if (intento >= INTENTOS_CONFLICTO_VERSION) {
+                    throw e;
+                }
+            }
+        }
+    }
+
     /***
      * Actualiza un envío en una transacción.
      * @param envio El envío a actualizar.
      * @param transactionManager El gestor de transacciones.
      * @param conn La conexión a la base de datos.
+     * @throws SQLException Si ocurre un error en la base de datos.
      */
     private void actualizarTx(Envio envio,
                               TransactionManager transactionManager,
-                              Connection conn) {
-        try {
-            transactionManager.startTransaction();
-            envioDAO.actualizarTx(envio, conn);
-            transactionManager.commit();
-        } catch (Exception e) {
-            transactionManager.rollback();
-            throw new ActualizacionEntityException(e.getMessage());
-        }
+                              Connection conn) throws SQLException {
+        invalidarAlFinalizar(transactionManager, envio);
+        restaurarAlRevertir(transactionManager, envio, null);
+        Envio anterior = envioDAO.buscarPorIdTx(envio.getId(), conn);
+        envioDAO.actualizarTx(envio, conn);
+        transactionManager.despuesDeConfirmar(() -> registrarModificacion(anterior, envio));
     }
 
     /***
@@ -223,9 +416,11 @@ public class EnvioServiceImpl implements GenericEnviosService<Envio, Pedido> {
      */
     @Override
     public void eliminar(Envio envio) throws EliminacionEntityException {
-        try (Connection conn = DatabaseConnection.getConnection();
-             TransactionManager transactionManager = new TransactionManager(conn)) {
-            eliminarTx(envio, transactionManager, conn);
+        try {
+            TransactionManager.executeInTransaction((transactionManager, conn) -> {
+                eliminarTx(envio, transactionManager, conn);
+                return null;
+            });
         } catch (Exception e) {
             throw new EliminacionEntityException("Error al eliminar envío: " + e.getMessage());
         }
@@ -233,39 +428,47 @@ public class EnvioServiceImpl implements GenericEnviosService<Envio, Pedido> {
 
     /***
      * Elimina un envío en una transacción.
+     * El pedido del envío se lee y bloquea en la misma transacción, y la baja del envío y la
+     * liberación del pedido se hacen con una sola sentencia sobre la misma conexión.
      * @param envio El envío a eliminar.
      * @param transactionManager El gestor de transacciones.
      * @param conn La conexión a la base de datos.
+     * @throws SQLException Si ocurre un error en la base de datos.
      */
-    private void eliminarTx(Envio envio, TransactionManager transactionManager, Connection conn) {
-        try {
-            transactionManager.startTransaction();
-            envioDAO.eliminarLogicoTx(envio.getId(), conn);
-            Pedido pedido = pedidosService.buscarPorNumeroTracking(envio.getTracking());
-            pedido.setEstado(EstadoPedido.NUEVO);
-            pedido.setEnvio(null);
-            pedidosService.actualizarTx(pedido, conn);
-            transactionManager.commit();
-        } catch (Exception e) {
-            transactionManager.rollback();
-            throw new EliminacionEntityException(e.getMessage());
+    private void eliminarTx(Envio envio, TransactionManager transactionManager, Connection conn) throws SQLException {
+        invalidarAlFinalizar(transactionManager, envio);
+        Pedido pedido = pedidosService.buscarPorIdEnvioTx(envio.getId());
+        if (pedido != null) {
+            invalidarPedidoAlFinalizar(transactionManager, pedido);
         }
+        envioDAO.eliminarLogicoYLiberarPedidoTx(envio.getId(), pedido, EstadoPedido.NUEVO, conn);
+        transactionManager.despuesDeConfirmar(() -> {
+            contadores.envioEliminado(envio.getEstado(), envio.getEmpresa());
+            if (pedido != null) {
+                contadores.pedidoCambioEstado(pedido.getEstado(), EstadoPedido.NUEVO);
+            }
+        });
     }
 
     /***
      * Crea un envío y actualiza el estado del pedido asociado en una transacción.
+     * El envío se asigna con una única sentencia condicional (el pedido debe seguir activo y sin envío),
+     * por lo que dos operaciones concurrentes nunca asignan dos envíos al mismo pedido.
      * @param envio El envío a crear.
      * @param pedido El pedido a actualizar.
      * @return El número de tracking del envío creado.
+     * @throws EnvioYaAsignadoException Si otra operación asignó un envío al pedido o lo eliminó.
      * @throws CreacionEntityException Si ocurre un error durante la creación del envío o la actualización del pedido.
      */
     @Override
     public String crearEnvioYActualizarPedido(Envio envio, Pedido pedido) throws CreacionEntityException {
         //validamos para evitar una conexion a la base de datos con registros invalidos
         validarEnvio(envio);
-        try (Connection conn = DatabaseConnection.getConnection();
-             TransactionManager transactionManager = new TransactionManager(conn)) {
-            return crearEnvioYActualizarPedidoTx(envio, pedido, transactionManager, conn);
+        try {
+            return TransactionManager.executeInTransaction(
+                    (transactionManager, conn) -> crearEnvioYActualizarPedidoTx(envio, pedido, transactionManager, conn));
+        } catch (EnvioYaAsignadoException e) {
+            throw e;
         } catch (Exception e) {
             throw new CreacionEntityException("Error al crear el envío y actualizar el pedido: " + e.getMessage());
         }
@@ -278,24 +481,30 @@ public class EnvioServiceImpl implements GenericEnviosService<Envio, Pedido> {
      * @param transactionManager El gestor de transacciones.
      * @param conn La conexión a la base de datos.
      * @return El número de tracking del envío creado.
+     * @throws EnvioYaAsignadoException Si otra operación asignó un envío al pedido o lo eliminó.
+     * @throws SQLException Si ocurre un error en la base de datos.
      */
     private String crearEnvioYActualizarPedidoTx(Envio envio,
                                                  Pedido pedido,
                                                  TransactionManager transactionManager,
-                                                 Connection conn) {
-        try {
-            transactionManager.startTransaction();
-            envio.setTracking(generarNuevoNumeroTrackingTx(conn));
-            envioDAO.insertarTx(envio, conn);
+                                                 Connection conn) throws SQLException {
+        invalidarPedidoAlFinalizar(transactionManager, pedido);
+        restaurarAlRevertir(transactionManager, null, pedido);
+        envio.setTracking(generarNuevoNumeroTracking());
+        filtroCodigos.agregarTracking(envio.getTracking(), transactionManager);
+        envioDAO.insertarTx(envio, conn);
+        if (!pedidosService.asignarEnvioTx(pedido, envio.getId())) {
+            throw new EnvioYaAsignadoException("El pedido " + pedido.getNumero()
+                    + " ya tiene un envío asignado o fue eliminado por otra operación.");
+        }
+        EstadoPedido estadoAnterior = pedido.getEstado();
+        transactionManager.despuesDeConfirmar(() -> {
             pedido.setEnvio(envio);
             pedido.setEstado(EstadoPedido.FACTURADO);
-            pedidosService.actualizarTx(pedido, conn);
-            transactionManager.commit();
-            return envio.getTracking();
-        } catch (Exception e) {
-            transactionManager.rollback();
-            throw new CreacionEntityException(e.getMessage());
-        }
+            contadores.envioCreado(envio.getEstado(), envio.getEmpresa());
+            contadores.pedidoCambioEstado(estadoAnterior, EstadoPedido.FACTURADO);
+        });
+        return envio.getTracking();
     }
 
     /***
@@ -306,9 +515,13 @@ public class EnvioServiceImpl implements GenericEnviosService<Envio, Pedido> {
     @Override
     public void actualizarEstado(Envio envio, Pedido pedido) {
         validarEnvio(envio);
-        try (Connection conn = DatabaseConnection.getConnection();
-             TransactionManager transactionManager = new TransactionManager(conn)) {
-            actualizarEstadoTx(envio, pedido, transactionManager, conn);
+        try {
+            TransactionManager.executeInTransaction((transactionManager, conn) -> {
+                actualizarEstadoTx(envio, pedido, transactionManager, conn);
+                return null;
+            });
+        } catch (ConflictoVersionException e) {
+            throw e;
         } catch (Exception e) {
             throw new ActualizacionEntityException("Error al actualizar estado del envío: " + e.getMessage());
         }
@@ -321,17 +534,190 @@ public class EnvioServiceImpl implements GenericEnviosService<Envio, Pedido> {
      * @param pedido El pedido a actualizar.
      * @param transactionManager El gestor de transacciones.
      * @param conn La conexión a la base de datos.
+     * @throws SQLException Si ocurre un error en la base de datos.
      */
-    private void actualizarEstadoTx(Envio envio, Pedido pedido, TransactionManager transactionManager, Connection conn) {
+    private void actualizarEstadoTx(Envio envio, Pedido pedido, TransactionManager transactionManager,
+                                    Connection conn) throws SQLException {
+        invalidarAlFinalizar(transactionManager, envio);
+        invalidarPedidoAlFinalizar(transactionManager, pedido);
+        restaurarAlRevertir(transactionManager, envio, pedido);
+        Envio anterior = envioDAO.buscarPorIdTx(envio.getId(), conn);
+        envioDAO.actualizarTx(envio, conn);
+        EstadoPedido estadoAnterior = pedido.getEstado();
+        pedido.setEstado(EstadoPedido.ENVIADO);
+        pedidosService.actualizarTx(pedido);
+        transactionManager.despuesDeConfirmar(() -> {
+            registrarModificacion(anterior, envio);
+            contadores.pedidoCambioEstado(estadoAnterior, EstadoPedido.ENVIADO);
+        });
+    }
+
+    /***
+     * Mueve al estado indicado todos los envíos activos que cumplen el filtro, salvo los ENTREGADO.
+     * Si el estado nuevo es ENTREGADO, sus pedidos pasan a ENVIADO en la misma sentencia, igual que
+     * en la actualización individual.
+     * <p>
+     * Los envíos se procesan en tramos de {@value #TAMANIO_TRAMO_ESTADO}, cada uno en su propia
+     * transacción, para que los bloqueos duren poco. Si un tramo falla, los anteriores quedan confirmados.
+     * @param filtro Criterios de selección de los envíos (al menos uno).
+     * @param nuevoEstado Estado al que se moverán los envíos.
+     * @return Resultado de la actualización.
+     * @throws ActualizacionEntityException Si el filtro no tiene criterios o falla algún tramo.
+     */
+    @Override
+    public ResultadoActualizacionMasiva actualizarEstadoMasivo(FiltroEnvios filtro, EstadoEnvio nuevoEstado)
+            throws ActualizacionEntityException {
+        if (filtro == null || filtro.sinCriterios()) {
+            throw new ActualizacionEntityException("Debe indicar al menos un criterio para seleccionar los envíos.");
+        }
+        if (nuevoEstado == null) {
+            throw new ActualizacionEntityException("Debe indicar el estado nuevo de los envíos.");
+        }
+        EstadoPedido nuevoEstadoPedido = nuevoEstado == EstadoEnvio.ENTREGADO ? EstadoPedido.ENVIADO : null;
+
+        List<FiltroEnvios> filtros = new ArrayList<>();
+        if (filtro.trackings().isEmpty()) {
+            filtros.add(filtro);
+        } else {
+            List<String> trackings = filtro.trackings();
+            for (int i = 0; i < trackings.size(); i += TAMANIO_TRAMO_ESTADO) {
+                filtros.add(filtro.conTrackings(trackings.subList(i, Math.min(i + TAMANIO_TRAMO_ESTADO, trackings.size()))));
+            }
+        }
+
+        long inicio = System.nanoTime();
+        long envios = 0L;
+        long pedidos = 0L;
         try {
-            transactionManager.startTransaction();
-            envioDAO.actualizarTx(envio, conn);
-            pedido.setEstado(EstadoPedido.ENVIADO);
-            pedidosService.actualizarTx(pedido, conn);
-            transactionManager.commit();
+            for (FiltroEnvios filtroTramo : filtros) {
+                long ultimoId = 0L;
+                List<EnvioEstadoActual> tramo;
+                do {
+                    tramo = actualizarTramoEstado(filtroTramo, nuevoEstado, nuevoEstadoPedido, ultimoId);
+                    if (!tramo.isEmpty()) {
+                        ultimoId = tramo.getLast().id();
+                        envios += tramo.size();
+                        if (nuevoEstadoPedido != null) {
+                            pedidos += tramo.stream().filter(envio -> envio.estadoPedido() != null).count();
+                        }
+                    }
+                } while (tramo.size() == TAMANIO_TRAMO_ESTADO);
+            }
         } catch (Exception e) {
-            transactionManager.rollback();
-            throw new ActualizacionEntityException(e.getMessage());
+            throw new ActualizacionEntityException("Error al actualizar el estado de los envíos (" + envios
+                    + " ya actualizados): " + e.getMessage());
         }
+        return new ResultadoActualizacionMasiva(envios, pedidos, (System.nanoTime() - inicio) / 1_000_000L);
+    }
+
+    /***
+     * Bloquea y actualiza un tramo de envíos en una transacción propia, con aislamiento READ COMMITTED:
+     * la lectura con bloqueo del tramo retiene solo los envíos que cumplen el filtro, sin bloquear huecos
+     * del índice, lo que reduce las esperas e interbloqueos con las altas concurrentes.
+     * @param filtro Criterios de selección de los envíos.
+     * @param nuevoEstado Estado nuevo de los envíos.
+     * @param nuevoEstadoPedido Estado nuevo de los pedidos, o null para no modificarlos.
+     * @param ultimoId ID del último envío del tramo anterior.
+     * @return Estado anterior de los envíos actualizados.
+     * @throws SQLException Si ocurre un error en la base de datos.
+     */
+    private List<EnvioEstadoActual> actualizarTramoEstado(FiltroEnvios filtro, EstadoEnvio nuevoEstado,
+                                                          EstadoPedido nuevoEstadoPedido,
+                                                          long ultimoId) throws SQLException {
+        return TransactionManager.executeInTransaction(NivelAislamiento.READ_COMMITTED, (transactionManager, conn) -> {
+            List<EnvioEstadoActual> tramo = envioDAO.bloquearTramoParaCambioEstadoTx(
+                    filtro, nuevoEstado, ultimoId, TAMANIO_TRAMO_ESTADO, conn);
+            if (!tramo.isEmpty()) {
+                transactionManager.despuesDeConfirmar(this::invalidarCachesCompletas);
+            }
+            long[] ids = tramo.stream().mapToLong(EnvioEstadoActual::id).toArray();
+            envioDAO.actualizarEstadoPorIdsTx(ids, nuevoEstado, nuevoEstadoPedido, conn);
+            transactionManager.despuesDeConfirmar(() -> {
+                for (EnvioEstadoActual envio : tramo) {
+                    contadores.envioModificado(envio.estado(), envio.empresa(), nuevoEstado, envio.empresa());
+                    if (nuevoEstadoPedido != null && envio.estadoPedido() != null) {
+                        contadores.pedidoCambioEstado(envio.estadoPedido(), nuevoEstadoPedido);
+                    }
+                }
+            });
+            return tramo;
+        });
+    }
+
+    /***
+     * Registra la invalidación del envío y de su pedido en las cachés para cuando termine la transacción.
+     * Se invalida tanto al confirmar como al deshacer, porque las entidades modificadas pueden ser las
+     * mismas instancias guardadas en la caché.
+     * @param transactionManager El gestor de la transacción que modifica el envío.
+     * @param envio El envío modificado.
+     */
+    private void invalidarAlFinalizar(TransactionManager transactionManager, Envio envio) {
+        String tracking = envio.getTracking();
+        Long id = envio.getId();
+        transactionManager.despuesDeFinalizar(() -> {
+            cacheEnvios.invalidar(tracking);
+            cachePedidos.invalidar(tracking);
+            if (id != null) {
+                cacheEnviosPorId.invalidar(id);
+                cachePedidosPorId.invalidarSi(pedido -> pedido.getEnvio() != null
+                        && id.equals(pedido.getEnvio().getId()));
+            }
+        });
+    }
+
+    /***
+     * Registra la invalidación de un pedido en las cachés para cuando termine la transacción,
+     * sin importar con qué tracking se haya guardado.
+     * @param transactionManager El gestor de la transacción que modifica el pedido.
+     * @param pedido El pedido modificado.
+     */
+    private void invalidarPedidoAlFinalizar(TransactionManager transactionManager, Pedido pedido) {
+        Long id = pedido.getId();
+        transactionManager.despuesDeFinalizar(() -> cachePedidos.invalidarSi(cacheado -> cacheado.getId().equals(id)));
+        cachePedidosPorId.invalidarAlFinalizar(transactionManager, id);
+    }
+
+    /***
+     * Registra la restauración de las versiones leídas (y del estado del pedido) si la transacción se
+     * revierte, porque los DAOs las incrementan en memoria al actualizar y un reintento debe volver
+     * a partir de los valores leídos.
+     * @param transactionManager El gestor de la transacción que modifica las entidades.
+     * @param envio El envío modificado (puede ser null).
+     * @param pedido El pedido modificado (puede ser null).
+     */
+    private void restaurarAlRevertir(TransactionManager transactionManager, Envio envio, Pedido pedido) {
+        if (envio != null) {
+            Integer version = envio.getVersion();
+            transactionManager.despuesDeRevertir(() -> envio.setVersion(version));
+        }
+        if (pedido != null) {
+            Integer version = pedido.getVersion();
+            EstadoPedido estado = pedido.getEstado();
+            transactionManager.despuesDeRevertir(() -> {
+                pedido.setVersion(version);
+                pedido.setEstado(estado);
+            });
+        }
+    }
+
+    /***
+     * Invalida todas las cachés de envíos y pedidos, luego de una modificación masiva.
+     */
+    private void invalidarCachesCompletas() {
+        cacheEnvios.invalidarTodo();
+        cachePedidos.invalidarTodo();
+        cacheEnviosPorId.invalidarTodo();
+        cachePedidosPorId.invalidarTodo();
+    }
+
+    /***
+     * Actualiza los contadores en memoria luego de confirmar la modificación de un envío.
+     * @param anterior El envío tal como estaba antes de la modificación (null si no se pudo leer).
+     * @param actual El envío modificado.
+     */
+    private void registrarModificacion(Envio anterior, Envio actual) {
+        EstadoEnvio estadoAnterior = anterior != null ? anterior.getEstado() : null;
+        EmpresaEnvio empresaAnterior = anterior != null ? anterior.getEmpresa() : null;
+        contadores.envioModificado(estadoAnterior, empresaAnterior, actual.getEstado(), actual.getEmpresa());
     }
 }
\ No newline at end of file
@@ -0,0 +1,218 @@
+package gestorenvios.services;
+
+import gestorenvios.dao.GenericDAO;
+import gestorenvios.models.exceptions.ConsultaEntityException;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/***
+ * Recorrido completo de una tabla dividido en rangos de IDs que se leen en paralelo.
+ * <p>
+ * El rango [mínimo, máximo] de IDs activos se divide en particiones contiguas; cada una se
+ * lee en streaming sobre su propia conexión del pool, en un hilo virtual, con a lo sumo
+ * {@code paralelismo} particiones en curso a la vez. Las filas se mapean con el DAO de la
+ * entidad y se entregan al consumidor:
+ * <ul>
+ *     <li>Sin orden: en cuanto se leen, desde cualquier partición.</li>
+ *     <li>Ordenado: en orden de ID. Cada partición deja sus filas en una cola acotada que se
+ *     vacía en orden, por lo que la memoria usada no depende del tamaño de la tabla.</li>
+ * </ul>
+ * En ambos modos el consumidor es invocado por un solo hilo a la vez, así que no necesita ser
+ * seguro para hilos. El paralelismo no debería superar el tamaño del pool de conexiones.
+ *
+ * @param <T> Tipo de entidad recorrida
+ */
+public class EscaneoParalelo<T> {
+
+    /*** Particiones por hilo, para repartir mejor la carga si los IDs no son uniformes. */
+    private static final int PARTICIONES_POR_HILO = 4;
+    /*** Cantidad mínima de IDs por partición, para no multiplicar consultas pequeñas. */
+    private static final long IDS_MINIMOS_POR_PARTICION = 10_000L;
+    /*** Filas que cada partición puede adelantar en modo ordenado. */
+    private static final int CAPACIDAD_COLA = 1_024;
+
+    /*** Marca de fin de partición en modo ordenado. */
+    private static final Object FIN = new Object();
+
+    private final GenericDAO<T> dao;
+    private final int paralelismo;
+
+    /***
+     * Constructor del recorrido paralelo.
+     * @param dao DAO de la entidad a recorrer.
+     * @param paralelismo Cantidad máxima de particiones leídas a la vez (y de conexiones usadas).
+     */
+    public EscaneoParalelo(GenericDAO<T> dao, int paralelismo) {
+        this.dao = dao;
+        this.paralelismo = Math.max(1, paralelismo);
+    }
+
+    /***
+     * Recorre todas las entidades activas de la tabla.
+     * @param consumidor Recibe cada entidad.
+     * @param ordenado true para entregar las entidades en orden de ID.
+     * @return Cantidad de entidades recorridas.
+     */
+    public long recorrer(Consumer<T> consumidor, boolean ordenado) {
+        long[] rango;
+        try {
+            rango = dao.buscarRangoIds();
+        } catch (SQLException e) {
+            throw new ConsultaEntityException("Error al obtener el rango de IDs a recorrer: " + e.getMessage());
+        }
+        if (rango == null) {
+            return 0L;
+        }
+
+        List<long[]> particiones = particionar(rango[0], rango[1]);
+        try (ExecutorService hilos = Executors.newFixedThreadPool(
+                Math.min(paralelismo, particiones.size()), Thread.ofVirtual().name("escaneo-", 0).factory())) {
+            return ordenado
+                    ? recorrerOrdenado(particiones, hilos, consumidor)
+                    : recorrerSinOrden(particiones, hilos, consumidor);
+        }
+    }
+
+    /***
+     * Divide el rango de IDs [minimo, maximo] en particiones contiguas [desde, hasta).
+     */
+    private List<long[]> particionar(long minimo, long maximo) {
+        long ids = maximo - minimo + 1;
+        long cantidad = Math.min((long) paralelismo * PARTICIONES_POR_HILO,
+                Math.ceilDiv(ids, IDS_MINIMOS_POR_PARTICION));
+        long tamanio = Math.ceilDiv(ids, Math.max(1L, cantidad));
+
+        List<long[]> particiones = new ArrayList<>();
+        for (long desde = minimo; desde <= maximo; desde += tamanio) {
+            particiones.add(new long[]{desde, Math.min(desde + tamanio, maximo + 1)});
+        }
+        return particiones;
+    }
+
+    /***
+     * Lee todas las particiones a la vez y entrega cada fila en cuanto llega.
+     */
+    private long recorrerSinOrden(List<long[]> particiones, ExecutorService hilos, Consumer<T> consumidor) {
+        LongAdder recorridas = new LongAdder();
+        AtomicReference<RuntimeException> error = new AtomicReference<>();
+        Object lockConsumidor = new Object();
+
+        for (long[] particion : particiones) {
+            hilos.execute(() -> {
+                if (error.get() != null) {
+                    return;
+                }
+                try {
+                    dao.recorrerRango(particion[0], particion[1], entidad -> {
+                        synchronized (lockConsumidor) {
+                            consumidor.accept(entidad);
+                        }
+                        recorridas.increment();
+                    });
+                } catch (SQLException e) {
+                    error.compareAndSet(null, new ConsultaEntityException(
+                            "Error al recorrer la partición de IDs " + particion[0] + "-" + particion[1] + ": " + e.getMessage()));
+                } catch (RuntimeException e) {
+                    error.compareAndSet(null, e);
+                }
+            });
+        }
+        hilos.close();
+
+        if (error.get() != null) {
+            throw error.get();
+        }
+        return recorridas.sum();
+    }
+
+    /***
+     * Lee las particiones en paralelo y entrega sus filas en orden de partición desde el hilo invocador.
+     * Como las particiones se inician en orden, la que se está vaciando siempre está en curso o terminada.
+     */
+    @SuppressWarnings("unchecked")
+    private long recorrerOrdenado(List<long[]> particiones, ExecutorService hilos, Consumer<T> consumidor) {
+        List<Particion> pendientes = new ArrayList<>(particiones.size());
+        for (long[] rango : particiones) {
+            Particion particion = new Particion(rango[0], rango[1]);
+            pendientes.add(particion);
+            hilos.execute(particion::leer);
+        }
+
+        long recorridas = 0L;
+        try {
+            for (Particion particion : pendientes) {
+                Object elemento;
+                while ((elemento = particion.cola.take()) != FIN) {
+                    consumidor.accept((T) elemento);
+                    recorridas++;
+                }
+                if (particion.error != null) {
+                    throw particion.error;
+                }
+            }
+        } catch (InterruptedException _) {
+            Thread.currentThread().interrupt();
+            hilos.shutdownNow();
+            throw new ConsultaEntityException("Recorrido interrumpido.");
+        } catch (RuntimeException e) {
+            hilos.shutdownNow();
+            throw e;
+        }
+        return recorridas;
+    }
+
+    /***
+     * Partición leída en modo ordenado: sus filas se encolan hasta que el hilo invocador las consume.
+     */
+    private final class Particion {
+        private final long desde;
+        private final long hasta;
+        private final BlockingQueue<Object> cola = new ArrayBlockingQueue<>(CAPACIDAD_COLA);
+        private volatile RuntimeException error;
+
+        private Particion(long desde, long hasta) {
+            this.desde = desde;
+            this.hasta = hasta;
+        }
+
+        private void leer() {
+            try {
+                dao.recorrerRango(desde, hasta, entidad -> {
+                    try {
+                        cola.put(entidad);
+                    } catch (InterruptedException _) {
+                        Thread.currentThread().interrupt();
+                        throw new ConsultaEntityException("Recorrido cancelado.");
+                    }
+                });
+            } catch (SQLException e) {
+                error = new ConsultaEntityException(
+                        "Error al recorrer la partición de IDs " + desde + "-" + hasta + ": " + e.getMessage());
+            } catch (RuntimeException e) {
+                error = e;
+            } finally {
+                terminar();
+            }
+        }
+
+        /***
+         * Encola la marca de fin. Si el recorrido fue cancelado nadie la espera y se descarta.
+         */
+        private void terminar() {
+            try {
+                cola.put(FIN);
+            } catch (InterruptedException _) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
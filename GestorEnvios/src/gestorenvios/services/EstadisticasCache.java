@@ -0,0 +1,25 @@
+package gestorenvios.services;
+
+/***
+ * Estadísticas acumuladas de una caché de lectura.
+ *
+ * @param nombre Nombre de la caché
+ * @param tamanio Cantidad actual de entradas
+ * @param tamanioMaximo Cantidad máxima de entradas
+ * @param aciertos Lecturas resueltas desde la caché
+ * @param fallos Lecturas que debieron ir a la base de datos
+ * @param desalojos Entradas descartadas por superar el tamaño máximo
+ * @param expiraciones Entradas descartadas por vencidas
+ */
+public record EstadisticasCache(String nombre, int tamanio, int tamanioMaximo,
+                                long aciertos, long fallos, long desalojos, long expiraciones) {
+
+    /***
+     * Calcula la proporción de lecturas resueltas desde la caché.
+     * @return Tasa de aciertos entre 0 y 1.
+     */
+    public double tasaAciertos() {
+        long lecturas = aciertos + fallos;
+        return lecturas > 0L ? (double) aciertos / lecturas : 0.0;
+    }
+}
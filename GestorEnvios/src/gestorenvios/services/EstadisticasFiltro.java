@@ -0,0 +1,28 @@
+package gestorenvios.services;
+
+/***
+ * Estadísticas de un filtro de Bloom de códigos existentes.
+ *
+ * @param nombre Nombre del filtro
+ * @param listo Si el filtro está construido y se consulta antes de ir a la base de datos
+ * @param elementos Cantidad estimada de códigos agregados
+ * @param capacidad Cantidad de códigos para la que se dimensionó
+ * @param bits Tamaño del arreglo de bits
+ * @param funcionesHash Cantidad de funciones de hash
+ * @param tasaConfigurada Tasa de falsos positivos configurada para la capacidad
+ * @param tasaEstimada Tasa de falsos positivos estimada con los elementos actuales
+ * @param consultas Búsquedas que consultaron el filtro
+ * @param descartadas Búsquedas respondidas desde memoria porque el código seguro no existe
+ */
+public record EstadisticasFiltro(String nombre, boolean listo, long elementos, long capacidad, long bits,
+                                 int funcionesHash, double tasaConfigurada, double tasaEstimada,
+                                 long consultas, long descartadas) {
+
+    /***
+     * Calcula la proporción de búsquedas respondidas sin ir a la base de datos.
+     * @return Tasa de descarte entre 0 y 1.
+     */
+    public double tasaDescarte() {
+        return consultas > 0L ? (double) descartadas / consultas : 0.0;
+    }
+}
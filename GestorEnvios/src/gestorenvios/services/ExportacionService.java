@@ -0,0 +1,262 @@
+package gestorenvios.services;
+
+import gestorenvios.dao.EnvioDAO;
+import gestorenvios.dao.PedidoDAO;
+import gestorenvios.entities.Envio;
+import gestorenvios.entities.Pedido;
+import gestorenvios.models.exceptions.ExportacionException;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.zip.GZIPOutputStream;
+
+/***
+ * Exportación masiva de pedidos y envíos activos a CSV o NDJSON (un objeto JSON por línea).
+ * <p>
+ * Los registros se leen en streaming desde la base de datos y se escriben en el archivo a
+ * medida que llegan, por lo que la memoria usada es constante sin importar el tamaño de
+ * las tablas. Opcionalmente el archivo se comprime con gzip.
+ * <p>
+ * Con paralelismo mayor a 1 la tabla se lee por rangos de IDs en varias conexiones a la vez
+ * ({@link EscaneoParalelo} en modo ordenado), manteniendo el orden por ID del archivo.
+ */
+public class ExportacionService {
+
+    private static final int TAMANIO_BUFFER = 64 * 1024;
+
+    private static final String[] COLUMNAS_ENVIO = {
+            "id", "tracking", "empresa", "tipo", "costo", "fecha_despacho", "fecha_estimada", "estado"
+    };
+
+    private static final String[] COLUMNAS_PEDIDO = {
+            "id", "numero", "fecha", "cliente_nombre", "total", "estado",
+            "envio_id", "envio_tracking", "envio_empresa", "envio_tipo", "envio_costo",
+            "envio_fecha_despacho", "envio_fecha_estimada", "envio_estado"
+    };
+
+    private final PedidoDAO pedidoDAO;
+    private final EnvioDAO envioDAO;
+    private final int paralelismo;
+
+    /***
+     * Constructor del servicio de exportación.
+     * @param pedidoDAO DAO de pedidos.
+     * @param envioDAO DAO de envíos.
+     * @param paralelismo Conexiones usadas a la vez para leer cada tabla (1 para una lectura secuencial).
+     */
+    public ExportacionService(PedidoDAO pedidoDAO, EnvioDAO envioDAO, int paralelismo) {
+        this.pedidoDAO = pedidoDAO;
+        this.envioDAO = envioDAO;
+        this.paralelismo = paralelismo;
+    }
+
+    /***
+     * Exporta todos los pedidos activos, con los datos de su envío asociado.
+     * @param destino Archivo a generar (se reemplaza si existe).
+     * @param formato Formato del archivo.
+     * @param comprimir true para comprimir el archivo con gzip.
+     * @return Resultado de la exportación.
+     */
+    public ResultadoExportacion exportarPedidos(Path destino, FormatoExportacion formato, boolean comprimir) {
+        Recorrido<Pedido> recorrido = paralelismo > 1
+                ? consumidor -> new EscaneoParalelo<>(pedidoDAO, paralelismo).recorrer(consumidor, true)
+                : pedidoDAO::recorrerActivos;
+        return exportar(destino, formato, comprimir, COLUMNAS_PEDIDO, recorrido, ExportacionService::valoresPedido);
+    }
+
+    /***
+     * Exporta todos los envíos activos.
+     * @param destino Archivo a generar (se reemplaza si existe).
+     * @param formato Formato del archivo.
+     * @param comprimir true para comprimir el archivo con gzip.
+     * @return Resultado de la exportación.
+     */
+    public ResultadoExportacion exportarEnvios(Path destino, FormatoExportacion formato, boolean comprimir) {
+        Recorrido<Envio> recorrido = paralelismo > 1
+                ? consumidor -> new EscaneoParalelo<>(envioDAO, paralelismo).recorrer(consumidor, true)
+                : envioDAO::recorrerActivos;
+        return exportar(destino, formato, comprimir, COLUMNAS_ENVIO, recorrido, ExportacionService::valoresEnvio);
+    }
+
+    /***
+     * Recorre las entidades y escribe cada una en el archivo a medida que se leen.
+     */
+    private <T> ResultadoExportacion exportar(Path destino, FormatoExportacion formato, boolean comprimir,
+                                              String[] columnas, Recorrido<T> recorrido,
+                                              Function<T, Object[]> valores) {
+        long inicio = System.nanoTime();
+        long[] registros = {0L};
+
+        try {
+            Path directorio = destino.toAbsolutePath().getParent();
+            if (directorio != null) {
+                Files.createDirectories(directorio);
+            }
+            try (Writer escritor = abrir(destino, comprimir)) {
+                if (formato == FormatoExportacion.CSV) {
+                    escribirFilaCsv(escritor, columnas);
+                }
+                recorrido.recorrer(entidad -> {
+                    try {
+                        Object[] fila = valores.apply(entidad);
+                        if (formato == FormatoExportacion.CSV) {
+                            escribirFilaCsv(escritor, fila);
+                        } else {
+                            escribirObjetoJson(escritor, columnas, fila);
+                        }
+                        registros[0]++;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        } catch (UncheckedIOException e) {
+            throw new ExportacionException("Error al escribir el archivo de exportación: " + e.getCause().getMessage());
+        } catch (IOException e) {
+            throw new ExportacionException("Error al escribir el archivo de exportación: " + e.getMessage());
+        } catch (SQLException e) {
+            throw new ExportacionException("Error al leer los registros a exportar: " + e.getMessage());
+        }
+
+        long milisegundos = (System.nanoTime() - inicio) / 1_000_000L;
+        return new ResultadoExportacion(destino, registros[0], milisegundos);
+    }
+
+    /***
+     * Abre el archivo de destino con buffer y, si corresponde, compresión gzip.
+     */
+    private static Writer abrir(Path destino, boolean comprimir) throws IOException {
+        OutputStream salida = Files.newOutputStream(destino);
+        if (comprimir) {
+            salida = new GZIPOutputStream(salida, TAMANIO_BUFFER);
+        }
+        return new BufferedWriter(new OutputStreamWriter(salida, StandardCharsets.UTF_8), TAMANIO_BUFFER);
+    }
+
+    private static Object[] valoresEnvio(Envio envio) {
+        return new Object[]{
+                envio.getId(), envio.getTracking(), envio.getEmpresa(), envio.getTipo(), envio.getCosto(),
+                envio.getFechaDespacho(), envio.getFechaEstimada(), envio.getEstado()
+        };
+    }
+
+    private static Object[] valoresPedido(Pedido pedido) {
+        Envio envio = pedido.getEnvio();
+        return new Object[]{
+                pedido.getId(), pedido.getNumero(), pedido.getFecha(), pedido.getClienteNombre(),
+                pedido.getTotal(), pedido.getEstado(),
+                envio != null ? envio.getId() : null,
+                envio != null ? envio.getTracking() : null,
+                envio != null ? envio.getEmpresa() : null,
+                envio != null ? envio.getTipo() : null,
+                envio != null ? envio.getCosto() : null,
+                envio != null ? envio.getFechaDespacho() : null,
+                envio != null ? envio.getFechaEstimada() : null,
+                envio != null ? envio.getEstado() : null
+        };
+    }
+
+    /***
+     * Escribe una fila CSV (RFC 4180): los valores con coma, comillas o saltos de línea se
+     * encierran entre comillas y las comillas internas se duplican. Los nulos quedan vacíos.
+     */
+    private static void escribirFilaCsv(Writer escritor, Object[] fila) throws IOException {
+        for (int i = 0; i < fila.length; i++) {
+            if (i > 0) {
+                escritor.write(',');
+            }
+            if (fila[i] == null) {
+                continue;
+            }
+            String valor = formatear(fila[i]);
+            if (valor.indexOf(',') >= 0 || valor.indexOf('"') >= 0
+                    || valor.indexOf('\n') >= 0 || valor.indexOf('\r') >= 0) {
+                escritor.write('"');
+                escritor.write(valor.replace("\"", "\"\""));
+                escritor.write('"');
+            } else {
+                escritor.write(valor);
+            }
+        }
+        escritor.write('\n');
+    }
+
+    /***
+     * Escribe un objeto JSON en una línea. Los números se escriben sin comillas y los nulos como null.
+     */
+    private static void escribirObjetoJson(Writer escritor, String[] columnas, Object[] fila) throws IOException {
+        escritor.write('{');
+        for (int i = 0; i < columnas.length; i++) {
+            if (i > 0) {
+                escritor.write(',');
+            }
+            escritor.write('"');
+            escritor.write(columnas[i]);
+            escritor.write("\":");
+            Object valor = fila[i];
+            if (valor == null) {
+                escritor.write("null");
+            } else if (valor instanceof Number) {
+                escritor.write(formatear(valor));
+            } else {
+                escribirCadenaJson(escritor, formatear(valor));
+            }
+        }
+        escritor.write("}\n");
+    }
+
+    private static void escribirCadenaJson(Writer escritor, String valor) throws IOException {
+        escritor.write('"');
+        for (int i = 0; i < valor.length(); i++) {
+            char c = valor.charAt(i);
+            switch (c) {
+                case '"' -> escritor.write("\\\"");
+                case '\\' -> escritor.write("\\\\");
+                case '\n' -> escritor.write("\\n");
+                case '\r' -> escritor.write("\\r");
+                case '\t' -> escritor.write("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        escritor.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        escritor.write(c);
+                    }
+                }
+            }
+        }
+        escritor.write('"');
+    }
+
+    /***
+     * Convierte un valor a texto: importes con dos decimales, enums por nombre, fechas ISO-8601.
+     */
+    private static String formatear(Object valor) {
+        if (valor instanceof Double importe) {
+            return BigDecimal.valueOf(importe).setScale(2, RoundingMode.HALF_UP).toPlainString();
+        }
+        if (valor instanceof Enum<?> constante) {
+            return constante.name();
+        }
+        return valor.toString();
+    }
+
+    /***
+     * Recorrido en streaming de las entidades de una tabla.
+     */
+    @FunctionalInterface
+    private interface Recorrido<T> {
+        void recorrer(Consumer<T> consumidor) throws SQLException;
+    }
+}
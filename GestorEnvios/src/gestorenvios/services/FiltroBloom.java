@@ -0,0 +1,150 @@
+package gestorenvios.services;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/***
+ * Filtro de Bloom sobre textos: responde si un texto puede haber sido agregado o si seguro no lo fue.
+ * <p>
+ * El tamaño del arreglo de bits y la cantidad de funciones de hash se calculan a partir de la
+ * capacidad esperada y de la tasa de falsos positivos buscada. Cada texto se resume en un hash de
+ * 64 bits, del que se derivan las posiciones por doble hashing. Los bits se guardan en un
+ * {@link AtomicLongArray}, por lo que agregar y consultar es seguro entre hilos sin bloqueos.
+ * <p>
+ * Los elementos no se pueden quitar: si se supera la capacidad esperada el filtro sigue siendo
+ * correcto, pero la tasa real de falsos positivos crece (ver {@link #tasaFalsosPositivosEstimada()}).
+ * La tasa y la cantidad de elementos se estiman a partir de los bits encendidos, por lo que agregar
+ * un texto repetido no altera las estadísticas.
+ */
+public class FiltroBloom {
+
+    private final AtomicLongArray bits;
+    private final long cantidadBits;
+    private final int funcionesHash;
+    private final long capacidad;
+    private final double tasaFalsosPositivos;
+    private final LongAdder bitsEncendidos = new LongAdder();
+
+    /***
+     * Constructor del filtro.
+     * @param capacidad Cantidad de elementos esperados.
+     * @param tasaFalsosPositivos Tasa de falsos positivos buscada con esa cantidad de elementos (entre 0 y 1).
+     */
+    public FiltroBloom(long capacidad, double tasaFalsosPositivos) {
+        if (tasaFalsosPositivos <= 0.0 || tasaFalsosPositivos >= 1.0) {
+            throw new IllegalArgumentException("La tasa de falsos positivos debe estar entre 0 y 1");
+        }
+        this.capacidad = Math.max(1L, capacidad);
+        this.tasaFalsosPositivos = tasaFalsosPositivos;
+        long bitsNecesarios = (long) Math.ceil(-this.capacidad * Math.log(tasaFalsosPositivos) / (Math.log(2) * Math.log(2)));
+        int palabras = Math.toIntExact(Math.max(1L, (bitsNecesarios + Long.SIZE - 1) / Long.SIZE));
+        this.bits = new AtomicLongArray(palabras);
+        this.cantidadBits = (long) palabras * Long.SIZE;
+        this.funcionesHash = Math.max(1, (int) Math.round((double) cantidadBits / this.capacidad * Math.log(2)));
+    }
+
+    /***
+     * Agrega un texto al filtro.
+     * @param texto Texto a agregar.
+     */
+    public void agregar(String texto) {
+        long hash = hash(texto);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < funcionesHash; i++) {
+            long posicion = posicion(h1, h2, i);
+            int palabra = (int) (posicion >>> 6);
+            long mascara = 1L << posicion;
+            long actual = bits.get(palabra);
+            while ((actual & mascara) == 0L) {
+                long anterior = bits.compareAndExchange(palabra, actual, actual | mascara);
+                if (anterior == actual) {
+                    bitsEncendidos.increment();
+                    break;
+                }
+                actual = anterior;
+            }
+        }
+    }
+
+    /***
+     * Indica si un texto puede haber sido agregado.
+     * @param texto Texto a consultar.
+     * @return false si el texto seguro no fue agregado; true si puede haberlo sido.
+     */
+    public boolean puedeContener(String texto) {
+        long hash = hash(texto);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < funcionesHash; i++) {
+            long posicion = posicion(h1, h2, i);
+            if ((bits.get((int) (posicion >>> 6)) & (1L << posicion)) == 0L) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /***
+     * Estima la tasa de falsos positivos actual como la probabilidad de encontrar encendidos los
+     * k bits de un texto no agregado: (bits encendidos / m)^k.
+     * @return Tasa estimada, entre 0 y 1.
+     */
+    public double tasaFalsosPositivosEstimada() {
+        return Math.pow((double) bitsEncendidos.sum() / cantidadBits, funcionesHash);
+    }
+
+    /***
+     * Estima la cantidad de elementos distintos agregados a partir de los bits encendidos:
+     * -(m/k)·ln(1 - bits encendidos / m).
+     * @return Cantidad estimada de elementos.
+     */
+    public long elementosEstimados() {
+        double proporcion = (double) bitsEncendidos.sum() / cantidadBits;
+        if (proporcion >= 1.0) {
+            return Long.MAX_VALUE;
+        }
+        return Math.round(-(double) cantidadBits / funcionesHash * Math.log1p(-proporcion));
+    }
+
+    public long getCantidadBits() {
+        return cantidadBits;
+    }
+
+    public int getFuncionesHash() {
+        return funcionesHash;
+    }
+
+    public long getCapacidad() {
+        return capacidad;
+    }
+
+    public double getTasaFalsosPositivos() {
+        return tasaFalsosPositivos;
+    }
+
+    /***
+     * Posición del bit de la función i, por doble hashing (h1 + i·h2) sobre el total de bits.
+     */
+    private long posicion(int h1, int h2, int i) {
+        long combinado = h1 + (long) i * h2;
+        return Math.floorMod(combinado, cantidadBits);
+    }
+
+    /***
+     * Hash de 64 bits de un texto: FNV-1a sobre sus caracteres, mezclado con el finalizador de MurmurHash3.
+     */
+    private static long hash(String texto) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < texto.length(); i++) {
+            h ^= texto.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb93fe53e25c5L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
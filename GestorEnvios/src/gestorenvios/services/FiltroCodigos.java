@@ -0,0 +1,268 @@
+package gestorenvios.services;
+
+import gestorenvios.config.TransactionManager;
+import gestorenvios.dao.EnvioDAO;
+import gestorenvios.dao.PedidoDAO;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/***
+ * Filtros de Bloom de los códigos de tracking y números de pedido existentes.
+ * <p>
+ * Permite responder desde memoria las búsquedas por códigos que no existen (errores de tipeo,
+ * códigos de otras empresas), sin ir a la base de datos: si el filtro indica que el código seguro
+ * no existe, la búsqueda devuelve null directamente. Si el código puede existir, se consulta la
+ * base de datos como siempre.
+ * <p>
+ * Los filtros se construyen en segundo plano al iniciar, recorriendo las tablas en streaming, y se
+ * reconstruyen periódicamente para recuperar la tasa de falsos positivos configurada e incorporar
+ * los códigos creados por otros procesos (las otras instancias de la aplicación los informan antes,
+ * a través de la tabla de cambios). Los servicios registran cada código que generan dentro de
+ * la transacción que lo inserta: se agrega antes de confirmar, para que una búsqueda nunca descarte
+ * un código ya confirmado por este proceso, y otra vez después de confirmar, para que llegue también
+ * a un filtro cuya construcción haya empezado mientras tanto. Mientras un filtro no esté construido,
+ * las búsquedas van a la base de datos.
+ */
+public class FiltroCodigos {
+
+    private final PedidoDAO pedidoDAO;
+    private final EnvioDAO envioDAO;
+    private final double tasaFalsosPositivos;
+    private final long capacidadMinima;
+    private final long intervaloReconstruccionSegundos;
+
+    private final Filtro trackings = new Filtro("Códigos de tracking");
+    private final Filtro numerosPedido = new Filtro("Números de pedido");
+
+    private ScheduledExecutorService reconstruccion;
+
+    /***
+     * Constructor de los filtros.
+     * @param pedidoDAO DAO de pedidos, usado para construir el filtro de números de pedido.
+     * @param envioDAO DAO de envíos, usado para construir el filtro de trackings.
+     * @param tasaFalsosPositivos Tasa de falsos positivos buscada (entre 0 y 1).
+     * @param capacidadMinima Cantidad mínima de códigos para la que se dimensiona cada filtro.
+     * @param intervaloReconstruccionSegundos Intervalo entre reconstrucciones.
+     */
+    public FiltroCodigos(PedidoDAO pedidoDAO, EnvioDAO envioDAO, double tasaFalsosPositivos,
+                         long capacidadMinima, long intervaloReconstruccionSegundos) {
+        if (tasaFalsosPositivos <= 0.0 || tasaFalsosPositivos >= 1.0) {
+            throw new IllegalArgumentException("La tasa de falsos positivos debe estar entre 0 y 1");
+        }
+        this.pedidoDAO = pedidoDAO;
+        this.envioDAO = envioDAO;
+        this.tasaFalsosPositivos = tasaFalsosPositivos;
+        this.capacidadMinima = Math.max(1L, capacidadMinima);
+        this.intervaloReconstruccionSegundos = intervaloReconstruccionSegundos;
+    }
+
+    /***
+     * Inicia la construcción y la reconstrucción periódica en segundo plano. La primera se ejecuta de inmediato.
+     */
+    public synchronized void iniciar() {
+        if (reconstruccion != null) {
+            return;
+        }
+        reconstruccion = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "filtro-codigos-carga");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        reconstruccion.scheduleWithFixedDelay(() -> {
+            try {
+                construir();
+            } catch (SQLException _) {
+                // Se reintentará en la próxima ejecución; mientras tanto se mantienen los filtros actuales
+            }
+        }, 0L, intervaloReconstruccionSegundos, TimeUnit.SECONDS);
+    }
+
+    /***
+     * Detiene la reconstrucción periódica.
+     */
+    public synchronized void detener() {
+        if (reconstruccion != null) {
+            reconstruccion.shutdownNow();
+            reconstruccion = null;
+        }
+    }
+
+    /***
+     * Construye ambos filtros recorriendo los códigos de los envíos y pedidos activos.
+     * Cada filtro se dimensiona al doble de la cantidad actual de filas, con un mínimo configurable.
+     * @throws SQLException Si ocurre un error al leer las tablas.
+     */
+    public synchronized void construir() throws SQLException {
+        FiltroBloom nuevoTrackings = trackings.iniciarConstruccion(dimensionar(envioDAO.obtenerCantidadTotalDeEnvios()));
+        try {
+            envioDAO.recorrerTrackings(tracking -> nuevoTrackings.agregar(normalizar(tracking)));
+            trackings.terminarConstruccion(nuevoTrackings);
+        } finally {
+            trackings.cancelarConstruccion();
+        }
+
+        FiltroBloom nuevoNumeros = numerosPedido.iniciarConstruccion(dimensionar(pedidoDAO.obtenerCantidadTotalDePedidos()));
+        try {
+            pedidoDAO.recorrerNumeros(numero -> nuevoNumeros.agregar(normalizar(numero)));
+            numerosPedido.terminarConstruccion(nuevoNumeros);
+        } finally {
+            numerosPedido.cancelarConstruccion();
+        }
+    }
+
+    /***
+     * Indica si un código de tracking puede existir.
+     * @param tracking Código de tracking buscado.
+     * @return false si seguro no existe ningún envío activo con ese tracking; true en otro caso.
+     */
+    public boolean puedeExistirTracking(String tracking) {
+        return trackings.puedeContener(tracking);
+    }
+
+    /***
+     * Indica si un número de pedido puede existir.
+     * @param numero Número de pedido buscado.
+     * @return false si seguro no existe ningún pedido activo con ese número; true en otro caso.
+     */
+    public boolean puedeExistirNumeroPedido(String numero) {
+        return numerosPedido.puedeContener(numero);
+    }
+
+    /***
+     * Registra un código de tracking nuevo dentro de la transacción que lo inserta.
+     * @param tracking Código de tracking.
+     * @param transactionManager Gestor de la transacción activa.
+     */
+    public void agregarTracking(String tracking, TransactionManager transactionManager) {
+        trackings.agregar(tracking);
+        transactionManager.despuesDeConfirmar(() -> trackings.agregar(tracking));
+    }
+
+    /***
+     * Registra un número de pedido nuevo dentro de la transacción que lo inserta.
+     * @param numero Número de pedido.
+     * @param transactionManager Gestor de la transacción activa.
+     */
+    public void agregarNumeroPedido(String numero, TransactionManager transactionManager) {
+        numerosPedido.agregar(numero);
+        transactionManager.despuesDeConfirmar(() -> numerosPedido.agregar(numero));
+    }
+
+    /***
+     * Incorpora un código de tracking ya confirmado por otra instancia de la aplicación.
+     * @param tracking Código de tracking.
+     */
+    public void incorporarTracking(String tracking) {
+        trackings.agregar(tracking);
+    }
+
+    /***
+     * Incorpora un número de pedido ya confirmado por otra instancia de la aplicación.
+     * @param numero Número de pedido.
+     */
+    public void incorporarNumeroPedido(String numero) {
+        numerosPedido.agregar(numero);
+    }
+
+    /***
+     * Obtiene las estadísticas de ambos filtros.
+     * @return Estadísticas del filtro de trackings y del de números de pedido.
+     */
+    public List<EstadisticasFiltro> estadisticas() {
+        return List.of(trackings.estadisticas(tasaFalsosPositivos), numerosPedido.estadisticas(tasaFalsosPositivos));
+    }
+
+    private FiltroBloom dimensionar(Long cantidadActual) {
+        long cantidad = cantidadActual == null ? 0L : cantidadActual;
+        return new FiltroBloom(Math.max(capacidadMinima, cantidad * 2L), tasaFalsosPositivos);
+    }
+
+    /***
+     * Normaliza un código como lo compara la base de datos: sin espacios extremos, sin acentos
+     * y sin distinguir mayúsculas (la intercalación de las columnas es insensible a ambos).
+     */
+    private static String normalizar(String codigo) {
+        return IndiceClientes.normalizar(codigo);
+    }
+
+    /***
+     * Filtro de un tipo de código, con el filtro vigente y el que se está construyendo.
+     */
+    private static final class Filtro {
+        private final String nombre;
+        private volatile FiltroBloom actual;
+        private volatile FiltroBloom enConstruccion;
+        private final LongAdder consultas = new LongAdder();
+        private final LongAdder descartadas = new LongAdder();
+
+        private Filtro(String nombre) {
+            this.nombre = nombre;
+        }
+
+        private FiltroBloom iniciarConstruccion(FiltroBloom nuevo) {
+            enConstruccion = nuevo;
+            return nuevo;
+        }
+
+        /***
+         * Publica el filtro construido. Se asigna antes de quitar el filtro en construcción para que
+         * un alta concurrente siempre llegue al filtro que queda vigente.
+         */
+        private void terminarConstruccion(FiltroBloom nuevo) {
+            actual = nuevo;
+        }
+
+        private void cancelarConstruccion() {
+            enConstruccion = null;
+        }
+
+        /***
+         * Agrega un código al filtro en construcción (si hay) y al vigente. El recorrido de la tabla
+         * empieza después de publicar el filtro en construcción, así que un código confirmado antes
+         * de esa publicación lo encuentra el recorrido, y uno confirmado después llega por esta vía.
+         */
+        private void agregar(String codigo) {
+            if (codigo == null || codigo.isBlank()) {
+                return;
+            }
+            String normalizado = normalizar(codigo);
+            FiltroBloom construyendo = enConstruccion;
+            if (construyendo != null) {
+                construyendo.agregar(normalizado);
+            }
+            FiltroBloom vigente = actual;
+            if (vigente != null && vigente != construyendo) {
+                vigente.agregar(normalizado);
+            }
+        }
+
+        private boolean puedeContener(String codigo) {
+            FiltroBloom vigente = actual;
+            if (vigente == null || codigo == null || codigo.isBlank()) {
+                return true;
+            }
+            consultas.increment();
+            if (vigente.puedeContener(normalizar(codigo))) {
+                return true;
+            }
+            descartadas.increment();
+            return false;
+        }
+
+        private EstadisticasFiltro estadisticas(double tasaConfigurada) {
+            FiltroBloom vigente = actual;
+            if (vigente == null) {
+                return new EstadisticasFiltro(nombre, false, 0L, 0L, 0L, 0, tasaConfigurada, 0.0,
+                        consultas.sum(), descartadas.sum());
+            }
+            return new EstadisticasFiltro(nombre, true, vigente.elementosEstimados(), vigente.getCapacidad(),
+                    vigente.getCantidadBits(), vigente.getFuncionesHash(), tasaConfigurada,
+                    vigente.tasaFalsosPositivosEstimada(), consultas.sum(), descartadas.sum());
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package gestorenvios.services;
+
+/***
+ * Formatos de archivo soportados por la exportación masiva.
+ */
+public enum FormatoExportacion {
+    CSV("csv"),
+    NDJSON("ndjson");
+
+    private final String extension;
+
+    FormatoExportacion(String extension) {
+        this.extension = extension;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+}
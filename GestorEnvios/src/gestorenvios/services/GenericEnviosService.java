@@ -1,8 +1,14 @@
 package gestorenvios.services;
 
+import gestorenvios.entities.EstadoEnvio;
+import gestorenvios.models.EnvioResumen;
+import gestorenvios.models.FiltroEnvios;
+import gestorenvios.models.exceptions.ActualizacionEntityException;
 import gestorenvios.models.exceptions.ConsultaEntityException;
 import gestorenvios.models.exceptions.CreacionEntityException;
 
+import java.util.List;
+
 public interface GenericEnviosService<T, U> extends GenericService<T> {
     T buscarPorTracking(String tracking) throws ConsultaEntityException;
 
@@ -10,7 +16,14 @@ public interface GenericEnviosService<T, U> extends GenericService<T> {
 
     Long obtenerCantidadTotalDeEnvios() throws ConsultaEntityException;
 
+    Long obtenerCantidadEstimadaDeEnvios();
+
+    List<EnvioResumen> buscarResumenesDesde(Long ultimoId, Long cantidad) throws ConsultaEntityException;
+
     String crearEnvioYActualizarPedido(T envio, U pedido) throws CreacionEntityException;
 
     void actualizarEstado(T envio, U pedido);
+
+    ResultadoActualizacionMasiva actualizarEstadoMasivo(FiltroEnvios filtro, EstadoEnvio nuevoEstado)
+            throws ActualizacionEntityException;
 }
@@ -1,21 +1,39 @@
 package gestorenvios.services;
 
+import gestorenvios.models.Pagina;
+import gestorenvios.models.PedidoResumen;
 import gestorenvios.models.exceptions.ActualizacionEntityException;
 import gestorenvios.models.exceptions.ConsultaEntityException;
 
-import java.sql.Connection;
 import java.util.List;
 
 public interface GenericPedidosService<T> extends GenericService<T> {
-    void actualizarTx(T entity, Connection conn) throws ActualizacionEntityException;
+    void validar(T entity) throws IllegalArgumentException;
+
+    void actualizarTx(T entity) throws ActualizacionEntityException;
+
+    boolean asignarEnvioTx(T entity, Long idEnvio) throws ActualizacionEntityException;
 
     T buscarPorNumeroPedido(String numero) throws ConsultaEntityException;
 
     T buscarPorNumeroTracking(String tracking) throws ConsultaEntityException;
 
+    T buscarPorIdEnvioTx(Long idEnvio) throws ConsultaEntityException;
+
     List<T> buscarPorCliente(String cliente, Long cantidad, Long pagina);
 
+    List<T> buscarPorClienteDesde(String cliente, Long ultimoId, Long cantidad);
+
+    List<PedidoResumen> buscarResumenesDesde(Long ultimoId, Long cantidad) throws ConsultaEntityException;
+
+    List<PedidoResumen> buscarResumenesPorClienteDesde(String cliente, Long ultimoId, Long cantidad);
+
+    Pagina<PedidoResumen> buscarPrimeraPaginaResumenesPorCliente(String cliente, Long cantidad)
+            throws ConsultaEntityException;
+
     Long obtenerCantidadTotalDePedidos() throws ConsultaEntityException;
 
+    Long obtenerCantidadEstimadaDePedidos();
+
     Long obtenerCantidadTotalDePedidosPorCliente(String clienteNombre);
 }
@@ -6,15 +6,41 @@ import gestorenvios.models.exceptions.CreacionEntityException;
 import gestorenvios.models.exceptions.EliminacionEntityException;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface GenericService<T> {
     String crear(T entity) throws CreacionEntityException;
 
+    List<String> crearLote(List<T> entities) throws CreacionEntityException;
+
+    /***
+     * Crea un lote de entidades en tramos, cada uno en su propia transacción. A diferencia de
+     * {@link #crearLote}, una entidad inválida o rechazada por la base de datos no impide crear
+     * las demás: se informa como rechazada con su motivo.
+     * @param entities Entidades a crear.
+     * @return Entidades creadas (con su código asignado) y rechazadas.
+     */
+    ResultadoLote<T> crearLoteParcial(List<T> entities);
+
     List<T> buscarTodos(Long cantidad, Long pagina) throws ConsultaEntityException;
 
+    List<T> buscarTodosDesde(Long ultimoId, Long cantidad) throws ConsultaEntityException;
+
     T buscarPorId(Long id) throws ConsultaEntityException;
 
     void actualizar(T entity) throws ActualizacionEntityException;
 
+    /***
+     * Lee la entidad vigente, le aplica la modificación y la actualiza. Si otra operación la
+     * modificó entre la lectura y la actualización, la vuelve a leer y reintenta una cantidad
+     * acotada de veces. La modificación puede rechazar el cambio lanzando una excepción.
+     * @param id ID de la entidad a modificar.
+     * @param modificacion Cambio a aplicar sobre la entidad leída; puede ejecutarse más de una vez.
+     * @return La entidad actualizada.
+     * @throws ActualizacionEntityException Si la entidad no existe, la actualización falla o
+     *         persiste el conflicto después de los reintentos (ConflictoVersionException).
+     */
+    T actualizarConReintento(Long id, Consumer<T> modificacion) throws ActualizacionEntityException;
+
     void eliminar(T entity) throws EliminacionEntityException;
 }
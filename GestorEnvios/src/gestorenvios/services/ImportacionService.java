@@ -0,0 +1,436 @@
+package gestorenvios.services;
+
+import gestorenvios.entities.EstadoPedido;
+import gestorenvios.entities.Pedido;
+import gestorenvios.models.exceptions.ImportacionException;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPInputStream;
+
+/***
+ * Importación masiva de pedidos desde un archivo CSV (RFC 4180, con cabecera).
+ * <p>
+ * Columnas reconocidas por nombre en la cabecera (el resto se ignora, por lo que también se
+ * puede importar un archivo generado por {@link ExportacionService}):
+ * <ul>
+ *     <li>cliente_nombre y total: obligatorias.</li>
+ *     <li>fecha (ISO-8601) y estado (nombre de EstadoPedido): opcionales; por defecto la fecha
+ *     actual y NUEVO, como al crear un pedido por consola.</li>
+ * </ul>
+ * El número de pedido no se lee del archivo: se asigna uno nuevo a cada pedido importado.
+ * <p>
+ * El archivo se lee en streaming y se corta en lotes que se procesan en paralelo: cada lote
+ * se convierte y valida con las reglas del servicio de pedidos y sus filas válidas se crean
+ * con {@link GenericPedidosService#crearLoteParcial}, que las inserta en una única transacción
+ * por tramo y aísla las filas que la base de datos rechaza (por ejemplo, por una restricción
+ * CHECK) sin perder el resto del lote. Como a lo sumo hay {@code 2 * paralelismo} lotes en memoria, la
+ * memoria usada no depende del tamaño del archivo. Las filas rechazadas se escriben en un
+ * archivo de errores con su número de línea y el motivo.
+ * <p>
+ * Un registro puede ocupar varias líneas si tiene saltos de línea dentro de un campo entre
+ * comillas, hasta {@value #MAX_LINEAS_POR_REGISTRO} líneas o {@value #MAX_CARACTERES_POR_REGISTRO}
+ * caracteres. Si una comilla queda sin cerrar y el registro supera ese tope, se rechaza y la lectura
+ * sigue en la línea siguiente, en lugar de acumular el resto del archivo en memoria.
+ */
+public class ImportacionService {
+
+    private static final int TAMANIO_BUFFER = 64 * 1024;
+    /*** Tope de un registro con campos entre comillas que ocupa varias líneas. */
+    private static final int MAX_LINEAS_POR_REGISTRO = 100;
+    private static final int MAX_CARACTERES_POR_REGISTRO = 64 * 1024;
+
+    private static final String COLUMNA_CLIENTE_NOMBRE = "cliente_nombre";
+    private static final String COLUMNA_TOTAL = "total";
+    private static final String COLUMNA_FECHA = "fecha";
+    private static final String COLUMNA_ESTADO = "estado";
+
+    private static final String[] COLUMNAS_ERRORES = {"linea", "error", "registro"};
+
+    private final GenericPedidosService<Pedido> pedidoService;
+    private final int tamanioLote;
+    private final int paralelismo;
+
+    /***
+     * Constructor del servicio de importación.
+     * @param pedidoService Servicio de pedidos, usado para validar y crear los pedidos.
+     * @param tamanioLote Cantidad de filas por lote (y por transacción, hasta el tramo máximo del servicio).
+     * @param paralelismo Cantidad de lotes procesados a la vez (y de conexiones usadas).
+     */
+    public ImportacionService(GenericPedidosService<Pedido> pedidoService, int tamanioLote, int paralelismo) {
+        this.pedidoService = pedidoService;
+        this.tamanioLote = Math.max(1, tamanioLote);
+        this.paralelismo = Math.max(1, paralelismo);
+    }
+
+    /***
+     * Importa los pedidos de un archivo CSV. Si el nombre termina en .gz se descomprime al leerlo.
+     * @param origen Archivo CSV a importar.
+     * @param archivoErrores Archivo donde se escriben las filas rechazadas (se reemplaza si existe).
+     * @return Resultado de la importación.
+     * @throws ImportacionException Si el archivo no se puede leer o le faltan columnas obligatorias.
+     */
+    public ResultadoImportacion importarPedidos(Path origen, Path archivoErrores) {
+        long inicio = System.nanoTime();
+        LongAdder importadas = new LongAdder();
+        LongAdder rechazadas = new LongAdder();
+        AtomicReference<RuntimeException> error = new AtomicReference<>();
+        Semaphore lotesEnCurso = new Semaphore(paralelismo * 2);
+        long leidas = 0L;
+
+        try (LectorCsv lector = new LectorCsv(abrir(origen));
+             Writer errores = crearArchivoErrores(archivoErrores)) {
+            Fila cabecera = lector.siguiente();
+            if (cabecera == null) {
+                throw new ImportacionException("El archivo está vacío.");
+            }
+            if (cabecera.error() != null) {
+                throw new ImportacionException("Cabecera inválida: " + cabecera.error());
+            }
+            Columnas columnas = Columnas.de(dividir(cabecera.registro()));
+            escribirFilaCsv(errores, COLUMNAS_ERRORES);
+
+            try (ExecutorService hilos = Executors.newFixedThreadPool(
+                    paralelismo, Thread.ofVirtual().name("importacion-", 0).factory())) {
+                List<Fila> lote = new ArrayList<>(tamanioLote);
+                Fila fila;
+                while (error.get() == null && (fila = lector.siguiente()) != null) {
+                    lote.add(fila);
+                    leidas++;
+                    if (lote.size() == tamanioLote) {
+                        enviar(lote, columnas, hilos, lotesEnCurso, errores, importadas, rechazadas, error);
+                        lote = new ArrayList<>(tamanioLote);
+                    }
+                }
+                if (!lote.isEmpty() && error.get() == null) {
+                    enviar(lote, columnas, hilos, lotesEnCurso, errores, importadas, rechazadas, error);
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw new ImportacionException("Error al procesar el archivo de importación: " + e.getCause().getMessage());
+        } catch (IOException e) {
+            throw new ImportacionException("Error al procesar el archivo de importación: " + e.getMessage());
+        } catch (InterruptedException _) {
+            Thread.currentThread().interrupt();
+            throw new ImportacionException("Importación interrumpida.");
+        }
+
+        if (error.get() != null) {
+            throw new ImportacionException("Importación interrumpida tras " + importadas.sum()
+                    + " pedidos importados: " + error.get().getMessage());
+        }
+        long milisegundos = (System.nanoTime() - inicio) / 1_000_000L;
+        return new ResultadoImportacion(archivoErrores, leidas, importadas.sum(), rechazadas.sum(), milisegundos);
+    }
+
+    /***
+     * Envía un lote a procesar, esperando si ya hay demasiados lotes en memoria.
+     */
+    private void enviar(List<Fila> lote, Columnas columnas, ExecutorService hilos, Semaphore lotesEnCurso,
+                        Writer errores, LongAdder importadas, LongAdder rechazadas,
+                        AtomicReference<RuntimeException> error) throws InterruptedException {
+        lotesEnCurso.acquire();
+        hilos.execute(() -> {
+            try {
+                procesarLote(lote, columnas, errores, importadas, rechazadas);
+            } catch (RuntimeException e) {
+                error.compareAndSet(null, e);
+            } finally {
+                lotesEnCurso.release();
+            }
+        });
+    }
+
+    /***
+     * Convierte y valida las filas de un lote y crea los pedidos válidos. Las filas que la base de
+     * datos rechaza se escriben en el archivo de errores con el motivo informado por el servicio.
+     */
+    private void procesarLote(List<Fila> lote, Columnas columnas, Writer errores,
+                              LongAdder importadas, LongAdder rechazadas) {
+        List<Pedido> pedidos = new ArrayList<>(lote.size());
+        Map<Pedido, Fila> filasValidas = new IdentityHashMap<>(lote.size());
+        for (Fila fila : lote) {
+            try {
+                if (fila.error() != null) {
+                    throw new IllegalArgumentException(fila.error());
+                }
+                Pedido pedido = columnas.convertir(dividir(fila.registro()));
+                pedidoService.validar(pedido);
+                pedidos.add(pedido);
+                filasValidas.put(pedido, fila);
+            } catch (RuntimeException e) {
+                rechazar(errores, fila, e.getMessage());
+                rechazadas.increment();
+            }
+        }
+        if (pedidos.isEmpty()) {
+            return;
+        }
+        ResultadoLote<Pedido> resultado = pedidoService.crearLoteParcial(pedidos);
+        importadas.add(resultado.aceptados().size());
+        for (ResultadoLote.Rechazo<Pedido> rechazo : resultado.rechazados()) {
+            rechazar(errores, filasValidas.get(rechazo.elemento()), rechazo.motivo());
+        }
+        rechazadas.add(resultado.rechazados().size());
+    }
+
+    /***
+     * Escribe una fila rechazada en el archivo de errores. Los lotes se procesan en paralelo,
+     * así que la escritura de cada fila se sincroniza sobre el archivo.
+     */
+    private static void rechazar(Writer errores, Fila fila, String motivo) {
+        try {
+            synchronized (errores) {
+                escribirFilaCsv(errores, new String[]{Long.toString(fila.linea()), motivo, fila.registro()});
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /***
+     * Abre el archivo de origen con buffer y, si su nombre termina en .gz, descompresión gzip.
+     */
+    private static BufferedReader abrir(Path origen) throws IOException {
+        InputStream entrada = Files.newInputStream(origen);
+        if (origen.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".gz")) {
+            entrada = new GZIPInputStream(entrada, TAMANIO_BUFFER);
+        }
+        return new BufferedReader(new InputStreamReader(entrada, StandardCharsets.UTF_8), TAMANIO_BUFFER);
+    }
+
+    private static Writer crearArchivoErrores(Path archivoErrores) throws IOException {
+        Path directorio = archivoErrores.toAbsolutePath().getParent();
+        if (directorio != null) {
+            Files.createDirectories(directorio);
+        }
+        return new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(archivoErrores),
+                StandardCharsets.UTF_8), TAMANIO_BUFFER);
+    }
+
+    /***
+     * Divide un registro CSV en sus campos, quitando las comillas y desduplicando las comillas internas.
+     */
+    private static List<String> dividir(String registro) {
+        List<String> campos = new ArrayList<>();
+        StringBuilder campo = new StringBuilder();
+        boolean entreComillas = false;
+        for (int i = 0; i < registro.length(); i++) {
+            char c = registro.charAt(i);
+            if (entreComillas) {
+                if (c == '"' && i + 1 < registro.length() && registro.charAt(i + 1) == '"') {
+                    campo.append('"');
+                    i++;
+                } else if (c == '"') {
+                    entreComillas = false;
+                } else {
+                    campo.append(c);
+                }
+            } else if (c == '"') {
+                entreComillas = true;
+            } else if (c == ',') {
+                campos.add(campo.toString());
+                campo.setLength(0);
+            } else {
+                campo.append(c);
+            }
+        }
+        campos.add(campo.toString());
+        return campos;
+    }
+
+    /***
+     * Escribe una fila CSV (RFC 4180), encerrando entre comillas los valores que lo requieren.
+     */
+    private static void escribirFilaCsv(Writer escritor, String[] fila) throws IOException {
+        for (int i = 0; i < fila.length; i++) {
+            if (i > 0) {
+                escritor.write(',');
+            }
+            String valor = fila[i] != null ? fila[i] : "";
+            if (valor.indexOf(',') >= 0 || valor.indexOf('"') >= 0
+                    || valor.indexOf('\n') >= 0 || valor.indexOf('\r') >= 0) {
+                escritor.write('"');
+                escritor.write(valor.replace("\"", "\"\""));
+                escritor.write('"');
+            } else {
+                escritor.write(valor);
+            }
+        }
+        escritor.write('\n');
+    }
+
+    /***
+     * Registro CSV sin dividir, con la línea del archivo en la que empieza. Si el lector ya lo
+     * rechazó (por ejemplo, por superar el tope de tamaño), error tiene el motivo.
+     */
+    private record Fila(long linea, String registro, String error) {
+    }
+
+    /***
+     * Posiciones de las columnas reconocidas en la cabecera (-1 si la columna opcional no está).
+     */
+    private record Columnas(int clienteNombre, int total, int fecha, int estado) {
+
+        static Columnas de(List<String> cabecera) {
+            int clienteNombre = -1;
+            int total = -1;
+            int fecha = -1;
+            int estado = -1;
+            for (int i = 0; i < cabecera.size(); i++) {
+                String nombre = cabecera.get(i).replace("\uFEFF", "").trim().toLowerCase(Locale.ROOT);
+                switch (nombre) {
+                    case COLUMNA_CLIENTE_NOMBRE -> clienteNombre = i;
+                    case COLUMNA_TOTAL -> total = i;
+                    case COLUMNA_FECHA -> fecha = i;
+                    case COLUMNA_ESTADO -> estado = i;
+                    default -> {
+                        // Columna no reconocida: se ignora
+                    }
+                }
+            }
+            if (clienteNombre < 0 || total < 0) {
+                throw new ImportacionException("La cabecera debe incluir las columnas "
+                        + COLUMNA_CLIENTE_NOMBRE + " y " + COLUMNA_TOTAL + ".");
+            }
+            return new Columnas(clienteNombre, total, fecha, estado);
+        }
+
+        /***
+         * Convierte los campos de una fila en un pedido nuevo (sin validar sus reglas de negocio).
+         * @throws IllegalArgumentException Si algún campo tiene un formato inválido.
+         */
+        Pedido convertir(List<String> campos) {
+            Pedido pedido = new Pedido();
+            pedido.setClienteNombre(campo(campos, clienteNombre));
+
+            String total = campo(campos, total());
+            if (total.isEmpty()) {
+                throw new IllegalArgumentException("El total del pedido no puede ser nulo o negativo.");
+            }
+            // BigDecimal solo acepta notación decimal: rechaza NaN, Infinity y los literales
+            // hexadecimales o con sufijo que admite Double.parseDouble
+            double importe;
+            try {
+                importe = new BigDecimal(total).doubleValue();
+            } catch (NumberFormatException _) {
+                throw new IllegalArgumentException("Total inválido: " + total);
+            }
+            if (!Double.isFinite(importe)) {
+                throw new IllegalArgumentException("Total inválido: " + total);
+            }
+            pedido.setTotal(importe);
+
+            String fechaPedido = campo(campos, fecha);
+            try {
+                pedido.setFecha(fechaPedido.isEmpty() ? LocalDate.now() : LocalDate.parse(fechaPedido));
+            } catch (RuntimeException _) {
+                throw new IllegalArgumentException("Fecha inválida (se espera AAAA-MM-DD): " + fechaPedido);
+            }
+
+            String estadoPedido = campo(campos, estado);
+            try {
+                pedido.setEstado(estadoPedido.isEmpty()
+                        ? EstadoPedido.NUEVO
+                        : EstadoPedido.valueOf(estadoPedido.toUpperCase(Locale.ROOT)));
+            } catch (IllegalArgumentException _) {
+                throw new IllegalArgumentException("Estado de pedido inválido: " + estadoPedido);
+            }
+            pedido.setEliminado(false);
+            return pedido;
+        }
+
+        private static String campo(List<String> campos, int indice) {
+            return indice >= 0 && indice < campos.size() ? campos.get(indice).trim() : "";
+        }
+    }
+
+    /***
+     * Lector de registros CSV: un registro puede ocupar varias líneas si tiene saltos de
+     * línea dentro de un campo entre comillas.
+     */
+    private static final class LectorCsv implements AutoCloseable {
+        private final BufferedReader lector;
+        private long linea;
+
+        private LectorCsv(BufferedReader lector) {
+            this.lector = lector;
+        }
+
+        /***
+         * Lee el próximo registro no vacío.
+         * @return El registro, o null al llegar al final del archivo.
+         */
+        private Fila siguiente() throws IOException {
+            String texto;
+            do {
+                texto = lector.readLine();
+                linea++;
+                if (texto == null) {
+                    return null;
+                }
+            } while (texto.isBlank());
+
+            long lineaInicio = linea;
+            boolean abiertas = comillasAbiertas(texto, false);
+            if (!abiertas) {
+                return new Fila(lineaInicio, texto, null);
+            }
+            StringBuilder registro = new StringBuilder(texto);
+            int lineas = 1;
+            String continuacion;
+            while (abiertas && (continuacion = lector.readLine()) != null) {
+                linea++;
+                lineas++;
+                registro.append('\n').append(continuacion);
+                abiertas = comillasAbiertas(continuacion, true);
+                if (abiertas && (lineas >= MAX_LINEAS_POR_REGISTRO
+                        || registro.length() > MAX_CARACTERES_POR_REGISTRO)) {
+                    registro.setLength(Math.min(registro.length(), MAX_CARACTERES_POR_REGISTRO));
+                    return new Fila(lineaInicio, registro.toString(), "Registro demasiado largo (" + lineas
+                            + " líneas con una comilla sin cerrar); la lectura sigue en la línea " + (linea + 1));
+                }
+            }
+            return new Fila(lineaInicio, registro.toString(), null);
+        }
+
+        /***
+         * Indica si quedan comillas abiertas al final de una línea, partiendo del estado con el que
+         * terminó la anterior. Solo recorre la línea nueva, no el registro acumulado.
+         */
+        private static boolean comillasAbiertas(String linea, boolean abiertas) {
+            for (int i = 0; i < linea.length(); i++) {
+                if (linea.charAt(i) == '"') {
+                    abiertas = !abiertas;
+                }
+            }
+            return abiertas;
+        }
+
+        @Override
+        public void close() throws IOException {
+            lector.close();
+        }
+    }
+}
@@ -0,0 +1,368 @@
+package gestorenvios.services;
+
+import gestorenvios.dao.PedidoDAO;
+
+import java.sql.SQLException;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/***
+ * Índice invertido de trigramas sobre el nombre de cliente de los pedidos activos.
+ * <p>
+ * Permite resolver búsquedas por subcadena (equivalentes a {@code LIKE '%texto%'}) sin
+ * recorrer la tabla Pedido: cada trigrama del nombre normalizado apunta a la lista ordenada
+ * de IDs de pedidos que lo contienen. Una búsqueda intersecta las listas de los trigramas
+ * del texto buscado y verifica los candidatos contra el nombre normalizado.
+ * <p>
+ * La normalización quita acentos y pasa a mayúsculas, por lo que la búsqueda no distingue
+ * mayúsculas ni acentos. El índice se construye en segundo plano al iniciar (reintentando
+ * periódicamente si la carga falla) y se mantiene sincronizado desde el servicio de pedidos;
+ * mientras no esté listo, el servicio consulta la base de datos.
+ */
+public class IndiceClientes {
+
+    private static final Pattern MARCAS_DIACRITICAS = Pattern.compile("\\p{M}+");
+    private static final int LARGO_TRIGRAMA = 3;
+
+    private final PedidoDAO pedidoDAO;
+    private final long intervaloReintentoSegundos;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    /*** Nombre normalizado por ID de pedido. Protegido por lock. */
+    private final Map<Integer, String> nombres = new HashMap<>();
+    /*** Lista ordenada de IDs de pedido por trigrama. Protegido por lock. */
+    private final Map<String, ListaIds> trigramas = new HashMap<>();
+    /***
+     * IDs agregados, actualizados o eliminados mientras se construye el índice. El recorrido de la
+     * carga los saltea: su fila puede ser anterior al cambio y pisaría el valor actual. Protegido por lock.
+     */
+    private final Set<Integer> modificadosDuranteCarga = new HashSet<>();
+
+    private volatile boolean listo;
+    private boolean cargando;
+
+    private ScheduledExecutorService carga;
+
+    /***
+     * Constructor del índice.
+     * @param pedidoDAO DAO de pedidos, usado para construir el índice.
+     * @param intervaloReintentoSegundos Espera entre intentos de carga mientras el índice no esté listo.
+     */
+    public IndiceClientes(PedidoDAO pedidoDAO, long intervaloReintentoSegundos) {
+        this.pedidoDAO = pedidoDAO;
+        this.intervaloReintentoSegundos = Math.max(1L, intervaloReintentoSegundos);
+    }
+
+    /***
+     * Construye el índice en segundo plano recorriendo los pedidos activos. Si la carga falla se
+     * reintenta cada intervalo configurado hasta que el índice quede listo; desde entonces se mantiene
+     * con las altas, modificaciones y bajas y la tarea ya no hace nada.
+     */
+    public synchronized void iniciar() {
+        if (carga != null) {
+            return;
+        }
+        carga = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "indice-clientes-carga");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        carga.scheduleWithFixedDelay(() -> {
+            if (listo) {
+                return;
+            }
+            try {
+                construir();
+            } catch (SQLException | RuntimeException _) {
+                // Se reintentará en la próxima ejecución; mientras tanto las búsquedas van a la base de datos
+            }
+        }, 0L, intervaloReintentoSegundos, TimeUnit.SECONDS);
+    }
+
+    /***
+     * Detiene la carga en segundo plano.
+     */
+    public synchronized void detener() {
+        if (carga != null) {
+            carga.shutdownNow();
+            carga = null;
+        }
+    }
+
+    /***
+     * Construye el índice recorriendo todos los pedidos activos.
+     * @throws SQLException Si ocurre un error al leer los pedidos.
+     */
+    public void construir() throws SQLException {
+        lock.writeLock().lock();
+        try {
+            cargando = true;
+            modificadosDuranteCarga.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            pedidoDAO.recorrerClientes((id, nombre) -> {
+                lock.writeLock().lock();
+                try {
+                    if (!modificadosDuranteCarga.contains(Math.toIntExact(id))) {
+                        indexar(Math.toIntExact(id), nombre);
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            });
+            listo = true;
+        } finally {
+            lock.writeLock().lock();
+            try {
+                cargando = false;
+                modificadosDuranteCarga.clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /***
+     * Indica si el índice terminó de construirse y puede usarse para búsquedas.
+     * @return true si el índice está listo.
+     */
+    public boolean isListo() {
+        return listo;
+    }
+
+    /***
+     * Agrega o reemplaza el nombre de cliente de un pedido.
+     * @param idPedido ID del pedido.
+     * @param clienteNombre Nombre del cliente.
+     */
+    public void agregar(Long idPedido, String clienteNombre) {
+        if (idPedido == null || clienteNombre == null) {
+            return;
+        }
+        int id = Math.toIntExact(idPedido);
+        lock.writeLock().lock();
+        try {
+            indexar(id, clienteNombre);
+            if (cargando) {
+                modificadosDuranteCarga.add(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /***
+     * Quita un pedido del índice.
+     * @param idPedido ID del pedido.
+     */
+    public void eliminar(Long idPedido) {
+        if (idPedido == null) {
+            return;
+        }
+        int id = Math.toIntExact(idPedido);
+        lock.writeLock().lock();
+        try {
+            desindexar(id);
+            if (cargando) {
+                modificadosDuranteCarga.add(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /***
+     * Busca los pedidos cuyo nombre de cliente contiene el texto indicado.
+     * @param texto Texto a buscar (sin distinguir mayúsculas ni acentos).
+     * @return IDs de los pedidos que coinciden, en orden ascendente.
+     */
+    public long[] buscar(String texto) {
+        String buscado = normalizar(texto);
+        lock.readLock().lock();
+        try {
+            if (buscado.length() < LARGO_TRIGRAMA) {
+                return buscarRecorriendo(buscado);
+            }
+            List<ListaIds> listas = new ArrayList<>();
+            for (String trigrama : trigramasDe(buscado)) {
+                ListaIds lista = trigramas.get(trigrama);
+                if (lista == null) {
+                    return new long[0];
+                }
+                listas.add(lista);
+            }
+            listas.sort(Comparator.comparingInt(lista -> lista.tamanio));
+
+            int[] candidatos = Arrays.copyOf(listas.getFirst().ids, listas.getFirst().tamanio);
+            int cantidad = candidatos.length;
+            for (int i = 1; i < listas.size() && cantidad > 0; i++) {
+                cantidad = intersectar(candidatos, cantidad, listas.get(i));
+            }
+
+            long[] resultado = new long[cantidad];
+            int encontrados = 0;
+            for (int i = 0; i < cantidad; i++) {
+                String nombre = nombres.get(candidatos[i]);
+                if (nombre != null && nombre.contains(buscado)) {
+                    resultado[encontrados++] = candidatos[i];
+                }
+            }
+            return encontrados == resultado.length ? resultado : Arrays.copyOf(resultado, encontrados);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /***
+     * Normaliza un texto para indexarlo o buscarlo: quita acentos y pasa a mayúsculas.
+     * @param texto Texto a normalizar.
+     * @return Texto normalizado.
+     */
+    static String normalizar(String texto) {
+        if (texto == null) {
+            return "";
+        }
+        String descompuesto = Normalizer.normalize(texto.trim(), Normalizer.Form.NFD);
+        return MARCAS_DIACRITICAS.matcher(descompuesto).replaceAll("").toUpperCase(Locale.ROOT);
+    }
+
+    /***
+     * Indexa un nombre de cliente, reemplazando el anterior si existía. Requiere el lock de escritura.
+     */
+    private void indexar(int id, String clienteNombre) {
+        String nombre = normalizar(clienteNombre);
+        String anterior = nombres.put(id, nombre);
+        if (nombre.equals(anterior)) {
+            return;
+        }
+        if (anterior != null) {
+            for (String trigrama : trigramasDe(anterior)) {
+                quitarDeLista(trigrama, id);
+            }
+        }
+        for (String trigrama : trigramasDe(nombre)) {
+            trigramas.computeIfAbsent(trigrama, k -> new ListaIds()).agregar(id);
+        }
+    }
+
+    /***
+     * Quita un pedido del índice. Requiere el lock de escritura.
+     */
+    private void desindexar(int id) {
+        String anterior = nombres.remove(id);
+        if (anterior != null) {
+            for (String trigrama : trigramasDe(anterior)) {
+                quitarDeLista(trigrama, id);
+            }
+        }
+    }
+
+    /***
+     * Quita un ID de la lista de un trigrama, eliminando la lista si queda vacía.
+     */
+    private void quitarDeLista(String trigrama, int id) {
+        ListaIds lista = trigramas.get(trigrama);
+        if (lista != null && lista.quitar(id) && lista.tamanio == 0) {
+            trigramas.remove(trigrama);
+        }
+    }
+
+    /***
+     * Resuelve búsquedas de menos de tres caracteres recorriendo los nombres en memoria.
+     * Requiere el lock de lectura.
+     */
+    private long[] buscarRecorriendo(String buscado) {
+        return nombres.entrySet().stream()
+                .filter(entrada -> entrada.getValue().contains(buscado))
+                .mapToLong(Map.Entry::getKey)
+                .sorted()
+                .toArray();
+    }
+
+    /***
+     * Obtiene los trigramas distintos de un texto normalizado.
+     */
+    private static Set<String> trigramasDe(String texto) {
+        Set<String> resultado = new LinkedHashSet<>();
+        for (int i = 0; i + LARGO_TRIGRAMA <= texto.length(); i++) {
+            resultado.add(texto.substring(i, i + LARGO_TRIGRAMA));
+        }
+        return resultado;
+    }
+
+    /***
+     * Intersecta en el lugar los primeros {@code cantidad} candidatos con una lista ordenada.
+     * @return Cantidad de candidatos que quedan.
+     */
+    private static int intersectar(int[] candidatos, int cantidad, ListaIds lista) {
+        int quedan = 0;
+        int j = 0;
+        for (int i = 0; i < cantidad && j < lista.tamanio; i++) {
+            int id = candidatos[i];
+            while (j < lista.tamanio && lista.ids[j] < id) {
+                j++;
+            }
+            if (j < lista.tamanio && lista.ids[j] == id) {
+                candidatos[quedan++] = id;
+            }
+        }
+        return quedan;
+    }
+
+    /***
+     * Lista ordenada y sin repetidos de IDs de pedido, sobre un arreglo de enteros primitivos.
+     */
+    private static final class ListaIds {
+        private int[] ids = new int[4];
+        private int tamanio;
+
+        private void agregar(int id) {
+            if (tamanio == 0 || ids[tamanio - 1] < id) {
+                asegurarCapacidad();
+                ids[tamanio++] = id;
+                return;
+            }
+            int posicion = Arrays.binarySearch(ids, 0, tamanio, id);
+            if (posicion >= 0) {
+                return;
+            }
+            int insercion = -posicion - 1;
+            asegurarCapacidad();
+            System.arraycopy(ids, insercion, ids, insercion + 1, tamanio - insercion);
+            ids[insercion] = id;
+            tamanio++;
+        }
+
+        private boolean quitar(int id) {
+            int posicion = Arrays.binarySearch(ids, 0, tamanio, id);
+            if (posicion < 0) {
+                return false;
+            }
+            System.arraycopy(ids, posicion + 1, ids, posicion, tamanio - posicion - 1);
+            tamanio--;
+            return true;
+        }
+
+        private void asegurarCapacidad() {
+            if (tamanio == ids.length) {
+                ids = Arrays.copyOf(ids, ids.length * 2);
+            }
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package gestorenvios.services;
+
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+/***
+ * Mapa de claves long primitivas a valores, con direccionamiento abierto y sondeo lineal.
+ * <p>
+ * Las claves se guardan en un arreglo long[], sin crear objetos Long por cada acceso. Las bajas
+ * reacomodan las entradas siguientes del mismo grupo (sin marcas de borrado), por lo que las
+ * búsquedas no se degradan con el uso. No es seguro para hilos.
+ *
+ * @param <V> Tipo de valor
+ */
+final class MapaLong<V> {
+
+    private static final float FACTOR_CARGA = 0.5f;
+
+    private long[] claves;
+    private Object[] valores;
+    private int mascara;
+    private int cantidad;
+    private int umbral;
+
+    /***
+     * Constructor del mapa.
+     * @param capacidadEsperada Cantidad de entradas que se espera guardar sin redimensionar.
+     */
+    MapaLong(int capacidadEsperada) {
+        int capacidad = Integer.highestOneBit(Math.max(4, (int) (capacidadEsperada / FACTOR_CARGA)) - 1) << 1;
+        inicializar(capacidad);
+    }
+
+    int size() {
+        return cantidad;
+    }
+
+    /***
+     * Obtiene el valor de una clave.
+     * @return Valor de la clave, o null si no está.
+     */
+    @SuppressWarnings("unchecked")
+    V get(long clave) {
+        int i = posicion(clave);
+        while (valores[i] != null) {
+            if (claves[i] == clave) {
+                return (V) valores[i];
+            }
+            i = (i + 1) & mascara;
+        }
+        return null;
+    }
+
+    /***
+     * Guarda el valor de una clave.
+     * @param valor Valor a guardar (no puede ser null).
+     * @return Valor anterior de la clave, o null si no estaba.
+     */
+    @SuppressWarnings("unchecked")
+    V put(long clave, V valor) {
+        if (valor == null) {
+            throw new IllegalArgumentException("El valor no puede ser null");
+        }
+        int i = posicion(clave);
+        while (valores[i] != null) {
+            if (claves[i] == clave) {
+                V anterior = (V) valores[i];
+                valores[i] = valor;
+                return anterior;
+            }
+            i = (i + 1) & mascara;
+        }
+        claves[i] = clave;
+        valores[i] = valor;
+        if (++cantidad > umbral) {
+            redimensionar();
+        }
+        return null;
+    }
+
+    /***
+     * Quita una clave.
+     * @return Valor que tenía la clave, o null si no estaba.
+     */
+    @SuppressWarnings("unchecked")
+    V remove(long clave) {
+        int i = posicion(clave);
+        while (valores[i] != null) {
+            if (claves[i] == clave) {
+                V anterior = (V) valores[i];
+                quitarEn(i);
+                return anterior;
+            }
+            i = (i + 1) & mascara;
+        }
+        return null;
+    }
+
+    /***
+     * Quita todas las entradas cuyo valor cumple la condición.
+     * @return Cantidad de entradas quitadas.
+     */
+    @SuppressWarnings("unchecked")
+    int removeIf(Predicate<V> condicion) {
+        int quitadas = 0;
+        int i = 0;
+        while (i < valores.length) {
+            if (valores[i] != null && condicion.test((V) valores[i])) {
+                quitarEn(i);
+                quitadas++;
+                // quitarEn pudo mover a la posición i una entrada todavía no evaluada
+            } else {
+                i++;
+            }
+        }
+        return quitadas;
+    }
+
+    void clear() {
+        Arrays.fill(valores, null);
+        cantidad = 0;
+    }
+
+    /***
+     * Vacía la posición i y reacomoda las entradas siguientes del grupo que quedarían
+     * inalcanzables desde su posición ideal.
+     */
+    private void quitarEn(int i) {
+        int libre = i;
+        int j = (i + 1) & mascara;
+        while (valores[j] != null) {
+            int ideal = posicion(claves[j]);
+            // La entrada de j puede ocupar el hueco si su posición ideal no está entre el hueco y j
+            if (((j - ideal) & mascara) >= ((j - libre) & mascara)) {
+                claves[libre] = claves[j];
+                valores[libre] = valores[j];
+                libre = j;
+            }
+            j = (j + 1) & mascara;
+        }
+        valores[libre] = null;
+        cantidad--;
+    }
+
+    private int posicion(long clave) {
+        long mezcla = clave * 0x9E3779B97F4A7C15L;
+        return (int) (mezcla ^ (mezcla >>> 32)) & mascara;
+    }
+
+    private void inicializar(int capacidad) {
+        claves = new long[capacidad];
+        valores = new Object[capacidad];
+        mascara = capacidad - 1;
+        umbral = (int) (capacidad * FACTOR_CARGA);
+    }
+
+    private void redimensionar() {
+        long[] clavesAnteriores = claves;
+        Object[] valoresAnteriores = valores;
+        inicializar(claves.length << 1);
+        for (int i = 0; i < clavesAnteriores.length; i++) {
+            if (valoresAnteriores[i] != null) {
+                int j = posicion(clavesAnteriores[i]);
+                while (valores[j] != null) {
+                    j = (j + 1) & mascara;
+                }
+                claves[j] = clavesAnteriores[i];
+                valores[j] = valoresAnteriores[i];
+            }
+        }
+    }
+}
@@ -1,31 +1,65 @@
 package gestorenvios.services;
 
 import com.mysql.cj.util.StringUtils;
-import gestorenvios.config.DatabaseConnection;
 import gestorenvios.config.TransactionManager;
 import gestorenvios.dao.PedidoDAO;
+import gestorenvios.entities.EstadoPedido;
 import gestorenvios.entities.Pedido;
+import gestorenvios.models.Pagina;
+import gestorenvios.models.PedidoResumen;
 import gestorenvios.models.exceptions.ActualizacionEntityException;
+import gestorenvios.models.exceptions.ConflictoVersionException;
 import gestorenvios.models.exceptions.ConsultaEntityException;
 import gestorenvios.models.exceptions.CreacionEntityException;
 import gestorenvios.models.exceptions.EliminacionEntityException;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.function.Consumer;
 
 /***
  * Implementación del servicio genérico para la gestión de pedidos.
  */
 public class PedidoServiceImpl implements GenericPedidosService<Pedido> {
+    /*** Longitud máxima del nombre de cliente (columna cliente_nombre). */
+    private static final int LONGITUD_MAXIMA_CLIENTE = 120;
+    /*** Cantidad máxima de intentos de una actualización con reintento ante conflictos de versión. */
+    private static final int INTENTOS_CONFLICTO_VERSION = 3;
+    /*** Cantidad máxima de pedidos por transacción en un alta en lote con aislamiento de filas. */
+    private static final int TAMANIO_TRAMO_LOTE = 1_000;
+
     PedidoDAO pedidoDAO;
+    ContadoresActivos contadores;
+    IndiceClientes indiceClientes;
+    Secuencia secuenciaPedidos;
+    CacheLectura<String, Pedido> cachePedidos;
+    CacheEntidades<Pedido> cachePedidosPorId;
+    FiltroCodigos filtroCodigos;
+    private final EjecutorLotes<Pedido> ejecutorLotes = new EjecutorLotes<>(TAMANIO_TRAMO_LOTE);
 
     /***
      * Constructor de la clase PedidoServiceImpl.
      * @param pedidoDAO DAO para la gestión de pedidos.
+     * @param contadores Contadores en memoria de entidades activas.
+     * @param indiceClientes Índice de trigramas de nombres de cliente.
+     * @param secuenciaPedidos Secuencia de números de pedido.
+     * @param cachePedidos Caché de pedidos por tracking.
+     * @param cachePedidosPorId Caché de pedidos por ID.
+     * @param filtroCodigos Filtros de Bloom de trackings y números de pedido existentes.
      */
-    public PedidoServiceImpl(PedidoDAO pedidoDAO) {
+    public PedidoServiceImpl(PedidoDAO pedidoDAO, ContadoresActivos contadores, IndiceClientes indiceClientes,
+                             Secuencia secuenciaPedidos, CacheLectura<String, Pedido> cachePedidos,
+                             CacheEntidades<Pedido> cachePedidosPorId, FiltroCodigos filtroCodigos) {
         this.pedidoDAO = pedidoDAO;
+        this.contadores = contadores;
+        this.indiceClientes = indiceClientes;
+        this.secuenciaPedidos = secuenciaPedidos;
+        this.cachePedidos = cachePedidos;
+        this.cachePedidosPorId = cachePedidosPorId;
+        this.filtroCodigos = filtroCodigos;
     }
 
     /***
@@ -36,10 +70,10 @@ public class PedidoServiceImpl implements GenericPedidosService<Pedido> {
      */
     @Override
     public String crear(Pedido pedido) throws CreacionEntityException {
-        try (Connection conn = DatabaseConnection.getConnection();
-             TransactionManager transactionManager = new TransactionManager(conn)) {
+        try {
             validarPedido(pedido);
-            return crearTx(pedido, transactionManager, conn);
+            return TransactionManager.executeInTransaction(
+                    (transactionManager, conn) -> crearTx(pedido, transactionManager, conn));
         } catch (Exception e) {
             throw new CreacionEntityException("Error al crear el pedido: " + e.getMessage());
         }
@@ -51,41 +85,124 @@ public class PedidoServiceImpl implements GenericPedidosService<Pedido> {
      * @param transactionManager Gestor de transacciones.
      * @param conn Conexión a la base de datos.
      * @return Número del pedido creado.
+     * @throws SQLException Si ocurre un error en la base de datos.
      */
     private String crearTx(Pedido pedido,
                            TransactionManager transactionManager,
-                           Connection conn) {
+                           Connection conn) throws SQLException {
+        String numeroPedido = generarNuevoNumeroPedido();
+        pedido.setNumero(numeroPedido);
+        filtroCodigos.agregarNumeroPedido(numeroPedido, transactionManager);
+        pedidoDAO.insertarTx(pedido, conn);
+        transactionManager.despuesDeConfirmar(() -> {
+            contadores.pedidoCreado(pedido.getEstado());
+            indiceClientes.agregar(pedido.getId(), pedido.getClienteNombre());
+        });
+        return numeroPedido;
+    }
+
+    /***
+     * Crea un lote de pedidos en una única transacción, con una inserción por lotes.
+     * Los números de pedido de todo el lote se reservan de una vez.
+     * @param pedidos Pedidos a crear.
+     * @return Números de los pedidos creados, en el mismo orden.
+     * @throws CreacionEntityException Si algún pedido es inválido o falla la creación (no se crea ninguno).
+     */
+    @Override
+    public List<String> crearLote(List<Pedido> pedidos) throws CreacionEntityException {
+        if (pedidos == null || pedidos.isEmpty()) {
+            return List.of();
+        }
         try {
-            transactionManager.startTransaction();
-            String numeroPedido = generarNuevoNumeroPedidoTx(conn);
-            pedido.setNumero(numeroPedido);
-            pedidoDAO.insertarTx(pedido, conn);
-            transactionManager.commit();
-            return numeroPedido;
+            pedidos.forEach(this::validarPedido);
+            return TransactionManager.executeInTransaction(
+                    (transactionManager, conn) -> crearLoteTx(pedidos, transactionManager, conn));
         } catch (Exception e) {
-            transactionManager.rollback();
-            throw new CreacionEntityException(e.getMessage());
+            throw new CreacionEntityException("Error al crear el lote de pedidos: " + e.getMessage());
         }
     }
 
     /***
-     * Genera un nuevo número de pedido basado en el último número registrado.
+     * Crea un lote de pedidos dentro de una transacción.
+     * @param pedidos Pedidos a crear.
+     * @param transactionManager Gestor de transacciones.
      * @param conn Conexión a la base de datos.
-     * @return Nuevo número de pedido.
-     * @throws SQLException Si ocurre un error al obtener el último número de pedido.
+     * @return Números de los pedidos creados, en el mismo orden.
+     * @throws SQLException Si ocurre un error en la base de datos.
      */
-    private String generarNuevoNumeroPedidoTx(Connection conn) throws SQLException {
-        String ultimoPedido = pedidoDAO.buscarUltimoNumeroPedidoTx(conn);
+    private List<String> crearLoteTx(List<Pedido> pedidos,
+                                     TransactionManager transactionManager,
+                                     Connection conn) throws SQLException {
+        long primerNumero = secuenciaPedidos.reservar(pedidos.size());
+        List<String> numeros = new ArrayList<>(pedidos.size());
+        for (int i = 0; i < pedidos.size(); i++) {
+            String numeroPedido = formatearNumeroPedido(primerNumero + i);
+            pedidos.get(i).setNumero(numeroPedido);
+            filtroCodigos.agregarNumeroPedido(numeroPedido, transactionManager);
+            numeros.add(numeroPedido);
+        }
+        pedidoDAO.insertarLoteTx(pedidos, conn);
+        transactionManager.despuesDeConfirmar(() -> {
+            for (Pedido pedido : pedidos) {
+                contadores.pedidoCreado(pedido.getEstado());
+                indiceClientes.agregar(pedido.getId(), pedido.getClienteNombre());
+            }
+        });
+        return numeros;
+    }
 
-        if (ultimoPedido == null || ultimoPedido.isEmpty()) {
-            throw new SQLException("No se pudo obtener el último número de pedido.");
+    /***
+     * Crea un lote de pedidos en tramos de {@value #TAMANIO_TRAMO_LOTE}, cada uno en su propia transacción.
+     * Los pedidos inválidos se rechazan sin consultar la base de datos; los que la base de datos rechaza
+     * se aíslan con puntos de guardado ({@link EjecutorLotes}) y el resto del tramo se confirma.
+     * @param pedidos Pedidos a crear.
+     * @return Pedidos creados (con su número asignado) y los rechazados con su motivo.
+     */
+    @Override
+    public ResultadoLote<Pedido> crearLoteParcial(List<Pedido> pedidos) {
+        if (pedidos == null || pedidos.isEmpty()) {
+            return new ResultadoLote<>(List.of(), List.of());
         }
-        String[] partes = ultimoPedido.split("-");
-        int numero = Integer.parseInt(partes[1]);
-        numero++;
+        List<Pedido> validos = new ArrayList<>(pedidos.size());
+        List<ResultadoLote.Rechazo<Pedido>> invalidos = new ArrayList<>();
+        for (Pedido pedido : pedidos) {
+            try {
+                validarPedido(pedido);
+                validos.add(pedido);
+            } catch (RuntimeException e) {
+                invalidos.add(new ResultadoLote.Rechazo<>(pedido, e.getMessage()));
+            }
+        }
+        return ejecutorLotes.ejecutar(validos, this::crearLoteTx).conRechazos(invalidos);
+    }
+
+    /***
+     * Genera un nuevo número de pedido a partir de la secuencia de pedidos.
+     * @return Nuevo número de pedido.
+     */
+    private String generarNuevoNumeroPedido() {
+        return formatearNumeroPedido(secuenciaPedidos.siguiente());
+    }
+
+    /***
+     * Da formato a un número de pedido.
+     * @param numero Número secuencial.
+     * @return Número de pedido con formato PED-XXXXXXXX.
+     */
+    private static String formatearNumeroPedido(long numero) {
         return String.format("PED-%08d", numero);
     }
 
+    /***
+     * Valida los datos de un pedido sin persistirlo.
+     * @param pedido Pedido a validar.
+     * @throws IllegalArgumentException Si el pedido no cumple las reglas de validación.
+     */
+    @Override
+    public void validar(Pedido pedido) throws IllegalArgumentException {
+        validarPedido(pedido);
+    }
+
     /***
      * Valida los datos del pedido.
      * @param pedido Pedido a validar.
@@ -94,6 +211,13 @@ public class PedidoServiceImpl implements GenericPedidosService<Pedido> {
         if (StringUtils.isNullOrEmpty(pedido.getClienteNombre())) {
             throw new IllegalArgumentException("El nombre del cliente no puede estar vacío.");
         }
+        if (pedido.getClienteNombre().length() > LONGITUD_MAXIMA_CLIENTE) {
+            throw new IllegalArgumentException("El nombre del cliente no puede superar los "
+                    + LONGITUD_MAXIMA_CLIENTE + " caracteres.");
+        }
+        if (pedido.getFecha() == null) {
+            throw new IllegalArgumentException("La fecha del pedido no puede ser nula.");
+        }
         if (pedido.getTotal() == null || pedido.getTotal() < 0) {
             throw new IllegalArgumentException("El total del pedido no puede ser nulo o negativo.");
         }
@@ -116,15 +240,34 @@ public class PedidoServiceImpl implements GenericPedidosService<Pedido> {
     }
 
     /***
-     * Busca un pedido por su ID.
+     * Busca pedidos paginando por cursor (keyset).
+     * @param ultimoId ID del último pedido de la página anterior (null para la primera página).
+     * @param cantidad Cantidad de pedidos por página.
+     * @return Lista de pedidos.
+     * @throws ConsultaEntityException Si ocurre un error durante la consulta.
+     */
+    @Override
+    public List<Pedido> buscarTodosDesde(Long ultimoId, Long cantidad) throws ConsultaEntityException {
+        try {
+            return pedidoDAO.buscarTodosDesde(ultimoId, cantidad);
+        } catch (Exception e) {
+            throw new ConsultaEntityException("Error al listar pedidos: " + e.getMessage());
+        }
+    }
+
+    /***
+     * Busca un pedido por su ID, a través de la caché de pedidos por ID.
      * @param id ID del pedido.
      * @return Pedido encontrado.
      * @throws ConsultaEntityException Si ocurre un error durante la consulta.
      */
     @Override
     public Pedido buscarPorId(Long id) throws ConsultaEntityException {
+        if (id == null) {
+            throw new ConsultaEntityException("El ID del pedido no puede ser nulo.");
+        }
         try {
-            return pedidoDAO.buscarPorId(id);
+            return cachePedidosPorId.obtener(id, pedidoDAO::buscarPorId);
         } catch (Exception e) {
             throw new ConsultaEntityException("Error al buscar pedido por ID: " + e.getMessage());
         }
@@ -132,12 +275,16 @@ public class PedidoServiceImpl implements GenericPedidosService<Pedido> {
 
     /***
      * Busca un pedido por su número de pedido.
+     * Si el filtro de números de pedido indica que el número no existe, responde sin consultar la base de datos.
      * @param numero Número del pedido.
-     * @return Pedido encontrado.
+     * @return Pedido encontrado, o null si no existe.
      * @throws ConsultaEntityException Si ocurre un error durante la consulta.
      */
     @Override
     public Pedido buscarPorNumeroPedido(String numero) throws ConsultaEntityException {
+        if (!filtroCodigos.puedeExistirNumeroPedido(numero)) {
+            return null;
+        }
         try {
             return pedidoDAO.buscarPorNumero(numero);
         } catch (Exception e) {
@@ -146,22 +293,44 @@ public class PedidoServiceImpl implements GenericPedidosService<Pedido> {
     }
 
     /***
-     * Busca un pedido por su número de tracking.
+     * Busca un pedido por su número de tracking, a través de la caché de pedidos.
+     * Si el filtro de trackings indica que el código no existe, responde sin consultar la base de datos.
      * @param tracking Número de tracking del pedido.
-     * @return Pedido encontrado.
+     * @return Pedido encontrado, o null si no existe.
      * @throws ConsultaEntityException Si ocurre un error durante la consulta.
      */
     @Override
     public Pedido buscarPorNumeroTracking(String tracking) throws ConsultaEntityException {
+        if (!filtroCodigos.puedeExistirTracking(tracking)) {
+            return null;
+        }
         try {
-            return pedidoDAO.buscarPorTracking(tracking);
+            return cachePedidos.obtener(tracking, pedidoDAO::buscarPorTracking);
         } catch (Exception e) {
             throw new ConsultaEntityException("Error al buscar pedido por número de tracking: " + e.getMessage());
         }
     }
 
+    /***
+     * Busca el pedido activo de un envío dentro de la transacción activa del hilo, sin pasar
+     * por la caché y bloqueando ambas filas hasta el fin de la transacción.
+     * @param idEnvio ID del envío.
+     * @return Pedido encontrado, o null si el envío no tiene pedido activo.
+     * @throws ConsultaEntityException Si ocurre un error durante la consulta o no hay transacción activa.
+     */
+    @Override
+    public Pedido buscarPorIdEnvioTx(Long idEnvio) throws ConsultaEntityException {
+        try {
+            return pedidoDAO.buscarPorIdEnvioTx(idEnvio, TransactionManager.conexionActiva());
+        } catch (Exception e) {
+            throw new ConsultaEntityException("Error al buscar el pedido del envío: " + e.getMessage(), e);
+        }
+    }
+
     /***
      * Busca pedidos por el nombre del cliente con paginación.
+     * Si el índice de clientes está listo, los IDs se resuelven en memoria y solo se leen
+     * de la base de datos los pedidos de la página.
      * @param cliente Nombre del cliente.
      * @param cantidad Cantidad de pedidos por página.
      * @param pagina Número de página.
@@ -171,12 +340,120 @@ public class PedidoServiceImpl implements GenericPedidosService<Pedido> {
     @Override
     public List<Pedido> buscarPorCliente(String cliente, Long cantidad, Long pagina) {
         try {
+            if (indiceClientes.isListo()) {
+                long registrosPorPagina = (cantidad != null && cantidad > 0L) ? cantidad : 50L;
+                long numeroPagina = (pagina != null && pagina > 0L) ? pagina : 1L;
+                long[] ids = indiceClientes.buscar(cliente);
+                int desde = (int) Math.min(ids.length, (numeroPagina - 1L) * registrosPorPagina);
+                int hasta = (int) Math.min(ids.length, desde + registrosPorPagina);
+                return pedidoDAO.buscarPorIds(Arrays.copyOfRange(ids, desde, hasta));
+            }
             return pedidoDAO.buscarPorClienteNombre(cliente, cantidad, pagina);
         } catch (Exception e) {
             throw new ConsultaEntityException("Error al buscar pedido por Cliente: " + e.getMessage());
         }
     }
 
+    /***
+     * Busca pedidos por el nombre del cliente paginando por cursor (keyset).
+     * @param cliente Nombre del cliente.
+     * @param ultimoId ID del último pedido de la página anterior (null para la primera página).
+     * @param cantidad Cantidad de pedidos por página.
+     * @return Lista de pedidos encontrados.
+     * @throws ConsultaEntityException Si ocurre un error durante la consulta.
+     */
+    @Override
+    public List<Pedido> buscarPorClienteDesde(String cliente, Long ultimoId, Long cantidad) {
+        try {
+            if (indiceClientes.isListo()) {
+                return pedidoDAO.buscarPorIds(idsDePaginaDesde(indiceClientes.buscar(cliente), ultimoId, cantidad));
+            }
+            return pedidoDAO.buscarPorClienteNombreDesde(cliente, ultimoId, cantidad);
+        } catch (Exception e) {
+            throw new ConsultaEntityException("Error al buscar pedido por Cliente: " + e.getMessage());
+        }
+    }
+
+    /***
+     * Lista resúmenes de pedidos paginando por cursor (keyset), con solo los datos que muestran los listados.
+     * @param ultimoId ID del último pedido de la página anterior (null para la primera página).
+     * @param cantidad Cantidad de pedidos por página.
+     * @return Lista de resúmenes de pedidos.
+     * @throws ConsultaEntityException Si ocurre un error durante la consulta.
+     */
+    @Override
+    public List<PedidoResumen> buscarResumenesDesde(Long ultimoId, Long cantidad) throws ConsultaEntityException {
+        try {
+            return pedidoDAO.buscarResumenesDesde(ultimoId, cantidad);
+        } catch (Exception e) {
+            throw new ConsultaEntityException("Error al listar pedidos: " + e.getMessage());
+        }
+    }
+
+    /***
+     * Busca resúmenes de pedidos por el nombre del cliente paginando por cursor (keyset).
+     * @param cliente Nombre del cliente.
+     * @param ultimoId ID del último pedido de la página anterior (null para la primera página).
+     * @param cantidad Cantidad de pedidos por página.
+     * @return Lista de resúmenes de pedidos encontrados.
+     * @throws ConsultaEntityException Si ocurre un error durante la consulta.
+     */
+    @Override
+    public List<PedidoResumen> buscarResumenesPorClienteDesde(String cliente, Long ultimoId, Long cantidad) {
+        try {
+            if (indiceClientes.isListo()) {
+                return pedidoDAO.buscarResumenesPorIds(idsDePaginaDesde(indiceClientes.buscar(cliente), ultimoId, cantidad));
+            }
+            return pedidoDAO.buscarResumenesPorClienteNombreDesde(cliente, ultimoId, cantidad);
+        } catch (Exception e) {
+            throw new ConsultaEntityException("Error al buscar pedido por Cliente: " + e.getMessage());
+        }
+    }
+
+    /***
+     * Cuenta los pedidos de un cliente y lee los resúmenes de la primera página de modo que el total
+     * informado y la página correspondan a los mismos datos. Con el índice de clientes listo, ambos
+     * salen de una sola búsqueda en el índice; si no, se leen de la base de datos en una transacción
+     * de solo lectura.
+     * @param cliente Nombre del cliente.
+     * @param cantidad Cantidad de pedidos por página.
+     * @return Total de pedidos del cliente y resúmenes de la primera página.
+     * @throws ConsultaEntityException Si ocurre un error durante la consulta.
+     */
+    @Override
+    public Pagina<PedidoResumen> buscarPrimeraPaginaResumenesPorCliente(String cliente, Long cantidad)
+            throws ConsultaEntityException {
+        try {
+            if (indiceClientes.isListo()) {
+                long[] ids = indiceClientes.buscar(cliente);
+                return new Pagina<>((long) ids.length,
+                        pedidoDAO.buscarResumenesPorIds(idsDePaginaDesde(ids, null, cantidad)));
+            }
+            return TransactionManager.executeInReadOnlyTransaction((transactionManager, conn) ->
+                    new Pagina<>(pedidoDAO.obtenerCantidadTotalDePedidosPorNombre(cliente),
+                            pedidoDAO.buscarResumenesPorClienteNombreDesde(cliente, null, cantidad)));
+        } catch (Exception e) {
+            throw new ConsultaEntityException("Error al buscar pedido por Cliente: " + e.getMessage());
+        }
+    }
+
+    /***
+     * Obtiene, de los IDs encontrados en el índice de clientes, los de la página que sigue al último ID visto.
+     * @param ids IDs de los pedidos del cliente, en orden ascendente.
+     * @param ultimoId ID del último pedido de la página anterior (null para la primera página).
+     * @param cantidad Cantidad de pedidos por página.
+     * @return IDs de los pedidos de la página, en orden ascendente.
+     */
+    private long[] idsDePaginaDesde(long[] ids, Long ultimoId, Long cantidad) {
+        long registrosPorPagina = (cantidad != null && cantidad > 0L) ? cantidad : 50L;
+        int desde = ultimoId == null ? 0 : Arrays.binarySearch(ids, ultimoId + 1L);
+        if (desde < 0) {
+            desde = -desde - 1;
+        }
+        int hasta = (int) Math.min(ids.length, desde + registrosPorPagina);
+        return Arrays.copyOfRange(ids, desde, hasta);
+    }
+
     /***
      * Obtiene la cantidad total de pedidos.
      * @return Cantidad total de pedidos.
@@ -191,6 +468,15 @@ public class PedidoServiceImpl implements GenericPedidosService<Pedido> {
         }
     }
 
+    /***
+     * Obtiene la cantidad de pedidos activos desde los contadores en memoria, sin consultar la base de datos.
+     * @return Cantidad de pedidos activos, o null si todavía es desconocida.
+     */
+    @Override
+    public Long obtenerCantidadEstimadaDePedidos() {
+        return contadores.getPedidos();
+    }
+
     /***
      * Obtiene la cantidad total de pedidos por nombre de cliente.
      * @param clienteNombre Nombre del cliente.
@@ -200,6 +486,9 @@ public class PedidoServiceImpl implements GenericPedidosService<Pedido> {
     @Override
     public Long obtenerCantidadTotalDePedidosPorCliente(String clienteNombre) {
         try {
+            if (indiceClientes.isListo()) {
+                return (long) indiceClientes.buscar(clienteNombre).length;
+            }
             return pedidoDAO.obtenerCantidadTotalDePedidosPorNombre(clienteNombre);
         } catch (SQLException e) {
             throw new ConsultaEntityException("Error al obtener la cantidad total de pedidos: " + e.getMessage());
@@ -214,11 +503,47 @@ public class PedidoServiceImpl implements GenericPedidosService<Pedido> {
     @Override
     public void actualizar(Pedido pedido) throws ActualizacionEntityException {
         validarPedido(pedido);
-        try (Connection conn = DatabaseConnection.getConnection();
-             TransactionManager transactionManager = new TransactionManager(conn)) {
-            actualizarTx(pedido, transactionManager, conn);
+        try {
+            TransactionManager.executeInTransaction((transactionManager, conn) -> {
+                actualizarTx(pedido, transactionManager, conn);
+                return null;
+            });
+        } catch (ConflictoVersionException e) {
+            throw e;
         } catch (Exception e) {
-            throw new ActualizacionEntityException("Error al actualizar el envío: " + e.getMessage());
+            throw new ActualizacionEntityException("Error al actualizar el pedido: " + e.getMessage());
+        }
+    }
+
+    /***
+     * Actualiza un pedido releyéndolo desde la base principal (sin pasar por la caché ni por las
+     * réplicas) y reintentando ante conflictos de versión.
+     * @param id ID del pedido a modificar.
+     * @param modificacion Cambio a aplicar sobre el pedido leído.
+     * @return El pedido actualizado.
+     * @throws ActualizacionEntityException Si el pedido no existe, la actualización falla o persiste el conflicto.
+     */
+    @Override
+    public Pedido actualizarConReintento(Long id, Consumer<Pedido> modificacion) throws ActualizacionEntityException {
+        for (int intento = 1; ; intento++) {
+            Pedido pedido;
+            try {
+                pedido = pedidoDAO.buscarPorId(id);
+            } catch (Exception e) {
+                throw new ActualizacionEntityException("Error al actualizar el pedido: " + e.getMessage());
+            }
+            if (pedido == null) {
+                throw new ActualizacionEntityException("No se encontró el pedido con ID: " + id);
+            }
+            modificacion.accept(pedido);
+            try {
+                actualizar(pedido);
+                return pedido;
+            } catch (ConflictoVersionException e) {
+                if (intento >= INTENTOS_CONFLICTO_VERSION) {
+                    throw e;
+                }
+            }
         }
     }
 
@@ -227,33 +552,47 @@ public class PedidoServiceImpl implements GenericPedidosService<Pedido> {
      * @param pedido Pedido a actualizar.
      * @param transactionManager Gestor de transacciones.
      * @param conn Conexión a la base de datos.
-     * @throws ActualizacionEntityException Si ocurre un error durante la actualización.
+     * @throws SQLException Si ocurre un error en la base de datos.
      */
     private void actualizarTx(Pedido pedido,
                               TransactionManager transactionManager,
-                              Connection conn) throws ActualizacionEntityException {
+                              Connection conn) throws SQLException {
+        invalidarAlFinalizar(transactionManager, pedido);
+        restaurarVersionAlRevertir(transactionManager, pedido);
+        pedidoDAO.actualizarTx(pedido, conn);
+        transactionManager.despuesDeConfirmar(() -> indiceClientes.agregar(pedido.getId(), pedido.getClienteNombre()));
+    }
+
+    /***
+     * Actualiza un pedido dentro de la transacción activa del hilo.
+     * @param pedido Pedido a actualizar.
+     * @throws ActualizacionEntityException Si ocurre un error durante la actualización o no hay transacción activa.
+     */
+    @Override
+    public void actualizarTx(Pedido pedido) throws ActualizacionEntityException {
         try {
-            transactionManager.startTransaction();
-            pedidoDAO.actualizarTx(pedido, conn);
-            transactionManager.commit();
+            pedidoDAO.actualizarTx(pedido, TransactionManager.conexionActiva());
+        } catch (ConflictoVersionException e) {
+            throw e;
         } catch (Exception e) {
-            transactionManager.rollback();
-            throw new EliminacionEntityException(e.getMessage());
+            throw new ActualizacionEntityException("Error al actualizar el pedido (transaccional): " + e.getMessage(), e);
         }
     }
 
     /***
-     * Actualiza un pedido dentro de una transacción con conexión proporcionada.
-     * @param pedido Pedido a actualizar.
-     * @param conn Conexión a la base de datos.
-     * @throws ActualizacionEntityException Si ocurre un error durante la actualización.
+     * Asigna un envío a un pedido dentro de la transacción activa del hilo, solo si el pedido
+     * sigue activo y sin envío, y lo pasa a FACTURADO.
+     * @param pedido Pedido al que se asigna el envío.
+     * @param idEnvio ID del envío a asignar.
+     * @return true si se asignó; false si otra operación le asignó un envío o lo eliminó.
+     * @throws ActualizacionEntityException Si ocurre un error durante la actualización o no hay transacción activa.
      */
     @Override
-    public void actualizarTx(Pedido pedido, Connection conn) throws ActualizacionEntityException {
+    public boolean asignarEnvioTx(Pedido pedido, Long idEnvio) throws ActualizacionEntityException {
         try {
-            pedidoDAO.actualizarTx(pedido, conn);
+            return pedidoDAO.asignarEnvioTx(pedido, idEnvio, EstadoPedido.FACTURADO, TransactionManager.conexionActiva());
         } catch (Exception e) {
-            throw new ActualizacionEntityException("Error al actualizar el pedido (transaccional): " + e.getMessage());
+            throw new ActualizacionEntityException("Error al asignar el envío al pedido: " + e.getMessage(), e);
         }
     }
 
@@ -264,9 +603,11 @@ public class PedidoServiceImpl implements GenericPedidosService<Pedido> {
      */
     @Override
     public void eliminar(Pedido pedido) throws EliminacionEntityException {
-        try (Connection conn = DatabaseConnection.getConnection();
-             TransactionManager transactionManager = new TransactionManager(conn)) {
-            eliminarTx(pedido, transactionManager, conn);
+        try {
+            TransactionManager.executeInTransaction((transactionManager, conn) -> {
+                eliminarTx(pedido, transactionManager, conn);
+                return null;
+            });
         } catch (Exception e) {
             throw new EliminacionEntityException("Error al eliminar el pedido: " + e.getMessage());
         }
@@ -274,23 +615,55 @@ public class PedidoServiceImpl implements GenericPedidosService<Pedido> {
 
     /***
      * Elimina lógicamente un pedido dentro de una transacción.
+     * El pedido se relee y bloquea en la misma transacción para verificar que no tenga un envío
+     * activo y para contar la baja con su estado vigente.
      * @param pedido Pedido a eliminar.
      * @param transactionManager Gestor de transacciones.
      * @param conn Conexión a la base de datos.
-     * @throws EliminacionEntityException Si ocurre un error durante la eliminación.
+     * @throws EliminacionEntityException Si el pedido no existe o tiene un envío activo.
+     * @throws SQLException Si ocurre un error en la base de datos.
      */
     private void eliminarTx(Pedido pedido,
                             TransactionManager transactionManager,
-                            Connection conn) {
-        try {
-            transactionManager.startTransaction();
-            String numeroPedido = generarNuevoNumeroPedidoTx(conn);
-            pedido.setNumero(numeroPedido);
-            pedidoDAO.eliminarLogicoTx(pedido.getId(), conn);
-            transactionManager.commit();
-        } catch (Exception e) {
-            transactionManager.rollback();
-            throw new EliminacionEntityException(e.getMessage());
+                            Connection conn) throws SQLException {
+        invalidarAlFinalizar(transactionManager, pedido);
+        Pedido actual = pedidoDAO.buscarPorIdTx(pedido.getId(), conn);
+        if (actual == null) {
+            throw new EliminacionEntityException("No se encontró el pedido con ID: " + pedido.getId());
         }
+        if (actual.getEnvio() != null && !actual.getEnvio().getEliminado()) {
+            throw new EliminacionEntityException("El pedido tiene un envío asociado. Elimine primero el envío: "
+                    + actual.getEnvio().getTracking());
+        }
+        pedidoDAO.eliminarLogicoTx(pedido.getId(), conn);
+        transactionManager.despuesDeConfirmar(() -> {
+            contadores.pedidoEliminado(actual.getEstado());
+            indiceClientes.eliminar(pedido.getId());
+        });
+    }
+
+    /***
+     * Registra la invalidación de un pedido en las cachés para cuando termine la transacción, sin
+     * importar con qué tracking se haya guardado (el pedido pudo cambiar de envío). Se invalida tanto
+     * al confirmar como al deshacer, porque el pedido modificado puede ser la misma instancia guardada
+     * en la caché.
+     * @param transactionManager Gestor de la transacción que modifica el pedido.
+     * @param pedido Pedido modificado.
+     */
+    private void invalidarAlFinalizar(TransactionManager transactionManager, Pedido pedido) {
+        Long id = pedido.getId();
+        transactionManager.despuesDeFinalizar(() -> cachePedidos.invalidarSi(cacheado -> cacheado.getId().equals(id)));
+        cachePedidosPorId.invalidarAlFinalizar(transactionManager, id);
+    }
+
+    /***
+     * Registra la restauración de la versión leída del pedido si la transacción se revierte, porque
+     * el DAO la incrementa en memoria al actualizar y un reintento debe volver a usar la leída.
+     * @param transactionManager Gestor de la transacción que modifica el pedido.
+     * @param pedido Pedido modificado.
+     */
+    private void restaurarVersionAlRevertir(TransactionManager transactionManager, Pedido pedido) {
+        Integer version = pedido.getVersion();
+        transactionManager.despuesDeRevertir(() -> pedido.setVersion(version));
     }
-}
\ No newline at end of file
+}
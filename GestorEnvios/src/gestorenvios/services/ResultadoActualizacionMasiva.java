@@ -0,0 +1,11 @@
+package gestorenvios.services;
+
+/***
+ * Resultado de un cambio de estado masivo de envíos.
+ *
+ * @param envios Cantidad de envíos actualizados
+ * @param pedidos Cantidad de pedidos actualizados junto con sus envíos
+ * @param milisegundos Duración de la operación, en milisegundos
+ */
+public record ResultadoActualizacionMasiva(long envios, long pedidos, long milisegundos) {
+}
@@ -0,0 +1,21 @@
+package gestorenvios.services;
+
+import java.nio.file.Path;
+
+/***
+ * Resultado de una exportación masiva.
+ *
+ * @param archivo Archivo generado
+ * @param registros Cantidad de registros exportados
+ * @param milisegundos Duración de la exportación, en milisegundos
+ */
+public record ResultadoExportacion(Path archivo, long registros, long milisegundos) {
+
+    /***
+     * Calcula el rendimiento de la exportación.
+     * @return Registros exportados por segundo.
+     */
+    public double registrosPorSegundo() {
+        return milisegundos > 0L ? registros * 1000.0 / milisegundos : registros;
+    }
+}
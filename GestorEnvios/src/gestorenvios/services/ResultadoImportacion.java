@@ -0,0 +1,24 @@
+package gestorenvios.services;
+
+import java.nio.file.Path;
+
+/***
+ * Resultado de una importación masiva.
+ *
+ * @param archivoErrores Archivo con las filas rechazadas y el motivo de cada rechazo
+ * @param leidas Cantidad de filas de datos leídas (sin contar la cabecera)
+ * @param importadas Cantidad de filas importadas
+ * @param rechazadas Cantidad de filas rechazadas
+ * @param milisegundos Duración de la importación, en milisegundos
+ */
+public record ResultadoImportacion(Path archivoErrores, long leidas, long importadas, long rechazadas,
+                                   long milisegundos) {
+
+    /***
+     * Calcula el rendimiento de la importación.
+     * @return Filas procesadas por segundo.
+     */
+    public double filasPorSegundo() {
+        return milisegundos > 0L ? leidas * 1000.0 / milisegundos : leidas;
+    }
+}
@@ -0,0 +1,39 @@
+package gestorenvios.services;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/***
+ * Resultado de un alta en lote con aislamiento de filas: los elementos creados y los rechazados.
+ *
+ * @param aceptados Elementos creados, en el orden en que se confirmaron
+ * @param rechazados Elementos rechazados con el motivo de cada rechazo
+ * @param <T> Tipo de los elementos
+ */
+public record ResultadoLote<T>(List<T> aceptados, List<Rechazo<T>> rechazados) {
+
+    /***
+     * Agrega al resultado rechazos previos (por ejemplo, los de validación).
+     * @param previos Rechazos a agregar antes de los del resultado
+     * @return Resultado con los mismos aceptados y todos los rechazos
+     */
+    public ResultadoLote<T> conRechazos(List<Rechazo<T>> previos) {
+        if (previos.isEmpty()) {
+            return this;
+        }
+        List<Rechazo<T>> todos = new ArrayList<>(previos.size() + rechazados.size());
+        todos.addAll(previos);
+        todos.addAll(rechazados);
+        return new ResultadoLote<>(aceptados, todos);
+    }
+
+    /***
+     * Elemento rechazado de un lote.
+     *
+     * @param elemento Elemento rechazado
+     * @param motivo Motivo del rechazo
+     * @param <T> Tipo del elemento
+     */
+    public record Rechazo<T>(T elemento, String motivo) {
+    }
+}
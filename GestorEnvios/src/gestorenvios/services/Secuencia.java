@@ -0,0 +1,213 @@
+package gestorenvios.services;
+
+import gestorenvios.config.DatabaseConnection;
+import gestorenvios.config.TransactionManager;
+import gestorenvios.dao.SecuenciaDAO;
+import gestorenvios.models.exceptions.CreacionEntityException;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/***
+ * Secuencia de numeración con reserva por bloques (hi/lo).
+ * <p>
+ * Reserva en la tabla Secuencias un bloque de valores por vez, en una transacción corta e
+ * independiente de la que usará los números, y luego los entrega desde memoria sin bloqueos.
+ * Como el valor persistido ya quedó adelantado, un reinicio o una segunda instancia de la
+ * aplicación nunca repiten números; los valores no usados de un bloque se pierden (quedan huecos).
+ * <p>
+ * El bloque siguiente se reserva por adelantado, en un hilo propio, cuando se entrega la mitad del
+ * vigente. Así quien pide un número (que suele tener tomada la conexión de su transacción) casi nunca
+ * espera a la base de datos ni necesita una segunda conexión del pool; solo espera si agota el bloque
+ * antes de que termine la reserva anticipada.
+ */
+public class Secuencia {
+
+    private final SecuenciaDAO secuenciaDAO;
+    private final String nombre;
+    private final int tamanioBloque;
+
+    /*** Bloque vigente; empieza agotado para que el primer pedido de valores reserve uno. */
+    private final AtomicReference<Bloque> bloque = new AtomicReference<>(new Bloque(0L, 0L));
+    private final Object lockReserva = new Object();
+    /*** Bloque reservado por adelantado, o null. Protegido por lockReserva. */
+    private Bloque reservado;
+    /*** Indica si hay una reserva en curso. Protegido por lockReserva. */
+    private boolean reservando;
+    /*** Error de la última reserva fallida. Protegido por lockReserva. */
+    private String errorReserva;
+    private final ExecutorService reserva;
+    private volatile boolean tablaVerificada;
+
+    /***
+     * Constructor de la secuencia.
+     * @param secuenciaDAO DAO de la tabla de secuencias.
+     * @param nombre Nombre de la secuencia (por ejemplo SecuenciaDAO.SECUENCIA_PEDIDO).
+     * @param tamanioBloque Cantidad de valores reservados en cada acceso a la base de datos.
+     */
+    public Secuencia(SecuenciaDAO secuenciaDAO, String nombre, int tamanioBloque) {
+        this.secuenciaDAO = secuenciaDAO;
+        this.nombre = nombre;
+        this.tamanioBloque = Math.max(1, tamanioBloque);
+        this.reserva = Executors.newSingleThreadExecutor(r -> {
+            Thread hilo = new Thread(r, "secuencia-" + nombre + "-reserva");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+    }
+
+    /***
+     * Obtiene el próximo valor de la secuencia.
+     * @return Valor reservado para el invocador.
+     * @throws CreacionEntityException Si no se puede reservar un nuevo bloque.
+     */
+    public long siguiente() {
+        while (true) {
+            Bloque actual = bloque.get();
+            long valor = actual.proximo.getAndIncrement();
+            if (valor < actual.limite) {
+                if (valor == actual.umbral) {
+                    reservarPorAdelantado();
+                }
+                return valor;
+            }
+            renovar(actual);
+        }
+    }
+
+    /***
+     * Reserva una cantidad de valores consecutivos.
+     * Si no entran en el bloque vigente se reserva un bloque exclusivo del tamaño pedido.
+     * @param cantidad Cantidad de valores a reservar.
+     * @return Primer valor del rango reservado.
+     * @throws CreacionEntityException Si no se puede reservar el rango.
+     */
+    public long reservar(int cantidad) {
+        if (cantidad == 1) {
+            return siguiente();
+        }
+        Bloque actual = bloque.get();
+        long valor = actual.proximo.get();
+        while (valor + cantidad <= actual.limite) {
+            if (actual.proximo.compareAndSet(valor, valor + cantidad)) {
+                if (valor <= actual.umbral && actual.umbral < valor + cantidad) {
+                    reservarPorAdelantado();
+                }
+                return valor;
+            }
+            valor = actual.proximo.get();
+        }
+        return reservarEnBaseDeDatos(cantidad);
+    }
+
+    /***
+     * Inicia la reserva del bloque siguiente si no hay uno reservado ni una reserva en curso.
+     */
+    private void reservarPorAdelantado() {
+        synchronized (lockReserva) {
+            if (reservado == null && !reservando) {
+                iniciarReserva();
+            }
+        }
+    }
+
+    /***
+     * Reemplaza el bloque agotado por el reservado por adelantado, salvo que otro hilo ya lo haya
+     * hecho. Si todavía no hay uno reservado espera la reserva en curso (o la inicia).
+     */
+    private void renovar(Bloque agotado) {
+        synchronized (lockReserva) {
+            boolean solicitada = false;
+            while (bloque.get() == agotado) {
+                if (reservado != null) {
+                    bloque.set(reservado);
+                    reservado = null;
+                    return;
+                }
+                if (!reservando) {
+                    if (solicitada) {
+                        throw new CreacionEntityException(errorReserva);
+                    }
+                    iniciarReserva();
+                    solicitada = true;
+                }
+                try {
+                    lockReserva.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new CreacionEntityException("Interrumpido mientras se reservaban números de la secuencia " + nombre);
+                }
+            }
+        }
+    }
+
+    /***
+     * Reserva un bloque en el hilo de la secuencia. Requiere lockReserva.
+     */
+    private void iniciarReserva() {
+        reservando = true;
+        reserva.execute(() -> {
+            Bloque nuevo = null;
+            String error = null;
+            try {
+                long inicio = reservarEnBaseDeDatos(tamanioBloque);
+                nuevo = new Bloque(inicio, inicio + tamanioBloque);
+            } catch (RuntimeException e) {
+                error = e.getMessage();
+            } finally {
+                synchronized (lockReserva) {
+                    reservando = false;
+                    reservado = nuevo;
+                    errorReserva = error;
+                    lockReserva.notifyAll();
+                }
+            }
+        });
+    }
+
+    /***
+     * Reserva un rango en la tabla Secuencias en una transacción propia.
+     */
+    private long reservarEnBaseDeDatos(long cantidad) {
+        try {
+            if (!tablaVerificada) {
+                secuenciaDAO.crearTablaSiNoExiste();
+                tablaVerificada = true;
+            }
+            try (Connection conn = DatabaseConnection.obtenerConexionIndependiente();
+                 TransactionManager transactionManager = new TransactionManager(conn)) {
+                transactionManager.startTransaction();
+                try {
+                    long inicio = secuenciaDAO.reservarBloqueTx(nombre, cantidad, conn);
+                    transactionManager.commit();
+                    return inicio;
+                } catch (SQLException e) {
+                    transactionManager.rollback();
+                    throw e;
+                }
+            }
+        } catch (Exception e) {
+            throw new CreacionEntityException("No se pudo reservar números de la secuencia " + nombre + ": " + e.getMessage());
+        }
+    }
+
+    /***
+     * Rango de valores [proximo, limite) reservado en memoria. Al entregar el valor umbral (la mitad
+     * del rango) se reserva el bloque siguiente.
+     */
+    private static final class Bloque {
+        private final AtomicLong proximo;
+        private final long limite;
+        private final long umbral;
+
+        private Bloque(long inicio, long limite) {
+            this.proximo = new AtomicLong(inicio);
+            this.limite = limite;
+            this.umbral = inicio + (limite - inicio) / 2;
+        }
+    }
+}
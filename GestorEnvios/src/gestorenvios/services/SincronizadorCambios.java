@@ -0,0 +1,285 @@
+package gestorenvios.services;
+
+import gestorenvios.dao.CambioDAO;
+import gestorenvios.dao.PedidoDAO;
+import gestorenvios.entities.Envio;
+import gestorenvios.entities.Pedido;
+import gestorenvios.models.Cambio;
+
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/***
+ * Sincroniza las cachés en memoria con los cambios hechos por otras instancias de la aplicación.
+ * <p>
+ * Una tarea periódica lee la tabla de cambios desde la última secuencia procesada y, por cada
+ * tramo, invalida en las cachés los pedidos y envíos modificados por otras instancias, incorpora
+ * los códigos nuevos a los filtros de códigos y actualiza el índice de clientes con una sola
+ * lectura de los pedidos afectados. Así la desactualización de las cachés queda acotada al
+ * intervalo de consulta, sin necesidad de un intermediario de mensajes.
+ * <p>
+ * Las secuencias se asignan al insertar pero se vuelven visibles al confirmar, por lo que una
+ * transacción larga puede confirmar un cambio con secuencia menor a la última leída. Los saltos de
+ * secuencia se recuerdan como huecos y se vuelven a consultar durante un tiempo; si los huecos
+ * pendientes son demasiados, se invalidan todas las cachés.
+ */
+public class SincronizadorCambios {
+
+    /*** Tiempo durante el que se vuelve a consultar una secuencia faltante antes de descartarla. */
+    private static final long ESPERA_HUECOS_NANOS = TimeUnit.SECONDS.toNanos(120);
+    /*** Cantidad máxima de huecos pendientes; al superarla se invalidan todas las cachés. */
+    private static final int MAXIMO_HUECOS = 10_000;
+    /*** Cantidad máxima de cambios antiguos borrados por sentencia. */
+    private static final int TAMANIO_LOTE_PURGA = 10_000;
+    /*** Cantidad de consultas entre dos purgas de cambios antiguos. */
+    private static final int CONSULTAS_ENTRE_PURGAS = 600;
+
+    private final CambioDAO cambioDAO;
+    private final PedidoDAO pedidoDAO;
+    private final CacheLectura<String, Envio> cacheEnvios;
+    private final CacheLectura<String, Pedido> cachePedidos;
+    private final CacheEntidades<Envio> cacheEnviosPorId;
+    private final CacheEntidades<Pedido> cachePedidosPorId;
+    private final FiltroCodigos filtroCodigos;
+    private final IndiceClientes indiceClientes;
+    private final long intervaloMilisegundos;
+    private final int tamanioLote;
+    private final long retencionHoras;
+
+    /*** Secuencias faltantes y el momento en que se detectaron. Solo las usa el hilo de consulta. */
+    private final Map<Long, Long> huecos = new LinkedHashMap<>();
+    private long ultimoId = -1L;
+    private long consultas;
+
+    private final LongAdder cambiosAplicados = new LongAdder();
+    private ScheduledExecutorService consulta;
+
+    /***
+     * Constructor del sincronizador.
+     * @param cambioDAO DAO de la tabla de cambios.
+     * @param pedidoDAO DAO de pedidos, usado para actualizar el índice de clientes.
+     * @param cacheEnvios Caché de envíos por tracking.
+     * @param cachePedidos Caché de pedidos por tracking.
+     * @param cacheEnviosPorId Caché de envíos por ID.
+     * @param cachePedidosPorId Caché de pedidos por ID.
+     * @param filtroCodigos Filtros de códigos existentes.
+     * @param indiceClientes Índice de nombres de cliente.
+     * @param intervaloMilisegundos Intervalo entre consultas de la tabla de cambios.
+     * @param tamanioLote Cantidad máxima de cambios leídos por consulta.
+     * @param retencionHoras Horas que se conservan los cambios antes de purgarlos.
+     */
+    public SincronizadorCambios(CambioDAO cambioDAO, PedidoDAO pedidoDAO,
+                                CacheLectura<String, Envio> cacheEnvios, CacheLectura<String, Pedido> cachePedidos,
+                                CacheEntidades<Envio> cacheEnviosPorId, CacheEntidades<Pedido> cachePedidosPorId,
+                                FiltroCodigos filtroCodigos, IndiceClientes indiceClientes,
+                                long intervaloMilisegundos, int tamanioLote, long retencionHoras) {
+        this.cambioDAO = cambioDAO;
+        this.pedidoDAO = pedidoDAO;
+        this.cacheEnvios = cacheEnvios;
+        this.cachePedidos = cachePedidos;
+        this.cacheEnviosPorId = cacheEnviosPorId;
+        this.cachePedidosPorId = cachePedidosPorId;
+        this.filtroCodigos = filtroCodigos;
+        this.indiceClientes = indiceClientes;
+        this.intervaloMilisegundos = Math.max(1L, intervaloMilisegundos);
+        this.tamanioLote = Math.max(1, tamanioLote);
+        this.retencionHoras = Math.max(1L, retencionHoras);
+    }
+
+    /***
+     * Crea la tabla de cambios si hace falta e inicia la consulta periódica en segundo plano.
+     * La tabla se crea antes de volver porque las escrituras de los DAOs la necesitan.
+     */
+    public synchronized void iniciar() {
+        if (consulta != null) {
+            return;
+        }
+        try {
+            cambioDAO.crearTablaSiNoExiste();
+        } catch (SQLException _) {
+            // La primera consulta vuelve a intentarlo
+        }
+        consulta = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "sincronizador-cambios");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        consulta.scheduleWithFixedDelay(() -> {
+            try {
+                sincronizar();
+            } catch (SQLException | RuntimeException _) {
+                // Se reintentará en la próxima ejecución desde la misma secuencia
+            }
+        }, 0L, intervaloMilisegundos, TimeUnit.MILLISECONDS);
+    }
+
+    /***
+     * Detiene la consulta periódica.
+     */
+    public synchronized void detener() {
+        if (consulta != null) {
+            consulta.shutdownNow();
+            consulta = null;
+        }
+    }
+
+    /***
+     * Cantidad de cambios de otras instancias aplicados desde el inicio.
+     * @return Cantidad de cambios aplicados.
+     */
+    public long getCambiosAplicados() {
+        return cambiosAplicados.sum();
+    }
+
+    /***
+     * Lee y aplica los cambios pendientes. La primera ejecución solo toma la última secuencia,
+     * porque las cachés empiezan vacías.
+     * @throws SQLException Si ocurre un error al leer la tabla de cambios.
+     */
+    void sincronizar() throws SQLException {
+        if (ultimoId < 0L) {
+            cambioDAO.crearTablaSiNoExiste();
+            ultimoId = cambioDAO.obtenerUltimoId();
+            return;
+        }
+
+        if (!huecos.isEmpty()) {
+            List<Cambio> recuperados = cambioDAO.buscarPorIds(huecos.keySet());
+            recuperados.forEach(cambio -> huecos.remove(cambio.id()));
+            aplicar(recuperados);
+            descartarHuecosVencidos();
+        }
+
+        List<Cambio> cambios;
+        do {
+            cambios = cambioDAO.buscarDesde(ultimoId, tamanioLote);
+            for (Cambio cambio : cambios) {
+                registrarHuecos(cambio.id());
+                ultimoId = cambio.id();
+            }
+            aplicar(cambios);
+        } while (cambios.size() == tamanioLote);
+
+        if (++consultas % CONSULTAS_ENTRE_PURGAS == 0) {
+            purgar();
+        }
+    }
+
+    /***
+     * Registra como huecos las secuencias salteadas entre la última leída y la indicada.
+     */
+    private void registrarHuecos(long id) {
+        if (id - ultimoId - 1 > MAXIMO_HUECOS - huecos.size()) {
+            invalidarTodo();
+            huecos.clear();
+            return;
+        }
+        long detectado = System.nanoTime();
+        for (long faltante = ultimoId + 1; faltante < id; faltante++) {
+            huecos.put(faltante, detectado);
+        }
+    }
+
+    private void descartarHuecosVencidos() {
+        long ahora = System.nanoTime();
+        Iterator<Long> detectados = huecos.values().iterator();
+        while (detectados.hasNext() && ahora - detectados.next() > ESPERA_HUECOS_NANOS) {
+            detectados.remove();
+        }
+    }
+
+    /***
+     * Aplica un tramo de cambios de otras instancias: invalida cachés, incorpora códigos
+     * a los filtros y actualiza el índice de clientes.
+     */
+    private void aplicar(List<Cambio> cambios) throws SQLException {
+        Set<Long> envios = new HashSet<>();
+        Set<Long> pedidos = new HashSet<>();
+        Set<Long> pedidosEliminados = new HashSet<>();
+        for (Cambio cambio : cambios) {
+            if (CambioDAO.ORIGEN.equals(cambio.origen())) {
+                continue;
+            }
+            cambiosAplicados.increment();
+            boolean conCodigo = cambio.codigo() != null && cambio.operacion() != Cambio.Operacion.BAJA;
+            if (cambio.entidad() == Cambio.Entidad.ENVIO) {
+                envios.add(cambio.idEntidad());
+                if (conCodigo) {
+                    filtroCodigos.incorporarTracking(cambio.codigo());
+                }
+            } else {
+                pedidos.add(cambio.idEntidad());
+                if (cambio.operacion() == Cambio.Operacion.BAJA) {
+                    pedidosEliminados.add(cambio.idEntidad());
+                } else if (conCodigo) {
+                    filtroCodigos.incorporarNumeroPedido(cambio.codigo());
+                }
+            }
+        }
+        if (envios.isEmpty() && pedidos.isEmpty()) {
+            return;
+        }
+
+        if (!envios.isEmpty()) {
+            envios.forEach(cacheEnviosPorId::invalidar);
+            cacheEnvios.invalidarSi(envio -> envios.contains(envio.getId()));
+        }
+        pedidos.forEach(cachePedidosPorId::invalidar);
+        cachePedidosPorId.invalidarSi(pedido -> perteneceA(pedido, envios));
+        cachePedidos.invalidarSi(pedido -> pedidos.contains(pedido.getId()) || perteneceA(pedido, envios));
+
+        actualizarIndiceClientes(pedidos, pedidosEliminados);
+    }
+
+    /***
+     * Relee en una sola consulta los pedidos modificados para actualizar su nombre de cliente en el índice.
+     */
+    private void actualizarIndiceClientes(Set<Long> pedidos, Set<Long> pedidosEliminados) throws SQLException {
+        pedidosEliminados.forEach(indiceClientes::eliminar);
+        long[] ids = pedidos.stream()
+                .filter(id -> !pedidosEliminados.contains(id))
+                .mapToLong(Long::longValue)
+                .toArray();
+        if (ids.length == 0) {
+            return;
+        }
+        Set<Long> activos = new HashSet<>();
+        for (Pedido pedido : pedidoDAO.buscarPorIds(ids)) {
+            indiceClientes.agregar(pedido.getId(), pedido.getClienteNombre());
+            activos.add(pedido.getId());
+        }
+        for (long id : ids) {
+            if (!activos.contains(id)) {
+                indiceClientes.eliminar(id);
+            }
+        }
+    }
+
+    private static boolean perteneceA(Pedido pedido, Set<Long> envios) {
+        return !envios.isEmpty() && pedido.getEnvio() != null && envios.contains(pedido.getEnvio().getId());
+    }
+
+    private void invalidarTodo() {
+        cacheEnvios.invalidarTodo();
+        cachePedidos.invalidarTodo();
+        cacheEnviosPorId.invalidarTodo();
+        cachePedidosPorId.invalidarTodo();
+    }
+
+    private void purgar() throws SQLException {
+        LocalDateTime limite = LocalDateTime.now().minusHours(retencionHoras);
+        while (cambioDAO.eliminarAnterioresA(limite, TAMANIO_LOTE_PURGA) == TAMANIO_LOTE_PURGA) {
+            // Se borra por tramos para no mantener bloqueos largos sobre la tabla
+        }
+    }
+}
@@ -1,13 +1,27 @@
 package gestorenvios.ui.console;
 
+import gestorenvios.config.ApplicationConfig;
+import gestorenvios.config.DatabaseConnection;
+import gestorenvios.config.TransactionManager;
+import gestorenvios.dao.CambioDAO;
 import gestorenvios.dao.EnvioDAO;
 import gestorenvios.dao.PedidoDAO;
+import gestorenvios.dao.SecuenciaDAO;
 import gestorenvios.entities.Envio;
 import gestorenvios.entities.Pedido;
+import gestorenvios.services.CacheEntidades;
+import gestorenvios.services.CacheLectura;
+import gestorenvios.services.ContadoresActivos;
 import gestorenvios.services.EnvioServiceImpl;
+import gestorenvios.services.ExportacionService;
+import gestorenvios.services.FiltroCodigos;
 import gestorenvios.services.GenericEnviosService;
 import gestorenvios.services.GenericPedidosService;
+import gestorenvios.services.ImportacionService;
+import gestorenvios.services.SincronizadorCambios;
+import gestorenvios.services.IndiceClientes;
 import gestorenvios.services.PedidoServiceImpl;
+import gestorenvios.services.Secuencia;
 import gestorenvios.ui.console.controllers.MenuHandler;
 import gestorenvios.ui.console.input.ConsoleInputReader;
 import gestorenvios.ui.console.input.InputReader;
@@ -15,6 +29,7 @@ import gestorenvios.ui.console.input.MenuDisplay;
 import gestorenvios.ui.console.output.PantallaBienvenida;
 import gestorenvios.ui.console.utils.ConsoleUtils;
 
+import java.util.List;
 import java.util.Scanner;
 
 /***
@@ -51,6 +66,43 @@ public class AppMenu {
 
     private final boolean conexionExitosa;
 
+    /***
+     * Contadores en memoria de pedidos y envíos activos, compartidos por ambos servicios.
+     */
+    private final ContadoresActivos contadores;
+
+    /***
+     * Índice en memoria de nombres de cliente para las búsquedas de pedidos.
+     */
+    private final IndiceClientes indiceClientes;
+
+    /***
+     * Filtros de Bloom de trackings y números de pedido existentes, compartidos por ambos servicios.
+     */
+    private final FiltroCodigos filtroCodigos;
+
+    /***
+     * Sincronizador de las cachés con los cambios hechos por otras instancias de la aplicación.
+     */
+    private final SincronizadorCambios sincronizadorCambios;
+
+    /***
+     * DAO de la tabla de secuencias de numeración de pedidos y trackings.
+     */
+    private final SecuenciaDAO secuenciaDAO;
+
+    /***
+     * Cachés de envíos y de pedidos por número de tracking, compartidas por ambos servicios.
+     */
+    private final CacheLectura<String, Envio> cacheEnviosPorTracking;
+    private final CacheLectura<String, Pedido> cachePedidosPorTracking;
+
+    /***
+     * Cachés de envíos y de pedidos por ID, compartidas por ambos servicios.
+     */
+    private final CacheEntidades<Envio> cacheEnviosPorId;
+    private final CacheEntidades<Pedido> cachePedidosPorId;
+
     /***
      * Constructor que inicializa la aplicación.
      * <p>
@@ -72,12 +124,50 @@ public class AppMenu {
 
         this.input = new ConsoleInputReader(new Scanner(System.in));
 
+        this.contadores = new ContadoresActivos(new PedidoDAO(), new EnvioDAO(),
+                ApplicationConfig.getLong("contadores.reconciliacionSegundos", 300L));
+        this.indiceClientes = new IndiceClientes(new PedidoDAO(),
+                ApplicationConfig.getLong("indice.reintentoSegundos", 30L));
+        this.filtroCodigos = new FiltroCodigos(new PedidoDAO(), new EnvioDAO(),
+                ApplicationConfig.getDouble("filtros.tasaFalsosPositivos", 0.01),
+                ApplicationConfig.getLong("filtros.capacidadMinima", 100000L),
+                ApplicationConfig.getLong("filtros.reconstruccionSegundos", 900L));
+        this.secuenciaDAO = new SecuenciaDAO();
+        int tamanioCache = ApplicationConfig.getInt("cache.tracking.tamanioMaximo", 10000);
+        long ttlCache = ApplicationConfig.getLong("cache.tracking.ttlSegundos", 60L);
+        this.cacheEnviosPorTracking = new CacheLectura<>("Envíos por tracking", tamanioCache, ttlCache, Envio::copiar);
+        this.cachePedidosPorTracking = new CacheLectura<>("Pedidos por tracking", tamanioCache, ttlCache, Pedido::copiar);
+        int tamanioCacheEntidades = ApplicationConfig.getInt("cache.entidades.tamanioMaximo", 10000);
+        long ttlCacheEntidades = ApplicationConfig.getLong("cache.entidades.ttlSegundos", 60L);
+        this.cacheEnviosPorId = new CacheEntidades<>("Envíos por ID", tamanioCacheEntidades, ttlCacheEntidades, Envio::copiar);
+        this.cachePedidosPorId = new CacheEntidades<>("Pedidos por ID", tamanioCacheEntidades, ttlCacheEntidades, Pedido::copiar);
+        this.sincronizadorCambios = new SincronizadorCambios(new CambioDAO(), new PedidoDAO(),
+                cacheEnviosPorTracking, cachePedidosPorTracking, cacheEnviosPorId, cachePedidosPorId,
+                filtroCodigos, indiceClientes,
+                ApplicationConfig.getLong("cambios.intervaloMilisegundos", 1000L),
+                ApplicationConfig.getInt("cambios.tamanioLote", 500),
+                ApplicationConfig.getLong("cambios.retencionHoras", 24L));
         GenericPedidosService<Pedido> pedidoService = createPedidoService();
         GenericEnviosService<Envio, Pedido> enviosService = crearEnvioService(pedidoService);
 
-        this.menuHandler = new MenuHandler(pedidoService, enviosService, input);
+        ExportacionService exportacionService = new ExportacionService(new PedidoDAO(), new EnvioDAO(),
+                ApplicationConfig.getInt("escaneo.paralelismo", 4));
+        ImportacionService importacionService = new ImportacionService(pedidoService,
+                ApplicationConfig.getInt("importacion.tamanioLote", 1000),
+                ApplicationConfig.getInt("importacion.paralelismo", 4));
+
+        this.menuHandler = new MenuHandler(pedidoService, enviosService, exportacionService, importacionService,
+                List.of(cacheEnviosPorTracking::estadisticas, cachePedidosPorTracking::estadisticas,
+                        cacheEnviosPorId::estadisticas, cachePedidosPorId::estadisticas),
+                filtroCodigos::estadisticas, TransactionManager::obtenerEstadisticasReintentos, input);
         this.running = true;
         this.conexionExitosa = PantallaBienvenida.mostrar(input);
+        if (conexionExitosa) {
+            contadores.iniciar();
+            indiceClientes.iniciar();
+            filtroCodigos.iniciar();
+            sincronizadorCambios.iniciar();
+        }
     }
 
     /***
@@ -88,7 +178,11 @@ public class AppMenu {
      * @return Instancia de GenericEnviosService<Envio, Pedido>
      */
     private GenericEnviosService<Envio, Pedido> crearEnvioService(GenericPedidosService<Pedido> pedidoService) {
-        return new EnvioServiceImpl(new EnvioDAO(), pedidoService);
+        Secuencia secuenciaTrackings = new Secuencia(secuenciaDAO, SecuenciaDAO.SECUENCIA_TRACKING,
+                ApplicationConfig.getInt("secuencias.tamanioBloque", 100));
+        return new EnvioServiceImpl(new EnvioDAO(), pedidoService, contadores, secuenciaTrackings,
+                cacheEnviosPorTracking, cachePedidosPorTracking, cacheEnviosPorId, cachePedidosPorId,
+                filtroCodigos);
     }
 
     /***
@@ -123,6 +217,7 @@ public class AppMenu {
     public void run() {
         if (!conexionExitosa) {
             ConsoleUtils.imprimirInfo("Saliendo...");
+            DatabaseConnection.cerrarPool();
             return;
         }
 
@@ -136,6 +231,11 @@ public class AppMenu {
             }
         }
         input.close();
+        contadores.detener();
+        indiceClientes.detener();
+        filtroCodigos.detener();
+        sincronizadorCambios.detener();
+        DatabaseConnection.cerrarPool();
     }
 
     /***
@@ -174,6 +274,12 @@ public class AppMenu {
             case 19 -> menuHandler.eliminarEnvioPorNumeroPedido();
             case 20 -> menuHandler.eliminarEnvioPorId();
 
+            //herramientas
+            case 21 -> menuHandler.exportarDatos();
+            case 22 -> menuHandler.importarPedidos();
+            case 23 -> menuHandler.actualizarEstadoEnviosMasivo();
+            case 24 -> menuHandler.mostrarEstadisticasCache();
+
             //salir
             case 0 -> {
                 ConsoleUtils.imprimirInfo("Saliendo...");
@@ -190,6 +296,9 @@ public class AppMenu {
      */
     private GenericPedidosService<Pedido> createPedidoService() {
         PedidoDAO pedidoDAO = new PedidoDAO();
-        return new PedidoServiceImpl(pedidoDAO);
+        Secuencia secuenciaPedidos = new Secuencia(secuenciaDAO, SecuenciaDAO.SECUENCIA_PEDIDO,
+                ApplicationConfig.getInt("secuencias.tamanioBloque", 100));
+        return new PedidoServiceImpl(pedidoDAO, contadores, indiceClientes, secuenciaPedidos,
+                cachePedidosPorTracking, cachePedidosPorId, filtroCodigos);
     }
 }
@@ -2,6 +2,8 @@ package gestorenvios.ui.console.controllers;
 
 import gestorenvios.config.ApplicationConfig;
 import gestorenvios.config.DatabaseConnection;
+import gestorenvios.dao.CambioDAO;
+import gestorenvios.dao.SecuenciaDAO;
 import gestorenvios.ui.console.utils.ConsoleUtils;
 
 import java.io.BufferedReader;
@@ -9,6 +11,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 
@@ -36,6 +40,8 @@ public class DbInitController {
             stmt.execute("DROP TABLE IF EXISTS Estados_Pedido;");
             stmt.execute("DROP TABLE IF EXISTS Pedido;");
             stmt.execute("DROP TABLE IF EXISTS Tipos_Envio;");
+            stmt.execute("DROP TABLE IF EXISTS Secuencias;");
+            stmt.execute("DROP TABLE IF EXISTS Cambios;");
 
             // Crea tabla de empresas
             stmt.execute("""
@@ -59,6 +65,7 @@ public class DbInitController {
                     `fecha_despacho` date DEFAULT NULL,
                     `fecha_estimada` date DEFAULT NULL,
                     `id_estado_envio` int NOT NULL,
+                    `version` int NOT NULL DEFAULT '0' INVISIBLE,
                     PRIMARY KEY (`id`),
                     UNIQUE KEY `tracking` (`tracking`),
                     KEY `id_empresa` (`id_empresa`),
@@ -103,6 +110,7 @@ public class DbInitController {
                     `total` decimal(12,2) DEFAULT NULL,
                     `id_estado_pedido` int NOT NULL,
                     `id_envio` int DEFAULT NULL,
+                    `version` int NOT NULL DEFAULT '0' INVISIBLE,
                     PRIMARY KEY (`id`),
                     UNIQUE KEY `numero` (`numero`),
                     UNIQUE KEY `id_envio` (`id_envio`),
@@ -124,6 +132,12 @@ public class DbInitController {
                     ) ENGINE=InnoDB AUTO_INCREMENT=3 DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_spanish_ci;
                     """);
 
+            // Crea tabla de secuencias de numeración (se inicializa en el primer uso)
+            stmt.execute(SecuenciaDAO.CREATE_TABLE_SQL);
+
+            // Crea tabla de registro de cambios, para sincronizar las cachés entre instancias
+            stmt.execute(CambioDAO.CREATE_TABLE_SQL);
+
             // Reactivar la verificación de claves foráneas
             stmt.execute("SET FOREIGN_KEY_CHECKS = 1;");
 
@@ -134,6 +148,37 @@ public class DbInitController {
         }
     }
 
+    /***
+     * Agrega las columnas incorporadas después de la creación de la base a las tablas existentes.
+     * La columna de versión de Pedido y Envio es invisible para que los INSERT posicionales del
+     * volcado de datos de prueba sigan siendo válidos.
+     *
+     * @throws SQLException si ocurre un error al modificar las tablas
+     */
+    public static void actualizarEsquema() throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement()) {
+            for (String tabla : new String[]{"Envio", "Pedido"}) {
+                if (!tieneColumna(conn, tabla, "version")) {
+                    stmt.execute("ALTER TABLE `" + tabla + "` ADD COLUMN `version` int NOT NULL DEFAULT '0' INVISIBLE");
+                }
+            }
+        } catch (SQLException e) {
+            throw new SQLException("Error al actualizar el esquema de la base de datos: " + e.getMessage());
+        }
+    }
+
+    private static boolean tieneColumna(Connection conn, String tabla, String columna) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT 1 FROM information_schema.COLUMNS"
+                + " WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND COLUMN_NAME = ?")) {
+            pstmt.setString(1, tabla);
+            pstmt.setString(2, columna);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
     public static void cargarDatosIniciales() throws SQLException {
         ConsoleUtils.imprimirDivisores("CARGANDO DATOS INICIALES");
         try (Connection conn = DatabaseConnection.getConnection();
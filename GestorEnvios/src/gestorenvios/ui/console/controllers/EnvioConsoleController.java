@@ -1,15 +1,26 @@
 package gestorenvios.ui.console.controllers;
 
 import gestorenvios.entities.*;
+import gestorenvios.models.EnvioResumen;
+import gestorenvios.models.FiltroEnvios;
+import gestorenvios.models.exceptions.ActualizacionEntityException;
 import gestorenvios.services.GenericEnviosService;
 import gestorenvios.services.GenericPedidosService;
+import gestorenvios.services.ResultadoActualizacionMasiva;
 import gestorenvios.ui.console.input.InputReader;
 import gestorenvios.ui.console.output.EnvioPrinter;
 import gestorenvios.ui.console.utils.ConsoleUtils;
 import gestorenvios.ui.console.utils.Paginador;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.stream.Stream;
 
 /***
  * Controlador de consola para gestionar envíos.
@@ -99,25 +110,28 @@ public class EnvioConsoleController {
     public void listar() {
         ConsoleUtils.imprimirDivisores("LISTA DE ENVÍOS");
         try {
-            Long total = envioService.obtenerCantidadTotalDeEnvios();
-            ConsoleUtils.imprimirInfo("Total de envíos registrados: " + total);
+            Long total = envioService.obtenerCantidadEstimadaDeEnvios();
+            ConsoleUtils.imprimirInfo("Total de envíos registrados: " + (total != null ? total : "calculando..."));
 
-            Paginador<Envio> paginador = new Paginador<>(50L, input);
-            paginador.paginar(
-                    (pageSize, page) -> {
+            Paginador<EnvioResumen> paginador = new Paginador<>(50L, input);
+            paginador.paginarPorCursor(
+                    (ultimoId, pageSize) -> {
                         try {
-                            return envioService.buscarTodos(pageSize, page);
+                            return envioService.buscarResumenesDesde(ultimoId, pageSize);
                         } catch (Exception e) {
                             ConsoleUtils.imprimirError("❌ Error al obtener envíos: " + e.getMessage());
                             return List.of();
                         }
                     },
+                    EnvioResumen::id,
                     lista -> {
                         ConsoleUtils.imprimirLineaVacia();
                         EnvioPrinter.mostrarCabecera();
                         lista.forEach(EnvioPrinter::mostrarDetalle);
                     },
-                    total
+                    // El total de los contadores es aproximado: solo se informa, la paginación
+                    // sigue mientras las páginas vengan completas
+                    null
             );
         } catch (Exception e) {
             ConsoleUtils.imprimirError("❌ Error al listar envíos: " + e.getMessage());
@@ -262,8 +276,109 @@ public class EnvioConsoleController {
             Pedido pedido = pedidoService.buscarPorNumeroTracking(envio.getTracking());
             envioService.actualizarEstado(envio, pedido);
         } else {
-            envio.setEstado(nuevoEstado);
-            envioService.actualizar(envio);
+            // Se relee el envío y se reintenta si otra operación lo modificó mientras se elegía el estado
+            envioService.actualizarConReintento(envio.getId(), actual -> {
+                if (actual.getEstado() == EstadoEnvio.ENTREGADO) {
+                    throw new ActualizacionEntityException("El envío ya fue marcado como ENTREGADO por otra operación.");
+                }
+                actual.setEstado(nuevoEstado);
+            });
+        }
+    }
+
+    /***
+     * Cambia el estado de todos los envíos que cumplen un filtro (criterios o lista de trackings).
+     */
+    public void actualizarEstadoMasivo() {
+        ConsoleUtils.imprimirDivisores("ACTUALIZAR ESTADO DE ENVÍOS EN FORMA MASIVA");
+        try {
+            ConsoleUtils.imprimirMensaje("Seleccione cómo elegir los envíos:");
+            input.mostrarOpcionesEnum(new String[]{"Por criterios (empresa, estado, fechas)", "Por lista de trackings"});
+            FiltroEnvios filtro = input.leerOpcionEnum(2) == 1 ? leerFiltroPorCriterios() : leerFiltroPorTrackings();
+            if (filtro.sinCriterios()) {
+                ConsoleUtils.imprimirError("❌ Debe indicar al menos un criterio.");
+                return;
+            }
+
+            EstadoEnvio nuevoEstado = elegirEstadoEnvio();
+            ConsoleUtils.imprimirAdvertencia("Los envíos ENTREGADO no se modifican."
+                    + (nuevoEstado == EstadoEnvio.ENTREGADO ? " Los pedidos asociados pasarán a ENVIADO." : ""));
+            if (!input.prompt("¿Confirma la actualización? (s/n): ").equalsIgnoreCase("s")) {
+                ConsoleUtils.imprimirError(OPERACION_CANCELADA_POR_EL_USUARIO);
+                return;
+            }
+
+            ResultadoActualizacionMasiva resultado = envioService.actualizarEstadoMasivo(filtro, nuevoEstado);
+            ConsoleUtils.imprimirMensaje(String.format(Locale.ROOT,
+                    "✅ %d envíos y %d pedidos actualizados en %.1f s.",
+                    resultado.envios(), resultado.pedidos(), resultado.milisegundos() / 1000.0));
+        } catch (Exception e) {
+            ConsoleUtils.imprimirError("❌ Error al actualizar envíos: " + e.getMessage());
+        }
+    }
+
+    /***
+     * Solicita los criterios de selección de envíos; cada uno puede omitirse.
+     *
+     * @return Filtro con los criterios ingresados.
+     */
+    private FiltroEnvios leerFiltroPorCriterios() {
+        EmpresaEnvio empresa = input.prompt("¿Filtrar por empresa? (s/n): ").equalsIgnoreCase("s")
+                ? elegirEmpresaEnvio() : null;
+        EstadoEnvio estado = null;
+        if (input.prompt("¿Filtrar por estado actual? (s/n): ").equalsIgnoreCase("s")) {
+            estado = elegirEstadoEnvio();
+        }
+        return new FiltroEnvios(empresa, estado,
+                leerFechaOpcional("Fecha de despacho desde"),
+                leerFechaOpcional("Fecha de despacho hasta"),
+                leerFechaOpcional("Fecha estimada desde"),
+                leerFechaOpcional("Fecha estimada hasta"),
+                List.of());
+    }
+
+    /***
+     * Solicita una lista de trackings separados por coma, o la ruta de un archivo con un tracking por línea.
+     *
+     * @return Filtro por los trackings ingresados.
+     * @throws IOException Si no se puede leer el archivo.
+     */
+    private FiltroEnvios leerFiltroPorTrackings() throws IOException {
+        String valor = input.prompt("Trackings separados por coma, o archivo con un tracking por línea: ").trim();
+        Path archivo = Path.of(valor);
+        List<String> trackings = new ArrayList<>();
+        if (!valor.isEmpty() && Files.isRegularFile(archivo)) {
+            try (Stream<String> lineas = Files.lines(archivo)) {
+                lineas.map(String::trim).filter(linea -> !linea.isEmpty()).forEach(trackings::add);
+            }
+        } else {
+            for (String tracking : valor.split(",")) {
+                if (!tracking.isBlank()) {
+                    trackings.add(tracking.trim());
+                }
+            }
+        }
+        ConsoleUtils.imprimirInfo(trackings.size() + " trackings ingresados.");
+        return FiltroEnvios.porTrackings(trackings);
+    }
+
+    /***
+     * Solicita una fecha opcional en formato AAAA-MM-DD, repitiendo la pregunta si el formato es inválido.
+     *
+     * @param descripcion Descripción de la fecha.
+     * @return Fecha ingresada, o null si se dejó vacía.
+     */
+    private LocalDate leerFechaOpcional(String descripcion) {
+        while (true) {
+            String valor = input.prompt(descripcion + " (AAAA-MM-DD, vacío para no filtrar): ").trim();
+            if (valor.isEmpty()) {
+                return null;
+            }
+            try {
+                return LocalDate.parse(valor);
+            } catch (DateTimeParseException _) {
+                ConsoleUtils.imprimirError("Fecha inválida.");
+            }
         }
     }
 
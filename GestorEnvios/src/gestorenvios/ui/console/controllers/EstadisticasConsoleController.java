@@ -0,0 +1,76 @@
+package gestorenvios.ui.console.controllers;
+
+import gestorenvios.config.EstadisticasReintentos;
+import gestorenvios.services.EstadisticasCache;
+import gestorenvios.services.EstadisticasFiltro;
+import gestorenvios.ui.console.utils.ConsoleUtils;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/***
+ * Controlador de consola para consultar las estadísticas de las cachés y filtros en memoria,
+ * y de los reintentos de transacciones.
+ */
+public class EstadisticasConsoleController {
+
+    private final List<Supplier<EstadisticasCache>> caches;
+    private final Supplier<List<EstadisticasFiltro>> filtros;
+    private final Supplier<EstadisticasReintentos> reintentos;
+
+    /***
+     * Constructor del controlador de estadísticas.
+     *
+     * @param caches Proveedores de las estadísticas de cada caché.
+     * @param filtros Proveedor de las estadísticas de los filtros de códigos existentes.
+     * @param reintentos Proveedor de las estadísticas de reintentos de transacciones.
+     */
+    public EstadisticasConsoleController(List<Supplier<EstadisticasCache>> caches,
+                                         Supplier<List<EstadisticasFiltro>> filtros,
+                                         Supplier<EstadisticasReintentos> reintentos) {
+        this.caches = caches;
+        this.filtros = filtros;
+        this.reintentos = reintentos;
+    }
+
+    /***
+     * Muestra tamaño, aciertos, fallos, desalojos y expiraciones de cada caché, y el dimensionamiento,
+     * la tasa de falsos positivos y las búsquedas descartadas de cada filtro de códigos, y los
+     * reintentos de transacciones por interbloqueos y esperas de bloqueo.
+     */
+    public void mostrar() {
+        ConsoleUtils.imprimirDivisores("ESTADÍSTICAS DE CACHÉ");
+        for (Supplier<EstadisticasCache> cache : caches) {
+            EstadisticasCache estadisticas = cache.get();
+            ConsoleUtils.imprimirMensaje(String.format(Locale.ROOT,
+                    "%s: %d/%d entradas | aciertos %d | fallos %d (%.1f%% aciertos) | desalojos %d | expiraciones %d",
+                    estadisticas.nombre(), estadisticas.tamanio(), estadisticas.tamanioMaximo(),
+                    estadisticas.aciertos(), estadisticas.fallos(), estadisticas.tasaAciertos() * 100.0,
+                    estadisticas.desalojos(), estadisticas.expiraciones()));
+        }
+
+        ConsoleUtils.imprimirDivisores("FILTROS DE CÓDIGOS EXISTENTES");
+        for (EstadisticasFiltro filtro : filtros.get()) {
+            if (!filtro.listo()) {
+                ConsoleUtils.imprimirMensaje(filtro.nombre() + ": en construcción (las búsquedas van a la base de datos)");
+                continue;
+            }
+            ConsoleUtils.imprimirMensaje(String.format(Locale.ROOT,
+                    "%s: ~%d/%d códigos | %d bits, %d hashes | falsos positivos: configurado %.3f%%, estimado %.3f%%"
+                            + " | búsquedas %d, descartadas sin consultar %d (%.1f%%)",
+                    filtro.nombre(), filtro.elementos(), filtro.capacidad(), filtro.bits(), filtro.funcionesHash(),
+                    filtro.tasaConfigurada() * 100.0, filtro.tasaEstimada() * 100.0,
+                    filtro.consultas(), filtro.descartadas(), filtro.tasaDescarte() * 100.0));
+        }
+
+        EstadisticasReintentos estadisticas = reintentos.get();
+        ConsoleUtils.imprimirDivisores("REINTENTOS DE TRANSACCIONES");
+        ConsoleUtils.imprimirMensaje(String.format(Locale.ROOT,
+                "transacciones %d | reintentos %d (deadlocks %d, esperas de bloqueo %d) | recuperadas %d"
+                        + " | agotadas %d | sin presupuesto %d | espera total %d ms | presupuesto disponible %.1f",
+                estadisticas.transacciones(), estadisticas.reintentos(), estadisticas.deadlocks(),
+                estadisticas.esperasBloqueo(), estadisticas.recuperadas(), estadisticas.agotadas(),
+                estadisticas.sinPresupuesto(), estadisticas.esperaTotalMs(), estadisticas.presupuestoDisponible()));
+    }
+}
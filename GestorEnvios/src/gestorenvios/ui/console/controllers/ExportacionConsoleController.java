@@ -0,0 +1,69 @@
+package gestorenvios.ui.console.controllers;
+
+import gestorenvios.services.ExportacionService;
+import gestorenvios.services.FormatoExportacion;
+import gestorenvios.services.ResultadoExportacion;
+import gestorenvios.ui.console.input.InputReader;
+import gestorenvios.ui.console.utils.ConsoleUtils;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Locale;
+
+/***
+ * Controlador de consola para la exportación masiva de pedidos y envíos.
+ */
+public class ExportacionConsoleController {
+
+    private static final String[] ENTIDADES = {"Pedidos (con su envío)", "Envíos"};
+
+    private final ExportacionService exportacionService;
+    private final InputReader input;
+
+    /***
+     * Constructor del controlador de consola para exportaciones.
+     *
+     * @param exportacionService Servicio de exportación.
+     * @param input Lector de entrada de consola.
+     */
+    public ExportacionConsoleController(ExportacionService exportacionService, InputReader input) {
+        this.exportacionService = exportacionService;
+        this.input = input;
+    }
+
+    /***
+     * Exporta todos los pedidos o envíos activos a un archivo CSV o NDJSON.
+     */
+    public void exportar() {
+        ConsoleUtils.imprimirDivisores("EXPORTAR DATOS");
+        try {
+            ConsoleUtils.imprimirInfo("Seleccione qué exportar:");
+            input.mostrarOpcionesEnum(ENTIDADES);
+            boolean pedidos = input.leerOpcionEnum(ENTIDADES.length) == 1;
+
+            ConsoleUtils.imprimirInfo("Seleccione el formato:");
+            FormatoExportacion[] formatos = FormatoExportacion.values();
+            input.mostrarOpcionesEnum(formatos);
+            FormatoExportacion formato = formatos[input.leerOpcionEnum(formatos.length) - 1];
+
+            boolean comprimir = input.prompt("¿Comprimir con gzip? (s/n): ").equalsIgnoreCase("s");
+
+            String archivoPorDefecto = (pedidos ? "pedidos-" : "envios-") + LocalDate.now()
+                    + "." + formato.getExtension() + (comprimir ? ".gz" : "");
+            String archivo = input.prompt("Archivo de destino [" + archivoPorDefecto + "]: ");
+            Path destino = Path.of(archivo.isBlank() ? archivoPorDefecto : archivo);
+
+            ConsoleUtils.imprimirInfo("Exportando...");
+            ResultadoExportacion resultado = pedidos
+                    ? exportacionService.exportarPedidos(destino, formato, comprimir)
+                    : exportacionService.exportarEnvios(destino, formato, comprimir);
+
+            ConsoleUtils.imprimirMensaje(String.format(Locale.ROOT,
+                    "✅ %d registros exportados a %s en %.1f s (%.0f registros/s).",
+                    resultado.registros(), resultado.archivo().toAbsolutePath(),
+                    resultado.milisegundos() / 1000.0, resultado.registrosPorSegundo()));
+        } catch (Exception e) {
+            ConsoleUtils.imprimirError("❌ Error al exportar: " + e.getMessage());
+        }
+    }
+}
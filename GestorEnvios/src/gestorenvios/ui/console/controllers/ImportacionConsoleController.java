@@ -0,0 +1,67 @@
+package gestorenvios.ui.console.controllers;
+
+import gestorenvios.services.ImportacionService;
+import gestorenvios.services.ResultadoImportacion;
+import gestorenvios.ui.console.input.InputReader;
+import gestorenvios.ui.console.utils.ConsoleUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/***
+ * Controlador de consola para la importación masiva de pedidos.
+ */
+public class ImportacionConsoleController {
+
+    private final ImportacionService importacionService;
+    private final InputReader input;
+
+    /***
+     * Constructor del controlador de consola para importaciones.
+     *
+     * @param importacionService Servicio de importación.
+     * @param input Lector de entrada de consola.
+     */
+    public ImportacionConsoleController(ImportacionService importacionService, InputReader input) {
+        this.importacionService = importacionService;
+        this.input = input;
+    }
+
+    /***
+     * Importa los pedidos de un archivo CSV y muestra el resumen de la importación.
+     */
+    public void importarPedidos() {
+        ConsoleUtils.imprimirDivisores("IMPORTAR PEDIDOS");
+        try {
+            ConsoleUtils.imprimirInfo("Columnas requeridas: cliente_nombre, total. Opcionales: fecha, estado.");
+            String archivo = input.prompt("Archivo CSV a importar: ");
+            if (archivo.isBlank()) {
+                ConsoleUtils.imprimirError("❌ Debe indicar un archivo.");
+                return;
+            }
+            Path origen = Path.of(archivo);
+            if (!Files.isRegularFile(origen)) {
+                ConsoleUtils.imprimirError("❌ No existe el archivo " + origen.toAbsolutePath());
+                return;
+            }
+
+            String erroresPorDefecto = origen + ".errores.csv";
+            String errores = input.prompt("Archivo de errores [" + erroresPorDefecto + "]: ");
+            Path archivoErrores = Path.of(errores.isBlank() ? erroresPorDefecto : errores);
+
+            ConsoleUtils.imprimirInfo("Importando...");
+            ResultadoImportacion resultado = importacionService.importarPedidos(origen, archivoErrores);
+
+            ConsoleUtils.imprimirMensaje(String.format(Locale.ROOT,
+                    "✅ %d filas leídas, %d pedidos importados, %d rechazados en %.1f s (%.0f filas/s).",
+                    resultado.leidas(), resultado.importadas(), resultado.rechazadas(),
+                    resultado.milisegundos() / 1000.0, resultado.filasPorSegundo()));
+            if (resultado.rechazadas() > 0) {
+                ConsoleUtils.imprimirInfo("Filas rechazadas en " + resultado.archivoErrores().toAbsolutePath());
+            }
+        } catch (Exception e) {
+            ConsoleUtils.imprimirError("❌ Error al importar: " + e.getMessage());
+        }
+    }
+}
@@ -1,11 +1,19 @@
 package gestorenvios.ui.console.controllers;
 
+import gestorenvios.config.EstadisticasReintentos;
 import gestorenvios.entities.Envio;
 import gestorenvios.entities.Pedido;
+import gestorenvios.services.EstadisticasCache;
+import gestorenvios.services.EstadisticasFiltro;
+import gestorenvios.services.ExportacionService;
 import gestorenvios.services.GenericEnviosService;
 import gestorenvios.services.GenericPedidosService;
+import gestorenvios.services.ImportacionService;
 import gestorenvios.ui.console.input.InputReader;
 
+import java.util.List;
+import java.util.function.Supplier;
+
 /***
  * Maneja el menú de opciones para pedidos y envíos en la consola.
  */
@@ -13,19 +21,35 @@ public class MenuHandler {
 
     private final PedidoConsoleController pedidoConsoleController;
     private final EnvioConsoleController envioConsoleController;
+    private final ExportacionConsoleController exportacionConsoleController;
+    private final ImportacionConsoleController importacionConsoleController;
+    private final EstadisticasConsoleController estadisticasConsoleController;
 
     /***
      * Constructor del MenuHandler.
      *
      * @param pedidoService Servicio genérico para manejar pedidos.
      * @param envioService  Servicio genérico para manejar envíos.
+     * @param exportacionService Servicio de exportación masiva.
+     * @param importacionService Servicio de importación masiva.
+     * @param caches        Estadísticas de las cachés de lectura.
+     * @param filtros       Estadísticas de los filtros de códigos existentes.
+     * @param reintentos    Estadísticas de los reintentos de transacciones.
      * @param input         Lector de entrada para interactuar con el usuario.
      */
     public MenuHandler(GenericPedidosService<Pedido> pedidoService,
                        GenericEnviosService<Envio, Pedido> envioService,
+                       ExportacionService exportacionService,
+                       ImportacionService importacionService,
+                       List<Supplier<EstadisticasCache>> caches,
+                       Supplier<List<EstadisticasFiltro>> filtros,
+                       Supplier<EstadisticasReintentos> reintentos,
                        InputReader input) {
         this.pedidoConsoleController = new PedidoConsoleController(pedidoService, input);
         this.envioConsoleController = new EnvioConsoleController(envioService, pedidoService, input);
+        this.exportacionConsoleController = new ExportacionConsoleController(exportacionService, input);
+        this.importacionConsoleController = new ImportacionConsoleController(importacionService, input);
+        this.estadisticasConsoleController = new EstadisticasConsoleController(caches, filtros, reintentos);
     }
 
     public void crearPedido() {
@@ -106,5 +130,21 @@ public class MenuHandler {
     public void buscarPedidoPorCliente() {
         pedidoConsoleController.buscarPorCliente();
     }
+
+    public void exportarDatos() {
+        exportacionConsoleController.exportar();
+    }
+
+    public void importarPedidos() {
+        importacionConsoleController.importarPedidos();
+    }
+
+    public void actualizarEstadoEnviosMasivo() {
+        envioConsoleController.actualizarEstadoMasivo();
+    }
+
+    public void mostrarEstadisticasCache() {
+        estadisticasConsoleController.mostrar();
+    }
 }
 
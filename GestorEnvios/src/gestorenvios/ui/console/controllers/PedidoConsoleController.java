@@ -2,6 +2,8 @@ package gestorenvios.ui.console.controllers;
 
 import gestorenvios.entities.EstadoPedido;
 import gestorenvios.entities.Pedido;
+import gestorenvios.models.Pagina;
+import gestorenvios.models.PedidoResumen;
 import gestorenvios.services.GenericPedidosService;
 import gestorenvios.ui.console.input.InputReader;
 import gestorenvios.ui.console.output.PedidoPrinter;
@@ -62,25 +64,28 @@ public class PedidoConsoleController {
     public void listar() {
         ConsoleUtils.imprimirDivisores("LISTA DE PEDIDOS");
         try {
-            Long total = pedidoService.obtenerCantidadTotalDePedidos();
-            ConsoleUtils.imprimirMensaje("Total de pedidos registrados: " + total);
+            Long total = pedidoService.obtenerCantidadEstimadaDePedidos();
+            ConsoleUtils.imprimirMensaje("Total de pedidos registrados: " + (total != null ? total : "calculando..."));
 
-            Paginador<Pedido> paginador = new Paginador<>(50L, input);
-            paginador.paginar(
-                    (cantidad, pagina) -> {
+            Paginador<PedidoResumen> paginador = new Paginador<>(50L, input);
+            paginador.paginarPorCursor(
+                    (ultimoId, cantidad) -> {
                         try {
-                            return pedidoService.buscarTodos(cantidad, pagina);
+                            return pedidoService.buscarResumenesDesde(ultimoId, cantidad);
                         } catch (Exception e) {
                             ConsoleUtils.imprimirError("❌ Error al obtener pedidos: " + e.getMessage());
                             return List.of();
                         }
                     },
+                    PedidoResumen::id,
                     lista -> {
                         ConsoleUtils.imprimirLineaVacia();
                         PedidoPrinter.mostrarCabecera();
                         lista.forEach(PedidoPrinter::mostrarDetalle);
                     },
-                    total
+                    // El total de los contadores es aproximado: solo se informa, la paginación
+                    // sigue mientras las páginas vengan completas
+                    null
             );
         } catch (Exception e) {
             ConsoleUtils.imprimirError("❌ Error al listar pedidos: " + e.getMessage());
@@ -143,19 +148,24 @@ public class PedidoConsoleController {
         ConsoleUtils.imprimirDivisores("BUSCAR PEDIDO POR CLIENTE");
         try {
             String clienteNombre = input.leerStringObligatorio("Ingrese Cliente de pedido: ", "nombre de cliente");
-            Long total = pedidoService.obtenerCantidadTotalDePedidosPorCliente(clienteNombre);
+            Pagina<PedidoResumen> primeraPagina = pedidoService.buscarPrimeraPaginaResumenesPorCliente(clienteNombre, 50L);
+            Long total = primeraPagina.total();
             ConsoleUtils.imprimirMensaje("Total de pedidos registrados: " + total);
 
-            Paginador<Pedido> paginador = new Paginador<>(50L, input);
-            paginador.paginar(
-                    (cantidad, pagina) -> {
+            Paginador<PedidoResumen> paginador = new Paginador<>(50L, input);
+            paginador.paginarPorCursor(
+                    (ultimoId, cantidad) -> {
+                        if (ultimoId == null) {
+                            return primeraPagina.elementos();
+                        }
                         try {
-                            return pedidoService.buscarPorCliente(clienteNombre, cantidad, pagina);
+                            return pedidoService.buscarResumenesPorClienteDesde(clienteNombre, ultimoId, cantidad);
                         } catch (Exception e) {
                             ConsoleUtils.imprimirError("❌ Error al obtener pedidos: " + e.getMessage());
                             return List.of();
                         }
                     },
+                    PedidoResumen::id,
                     lista -> {
                         ConsoleUtils.imprimirLineaVacia();
                         PedidoPrinter.mostrarCabecera();
@@ -45,6 +45,12 @@ public class MenuDisplay {
         ConsoleUtils.formatearOpcion(19, "Eliminar envío por número de pedido");
         ConsoleUtils.formatearOpcion(20, "Eliminar envío por ID");
         ConsoleUtils.imprimirLineaVacia();
+        ConsoleUtils.imprimirDivisores("HERRAMIENTAS");
+        ConsoleUtils.formatearOpcion(21, "Exportar pedidos o envíos (CSV/NDJSON)");
+        ConsoleUtils.formatearOpcion(22, "Importar pedidos desde CSV");
+        ConsoleUtils.formatearOpcion(23, "Actualizar estado de envíos en forma masiva");
+        ConsoleUtils.formatearOpcion(24, "Ver estadísticas de caché y filtros");
+        ConsoleUtils.imprimirLineaVacia();
         ConsoleUtils.formatearOpcion(0, "Salir");
         ConsoleUtils.imprimirLineaVacia();
         ConsoleUtils.imprimirInfo("Seleccione una opción: ");
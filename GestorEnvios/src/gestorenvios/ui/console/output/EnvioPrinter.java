@@ -1,6 +1,7 @@
 package gestorenvios.ui.console.output;
 
 import gestorenvios.entities.Envio;
+import gestorenvios.models.EnvioResumen;
 import gestorenvios.ui.console.utils.ConsoleUtils;
 
 /***
@@ -47,6 +48,23 @@ public class EnvioPrinter {
         ConsoleUtils.imprimirInfo(separadorFila(detalle.length() - 1));
     }
 
+    /***
+     * Muestra el resumen de un envío en consola, con las mismas columnas que el detalle.
+     * @param resumen El resumen del envío a mostrar.
+     */
+    public static void mostrarDetalle(EnvioResumen resumen) {
+        if (resumen == null) {
+            ConsoleUtils.imprimirError("❌ No se encontró el envio.");
+            return;
+        }
+        String detalle = ConsoleUtils.padRight(resumen.id().toString(), ANCHO_ID) + SEP_COLUMNA +
+                ConsoleUtils.padRight(resumen.empresa().name(), ANCHO_EMPRESA) + SEP_COLUMNA +
+                ConsoleUtils.padRight(resumen.tracking(), ANCHO_TRACKING) + SEP_COLUMNA +
+                ConsoleUtils.padRight(resumen.estado().name(), ANCHO_ESTADO) + SEP_COLUMNA;
+        ConsoleUtils.imprimirInfo(detalle);
+        ConsoleUtils.imprimirInfo(separadorFila(detalle.length() - 1));
+    }
+
     /***
      * Genera un separador de fila para la tabla.
      * @param n La longitud del separador.
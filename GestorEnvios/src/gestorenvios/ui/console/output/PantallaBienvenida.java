@@ -36,6 +36,7 @@ public class PantallaBienvenida {
                     ConsoleUtils.imprimirMensaje("Inicializando...");
                     DbInitController.inicializarBaseDeDatos();
                 }
+                DbInitController.actualizarEsquema();
                 if (input.prompt("¿Desea cargar datos de prueba? (s/n): ").equalsIgnoreCase("s")) {
                     DbInitController.inicializarBaseDeDatos();
                     DbInitController.cargarDatosIniciales();
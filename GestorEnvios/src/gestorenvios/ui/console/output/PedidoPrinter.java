@@ -1,6 +1,7 @@
 package gestorenvios.ui.console.output;
 
 import gestorenvios.entities.Pedido;
+import gestorenvios.models.PedidoResumen;
 import gestorenvios.ui.console.utils.ConsoleUtils;
 
 /***
@@ -65,6 +66,28 @@ public class PedidoPrinter {
         ConsoleUtils.imprimirInfo(detalle);
     }
 
+    /***
+     * Imprime el resumen de un pedido en formato de fila de tabla, con las mismas columnas que el detalle.
+     * @param resumen Resumen del pedido a mostrar
+     */
+    public static void mostrarDetalle(PedidoResumen resumen) {
+        if (resumen == null) {
+            ConsoleUtils.imprimirError("❌ No se encontró el pedido.");
+            return;
+        }
+        String envioTracking = resumen.envioTracking() != null ? resumen.envioTracking() : "Sin envío";
+        String envioEstado = resumen.envioEstado() != null ? resumen.envioEstado().name() : "-";
+
+        String detalle = ConsoleUtils.padRight(resumen.id().toString(), ANCHO_ID) + SEP_COLUMNA +
+                ConsoleUtils.padRight(resumen.clienteNombre(), ANCHO_CLIENTE) + SEP_COLUMNA +
+                ConsoleUtils.padRight(resumen.numero(), ANCHO_NUMERO) + SEP_COLUMNA +
+                ConsoleUtils.padRight(resumen.estado().name(), ANCHO_ESTADO) + SEP_COLUMNA +
+                ConsoleUtils.padRight(envioTracking, ANCHO_ENVIO) + SEP_COLUMNA +
+                ConsoleUtils.padRight(envioEstado, ANCHO_ESTADO_ENVIO) + SEP_COLUMNA;
+
+        ConsoleUtils.imprimirInfo(detalle);
+    }
+
     /***
      * Devuelve una línea separadora para la tabla, útil para mejorar la visualización.
      * @param n Longitud de la línea
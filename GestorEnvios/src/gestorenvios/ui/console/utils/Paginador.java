@@ -5,6 +5,7 @@ import gestorenvios.ui.console.input.InputReader;
 import java.util.List;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 /***
  * Clase genérica para paginar resultados en la consola.
@@ -61,4 +62,53 @@ public class Paginador<T> {
             }
         }
     }
+
+    /***
+     * Método para paginar resultados por cursor (keyset). En lugar de un número de página,
+     * el fetcher recibe el cursor del último elemento mostrado, de modo que el costo de cada
+     * página no depende de cuán lejos se haya avanzado.
+     * @param fetcher Función que recibe el cursor (null en la primera página) y el tamaño de página,
+     *                y devuelve la página siguiente.
+     * @param cursorDe Función que obtiene el cursor a partir de un elemento (opaco para el paginador).
+     * @param consumer Consumidor que procesa la lista de elementos obtenida.
+     * @param totalCount Cantidad total de elementos disponibles, o null si es desconocida. En ese caso
+     *                   se sigue paginando mientras las páginas vengan completas.
+     * @param <C> Tipo del cursor.
+     */
+    public <C> void paginarPorCursor(BiFunction<C, Long, List<T>> fetcher,
+                                     Function<T, C> cursorDe,
+                                     Consumer<List<T>> consumer,
+                                     Long totalCount) {
+        if (totalCount != null && totalCount == 0) {
+            ConsoleUtils.imprimirInfo("No hay registros.");
+            return;
+        }
+
+        C cursor = null;
+        long mostrados = 0L;
+
+        boolean continuar = true;
+        while (continuar) {
+            List<T> lista = fetcher.apply(cursor, pageSize);
+
+            if (lista != null && !lista.isEmpty()) {
+                consumer.accept(lista);
+                mostrados += lista.size();
+                cursor = cursorDe.apply(lista.getLast());
+
+                if (lista.size() == pageSize && (totalCount == null || totalCount > mostrados)) {
+                    ConsoleUtils.imprimirInfo("Presione Enter para ver más o 'q' para salir: ");
+                    String in = input.nextLine().trim();
+                    continuar = !"q".equalsIgnoreCase(in);
+                } else {
+                    continuar = false;
+                }
+            } else {
+                if (mostrados == 0L) {
+                    ConsoleUtils.imprimirInfo("No hay registros.");
+                }
+                continuar = false;
+            }
+        }
+    }
 }